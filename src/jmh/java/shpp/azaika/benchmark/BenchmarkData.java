@@ -0,0 +1,42 @@
+package shpp.azaika.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.util.UserPojoGenerator;
+
+/**
+ * Pre-generated inputs shared by the benchmarks, so generation cost stays out of the measured stages.
+ */
+final class BenchmarkData {
+    static final int SIZE = 4096;
+    static final int MASK = SIZE - 1;
+
+    private BenchmarkData() {
+    }
+
+    static ObjectMapper newObjectMapper() {
+        return new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+    }
+
+    static String[] jsonRecords() {
+        UserPojoGenerator generator = new UserPojoGenerator();
+        String[] records = new String[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            records[i] = generator.generateUserPojoAsJson();
+        }
+        return records;
+    }
+
+    static UserPojo[] userPojos() {
+        UserPojoGenerator generator = new UserPojoGenerator();
+        UserPojo[] pojos = new UserPojo[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            pojos[i] = generator.generate();
+        }
+        return pojos;
+    }
+}
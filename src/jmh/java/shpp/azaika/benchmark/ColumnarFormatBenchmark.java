@@ -0,0 +1,128 @@
+package shpp.azaika.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.pojo.ValidatedRecord;
+import shpp.azaika.util.sink.ColumnarReader;
+import shpp.azaika.util.sink.ColumnarRecordSink;
+import shpp.azaika.util.sink.RecordFormat;
+import shpp.azaika.util.sink.RecordSink;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scans the same records from CSV and from the columnar format, in full and with a filter on
+ * {@code count} that lets the columnar reader skip row groups. File sizes are printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColumnarFormatBenchmark {
+    private static final int RECORDS = 200_000;
+
+    private Path directory;
+    private Path csvFile;
+    private Path columnarFile;
+    private CsvMapper csvMapper;
+    private CsvSchema csvSchema;
+    private int filterFrom;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("columnar-format-benchmark");
+        csvFile = directory.resolve(RecordFormat.CSV.fileName("users"));
+        columnarFile = directory.resolve(RecordFormat.COLUMNAR.fileName("users"));
+        UserPojo[] pojos = BenchmarkData.userPojos();
+        List<ValidatedRecord> records = new ArrayList<>(RECORDS);
+        for (int i = 0; i < RECORDS; i++) {
+            UserPojo pojo = pojos[i & BenchmarkData.MASK];
+            records.add(new ValidatedRecord(new UserPojo(pojo.getName(), pojo.getEddr(), i, pojo.getDate()), 0));
+        }
+        try (RecordSink csv = RecordFormat.CSV.open(csvFile, null, null);
+             RecordSink columnar = RecordFormat.COLUMNAR.open(columnarFile, null, null)) {
+            csv.write(records);
+            columnar.write(records);
+        }
+        System.out.printf("%nCSV %d bytes, columnar %d bytes (%.1f%%)%n", Files.size(csvFile), Files.size(columnarFile),
+                100.0 * Files.size(columnarFile) / Files.size(csvFile));
+        csvMapper = (CsvMapper) new CsvMapper().registerModule(new JavaTimeModule());
+        // CsvWriter writes dates as [year, month, day] arrays, which CSV joins with ';'
+        csvMapper.configOverride(LocalDate.class).setFormat(JsonFormat.Value.forPattern("yyyy;M;d"));
+        csvSchema = csvMapper.schemaFor(UserPojo.class);
+        filterFrom = RECORDS - ColumnarRecordSink.DEFAULT_ROW_GROUP_SIZE;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(csvFile);
+        Files.deleteIfExists(columnarFile);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public long scanCsv(Blackhole blackhole) throws IOException {
+        long records = 0;
+        try (MappingIterator<UserPojo> rows = csvMapper.readerFor(UserPojo.class).with(csvSchema).readValues(csvFile.toFile())) {
+            while (rows.hasNext()) {
+                blackhole.consume(rows.next());
+                records++;
+            }
+        }
+        return records;
+    }
+
+    @Benchmark
+    public long scanColumnar(Blackhole blackhole) throws IOException {
+        try (ColumnarReader reader = new ColumnarReader(columnarFile)) {
+            return reader.scan(stats -> true, blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public long filterCsv(Blackhole blackhole) throws IOException {
+        long records = 0;
+        try (MappingIterator<UserPojo> rows = csvMapper.readerFor(UserPojo.class).with(csvSchema).readValues(csvFile.toFile())) {
+            while (rows.hasNext()) {
+                UserPojo row = rows.next();
+                if (row.getCount() >= filterFrom) {
+                    blackhole.consume(row);
+                    records++;
+                }
+            }
+        }
+        return records;
+    }
+
+    @Benchmark
+    public long filterColumnar(Blackhole blackhole) throws IOException {
+        long records = 0;
+        try (ColumnarReader reader = new ColumnarReader(columnarFile)) {
+            for (var stats = reader.nextRowGroup(); stats != null; stats = reader.nextRowGroup()) {
+                if (stats.mayContainCount(filterFrom, Integer.MAX_VALUE)) {
+                    for (ValidatedRecord row : reader.readRowGroup()) {
+                        if (row.userPojo().getCount() >= filterFrom) {
+                            blackhole.consume(row);
+                            records++;
+                        }
+                    }
+                }
+            }
+        }
+        return records;
+    }
+}
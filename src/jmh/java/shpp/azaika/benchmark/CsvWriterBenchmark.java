@@ -0,0 +1,53 @@
+package shpp.azaika.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.pojo.ValidatedRecord;
+import shpp.azaika.util.CsvWriter;
+import shpp.azaika.validation.ViolationCatalog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the plain CSV writer with the invalid-record report that adds the errors column.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvWriterBenchmark {
+    @Param({"false", "true"})
+    public boolean errorsColumn;
+
+    private Path file;
+    private CsvWriter writer;
+    private ValidatedRecord[] records;
+    private int index;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("csv-writer-benchmark", ".csv");
+        writer = new CsvWriter(file.toString(), errorsColumn ? ViolationCatalog.forUserPojo() : null);
+        UserPojo[] pojos = BenchmarkData.userPojos();
+        records = new ValidatedRecord[pojos.length];
+        for (int i = 0; i < pojos.length; i++) {
+            records[i] = new ValidatedRecord(pojos[i], i & 0b1111111);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        writer.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        writer.write(records[index++ & BenchmarkData.MASK]);
+    }
+}
@@ -0,0 +1,31 @@
+package shpp.azaika.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import shpp.azaika.pojo.UserPojo;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeserializationBenchmark {
+    private ObjectMapper mapper;
+    private String[] records;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        mapper = BenchmarkData.newObjectMapper();
+        records = BenchmarkData.jsonRecords();
+    }
+
+    @Benchmark
+    public UserPojo readValue() throws JsonProcessingException {
+        return mapper.readValue(records[index++ & BenchmarkData.MASK], UserPojo.class);
+    }
+}
@@ -0,0 +1,95 @@
+package shpp.azaika.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.*;
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.util.FastUserPojoGenerator;
+import shpp.azaika.validation.FailFastUserPojoReader;
+import shpp.azaika.validation.ViolationCatalog;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binding plus bean validation against the fail-fast reader, by share of valid records and by
+ * the field that makes the others invalid: {@code count} fails on a cheap check,
+ * {@code eddr} only on the last, expensive one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FailFastValidationBenchmark {
+    @Param({"1.0", "0.9", "0.5", "0.1", "0.0"})
+    public double validRatio;
+
+    @Param({"count", "eddr"})
+    public String invalidField;
+
+    @Param({"false", "true"})
+    public boolean violationReport;
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private ObjectMapper mapper;
+    private ViolationCatalog catalog;
+    private FailFastUserPojoReader reader;
+    private String[] records;
+    private int index;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        mapper = BenchmarkData.newObjectMapper();
+        catalog = ViolationCatalog.forUserPojo();
+        reader = new FailFastUserPojoReader(mapper, null, violationReport ? catalog : null);
+
+        FastUserPojoGenerator generator = new FastUserPojoGenerator(1.0);
+        SplittableRandom random = new SplittableRandom(42);
+        records = new String[BenchmarkData.SIZE];
+        for (int i = 0; i < records.length; i++) {
+            UserPojo userPojo = generator.generate();
+            if (random.nextDouble() >= validRatio) {
+                invalidate(userPojo);
+            }
+            records[i] = mapper.writeValueAsString(userPojo);
+        }
+    }
+
+    private void invalidate(UserPojo userPojo) {
+        if ("count".equals(invalidField)) {
+            userPojo.setCount(5);
+        } else {
+            String eddr = userPojo.getEddr();
+            int control = eddr.charAt(eddr.length() - 1) - '0';
+            userPojo.setEddr(eddr.substring(0, eddr.length() - 1) + (control + 1) % 10);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public int bindAndValidate() throws IOException {
+        UserPojo userPojo = mapper.readValue(records[index++ & BenchmarkData.MASK], UserPojo.class);
+        Set<ConstraintViolation<UserPojo>> violations = validator.validate(userPojo);
+        return violationReport ? catalog.maskOf(violations) : violations.size();
+    }
+
+    @Benchmark
+    public boolean failFast() throws IOException {
+        return reader.read(records[index++ & BenchmarkData.MASK]).valid();
+    }
+}
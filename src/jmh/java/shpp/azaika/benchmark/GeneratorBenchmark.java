@@ -0,0 +1,36 @@
+package shpp.azaika.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.util.FastUserPojoGenerator;
+import shpp.azaika.util.UserPojoGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeneratorBenchmark {
+    @Param({"faker", "fast"})
+    public String mode;
+
+    private UserPojoGenerator generator;
+
+    @Setup
+    public void setUp() {
+        generator = "fast".equals(mode) ? new FastUserPojoGenerator() : new UserPojoGenerator();
+    }
+
+    @Benchmark
+    public UserPojo generate() {
+        return generator.generate();
+    }
+
+    @Benchmark
+    public String generateUserPojoAsJson() {
+        return generator.generateUserPojoAsJson();
+    }
+}
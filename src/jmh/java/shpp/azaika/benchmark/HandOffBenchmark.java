@@ -0,0 +1,50 @@
+package shpp.azaika.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.pojo.ValidatedRecord;
+import shpp.azaika.util.ResizableBlockingQueue;
+
+import java.time.LocalDate;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consumer → writer hand-off through the {@code ResizableBlockingQueue} used by {@code ConsumerManager}:
+ * several consumer threads offer records while one writer thread polls them.
+ * Non-blocking offer/poll keeps the asymmetric group from deadlocking at iteration boundaries.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HandOffBenchmark {
+    @Param({"12000"})
+    public int capacity;
+
+    private BlockingQueue<ValidatedRecord> queue;
+    private ValidatedRecord record;
+
+    @Setup
+    public void setUp() {
+        queue = new ResizableBlockingQueue<>(capacity);
+        record = new ValidatedRecord(new UserPojo("Andrew Zaika", "19760506-26583", 10, LocalDate.now()), 0);
+    }
+
+    @Benchmark
+    @Group("handOff")
+    @GroupThreads(4)
+    public boolean offer() {
+        return queue.offer(record);
+    }
+
+    @Benchmark
+    @Group("handOff")
+    @GroupThreads(1)
+    public void poll(Blackhole blackhole) {
+        blackhole.consume(queue.poll());
+    }
+}
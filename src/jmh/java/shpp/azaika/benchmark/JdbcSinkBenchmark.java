@@ -0,0 +1,69 @@
+package shpp.azaika.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import shpp.azaika.pojo.ValidatedRecord;
+import shpp.azaika.util.sink.JdbcRecordSink;
+import shpp.azaika.util.sink.JdbcSinkSettings;
+import shpp.azaika.util.sink.RecordFormat;
+import shpp.azaika.util.sink.RecordSink;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records per second written in batches to CSV and to an in-memory H2 database through
+ * {@link JdbcRecordSink}, including the final flush of each iteration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(JdbcSinkBenchmark.BATCH)
+public class JdbcSinkBenchmark {
+    static final int BATCH = 512;
+
+    @Param({"csv", "jdbc-1", "jdbc-4"})
+    public String sink;
+
+    private Path file;
+    private RecordSink recordSink;
+    private List<ValidatedRecord> batch;
+    private int iteration;
+
+    @Setup(Level.Trial)
+    public void setUpData() {
+        batch = Arrays.stream(BenchmarkData.userPojos(), 0, BATCH).map(userPojo -> new ValidatedRecord(userPojo, 0)).toList();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        if (sink.equals("csv")) {
+            file = Files.createTempFile("jdbc-sink-benchmark", ".csv");
+            recordSink = RecordFormat.CSV.open(file, null, null);
+        } else {
+            int connections = Integer.parseInt(sink.substring("jdbc-".length()));
+            recordSink = new JdbcRecordSink("valid_users", null, new JdbcSinkSettings(
+                    "jdbc:h2:mem:jdbc-sink-benchmark-" + iteration++ + ";DB_CLOSE_DELAY=-1", "sa", "",
+                    JdbcSinkSettings.DEFAULT_BATCH_SIZE, JdbcSinkSettings.DEFAULT_COMMIT_INTERVAL, connections));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        recordSink.close();
+        if (file != null) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        recordSink.write(batch);
+    }
+}
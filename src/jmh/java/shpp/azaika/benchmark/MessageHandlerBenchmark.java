@@ -0,0 +1,81 @@
+package shpp.azaika.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.openjdk.jmh.annotations.*;
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.pojo.ValidatedRecord;
+import shpp.azaika.util.MessageHandler;
+import shpp.azaika.validation.ValidationHints;
+
+import javax.jms.JMSException;
+import java.util.SplittableRandom;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deserialisation, validation and routing of an in-memory message, as done by every consumer.
+ * With {@code hints} the messages carry validation hints and the handler runs without a violation
+ * report, so records the hints reject skip the validator; compare against {@code hints=false}
+ * without a report. About 1% of the generated records break a hinted constraint;
+ * {@code lowCountShare} sets the count of that share of the others below the minimum.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageHandlerBenchmark {
+    @Param({"false", "true"})
+    public boolean hints;
+
+    @Param({"0.0", "0.5"})
+    public double lowCountShare;
+
+    private ValidatorFactory validatorFactory;
+    private MessageHandler messageHandler;
+    private BlockingQueue<ValidatedRecord> validQueue;
+    private BlockingQueue<ValidatedRecord> invalidQueue;
+    private ActiveMQTextMessage[] messages;
+    private int index;
+
+    @Setup
+    public void setUp() throws JMSException, JsonProcessingException {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validQueue = new LinkedBlockingDeque<>();
+        invalidQueue = new LinkedBlockingDeque<>();
+        ObjectMapper mapper = BenchmarkData.newObjectMapper();
+        messageHandler = new MessageHandler(mapper, validatorFactory.getValidator(), validQueue, invalidQueue);
+        messageHandler.setViolationReport(false);
+        SplittableRandom random = new SplittableRandom(42);
+        UserPojo[] userPojos = BenchmarkData.userPojos();
+        messages = new ActiveMQTextMessage[userPojos.length];
+        for (int i = 0; i < userPojos.length; i++) {
+            if (random.nextDouble() < lowCountShare) {
+                userPojos[i].setCount(ValidationHints.MIN_COUNT - 1);
+            }
+            messages[i] = new ActiveMQTextMessage();
+            messages[i].setText(mapper.writeValueAsString(userPojos[i]));
+            if (hints) {
+                ValidationHints.attach(messages[i], userPojos[i]);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public ValidatedRecord handleMessage() throws JMSException, InterruptedException {
+        messageHandler.handleMessage(messages[index++ & BenchmarkData.MASK]);
+        ValidatedRecord routed = validQueue.poll();
+        return routed != null ? routed : invalidQueue.poll();
+    }
+}
@@ -0,0 +1,63 @@
+package shpp.azaika.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import shpp.azaika.App;
+import shpp.azaika.RunSummary;
+import shpp.azaika.util.PropertyManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Whole pipeline against an embedded broker with a growing number of destination shards and
+ * at least one consumer per shard. Each invocation is a full run of {@link #messageCount} messages,
+ * so compare the single-shot times across {@link #shards}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ShardScalingBenchmark {
+    @Param({"1", "2", "4", "8"})
+    public int shards;
+
+    @Param({"100000"})
+    public int messageCount;
+
+    private Path outputDirectory;
+    private int run;
+
+    @Setup(Level.Invocation)
+    public void setUp() throws IOException {
+        outputDirectory = Files.createTempDirectory("shard-scaling");
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(outputDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public RunSummary pipeline() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("broker.embedded", "true");
+        properties.setProperty("broker.name", "shard-scaling-" + shards + "-" + run++);
+        properties.setProperty("activemq.queue", "shard.scaling");
+        properties.setProperty("activemq.shards", String.valueOf(shards));
+        properties.setProperty("generation.duration", "600000");
+        properties.setProperty("threads_producer", "4");
+        properties.setProperty("threads_consumer", String.valueOf(Math.max(4, shards)));
+        properties.setProperty("throughput.report_interval", "0");
+        properties.setProperty("output.dir", outputDirectory.toString());
+        return App.run(new PropertyManager(properties), messageCount);
+    }
+}
@@ -0,0 +1,75 @@
+package shpp.azaika.benchmark;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.openjdk.jmh.annotations.*;
+import shpp.azaika.util.SharedComponents;
+import shpp.azaika.util.managers.ConsumerManager;
+import shpp.azaika.util.mq.EmbeddedBroker;
+
+import javax.jms.Connection;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from starting {@link #consumers} consumers to the first consumed message, in a fresh JVM
+ * per measurement so class loading and cache building are part of it. With {@link #warmUpRecords}
+ * the warm-up runs before the clock, the way {@code app.warmup_records} does in a real run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmark {
+    private static final String QUEUE = "startup.benchmark";
+
+    @Param({"1", "8", "32"})
+    public int consumers;
+
+    @Param({"0", "1000"})
+    public int warmUpRecords;
+
+    private EmbeddedBroker broker;
+    private ActiveMQConnectionFactory connectionFactory;
+    private ConsumerManager consumerManager;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Path dataDirectory = Files.createTempDirectory("startup-benchmark");
+        broker = new EmbeddedBroker("startup-benchmark", false, dataDirectory.toString(), null);
+        broker.start();
+        connectionFactory = new ActiveMQConnectionFactory(broker.getVmUrl());
+        connectionFactory.setTrustedPackages(List.of("shpp.azaika"));
+        try (Connection connection = connectionFactory.createConnection()) {
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageProducer producer = session.createProducer(session.createQueue(QUEUE));
+            producer.send(session.createTextMessage(
+                    "{\"name\":\"Andrew Zaika\",\"eddr\":\"19760506-26585\",\"count\":15,\"date\":\"2024-01-01\"}"));
+        }
+        if (warmUpRecords > 0) {
+            SharedComponents.warmUp(warmUpRecords, false, true);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        consumerManager.getExecutor().shutdownNow();
+        consumerManager.closeConsumers();
+        broker.close();
+    }
+
+    @Benchmark
+    public long timeToFirstConsumedMessage() throws Exception {
+        consumerManager = new ConsumerManager(consumers, true);
+        consumerManager.startConsumers(connectionFactory, QUEUE, consumers);
+        while (consumerManager.getConsumedMessages() == 0) {
+            Thread.onSpinWait();
+        }
+        return consumerManager.getConsumedMessages();
+    }
+}
@@ -0,0 +1,68 @@
+package shpp.azaika.benchmark;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.*;
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.validation.EddrValidationCache;
+import shpp.azaika.validation.constraints.constraintvalidators.CheckEddrValidator;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationBenchmark {
+    /**
+     * Distinct EDDRs cycled through: 16 models a replay-heavy run, 4096 a run without repetition
+     * (larger than the cache below, so every lookup misses).
+     */
+    @Param({"16", "4096"})
+    public int distinctEddrs;
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private CheckEddrValidator eddrValidator;
+    private CheckEddrValidator cachedEddrValidator;
+    private UserPojo[] pojos;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        eddrValidator = new CheckEddrValidator();
+        cachedEddrValidator = new CheckEddrValidator(new EddrValidationCache(1024));
+        pojos = BenchmarkData.userPojos();
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    private UserPojo next() {
+        return pojos[index++ % distinctEddrs];
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<UserPojo>> validate() {
+        return validator.validate(next());
+    }
+
+    @Benchmark
+    public boolean checkEddr() {
+        return eddrValidator.isValid(next().getEddr(), null);
+    }
+
+    @Benchmark
+    public boolean checkEddrCached() {
+        return cachedEddrValidator.isValid(next().getEddr(), null);
+    }
+}
@@ -5,64 +5,370 @@ import org.apache.activemq.util.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import shpp.azaika.util.PropertyManager;
+import shpp.azaika.util.RedeliveryDeduplicator;
+import shpp.azaika.util.SharedComponents;
+import shpp.azaika.util.latency.LatencyHistogram;
+import shpp.azaika.util.latency.LatencyTracker;
+import shpp.azaika.util.metrics.ProcessStats;
+import shpp.azaika.util.metrics.RunStatsReport;
+import shpp.azaika.util.metrics.ThroughputReporter;
 import shpp.azaika.util.managers.ConsumerManager;
 import shpp.azaika.util.managers.ExecutorServiceManager;
+import shpp.azaika.util.managers.MBeanRegistrar;
 import shpp.azaika.util.managers.ProducerManager;
 import shpp.azaika.util.managers.WriterManager;
+import shpp.azaika.util.mq.AcknowledgementLog;
+import shpp.azaika.util.mq.BrokerConnectionMonitor;
+import shpp.azaika.util.mq.DistributedStreamCoordinator;
+import shpp.azaika.util.mq.EmbeddedBroker;
+import shpp.azaika.util.mq.ShardedDestination;
+import shpp.azaika.util.mq.StreamCoordinator;
+import shpp.azaika.validation.EddrValidationCache;
 
 import javax.jms.JMSException;
+import javax.management.ObjectName;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 public class App {
     private static final Logger logger = LoggerFactory.getLogger(App.class);
 
-    public static void main(String[] args) throws IOException, JMSException {
-        StopWatch allProgramWatch = new StopWatch(true);
+    private final PipelineConfig config;
+    private final ActiveMQConnectionFactory connectionFactory;
+    private final ShardedDestination shards;
+    private final ThroughputReporter throughputReporter;
+    private final List<ObjectName> mbeans = new ArrayList<>();
+    private final BrokerConnectionMonitor connectionMonitor;
+    private LatencyTracker latencyTracker;
+    private ProducerManager producerManager;
+    private ConsumerManager consumerManager;
+    private WriterManager writerManager;
+    private DistributedStreamCoordinator distributedCoordinator;
+
+    /**
+     * Arguments: {@code <message count> [produce|consume|all]}, or just {@code consume}. Without a role
+     * argument the {@code app.role} property decides, defaulting to {@code all}.
+     */
+    public static void main(String[] args) throws Exception {
         if (args.length < 1) {
             logger.error("Please provide the number of messages to send as the first argument.");
             throw new IllegalArgumentException();
         }
 
         PropertyManager propertyManager = new PropertyManager("app.properties");
-        String userName = propertyManager.getProperty("activemq.user");
-        String userPassword = propertyManager.getProperty("activemq.pwd");
-        String urlMq = propertyManager.getProperty("activemq.url");
-        String destinationName = propertyManager.getProperty("activemq.queue");
-        long durationMillis = Long.parseLong(propertyManager.getProperty("generation.duration"));
+        boolean roleFirst = Role.isRole(args[0]);
+        int messageCount = roleFirst ? 0 : Integer.parseInt(args[0]);
+        String role = roleFirst ? args[0] : args.length > 1 ? args[1] : propertyManager.getProperty("app.role", "all");
+        run(propertyManager, messageCount, Role.parse(role));
+    }
+
+    /**
+     * Runs the whole pipeline, against an embedded broker when {@code broker.embedded=true}.
+     */
+    public static RunSummary run(PropertyManager propertyManager, int messageCount) throws Exception {
+        return run(propertyManager, messageCount, Role.ALL);
+    }
+
+    /**
+     * Runs the part of the pipeline {@code role} selects; {@code messageCount} is ignored by consumers.
+     */
+    public static RunSummary run(PropertyManager propertyManager, int messageCount, Role role) throws Exception {
+        PipelineConfig config = new PipelineConfig(propertyManager, messageCount, role);
+        if (!config.brokerEmbedded) {
+            return new App(config, config.brokerUrl).run();
+        }
+        try (EmbeddedBroker broker = new EmbeddedBroker(config.brokerName, config.brokerPersistent,
+                config.brokerDataDirectory, config.brokerTcpUrl)) {
+            broker.start();
+            return new App(config, broker.getVmUrl()).run();
+        }
+    }
 
-        ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory(userName, userPassword, urlMq);
+    private App(PipelineConfig config, String urlMq) {
+        this.config = config;
+        String brokerUrl = config.failover ? "failover:(" + urlMq + ")?" + config.failoverOptions : urlMq;
+        connectionFactory = new ActiveMQConnectionFactory(config.userName, config.userPassword, brokerUrl);
         connectionFactory.setTrustedPackages(List.of("shpp.azaika"));
+        if (config.consumerPrefetch != null) {
+            connectionFactory.getPrefetchPolicy().setQueuePrefetch(config.consumerPrefetch);
+        }
+        connectionMonitor = config.reconnectTimeoutMillis > 0 ? new BrokerConnectionMonitor() : null;
+        shards = config.shardCount > 1 ? new ShardedDestination(config.destinationName, config.shardCount, config.shardStrategy) : null;
+        throughputReporter = new ThroughputReporter(config.throughputReportIntervalMillis);
+    }
 
-        int messageCount = Integer.parseInt(args[0]);
-        int threadsProducer = Integer.parseInt(propertyManager.getProperty("threads_producer"));
-        int threadsConsumer = Integer.parseInt(propertyManager.getProperty("threads_consumer"));
+    private RunSummary run() throws Exception {
+        if (config.warmUpRecords > 0) {
+            warmUp();
+        }
+        StopWatch allProgramWatch = new StopWatch(true);
+        long startedAtMillis = System.currentTimeMillis();
+        if (config.latency) {
+            latencyTracker = new LatencyTracker();
+            latencyTracker.startReporting(config.latencyReportIntervalMillis);
+            if (config.role != Role.ALL) {
+                logger.info("Skipping enqueue->consume latency: send timestamps are only comparable within one process");
+            }
+        }
+        logger.info("Running as {} with role {}", config.processId, config.role);
+        if (connectionMonitor != null && config.jmx) {
+            mbeans.add(MBeanRegistrar.register(connectionMonitor, "BrokerConnection"));
+        }
+
+        if (config.role.producesMessages()) {
+            startProducers();
+        }
+        if (config.role.consumesMessages()) {
+            startConsumers();
+            startWriters();
+        }
+        throughputReporter.start();
+
+        if (producerManager != null) {
+            stopProducers();
+        }
+        if (consumerManager != null) {
+            drainConsumersAndWriters();
+        }
+        mbeans.forEach(MBeanRegistrar::unregister);
+
+        int producedMessages = producerManager == null ? 0 : producerManager.getProducedMessageCount();
+        int consumedMessages = consumerManager == null ? 0 : consumerManager.getConsumedMessageCount();
+        long durationMillisTaken = allProgramWatch.stop();
+        logSummary(producedMessages, consumedMessages, durationMillisTaken);
+        if (config.stats) {
+            writeProcessStats(new ProcessStats(config.processId, config.role.name().toLowerCase(), producedMessages, consumedMessages,
+                    consumerManager == null ? 0 : consumerManager.getValidMessages(),
+                    consumerManager == null ? 0 : consumerManager.getInvalidMessages(),
+                    writerManager == null ? 0 : writerManager.getValidRecordsWritten() + writerManager.getInvalidRecordsWritten(),
+                    startedAtMillis, System.currentTimeMillis()));
+        }
+        return new RunSummary(producedMessages, consumedMessages, durationMillisTaken,
+                connectionMonitor == null ? 0 : connectionMonitor.getReconnects(),
+                connectionMonitor == null ? 0 : connectionMonitor.getMaxRecoveryMillis(),
+                latencyTracker == null ? null : latencyTracker.getEnqueueToConsume().snapshot());
+    }
+
+    private void warmUp() throws IOException {
+        long warmUpStartedNanos = System.nanoTime();
+        SharedComponents.warmUp(config.warmUpRecords, config.role.producesMessages(), config.role.consumesMessages());
+        logger.info("Warmed up with {} records in {} ms", config.warmUpRecords,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - warmUpStartedNanos));
+    }
+
+    private void startProducers() throws JMSException {
+        producerManager = new ProducerManager(config.threadsProducer, config.validationHints);
+        producerManager.setRecordIds(config.deduplication);
+        if (config.producerInstanceId != null) {
+            producerManager.setInstanceId(config.producerInstanceId);
+        }
+        producerManager.setProcessId(config.processId);
+        if (config.generatorSeed != null) {
+            producerManager.setGeneratorSeed(config.generatorSeed);
+        }
+        if (config.deduplication) {
+            logger.info("Tagging record ids with producer instance id {}", producerManager.getInstanceId());
+        }
+        producerManager.setLatencyStamps(latencyTracker != null && config.role == Role.ALL);
+        producerManager.setShards(shards);
+        producerManager.setPersistent(config.producerPersistent);
+        if (connectionMonitor != null) {
+            producerManager.setReconnection(connectionMonitor, config.reconnectTimeoutMillis, config.producerReplayBuffer);
+        }
+        producerManager.setFastGenerator(config.fastGenerator, config.generatorValidRatio);
+        if (config.jmx) {
+            mbeans.add(MBeanRegistrar.register(producerManager, "ProducerManager"));
+        }
+        throughputReporter
+                .addStage("Generated", producerManager::getGeneratedMessages)
+                .addStage("Sent", producerManager::getProducedMessages);
+        producerManager.startProducers(connectionFactory, config.destinationName, config.threadsProducer,
+                config.messageCount, config.durationMillis);
+    }
+
+    private void startConsumers() throws JMSException, IOException {
+        consumerManager = createConsumerManager();
+        if (config.eddrCacheSize > 0) {
+            consumerManager.setEddrCache(new EddrValidationCache(config.eddrCacheSize));
+        }
+        consumerManager.setFailFast(config.failFast);
+        if (config.deduplication) {
+            consumerManager.setDeduplicator(new RedeliveryDeduplicator(config.dedupBloomBytes, config.dedupHashes, config.dedupWindow));
+        }
+        if (config.distributedCoordination) {
+            distributedCoordinator = new DistributedStreamCoordinator(connectionFactory, config.coordinationTopic,
+                    config.processId, config.coordinationPublishIntervalMillis, config.producerProcesses);
+            distributedCoordinator.start();
+            consumerManager.setStreamCoordinator(distributedCoordinator);
+        } else if (config.producerProcesses > 1) {
+            consumerManager.setStreamCoordinator(new StreamCoordinator(config.producerProcesses));
+        }
+        consumerManager.setLatencyTracker(latencyTracker);
+        consumerManager.setAcknowledgeMode(config.consumerAcknowledgeMode);
+        if (config.checkpointing) {
+            consumerManager.setAcknowledgeAfterWrite(config.ackBatchSize, config.ackTimeoutMillis);
+        }
+        if (config.checkpointing && config.role == Role.CONSUME) {
+            resumeFromCheckpoint();
+        }
+        consumerManager.setShards(shards, config.workStealing);
+        if (connectionMonitor != null) {
+            consumerManager.setReconnection(connectionMonitor, config.reconnectTimeoutMillis);
+        }
+        if (config.jmx) {
+            mbeans.add(MBeanRegistrar.register(consumerManager, "ConsumerManager"));
+        }
+        if (config.threadsRejectedConsumer > 0) {
+            consumerManager.startHintRoutedConsumers(connectionFactory, config.destinationName,
+                    config.threadsConsumer, config.threadsRejectedConsumer);
+        } else {
+            consumerManager.startConsumers(connectionFactory, config.destinationName, config.threadsConsumer);
+        }
+        throughputReporter
+                .addStage("Consumed", consumerManager::getConsumedMessages)
+                .addStage("Valid", consumerManager::getValidMessages)
+                .addStage("Invalid", consumerManager::getInvalidMessages);
+    }
 
-        ProducerManager producerManager = new ProducerManager(threadsProducer, threadsConsumer);
-        producerManager.startProducers(connectionFactory, destinationName, threadsProducer, messageCount, durationMillis);
+    /**
+     * Counts what an earlier run of this consume process acknowledged, so the stream drains after the rest of it.
+     */
+    private void resumeFromCheckpoint() throws IOException {
+        AcknowledgementLog acknowledgementLog = new AcknowledgementLog(config.outputDirectory
+                .resolve(WriterManager.shardFileName(AcknowledgementLog.FILE_NAME, config.outputShard)));
+        consumerManager.setAcknowledgementLog(acknowledgementLog);
+        StreamCoordinator streamCoordinator = consumerManager.getStreamCoordinator();
+        streamCoordinator.resumeAfter(acknowledgementLog.getAcknowledgedMessages());
+        acknowledgementLog.getProducerCounts().forEach(streamCoordinator::endOfStream);
+    }
 
-        ConsumerManager consumerManager = new ConsumerManager(threadsConsumer);
-        consumerManager.startConsumers(connectionFactory,destinationName,threadsConsumer);
+    private ConsumerManager createConsumerManager() {
+        int threadsConsumer = config.threadsConsumer + config.threadsRejectedConsumer;
+        if (!config.offHeap) {
+            return new ConsumerManager(threadsConsumer, config.violationReport);
+        }
+        logger.info("Using off-heap hand-off: {} slabs of {} bytes per queue", config.offHeapSlabs, config.offHeapSlabSize);
+        return new ConsumerManager(threadsConsumer, config.violationReport, config.offHeapSlabs, config.offHeapSlabSize);
+    }
 
-        WriterManager writerManager = new WriterManager();
-        writerManager.startWriters(consumerManager.getValidQueue(), consumerManager.getInvalidQueue());
+    private void startWriters() {
+        writerManager = new WriterManager(config.violationReport, config.outputDirectory);
+        writerManager.setOutputShard(config.outputShard);
+        writerManager.setLatencyTracker(latencyTracker);
+        writerManager.setFormats(config.writerFormats);
+        if (config.jdbcSink != null) {
+            writerManager.setJdbcSink(config.jdbcSink);
+        }
+        writerManager.setBatchSize(config.writerBatchSize);
+        writerManager.setRowGroupSize(config.writerRowGroupSize);
+        writerManager.setFanOut(config.writerSinkBufferBatches, config.writerOverflowPolicy);
+        writerManager.setDurability(config.writerDurability);
+        writerManager.setCheckpointing(config.checkpointing);
+        if (config.jmx) {
+            mbeans.add(MBeanRegistrar.register(writerManager, "WriterManager"));
+        }
+        WriterManager writers = writerManager;
+        throughputReporter
+                .addStage("Written", () -> writers.getValidRecordsWritten() + writers.getInvalidRecordsWritten())
+                .addGauge("Valid queue", consumerManager::getValidQueueDepth)
+                .addGauge("Invalid queue", consumerManager::getInvalidQueueDepth);
+        if (consumerManager.isOffHeap()) {
+            writerManager.startOffHeapWriters(consumerManager.getOffHeapValidQueue(), consumerManager.getOffHeapInvalidQueue());
+        } else {
+            writerManager.startWriters(consumerManager.getValidQueue(), consumerManager.getInvalidQueue());
+        }
+    }
 
-        ExecutorServiceManager.shutdownExecutor(producerManager.getExecutor(), "Producers", durationMillis, TimeUnit.MILLISECONDS);
+    private void stopProducers() throws InterruptedException {
+        if (!producerManager.awaitProducers(config.durationMillis, TimeUnit.MILLISECONDS)) {
+            logger.warn("Producers did not finish within {} ms", config.durationMillis);
+        }
+        ExecutorServiceManager.shutdownExecutor(producerManager.getExecutor(), "Producers", config.durationMillis, TimeUnit.MILLISECONDS);
         producerManager.closeProducers();
+    }
 
-        ExecutorServiceManager.shutdownExecutor(consumerManager.getExecutor(), "Consumers", 10, TimeUnit.MINUTES);
+    private void drainConsumersAndWriters() throws IOException {
+        ExecutorServiceManager.shutdownExecutor(consumerManager.getExecutor(), "Consumers", config.drainTimeoutMillis, TimeUnit.MILLISECONDS);
         consumerManager.closeConsumers();
-        writerManager.shutdownWriterExecutor();
+        if (distributedCoordinator != null) {
+            distributedCoordinator.close();
+        }
+        ExecutorServiceManager.shutdownExecutor(writerManager.getExecutor(), "Writers", config.drainTimeoutMillis, TimeUnit.MILLISECONDS);
+        if (config.checkpointing && consumerManager.getStreamCoordinator().isDrained()
+                && writerManager.getExecutor().isTerminated() && writerManager.getWriteErrors() == 0) {
+            writerManager.deleteCheckpoints();
+        }
+    }
 
-        int producedMessages = producerManager.getProducedMessageCount();
-        int consumedMessages = consumerManager.getConsumedMessageCount();
-        long durationInSecond = TimeUnit.SECONDS.convert(allProgramWatch.stop(), TimeUnit.MILLISECONDS);
+    private void logSummary(int producedMessages, int consumedMessages, long durationMillisTaken) {
+        long durationInSecond = TimeUnit.SECONDS.convert(durationMillisTaken, TimeUnit.MILLISECONDS);
         logger.info("------------PERFORMANCE------------");
         logger.info("**Produced messages {}", producedMessages);
         logger.info("**Consumed messages {}", consumedMessages);
-        logger.info("**Speed {}MPS",messageCount/durationInSecond);
+        if (consumerManager != null) {
+            logConsumerStats();
+        }
+        if (writerManager != null && writerManager.getSyncCount() > 0) {
+            LatencyHistogram syncLatency = writerManager.getSyncLatency();
+            logger.info("**Syncs {}, records per sync {}, sync latency (us) p50 {}, p99 {}, max {}",
+                    writerManager.getSyncCount(), Math.round(writerManager.getRecordsPerSync()),
+                    TimeUnit.NANOSECONDS.toMicros(syncLatency.getValueAtPercentile(50)),
+                    TimeUnit.NANOSECONDS.toMicros(syncLatency.getValueAtPercentile(99)),
+                    TimeUnit.NANOSECONDS.toMicros(syncLatency.getMax()));
+        }
+        if (distributedCoordinator != null) {
+            logger.info("**Consumed by other processes {}", distributedCoordinator.getPeerConsumedCount());
+        }
+        if (connectionMonitor != null) {
+            logger.info("**Broker outages {}, reconnects {}, recovery (ms) last {}, max {}, replayed messages {}",
+                    connectionMonitor.getOutages(), connectionMonitor.getReconnects(),
+                    connectionMonitor.getLastRecoveryMillis(), connectionMonitor.getMaxRecoveryMillis(),
+                    producerManager == null ? 0 : producerManager.getReplayedMessages());
+        }
+        if (latencyTracker != null) {
+            latencyTracker.close();
+        }
+        throughputReporter.close();
         logger.info("**All task completed in {} seconds", durationInSecond);
     }
-}
 
+    private void logConsumerStats() {
+        EddrValidationCache eddrCache = consumerManager.getEddrCache();
+        RedeliveryDeduplicator deduplicator = consumerManager.getDeduplicator();
+        if (eddrCache != null) {
+            logger.info("**EDDR cache hits {}, misses {}, evictions {}",
+                    eddrCache.getHitCount(), eddrCache.getMissCount(), eddrCache.getEvictionCount());
+        }
+        if (deduplicator != null) {
+            logger.info("**Duplicates dropped {}, Bloom false positives {} (measured rate {}, expected {})",
+                    deduplicator.getDuplicateCount(), deduplicator.getFalsePositiveCount(),
+                    deduplicator.getMeasuredFalsePositiveRate(), deduplicator.getExpectedFalsePositiveRate());
+        }
+        if (shards != null) {
+            logger.info("**Shards {} ({}), messages stolen across shards {}",
+                    shards.getShardCount(), shards.getStrategy(), consumerManager.getStolenMessageCount());
+        }
+        if (config.validationHints) {
+            logger.info("**Rejected by hints without validation {}", consumerManager.getPreRejectedMessageCount());
+        }
+    }
+
+    /**
+     * Writes this process's stats next to those of the other processes of the run and logs the
+     * merged report of all stats found there; the last process to finish logs the complete one.
+     */
+    private void writeProcessStats(ProcessStats stats) {
+        Path statsDirectory = config.statsDirectory;
+        try {
+            Files.createDirectories(statsDirectory);
+            RunStatsReport.write(statsDirectory, stats);
+            RunStatsReport.load(statsDirectory).log();
+        } catch (IOException e) {
+            logger.error("Failed to write run stats to {}", statsDirectory, e);
+        }
+    }
+}
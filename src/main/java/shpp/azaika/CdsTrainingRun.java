@@ -0,0 +1,47 @@
+package shpp.azaika;
+
+import shpp.azaika.util.PropertyManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * Short pipeline run against an embedded broker that needs no {@code app.properties}. The
+ * {@code appcds} build profile runs it to record the classes a real run loads at startup.
+ * <p>
+ * Argument: {@code [message count]}, 20 000 by default.
+ */
+public final class CdsTrainingRun {
+    private CdsTrainingRun() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int messageCount = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        Path outputDirectory = Files.createTempDirectory("cds-training");
+        try {
+            Properties properties = new Properties();
+            properties.setProperty("broker.embedded", "true");
+            properties.setProperty("broker.name", "cds-training");
+            properties.setProperty("activemq.queue", "cds.training");
+            properties.setProperty("generation.duration", "600000");
+            properties.setProperty("threads_producer", "2");
+            properties.setProperty("threads_consumer", "2");
+            properties.setProperty("jmx.enabled", "false");
+            properties.setProperty("throughput.report_interval", "0");
+            properties.setProperty("output.dir", outputDirectory.toString());
+            App.run(new PropertyManager(properties), messageCount);
+        } finally {
+            deleteRecursively(outputDirectory);
+        }
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
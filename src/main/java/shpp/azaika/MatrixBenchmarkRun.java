@@ -0,0 +1,123 @@
+package shpp.azaika;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import shpp.azaika.util.PropertyManager;
+import shpp.azaika.util.metrics.BenchmarkCell;
+import shpp.azaika.util.metrics.BenchmarkMatrix;
+import shpp.azaika.util.metrics.BenchmarkReport;
+import shpp.azaika.util.metrics.ThroughputSampler;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Runs every cell of a {@link BenchmarkMatrix} against an embedded broker, each in a fresh broker
+ * and output directory: one discarded warm-up run of {@code matrix.warmup_messages}, then
+ * {@code matrix.trials} measured runs. Writes {@code benchmark-matrix.csv} and
+ * {@code benchmark-matrix.json} into {@code matrix.report_dir} and logs the summary table.
+ * <p>
+ * Argument: {@code [properties file]} with the {@code matrix.*} lists; its other properties are
+ * passed to every run.
+ */
+public final class MatrixBenchmarkRun {
+    private static final Logger logger = LoggerFactory.getLogger(MatrixBenchmarkRun.class);
+    private static final String MATRIX_PREFIX = "matrix.";
+    private static final long SAMPLE_INTERVAL_MILLIS = 100;
+    private static final double SUSTAINED_FROM = 0.1;
+    private static final double SUSTAINED_TO = 0.9;
+
+    private MatrixBenchmarkRun() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties fileProperties = new Properties();
+        if (args.length > 0) {
+            try (InputStream inputStream = Files.newInputStream(Path.of(args[0]))) {
+                fileProperties.load(inputStream);
+            }
+        }
+        PropertyManager propertyManager = new PropertyManager(fileProperties);
+        Path reportDirectory = Path.of(propertyManager.getProperty("matrix.report_dir", "."));
+        Properties base = new Properties();
+        fileProperties.stringPropertyNames().stream()
+                .filter(name -> !name.startsWith(MATRIX_PREFIX))
+                .forEach(name -> base.setProperty(name, fileProperties.getProperty(name)));
+
+        BenchmarkReport report = run(BenchmarkMatrix.fromProperties(propertyManager), base);
+
+        Files.createDirectories(reportDirectory);
+        report.writeCsv(reportDirectory.resolve("benchmark-matrix.csv"));
+        report.writeJson(reportDirectory.resolve("benchmark-matrix.json"));
+        report.log();
+    }
+
+    public static BenchmarkReport run(BenchmarkMatrix matrix, Properties base) throws Exception {
+        BenchmarkReport report = new BenchmarkReport();
+        int cellIndex = 0;
+        for (BenchmarkCell cell : matrix.getCells()) {
+            cellIndex++;
+            logger.info("Benchmark cell {}/{}: {}", cellIndex, matrix.getCells().size(), cell.label());
+            if (matrix.getWarmUpMessages() > 0) {
+                runTrial(cell, base, matrix.getWarmUpMessages(), "matrix-" + cellIndex + "-warmup", null);
+            }
+            for (int trial = 1; trial <= matrix.getTrials(); trial++) {
+                BenchmarkReport.Trial result = runTrial(cell, base, cell.messageCount(), "matrix-" + cellIndex + "-" + trial, report);
+                logger.info("Trial {}: {} msg/s sustained, {} msg/s overall, broker latency p99 {} us", trial,
+                        Math.round(result.sustainedMps()), Math.round(result.overallMps()), result.latencyP99Micros());
+            }
+        }
+        return report;
+    }
+
+    /**
+     * @param report receives the trial, or {@code null} for a warm-up run
+     */
+    private static BenchmarkReport.Trial runTrial(BenchmarkCell cell, Properties base, int messageCount, String runName,
+                                                  BenchmarkReport report) throws Exception {
+        Path outputDirectory = Files.createTempDirectory("benchmark-matrix");
+        try {
+            Properties properties = cell.toProperties(base);
+            properties.putIfAbsent("activemq.queue", "benchmark.matrix");
+            properties.putIfAbsent("generation.duration", "3600000");
+            properties.putIfAbsent("throughput.report_interval", "0");
+            properties.setProperty("broker.embedded", "true");
+            properties.setProperty("broker.name", runName);
+            properties.setProperty("broker.data_dir", outputDirectory.resolve("activemq-data").toString());
+            properties.setProperty("output.dir", outputDirectory.toString());
+            properties.setProperty("jmx.enabled", "true");
+            properties.setProperty("latency.enabled", "true");
+            properties.setProperty("latency.report_interval", "3600000");
+
+            ThroughputSampler sampler = new ThroughputSampler(MatrixBenchmarkRun::consumedMessages, SAMPLE_INTERVAL_MILLIS);
+            RunSummary summary;
+            try (sampler) {
+                sampler.start();
+                summary = App.run(new PropertyManager(properties), messageCount);
+            }
+            if (report == null) {
+                return null;
+            }
+            return report.add(cell, summary.consumedMessages(), summary.durationMillis(),
+                    sampler.sustainedRate(messageCount, SUSTAINED_FROM, SUSTAINED_TO), summary.brokerLatency());
+        } finally {
+            CdsTrainingRun.deleteRecursively(outputDirectory);
+        }
+    }
+
+    private static long consumedMessages() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName("shpp.azaika", "type", "ConsumerManager");
+            return server.isRegistered(name) ? (Long) server.getAttribute(name, "ConsumedMessages") : 0;
+        } catch (JMException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package shpp.azaika;
+
+import shpp.azaika.util.PropertyManager;
+import shpp.azaika.util.managers.WriterManager;
+import shpp.azaika.util.mq.ShardedDestination;
+import shpp.azaika.util.sink.ColumnarRecordSink;
+import shpp.azaika.util.sink.DurabilityMode;
+import shpp.azaika.util.sink.DurabilityPolicy;
+import shpp.azaika.util.sink.JdbcSinkSettings;
+import shpp.azaika.util.sink.OverflowPolicy;
+import shpp.azaika.util.sink.RecordFormat;
+
+import javax.jms.Session;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Settings of one run, read from the properties and validated once before anything is started.
+ * The thread counts of a part of the pipeline the role does not run are 0.
+ */
+final class PipelineConfig {
+    private static final String DEFAULT_FAILOVER_OPTIONS = "initialReconnectDelay=100&maxReconnectDelay=1000&startupMaxReconnectAttempts=10";
+
+    final Role role;
+    final int messageCount;
+
+    final boolean brokerEmbedded;
+    final String brokerName;
+    final boolean brokerPersistent;
+    final String brokerDataDirectory;
+    final String brokerTcpUrl;
+    final String brokerUrl;
+    final boolean failover;
+    final String failoverOptions;
+    final long reconnectTimeoutMillis;
+    final String userName;
+    final String userPassword;
+    final String destinationName;
+    final int shardCount;
+    final ShardedDestination.Strategy shardStrategy;
+
+    final String processId;
+    final int warmUpRecords;
+    final long durationMillis;
+    final long drainTimeoutMillis;
+    final Path outputDirectory;
+    final boolean jmx;
+    final boolean latency;
+    final long latencyReportIntervalMillis;
+    final long throughputReportIntervalMillis;
+    final boolean validationHints;
+    final boolean deduplication;
+    final int producerProcesses;
+
+    final int threadsProducer;
+    final Integer producerInstanceId;
+    final Long generatorSeed;
+    final boolean producerPersistent;
+    final int producerReplayBuffer;
+    final boolean fastGenerator;
+    final double generatorValidRatio;
+
+    final int threadsConsumer;
+    final Integer consumerPrefetch;
+    final int consumerAcknowledgeMode;
+    final int threadsRejectedConsumer;
+    final boolean violationReport;
+    final boolean offHeap;
+    final int offHeapSlabs;
+    final int offHeapSlabSize;
+    final int eddrCacheSize;
+    final boolean failFast;
+    final int dedupBloomBytes;
+    final int dedupHashes;
+    final int dedupWindow;
+    final boolean distributedCoordination;
+    final String coordinationTopic;
+    final long coordinationPublishIntervalMillis;
+    final boolean workStealing;
+    final String outputShard;
+    final List<RecordFormat> writerFormats;
+    final JdbcSinkSettings jdbcSink;
+    final int writerBatchSize;
+    final int writerRowGroupSize;
+    final int writerSinkBufferBatches;
+    final OverflowPolicy writerOverflowPolicy;
+    final DurabilityPolicy writerDurability;
+    final boolean checkpointing;
+    final int ackBatchSize;
+    final long ackTimeoutMillis;
+
+    final boolean stats;
+    final Path statsDirectory;
+
+    PipelineConfig(PropertyManager propertyManager, int messageCount, Role role) {
+        if (role == null) {
+            throw new IllegalArgumentException("Role must not be null");
+        }
+        this.role = role;
+        this.messageCount = messageCount;
+
+        brokerEmbedded = Boolean.parseBoolean(propertyManager.getProperty("broker.embedded", "false"));
+        brokerName = propertyManager.getProperty("broker.name", "embedded");
+        brokerPersistent = Boolean.parseBoolean(propertyManager.getProperty("broker.persistent", "false"));
+        brokerDataDirectory = propertyManager.getProperty("broker.data_dir", "activemq-data");
+        brokerTcpUrl = propertyManager.getProperty("broker.tcp_url");
+        brokerUrl = propertyManager.getProperty("activemq.url");
+        failover = Boolean.parseBoolean(propertyManager.getProperty("activemq.failover", "false"));
+        failoverOptions = propertyManager.getProperty("activemq.failover_options", DEFAULT_FAILOVER_OPTIONS);
+        reconnectTimeoutMillis = Long.parseLong(propertyManager.getProperty("broker.reconnect_timeout", failover ? "60000" : "0"));
+        userName = propertyManager.getProperty("activemq.user");
+        userPassword = propertyManager.getProperty("activemq.pwd");
+        destinationName = propertyManager.getProperty("activemq.queue");
+        shardCount = Integer.parseInt(propertyManager.getProperty("activemq.shards", "1"));
+        shardStrategy = ShardedDestination.Strategy.valueOf(propertyManager.getProperty("activemq.shard_strategy", "round_robin").toUpperCase());
+
+        processId = propertyManager.getProperty("process.id", defaultProcessId());
+        warmUpRecords = Integer.parseInt(propertyManager.getProperty("app.warmup_records", "1000"));
+        durationMillis = Long.parseLong(propertyManager.getProperty("generation.duration"));
+        drainTimeoutMillis = Long.parseLong(propertyManager.getProperty("consumer.drain_timeout", "600000"));
+        outputDirectory = Path.of(propertyManager.getProperty("output.dir", "."));
+        jmx = Boolean.parseBoolean(propertyManager.getProperty("jmx.enabled", "true"));
+        latency = Boolean.parseBoolean(propertyManager.getProperty("latency.enabled", "false"));
+        latencyReportIntervalMillis = Long.parseLong(propertyManager.getProperty("latency.report_interval", "10000"));
+        throughputReportIntervalMillis = Long.parseLong(propertyManager.getProperty("throughput.report_interval", "10000"));
+        validationHints = Boolean.parseBoolean(propertyManager.getProperty("producer.validation_hints", "false"));
+        deduplication = Boolean.parseBoolean(propertyManager.getProperty("dedup.enabled", "false"));
+        producerProcesses = Integer.parseInt(propertyManager.getProperty("producer.processes", "1"));
+        if (producerProcesses < 1) {
+            throw new IllegalArgumentException("producer.processes must be at least 1");
+        }
+
+        threadsProducer = role.producesMessages() ? Integer.parseInt(propertyManager.getProperty("threads_producer")) : 0;
+        producerInstanceId = parseOptionalInt(propertyManager.getProperty("producer.instance_id"));
+        generatorSeed = parseOptionalLong(propertyManager.getProperty("generator.seed"));
+        producerPersistent = Boolean.parseBoolean(propertyManager.getProperty("producer.persistent", "false"));
+        producerReplayBuffer = Integer.parseInt(propertyManager.getProperty("producer.replay_buffer", "0"));
+        fastGenerator = "fast".equalsIgnoreCase(propertyManager.getProperty("generator.mode", "faker"));
+        generatorValidRatio = Double.parseDouble(propertyManager.getProperty("generator.valid_ratio", "NaN"));
+
+        threadsConsumer = role.consumesMessages() ? Integer.parseInt(propertyManager.getProperty("threads_consumer")) : 0;
+        consumerPrefetch = parseOptionalInt(propertyManager.getProperty("consumer.prefetch"));
+        consumerAcknowledgeMode = parseAcknowledgeMode(propertyManager.getProperty("consumer.ack_mode", "auto"));
+        threadsRejectedConsumer = validationHints
+                ? Integer.parseInt(propertyManager.getProperty("threads_consumer_rejected", "0")) : 0;
+        violationReport = Boolean.parseBoolean(propertyManager.getProperty("writer.invalid_errors", "true"));
+        offHeap = "offheap".equalsIgnoreCase(propertyManager.getProperty("handoff.mode", "heap"));
+        offHeapSlabs = Integer.parseInt(propertyManager.getProperty("handoff.offheap.slabs",
+                String.valueOf((threadsConsumer + threadsRejectedConsumer) * 4)));
+        offHeapSlabSize = Integer.parseInt(propertyManager.getProperty("handoff.offheap.slab_size", "65536"));
+        eddrCacheSize = Integer.parseInt(propertyManager.getProperty("validation.eddr_cache_size", "0"));
+        failFast = Boolean.parseBoolean(propertyManager.getProperty("consumer.fail_fast", "false"));
+        dedupBloomBytes = Integer.parseInt(propertyManager.getProperty("dedup.bloom_bytes", "8388608"));
+        dedupHashes = Integer.parseInt(propertyManager.getProperty("dedup.hashes", "4"));
+        dedupWindow = Integer.parseInt(propertyManager.getProperty("dedup.window", "65536"));
+        distributedCoordination = role == Role.CONSUME
+                || Boolean.parseBoolean(propertyManager.getProperty("coordination.distributed", "false"));
+        coordinationTopic = propertyManager.getProperty("coordination.topic", destinationName + ".coordination");
+        coordinationPublishIntervalMillis = Long.parseLong(propertyManager.getProperty("coordination.publish_interval", "200"));
+        workStealing = Boolean.parseBoolean(propertyManager.getProperty("consumer.work_stealing", "false"));
+        outputShard = propertyManager.getProperty("output.shard", role == Role.CONSUME ? processId : null);
+        writerFormats = Arrays.stream(propertyManager.getProperty("writer.formats", "csv").split(","))
+                .filter(format -> !format.isBlank()).map(RecordFormat::parse).toList();
+        String jdbcUrl = propertyManager.getProperty("jdbc.url");
+        jdbcSink = jdbcUrl == null || jdbcUrl.isEmpty() ? null : new JdbcSinkSettings(jdbcUrl,
+                propertyManager.getProperty("jdbc.user"), propertyManager.getProperty("jdbc.password"),
+                Integer.parseInt(propertyManager.getProperty("jdbc.batch_size", String.valueOf(JdbcSinkSettings.DEFAULT_BATCH_SIZE))),
+                Integer.parseInt(propertyManager.getProperty("jdbc.commit_interval", String.valueOf(JdbcSinkSettings.DEFAULT_COMMIT_INTERVAL))),
+                Integer.parseInt(propertyManager.getProperty("jdbc.connections", String.valueOf(JdbcSinkSettings.DEFAULT_CONNECTIONS))));
+        writerBatchSize = Integer.parseInt(propertyManager.getProperty("writer.batch_size",
+                String.valueOf(WriterManager.DEFAULT_BATCH_SIZE)));
+        writerRowGroupSize = Integer.parseInt(propertyManager.getProperty("writer.row_group_size",
+                String.valueOf(ColumnarRecordSink.DEFAULT_ROW_GROUP_SIZE)));
+        writerSinkBufferBatches = Integer.parseInt(propertyManager.getProperty("writer.sink_buffer",
+                String.valueOf(WriterManager.DEFAULT_SINK_BUFFER_BATCHES)));
+        writerOverflowPolicy = OverflowPolicy.parse(propertyManager.getProperty("writer.overflow", "block"));
+        checkpointing = Boolean.parseBoolean(propertyManager.getProperty("writer.checkpoint", "false"));
+        if (checkpointing && writerOverflowPolicy != OverflowPolicy.BLOCK) {
+            throw new IllegalArgumentException("writer.overflow=" + writerOverflowPolicy.name().toLowerCase()
+                    + " drops records that writer.checkpoint=true would acknowledge, use block");
+        }
+        ackBatchSize = Integer.parseInt(propertyManager.getProperty("consumer.ack_batch", "500"));
+        ackTimeoutMillis = Long.parseLong(propertyManager.getProperty("consumer.ack_timeout", "30000"));
+        writerDurability = new DurabilityPolicy(
+                DurabilityMode.parse(propertyManager.getProperty("writer.durability", checkpointing ? "group_commit" : "none")),
+                Long.parseLong(propertyManager.getProperty("writer.sync_interval", String.valueOf(DurabilityPolicy.DEFAULT_INTERVAL_MILLIS))),
+                Integer.parseInt(propertyManager.getProperty("writer.sync_group_size", String.valueOf(DurabilityPolicy.DEFAULT_GROUP_SIZE))));
+
+        stats = role != Role.ALL || Boolean.parseBoolean(propertyManager.getProperty("stats.enabled", "false"));
+        statsDirectory = Path.of(propertyManager.getProperty("stats.dir", outputDirectory.toString()));
+    }
+
+    private static int parseAcknowledgeMode(String ackMode) {
+        return switch (ackMode.toLowerCase()) {
+            case "auto" -> Session.AUTO_ACKNOWLEDGE;
+            case "dups_ok" -> Session.DUPS_OK_ACKNOWLEDGE;
+            default -> throw new IllegalArgumentException("Unknown consumer.ack_mode " + ackMode + ", expected auto or dups_ok");
+        };
+    }
+
+    private static Integer parseOptionalInt(String value) {
+        return value == null || value.isEmpty() ? null : Integer.parseInt(value);
+    }
+
+    private static Long parseOptionalLong(String value) {
+        return value == null || value.isEmpty() ? null : Long.parseLong(value);
+    }
+
+    private static String defaultProcessId() {
+        String host = System.getenv().getOrDefault("HOSTNAME", "");
+        if (host.isEmpty()) {
+            try {
+                host = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                host = "localhost";
+            }
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+}
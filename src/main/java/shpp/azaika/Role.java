@@ -0,0 +1,37 @@
+package shpp.azaika;
+
+import java.util.Locale;
+
+/**
+ * Part of the pipeline one process runs. Several {@link #CONSUME} processes, possibly on
+ * different hosts, can drain the queue that one {@link #PRODUCE} process fills.
+ */
+public enum Role {
+    PRODUCE,
+    CONSUME,
+    ALL;
+
+    public static Role parse(String role) {
+        if (role == null || role.isEmpty()) {
+            throw new IllegalArgumentException("Role must not be null or empty");
+        }
+        return valueOf(role.toUpperCase(Locale.ROOT));
+    }
+
+    public static boolean isRole(String argument) {
+        for (Role role : values()) {
+            if (role.name().equalsIgnoreCase(argument)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean producesMessages() {
+        return this != CONSUME;
+    }
+
+    public boolean consumesMessages() {
+        return this != PRODUCE;
+    }
+}
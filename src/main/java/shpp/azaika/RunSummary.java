@@ -0,0 +1,14 @@
+package shpp.azaika;
+
+import shpp.azaika.util.latency.LatencyHistogram;
+
+/**
+ * Outcome of one producer → consumer → writer run.
+ *
+ * @param brokerReconnects     connections that were lost and regained, {@code 0} without reconnection
+ * @param brokerRecoveryMillis longest time from losing the broker until every client was back
+ * @param brokerLatency        enqueue → consume latencies, {@code null} unless {@code latency.enabled}
+ */
+public record RunSummary(int producedMessages, int consumedMessages, long durationMillis,
+                         long brokerReconnects, long brokerRecoveryMillis, LatencyHistogram brokerLatency) {
+}
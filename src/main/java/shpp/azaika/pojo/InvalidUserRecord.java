@@ -0,0 +1,42 @@
+package shpp.azaika.pojo;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.time.LocalDate;
+
+@JsonPropertyOrder({ "name", "eddr", "count", "date", "errors" })
+public class InvalidUserRecord {
+    private final String name;
+    private final String eddr;
+    private final int count;
+    private final LocalDate date;
+    private final String errors;
+
+    public InvalidUserRecord(UserPojo userPojo, String errors) {
+        this.name = userPojo.getName();
+        this.eddr = userPojo.getEddr();
+        this.count = userPojo.getCount();
+        this.date = userPojo.getDate();
+        this.errors = errors;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEddr() {
+        return eddr;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public String getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,24 @@
+package shpp.azaika.pojo;
+
+import shpp.azaika.util.AckWindow;
+
+/**
+ * A {@link UserPojo} on its way from a consumer to the writers, with what the consumer found out about it.
+ *
+ * @param violationMask  violated constraints encoded by {@link shpp.azaika.validation.ViolationCatalog};
+ *                       zero for valid records
+ * @param validatedNanos {@link System#nanoTime()} at which validation finished; zero unless latency
+ *                       tracking is on
+ * @param ackWindow      acknowledgement window of the consumer that routed the record; {@code null} unless
+ *                       messages are acknowledged only after their records are written
+ * @param messageId      JMS id of the message the record came from, set together with {@code ackWindow}
+ */
+public record ValidatedRecord(UserPojo userPojo, int violationMask, long validatedNanos, AckWindow ackWindow, String messageId) {
+    public ValidatedRecord(UserPojo userPojo, int violationMask, long validatedNanos) {
+        this(userPojo, violationMask, validatedNanos, null, null);
+    }
+
+    public ValidatedRecord(UserPojo userPojo, int violationMask) {
+        this(userPojo, violationMask, 0);
+    }
+}
@@ -0,0 +1,46 @@
+package shpp.azaika.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records one consumer routed to the writers since its last broker acknowledgement. Writers count
+ * them down once they are synced, so the consumer acknowledges only messages whose records are on disk.
+ */
+public final class AckWindow {
+    private final AtomicInteger pendingRecords = new AtomicInteger();
+
+    void recordRouted() {
+        pendingRecords.incrementAndGet();
+    }
+
+    /**
+     * Called by a writer once {@code records} records of this window are synced.
+     */
+    public void recordsDurable(int records) {
+        if (pendingRecords.addAndGet(-records) <= 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return whether every routed record was synced within the timeout
+     */
+    public synchronized boolean awaitDurable(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (pendingRecords.get() > 0) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    public int getPendingRecords() {
+        return pendingRecords.get();
+    }
+}
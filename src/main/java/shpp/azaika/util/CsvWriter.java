@@ -7,35 +7,86 @@ import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import shpp.azaika.pojo.InvalidUserRecord;
 import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.pojo.ValidatedRecord;
+import shpp.azaika.validation.ViolationCatalog;
 
 import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.LongAdder;
 
 public class CsvWriter implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(CsvWriter.class);
     private final CsvMapper csvMapper;
+    private final FileOutputStream fileOutputStream;
     private final BufferedOutputStream outputStream;
     private final CsvSchema schema;
     private final CsvGenerator generator;
+    private final ViolationCatalog violationCatalog;
 
     public CsvWriter(String fileName) throws IOException {
-        this.outputStream = new BufferedOutputStream(new FileOutputStream(fileName, true), 16384);
+        this(fileName, null);
+    }
+
+    /**
+     * @param violationCatalog when not {@code null}, every row gets an {@code errors} column
+     *                         rendered from the record's violation mask
+     */
+    public CsvWriter(String fileName, ViolationCatalog violationCatalog) throws IOException {
+        this(fileName, violationCatalog, null);
+    }
+
+    /**
+     * @param bytesFlushed when not {@code null}, incremented by every byte handed to the file
+     */
+    public CsvWriter(String fileName, ViolationCatalog violationCatalog, LongAdder bytesFlushed) throws IOException {
+        this.fileOutputStream = new FileOutputStream(fileName, true);
+        OutputStream fileStream = new InstrumentedOutputStream(fileOutputStream, fileName, bytesFlushed);
+        this.outputStream = new BufferedOutputStream(fileStream, 16384);
         this.csvMapper = (CsvMapper) new CsvMapper().registerModule(new JavaTimeModule());
         this.csvMapper.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        this.violationCatalog = violationCatalog;
 
-        this.schema = csvMapper.schemaFor(UserPojo.class).withColumnSeparator(',');
+        Class<?> rowType = violationCatalog == null ? UserPojo.class : InvalidUserRecord.class;
+        this.schema = csvMapper.schemaFor(rowType).withColumnSeparator(',');
         this.generator = csvMapper.getFactory().createGenerator(outputStream);
         generator.setSchema(schema);
 
         logger.info("CsvWriter initialized for file: {}", fileName);
     }
 
+    public void write(UserPojo userPojo) throws IOException {
+        write(userPojo, 0);
+    }
 
+    public void write(ValidatedRecord record) throws IOException {
+        write(record.userPojo(), record.violationMask());
+    }
 
-    public void write(UserPojo userPojo) throws IOException {
-        csvMapper.writeValue(generator, userPojo);
+    private void write(UserPojo userPojo, int violationMask) throws IOException {
+        if (violationCatalog == null) {
+            csvMapper.writeValue(generator, userPojo);
+        } else {
+            csvMapper.writeValue(generator, new InvalidUserRecord(userPojo, violationCatalog.toJson(violationMask)));
+        }
+    }
+
+    /**
+     * Hands buffered rows to the file.
+     */
+    public void flush() throws IOException {
+        generator.flush();
+    }
+
+    /**
+     * Flushes and forces the file's content to the storage device.
+     */
+    public void sync() throws IOException {
+        generator.flush();
+        fileOutputStream.getChannel().force(false);
     }
 
     @Override
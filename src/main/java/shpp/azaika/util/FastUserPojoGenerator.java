@@ -0,0 +1,157 @@
+package shpp.azaika.util;
+
+import net.datafaker.Faker;
+import shpp.azaika.pojo.UserPojo;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Generates the records of {@link UserPojoGenerator} without Faker's expression resolution. The
+ * {@code uk_UA} name parts are read from Faker once into arrays, and names and EDDRs are assembled
+ * from them with a {@link SplittableRandom} of the generator's own, so give each producer thread
+ * its own instance.
+ * <p>
+ * Names follow Faker's eight {@code name.name} templates, EDDRs are a birthday 18 to 65 years ago,
+ * four random digits and a control digit that is correct or deliberately off by one.
+ */
+public class FastUserPojoGenerator extends UserPojoGenerator {
+    private static final int[] EDDR_WEIGHTS = {7, 3, 1, 7, 3, 1, 7, 3, 1, 7, 3, 1};
+    private static final int MIN_VALID_COUNT = 10;
+    private static final int MAX_COUNT = 999;
+    private static final int MIN_VALID_NAME_LENGTH = 7;
+
+    private final SplittableRandom random;
+    private final double validRatio;
+    private final long minBirthEpochDay;
+    private final long maxBirthEpochDay;
+    private final char[] eddr = new char[14];
+
+    /**
+     * Same distribution as {@link UserPojoGenerator}: half the EDDRs are valid, names and counts
+     * are drawn regardless of their constraints.
+     */
+    public FastUserPojoGenerator() {
+        this(Double.NaN);
+    }
+
+    /**
+     * @param validRatio share of records that pass validation; the others get a wrong EDDR control
+     *                   digit. {@code NaN} keeps the distribution of {@link UserPojoGenerator}.
+     */
+    public FastUserPojoGenerator(double validRatio) {
+        this(validRatio, new SplittableRandom());
+    }
+
+    /**
+     * Generates the same records in the same order for the same seed and valid ratio.
+     */
+    public FastUserPojoGenerator(double validRatio, long seed) {
+        this(validRatio, new SplittableRandom(seed));
+    }
+
+    private FastUserPojoGenerator(double validRatio, SplittableRandom random) {
+        if (validRatio < 0 || validRatio > 1) {
+            throw new IllegalArgumentException("Valid ratio must be within [0, 1]");
+        }
+        this.random = random;
+        this.validRatio = validRatio;
+        LocalDate today = LocalDate.now();
+        this.minBirthEpochDay = today.minusYears(65).toEpochDay();
+        this.maxBirthEpochDay = today.minusYears(18).toEpochDay();
+    }
+
+    @Override
+    public UserPojo generate() {
+        if (Double.isNaN(validRatio)) {
+            return new UserPojo(generateName(), generateEddr(random.nextBoolean()), random.nextInt(0, MAX_COUNT), LocalDate.now());
+        }
+        if (random.nextDouble() >= validRatio) {
+            return new UserPojo(generateName(), generateEddr(false), random.nextInt(0, MAX_COUNT), LocalDate.now());
+        }
+        String name = generateName();
+        while (!isValidName(name)) {
+            name = generateName();
+        }
+        return new UserPojo(name, generateEddr(true), random.nextInt(MIN_VALID_COUNT, MAX_COUNT), LocalDate.now());
+    }
+
+    private String generateName() {
+        boolean female = random.nextBoolean();
+        String[] firstNames = female ? NameParts.FEMALE_FIRST : NameParts.MALE_FIRST;
+        String[] middleNames = female ? NameParts.FEMALE_MIDDLE : NameParts.MALE_MIDDLE;
+        String[] lastNames = female ? NameParts.FEMALE_LAST : NameParts.MALE_LAST;
+        String first = pick(firstNames);
+        String last = pick(lastNames);
+        return switch (random.nextInt(4)) {
+            case 0 -> first + ' ' + last;
+            case 1 -> last + ' ' + first;
+            case 2 -> first + ' ' + pick(middleNames) + ' ' + last;
+            default -> last + ' ' + first + ' ' + pick(middleNames);
+        };
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * Same check as the name constraints of {@link UserPojo}, without the regular expression.
+     */
+    static boolean isValidName(String name) {
+        if (name.length() < MIN_VALID_NAME_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = Character.toLowerCase(name.charAt(i));
+            if (c == 'a' || c == 'а') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String generateEddr(boolean valid) {
+        LocalDate birthday = LocalDate.ofEpochDay(random.nextLong(minBirthEpochDay, maxBirthEpochDay + 1));
+        writeDigits(birthday.getYear(), 0, 4);
+        writeDigits(birthday.getMonthValue(), 4, 2);
+        writeDigits(birthday.getDayOfMonth(), 6, 2);
+        eddr[8] = '-';
+        writeDigits(random.nextInt(10_000), 9, 4);
+        int sum = 0;
+        for (int i = 0, digit = 0; i < 13; i++) {
+            if (i != 8) {
+                sum += (eddr[i] - '0') * EDDR_WEIGHTS[digit++];
+            }
+        }
+        eddr[13] = (char) ('0' + (valid ? sum : sum + 1) % 10);
+        return new String(eddr);
+    }
+
+    private void writeDigits(int value, int offset, int length) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            eddr[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static final class NameParts {
+        private static final Faker faker = new Faker(Locale.of("uk_UA"));
+        private static final String[] MALE_FIRST = fetch("name.male_first_name");
+        private static final String[] MALE_MIDDLE = fetch("name.male_middle_name");
+        private static final String[] MALE_LAST = fetch("name.male_last_name");
+        private static final String[] FEMALE_FIRST = fetch("name.female_first_name");
+        private static final String[] FEMALE_MIDDLE = fetch("name.female_middle_name");
+        private static final String[] FEMALE_LAST = fetch("name.female_last_name");
+
+        private static String[] fetch(String key) {
+            List<?> values = faker.fakeValuesService().fetchObject(key, faker.getContext());
+            if (values == null || values.isEmpty()) {
+                throw new IllegalStateException("Faker has no " + key + " for uk_UA");
+            }
+            return values.stream().map(String::valueOf).toArray(String[]::new);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package shpp.azaika.util;
+
+import shpp.azaika.util.jfr.WriterFlushEvent;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sits below a writer's buffer, so it sees one call per flushed batch: counts the bytes and emits a {@link WriterFlushEvent}.
+ */
+public final class InstrumentedOutputStream extends FilterOutputStream {
+    private final String fileName;
+    private final LongAdder bytes;
+
+    /**
+     * @param bytes when not {@code null}, incremented by every byte handed to {@code out}
+     */
+    public InstrumentedOutputStream(OutputStream out, String fileName, LongAdder bytes) {
+        super(out);
+        this.fileName = fileName;
+        this.bytes = bytes;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        WriterFlushEvent flushEvent = new WriterFlushEvent();
+        flushEvent.begin();
+        out.write(b, off, len);
+        if (flushEvent.shouldCommit()) {
+            flushEvent.file = fileName;
+            flushEvent.bytes = len;
+            flushEvent.commit();
+        }
+        if (bytes != null) {
+            bytes.add(len);
+        }
+    }
+}
@@ -6,7 +6,15 @@ import jakarta.validation.Validator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.pojo.ValidatedRecord;
+import shpp.azaika.util.jfr.MessageDeserializeEvent;
+import shpp.azaika.util.jfr.MessageValidateEvent;
+import shpp.azaika.util.latency.LatencyTracker;
 import shpp.azaika.util.mq.Producer;
+import shpp.azaika.util.offheap.OffHeapRecordQueue;
+import shpp.azaika.validation.FailFastUserPojoReader;
+import shpp.azaika.validation.ValidationHints;
+import shpp.azaika.validation.ViolationCatalog;
 
 import javax.jms.JMSException;
 import javax.jms.Message;
@@ -20,10 +28,19 @@ public class MessageHandler {
 
     private final ObjectMapper mapper;
     private final Validator validator;
-    private final BlockingQueue<UserPojo> validQueue;
-    private final BlockingQueue<UserPojo> invalidQueue;
+    private final BlockingQueue<ValidatedRecord> validQueue;
+    private final BlockingQueue<ValidatedRecord> invalidQueue;
+    private final OffHeapRecordQueue.Appender validAppender;
+    private final OffHeapRecordQueue.Appender invalidAppender;
+    private int preRejectedCount;
+    private boolean violationReport = true;
+    private RedeliveryDeduplicator deduplicator;
+    private LatencyTracker latencyTracker;
+    private RoutingCounters routingCounters = new RoutingCounters();
+    private AckWindow ackWindow;
+    private FailFastUserPojoReader failFastReader;
 
-    public MessageHandler(ObjectMapper mapper, Validator validator, BlockingQueue<UserPojo> validQueue, BlockingQueue<UserPojo> invalidQueue) {
+    public MessageHandler(ObjectMapper mapper, Validator validator, BlockingQueue<ValidatedRecord> validQueue, BlockingQueue<ValidatedRecord> invalidQueue) {
         if (mapper == null || validator == null || validQueue == null || invalidQueue == null) {
             throw new IllegalArgumentException("Constructor arguments must not be null");
         }
@@ -31,34 +48,143 @@ public class MessageHandler {
         this.validator = validator;
         this.validQueue = validQueue;
         this.invalidQueue = invalidQueue;
+        this.validAppender = null;
+        this.invalidAppender = null;
     }
 
-    public void handleMessage(Message message) throws JMSException, InterruptedException {
+    public MessageHandler(ObjectMapper mapper, Validator validator, OffHeapRecordQueue validQueue, OffHeapRecordQueue invalidQueue) {
+        if (mapper == null || validator == null || validQueue == null || invalidQueue == null) {
+            throw new IllegalArgumentException("Constructor arguments must not be null");
+        }
+        this.mapper = mapper;
+        this.validator = validator;
+        this.validQueue = null;
+        this.invalidQueue = null;
+        this.validAppender = validQueue.newAppender();
+        this.invalidAppender = invalidQueue.newAppender();
+    }
+
+    /**
+     * @return {@code false} if the message was dropped as a redelivered duplicate
+     */
+    public boolean handleMessage(Message message) throws JMSException, InterruptedException {
+        if (isDuplicate(message)) {
+            routingCounters.duplicateDropped();
+            logger.debug("Dropped redelivered message {}", message.getLongProperty(Producer.RECORD_ID_PROPERTY));
+            return false;
+        }
+        if (latencyTracker != null && message.propertyExists(Producer.SEND_NANOS_PROPERTY)) {
+            latencyTracker.getEnqueueToConsume().record(System.nanoTime() - message.getLongProperty(Producer.SEND_NANOS_PROPERTY));
+        }
         if (message instanceof TextMessage textMessage) {
             handleTextMessage(textMessage);
         } else {
             logger.warn("Received unsupported message type: {}", message.getClass().getSimpleName());
         }
+        return true;
+    }
+
+    private boolean isDuplicate(Message message) throws JMSException {
+        return deduplicator != null
+                && message.propertyExists(Producer.RECORD_ID_PROPERTY)
+                && deduplicator.isDuplicate(message.getLongProperty(Producer.RECORD_ID_PROPERTY));
     }
 
     private void handleTextMessage(TextMessage message) throws JMSException, InterruptedException {
+        long consumedNanos = latencyTracker != null ? System.nanoTime() : 0;
         String textFromMessage = message.getText();
         try {
+            boolean preRejected = !violationReport && ValidationHints.isClearlyInvalid(message);
+            if (failFastReader != null && !preRejected) {
+                readFailFastAndRoute(message, textFromMessage, consumedNanos);
+                return;
+            }
+            MessageDeserializeEvent deserializeEvent = new MessageDeserializeEvent();
+            deserializeEvent.begin();
             UserPojo userPojo = mapper.readValue(textFromMessage, UserPojo.class);
-            validateAndRouteMessage(userPojo);
+            if (deserializeEvent.shouldCommit()) {
+                deserializeEvent.messageLength = textFromMessage.length();
+                deserializeEvent.commit();
+            }
+            String messageId = ackWindow != null ? message.getJMSMessageID() : null;
+            if (preRejected) {
+                route(new ValidatedRecord(userPojo, 0, markValidated(consumedNanos), ackWindow, messageId), invalidQueue, invalidAppender);
+                routingCounters.invalidRouted();
+                preRejectedCount++;
+            } else {
+                validateAndRouteMessage(userPojo, consumedNanos, messageId);
+            }
         } catch (IOException e) {
+            routingCounters.deserializationFailed();
             logger.error("Failed to deserialize message content: {}", textFromMessage, e);
         }
     }
 
-    private void validateAndRouteMessage(UserPojo userPojo) throws InterruptedException {
+    private void readFailFastAndRoute(TextMessage message, String textFromMessage, long consumedNanos) throws IOException, JMSException, InterruptedException {
+        MessageDeserializeEvent deserializeEvent = new MessageDeserializeEvent();
+        deserializeEvent.begin();
+        FailFastUserPojoReader.Result result = failFastReader.read(textFromMessage);
+        if (deserializeEvent.shouldCommit()) {
+            deserializeEvent.messageLength = textFromMessage.length();
+            deserializeEvent.commit();
+        }
+        UserPojo userPojo = result.userPojo();
+        String messageId = ackWindow != null ? message.getJMSMessageID() : null;
+        ValidatedRecord record = new ValidatedRecord(userPojo, result.violationMask(), markValidated(consumedNanos), ackWindow, messageId);
+        if (result.valid()) {
+            route(record, validQueue, validAppender);
+            routingCounters.validRouted();
+            logger.debug("Valid message routed to validQueue: {}", userPojo);
+        } else {
+            route(record, invalidQueue, invalidAppender);
+            routingCounters.invalidRouted();
+            logger.debug("Invalid message routed to invalidQueue: {}", userPojo);
+        }
+    }
+
+    private void validateAndRouteMessage(UserPojo userPojo, long consumedNanos, String messageId) throws InterruptedException {
+        MessageValidateEvent validateEvent = new MessageValidateEvent();
+        validateEvent.begin();
         Set<ConstraintViolation<UserPojo>> violations = validator.validate(userPojo);
+        if (validateEvent.shouldCommit()) {
+            validateEvent.violations = violations.size();
+            validateEvent.commit();
+        }
+        long validatedNanos = markValidated(consumedNanos);
         if (violations.isEmpty()) {
-            validQueue.put(userPojo);
+            route(new ValidatedRecord(userPojo, 0, validatedNanos, ackWindow, messageId), validQueue, validAppender);
+            routingCounters.validRouted();
             logger.debug("Valid message routed to validQueue: {}", userPojo);
         } else {
-            invalidQueue.put(userPojo);
-            logValidationErrors(userPojo, violations);
+            int violationMask = violationReport ? ViolationCatalog.forUserPojo().maskOf(violations) : 0;
+            route(new ValidatedRecord(userPojo, violationMask, validatedNanos, ackWindow, messageId), invalidQueue, invalidAppender);
+            routingCounters.invalidRouted();
+            if (logger.isDebugEnabled()) {
+                logValidationErrors(userPojo, violations);
+            }
+        }
+    }
+
+    /**
+     * @return {@link System#nanoTime()} at which validation finished, or zero unless latency tracking is on
+     */
+    private long markValidated(long consumedNanos) {
+        if (latencyTracker == null) {
+            return 0;
+        }
+        long validatedNanos = System.nanoTime();
+        latencyTracker.getConsumeToValidated().record(validatedNanos - consumedNanos);
+        return validatedNanos;
+    }
+
+    private void route(ValidatedRecord record, BlockingQueue<ValidatedRecord> queue, OffHeapRecordQueue.Appender appender) throws InterruptedException {
+        if (record.ackWindow() != null) {
+            record.ackWindow().recordRouted();
+        }
+        if (appender != null) {
+            appender.append(record);
+        } else {
+            queue.put(record);
         }
     }
 
@@ -72,12 +198,94 @@ public class MessageHandler {
         }
     }
 
-    public boolean isPoisonPill(Message message) throws JMSException {
-        if (message instanceof TextMessage textMessage) {
-            String text = textMessage.getText();
-            return Producer.POISON_PILL.equals(text);
+    /**
+     * Publishes partially filled off-heap slabs. Must be called by the consumer thread once it stops.
+     */
+    public void flush() {
+        if (validAppender == null) {
+            return;
         }
-        logger.warn("Received non-TextMessage for poison pill check: {}", message.getClass().getSimpleName());
-        return false;
+        try {
+            validAppender.flush();
+            invalidAppender.flush();
+        } catch (InterruptedException e) {
+            logger.error("Interrupted while flushing off-heap records", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Enables the errors column of invalid records. The full violation list is needed for it,
+     * so producer validation hints are only used to skip validation while the report is off.
+     */
+    public void setViolationReport(boolean violationReport) {
+        this.violationReport = violationReport;
+    }
+
+    /**
+     * Reads and checks records with {@code failFastReader} instead of binding them and running the
+     * validator. Its violation catalog must match the violation report setting.
+     */
+    public void setFailFastReader(FailFastUserPojoReader failFastReader) {
+        this.failFastReader = failFastReader;
+    }
+
+    /**
+     * Drops messages whose record id the shared deduplicator has already seen.
+     */
+    public void setDeduplicator(RedeliveryDeduplicator deduplicator) {
+        this.deduplicator = deduplicator;
+    }
+
+    /**
+     * Records enqueue→consume and consume→validated latencies, and stamps records for the writer stage.
+     */
+    public void setLatencyTracker(LatencyTracker latencyTracker) {
+        this.latencyTracker = latencyTracker;
+    }
+
+    /**
+     * Attaches {@code ackWindow} to every routed record, so writers can report when it is synced.
+     * Off-heap records are encoded into slabs and cannot carry it.
+     */
+    public void setAckWindow(AckWindow ackWindow) {
+        if (ackWindow != null && validAppender != null) {
+            throw new UnsupportedOperationException("Off-heap records cannot carry an acknowledgement window");
+        }
+        this.ackWindow = ackWindow;
+    }
+
+    /**
+     * Replaces the handler's own counters with ones shared by all consumers of a run.
+     */
+    public void setRoutingCounters(RoutingCounters routingCounters) {
+        if (routingCounters == null) {
+            throw new IllegalArgumentException("RoutingCounters must not be null");
+        }
+        this.routingCounters = routingCounters;
+    }
+
+    public RoutingCounters getRoutingCounters() {
+        return routingCounters;
+    }
+
+    /**
+     * Number of messages routed to the invalid output on the producer's validation hints alone.
+     * Only read it after the owning consumer thread has finished.
+     */
+    public int getPreRejectedCount() {
+        return preRejectedCount;
+    }
+
+    public boolean isEndOfStream(Message message) throws JMSException {
+        return Producer.END_OF_STREAM_TYPE.equals(message.getJMSType());
+    }
+
+    public long getExpectedMessageCount(Message message) throws JMSException {
+        return message.getLongProperty(Producer.EXPECTED_COUNT_PROPERTY);
+    }
+
+    public String getProducerProcess(Message message) throws JMSException {
+        return message.getStringProperty(Producer.PRODUCER_PROCESS_PROPERTY);
     }
 }
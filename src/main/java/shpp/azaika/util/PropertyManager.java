@@ -19,8 +19,16 @@ public class PropertyManager {
         this.properties.load(inputStream);
     }
 
+    public PropertyManager(Properties properties) {
+        this.properties = properties;
+    }
+
     public String getProperty(String key) {
         return this.properties.getProperty(key);
     }
 
+    public String getProperty(String key, String defaultValue) {
+        return this.properties.getProperty(key, defaultValue);
+    }
+
 }
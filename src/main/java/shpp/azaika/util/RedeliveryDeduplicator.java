@@ -0,0 +1,158 @@
+package shpp.azaika.util;
+
+import shpp.azaika.util.offheap.OffHeapBloomFilter;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Detects redelivered messages by their producer-assigned record id. Every id goes into an
+ * off-heap Bloom filter; when the filter reports a possible hit, a bounded window of the most
+ * recently seen ids decides exactly. Redeliveries follow a crash or failover closely, so ids
+ * older than the window are treated as new.
+ */
+public class RedeliveryDeduplicator {
+    private final OffHeapBloomFilter bloomFilter;
+    private final IdWindow[] stripes;
+    private final int stripeMask;
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    /**
+     * @param bloomFilterBytes memory of the Bloom filter
+     * @param hashCount        bit positions per id in the Bloom filter
+     * @param windowSize       number of most recent ids kept for the exact check
+     */
+    public RedeliveryDeduplicator(int bloomFilterBytes, int hashCount, int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Window size must be positive");
+        }
+        this.bloomFilter = new OffHeapBloomFilter(bloomFilterBytes, hashCount);
+        int stripeCount = Integer.highestOneBit(Math.min(windowSize, Runtime.getRuntime().availableProcessors() * 4));
+        this.stripes = new IdWindow[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new IdWindow((windowSize + stripeCount - 1) / stripeCount);
+        }
+        this.stripeMask = stripeCount - 1;
+    }
+
+    /**
+     * Records the id and reports whether it has been seen before.
+     */
+    public boolean isDuplicate(long recordId) {
+        checks.increment();
+        IdWindow window = stripes[(int) (recordId ^ (recordId >>> 32)) & stripeMask];
+        synchronized (window) {
+            if (bloomFilter.mightContain(recordId)) {
+                if (window.contains(recordId)) {
+                    duplicates.increment();
+                    return true;
+                }
+                falsePositives.increment();
+            }
+            bloomFilter.put(recordId);
+            window.add(recordId);
+            return false;
+        }
+    }
+
+    public long getCheckCount() {
+        return checks.sum();
+    }
+
+    public long getDuplicateCount() {
+        return duplicates.sum();
+    }
+
+    /**
+     * Possible hits of the Bloom filter that the exact check rejected.
+     */
+    public long getFalsePositiveCount() {
+        return falsePositives.sum();
+    }
+
+    public double getMeasuredFalsePositiveRate() {
+        long newIds = checks.sum() - duplicates.sum();
+        return newIds == 0 ? 0 : (double) falsePositives.sum() / newIds;
+    }
+
+    public double getExpectedFalsePositiveRate() {
+        return bloomFilter.expectedFalsePositiveRate(checks.sum() - duplicates.sum());
+    }
+
+    /**
+     * FIFO window of ids backed by a linear-probing hash set. Not thread-safe; guarded by its stripe lock.
+     */
+    static final class IdWindow {
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private final long[] table;
+        private final int tableMask;
+        private final long[] ring;
+        private int ringPosition;
+        private int size;
+
+        IdWindow(int capacity) {
+            int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+            this.table = new long[tableSize];
+            Arrays.fill(table, EMPTY);
+            this.tableMask = tableSize - 1;
+            this.ring = new long[capacity];
+        }
+
+        boolean contains(long id) {
+            for (int i = home(id); table[i] != EMPTY; i = (i + 1) & tableMask) {
+                if (table[i] == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void add(long id) {
+            if (size == ring.length) {
+                remove(ring[ringPosition]);
+            } else {
+                size++;
+            }
+            ring[ringPosition] = id;
+            ringPosition = (ringPosition + 1) % ring.length;
+            int i = home(id);
+            while (table[i] != EMPTY) {
+                i = (i + 1) & tableMask;
+            }
+            table[i] = id;
+        }
+
+        private void remove(long id) {
+            int i = home(id);
+            while (table[i] != id) {
+                if (table[i] == EMPTY) {
+                    return;
+                }
+                i = (i + 1) & tableMask;
+            }
+            // backward-shift deletion keeps probe sequences intact without tombstones
+            int j = i;
+            while (true) {
+                j = (j + 1) & tableMask;
+                if (table[j] == EMPTY) {
+                    break;
+                }
+                int k = home(table[j]);
+                boolean movable = (j > i) ? (k <= i || k > j) : (k <= i && k > j);
+                if (movable) {
+                    table[i] = table[j];
+                    i = j;
+                }
+            }
+            table[i] = EMPTY;
+        }
+
+        private int home(long id) {
+            long hash = id * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & tableMask;
+        }
+    }
+}
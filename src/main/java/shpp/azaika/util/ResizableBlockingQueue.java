@@ -0,0 +1,173 @@
+package shpp.azaika.util;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded FIFO queue whose capacity can be changed while producers and consumers are running.
+ * Shrinking never drops elements: inserts block until the queue has drained below the new capacity.
+ * <p>
+ * Elements live in an unbounded {@link LinkedBlockingQueue}; the bound is enforced by inserters under
+ * a separate lock, and removers only take that lock when an inserter is actually waiting.
+ */
+public final class ResizableBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+    private final LinkedBlockingQueue<E> elements = new LinkedBlockingQueue<>();
+    private final ReentrantLock insertLock = new ReentrantLock();
+    private final Condition notFull = insertLock.newCondition();
+    private final AtomicInteger waitingInserters = new AtomicInteger();
+    private volatile int capacity;
+
+    public ResizableBlockingQueue(int capacity) {
+        setCapacity(capacity);
+    }
+
+    public void setCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        insertLock.lock();
+        try {
+            notFull.signalAll();
+        } finally {
+            insertLock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        insertLock.lockInterruptibly();
+        try {
+            waitingInserters.incrementAndGet();
+            try {
+                while (elements.size() >= capacity) {
+                    notFull.await();
+                }
+            } finally {
+                waitingInserters.decrementAndGet();
+            }
+            elements.add(e);
+        } finally {
+            insertLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        insertLock.lockInterruptibly();
+        try {
+            waitingInserters.incrementAndGet();
+            try {
+                while (elements.size() >= capacity) {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = notFull.awaitNanos(nanos);
+                }
+            } finally {
+                waitingInserters.decrementAndGet();
+            }
+            return elements.add(e);
+        } finally {
+            insertLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(E e) {
+        insertLock.lock();
+        try {
+            return elements.size() < capacity && elements.add(e);
+        } finally {
+            insertLock.unlock();
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        return removed(elements.take());
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return removed(elements.poll(timeout, unit));
+    }
+
+    @Override
+    public E poll() {
+        return removed(elements.poll());
+    }
+
+    @Override
+    public E peek() {
+        return elements.peek();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return removed(elements.remove(o) ? o : null) != null;
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        int drained = elements.drainTo(c, maxElements);
+        if (drained > 0) {
+            signalNotFull();
+        }
+        return drained;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, capacity - elements.size());
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    /**
+     * Weakly consistent; removing through the iterator does not wake blocked inserters until the next removal.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return elements.iterator();
+    }
+
+    private <T> T removed(T element) {
+        if (element != null) {
+            signalNotFull();
+        }
+        return element;
+    }
+
+    private void signalNotFull() {
+        if (waitingInserters.get() == 0) {
+            return;
+        }
+        insertLock.lock();
+        try {
+            notFull.signal();
+        } finally {
+            insertLock.unlock();
+        }
+    }
+}
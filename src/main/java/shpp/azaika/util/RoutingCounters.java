@@ -0,0 +1,45 @@
+package shpp.azaika.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcome counters shared by all message handlers of a run. Striped, so consumers never contend on them.
+ */
+public final class RoutingCounters {
+    private final LongAdder validMessages = new LongAdder();
+    private final LongAdder invalidMessages = new LongAdder();
+    private final LongAdder duplicateMessages = new LongAdder();
+    private final LongAdder deserializationErrors = new LongAdder();
+
+    void validRouted() {
+        validMessages.increment();
+    }
+
+    void invalidRouted() {
+        invalidMessages.increment();
+    }
+
+    void duplicateDropped() {
+        duplicateMessages.increment();
+    }
+
+    void deserializationFailed() {
+        deserializationErrors.increment();
+    }
+
+    public long getValidMessages() {
+        return validMessages.sum();
+    }
+
+    public long getInvalidMessages() {
+        return invalidMessages.sum();
+    }
+
+    public long getDuplicateMessages() {
+        return duplicateMessages.sum();
+    }
+
+    public long getDeserializationErrors() {
+        return deserializationErrors.sum();
+    }
+}
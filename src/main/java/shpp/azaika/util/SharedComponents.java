@@ -0,0 +1,64 @@
+package shpp.azaika.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.validation.ViolationCatalog;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Thread-safe components all consumers of a process share, so Jackson's deserializers and the
+ * validator's bean metadata are built once instead of once per consumer thread.
+ */
+public final class SharedComponents {
+    private static final List<String> SAMPLE_MESSAGES = List.of(
+            "{\"name\":\"Andrew Zaika\",\"eddr\":\"19760506-26585\",\"count\":15,\"date\":\"2024-01-01\"}",
+            "{\"name\":\"Bob\",\"eddr\":\"19760506-26584\",\"count\":5,\"date\":\"2024-01-01\"}");
+
+    private SharedComponents() {
+    }
+
+    public static ObjectMapper objectMapper() {
+        return ObjectMapperHolder.INSTANCE;
+    }
+
+    public static ValidatorFactory validatorFactory() {
+        return ValidatorFactoryHolder.INSTANCE;
+    }
+
+    /**
+     * Runs {@code records} records through everything the first messages would otherwise
+     * initialise: Faker's locale data when {@code generating}, and deserialization, validation
+     * and the violation catalog when {@code consuming}.
+     */
+    public static void warmUp(int records, boolean generating, boolean consuming) throws IOException {
+        UserPojoGenerator generator = generating ? new UserPojoGenerator() : null;
+        Validator validator = consuming ? validatorFactory().getValidator() : null;
+        ViolationCatalog catalog = consuming ? ViolationCatalog.forUserPojo() : null;
+        for (int i = 0; i < records; i++) {
+            String json = generator != null ? generator.generateUserPojoAsJson() : SAMPLE_MESSAGES.get(i % SAMPLE_MESSAGES.size());
+            if (consuming) {
+                Set<ConstraintViolation<UserPojo>> violations = validator.validate(objectMapper().readValue(json, UserPojo.class));
+                catalog.toJson(catalog.maskOf(violations));
+            }
+        }
+    }
+
+    private static final class ObjectMapperHolder {
+        private static final ObjectMapper INSTANCE = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+    }
+
+    private static final class ValidatorFactoryHolder {
+        private static final ValidatorFactory INSTANCE = Validation.buildDefaultValidatorFactory();
+    }
+}
@@ -12,6 +12,7 @@ import shpp.azaika.pojo.UserPojo;
 
 import java.time.LocalDate;
 import java.util.Locale;
+import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
 public class UserPojoGenerator {
@@ -21,10 +22,25 @@ public class UserPojoGenerator {
             .registerModule(new JavaTimeModule())
             .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
 
-    private final static Faker faker = new Faker(new Locale("uk_UA"));
+    private final static Faker sharedFaker = new Faker(Locale.of("uk_UA"));
+    private final Faker faker;
+    private final Random random;
     private UkrainianIdNumber ukrainianIdNumber;
 
     public UserPojoGenerator() {
+        this(sharedFaker, null);
+    }
+
+    /**
+     * Generates the same records in the same order for the same seed.
+     */
+    public UserPojoGenerator(long seed) {
+        this(new Faker(Locale.of("uk_UA"), new Random(seed)), new Random(seed));
+    }
+
+    private UserPojoGenerator(Faker faker, Random random) {
+        this.faker = faker;
+        this.random = random;
         this.ukrainianIdNumber = new UkrainianIdNumber();
     }
 
@@ -38,21 +54,28 @@ public class UserPojoGenerator {
     }
 
     public String generateUserPojoAsJson() {
-        UserPojo generate = generate();
+        return toJson(generate());
+    }
+
+    public String toJson(UserPojo userPojo) {
         try {
-            return mapper.writeValueAsString(generate);
+            return mapper.writeValueAsString(userPojo);
         } catch (JsonProcessingException e) {
             logger.error("Failed to serialize UserPojo to JSON", e);
             return "{}";
         }
     }
 
+    private Random random() {
+        return random == null ? ThreadLocalRandom.current() : random;
+    }
+
     private int generateCount() {
-        return ThreadLocalRandom.current().nextInt(0, 999);
+        return random().nextInt(0, 999);
     }
 
     private String generateEddr() {
-        boolean valid = ThreadLocalRandom.current().nextBoolean();
+        boolean valid = random().nextBoolean();
         return valid ? ukrainianIdNumber.generateValid(faker) : ukrainianIdNumber.generateInvalid(faker);
     }
 
@@ -0,0 +1,84 @@
+package shpp.azaika.util.jfr;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Summarises the time spent per pipeline stage in a {@code .jfr} recording made with {@code jfr/pipeline.jfc}.
+ * Stages are thresholded, so the totals only cover events above each stage's threshold.
+ * <p>
+ * Usage: {@code java -cp <jar> shpp.azaika.util.jfr.JfrStageSummary recording.jfr}
+ */
+public final class JfrStageSummary {
+    private static final Logger logger = LoggerFactory.getLogger(JfrStageSummary.class);
+    private static final String EVENT_PREFIX = "shpp.azaika.";
+
+    private JfrStageSummary() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            logger.error("Please provide the path of a .jfr recording as the first argument.");
+            throw new IllegalArgumentException();
+        }
+        summarise(Path.of(args[0])).forEach((stage, stats) ->
+                logger.info("{}: count {}, total {} ms, mean {} us, max {} us", stage, stats.getCount(),
+                        stats.getTotal().toMillis(), stats.getMean().toNanos() / 1000, stats.getMax().toNanos() / 1000));
+    }
+
+    /**
+     * @return statistics keyed by stage name (the event name without the {@code shpp.azaika.} prefix)
+     */
+    public static Map<String, StageStats> summarise(Path recording) throws IOException {
+        Map<String, StageStats> stages = new TreeMap<>();
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                String name = event.getEventType().getName();
+                if (name.startsWith(EVENT_PREFIX)) {
+                    stages.computeIfAbsent(name.substring(EVENT_PREFIX.length()), stage -> new StageStats())
+                            .add(event.getDuration());
+                }
+            }
+        }
+        return stages;
+    }
+
+    public static final class StageStats {
+        private long count;
+        private Duration total = Duration.ZERO;
+        private Duration max = Duration.ZERO;
+
+        private void add(Duration duration) {
+            count++;
+            total = total.plus(duration);
+            if (duration.compareTo(max) > 0) {
+                max = duration;
+            }
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public Duration getTotal() {
+            return total;
+        }
+
+        public Duration getMax() {
+            return max;
+        }
+
+        public Duration getMean() {
+            return count == 0 ? Duration.ZERO : total.dividedBy(count);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package shpp.azaika.util.jfr;
+
+import jdk.jfr.*;
+
+@Name("shpp.azaika.MessageDeserialize")
+@Label("Message Deserialize")
+@Category({"Pipeline", "Consumer"})
+@Description("JSON text parsed into a UserPojo")
+@Threshold("1 ms")
+@StackTrace(false)
+public class MessageDeserializeEvent extends Event {
+    @Label("Message Length")
+    @DataAmount(DataAmount.BYTES)
+    public int messageLength;
+}
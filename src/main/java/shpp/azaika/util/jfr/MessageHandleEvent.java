@@ -0,0 +1,14 @@
+package shpp.azaika.util.jfr;
+
+import jdk.jfr.*;
+
+@Name("shpp.azaika.MessageHandle")
+@Label("Message Handle")
+@Category({"Pipeline", "Consumer"})
+@Description("Deduplication, deserialisation, validation and routing of one message")
+@Threshold("1 ms")
+@StackTrace(false)
+public class MessageHandleEvent extends Event {
+    @Label("Duplicate")
+    public boolean duplicate;
+}
@@ -0,0 +1,14 @@
+package shpp.azaika.util.jfr;
+
+import jdk.jfr.*;
+
+@Name("shpp.azaika.MessageReceive")
+@Label("Message Receive")
+@Category({"Pipeline", "Consumer"})
+@Description("Consumer blocked in receive, including polls that timed out")
+@Threshold("10 ms")
+@StackTrace(false)
+public class MessageReceiveEvent extends Event {
+    @Label("Timed Out")
+    public boolean timedOut;
+}
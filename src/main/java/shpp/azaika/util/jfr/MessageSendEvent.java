@@ -0,0 +1,15 @@
+package shpp.azaika.util.jfr;
+
+import jdk.jfr.*;
+
+@Name("shpp.azaika.MessageSend")
+@Label("Message Send")
+@Category({"Pipeline", "Producer"})
+@Description("Serialised message sent to the broker")
+@Threshold("1 ms")
+@StackTrace(false)
+public class MessageSendEvent extends Event {
+    @Label("Message Length")
+    @DataAmount(DataAmount.BYTES)
+    public int messageLength;
+}
@@ -0,0 +1,14 @@
+package shpp.azaika.util.jfr;
+
+import jdk.jfr.*;
+
+@Name("shpp.azaika.MessageValidate")
+@Label("Message Validate")
+@Category({"Pipeline", "Consumer"})
+@Description("Bean validation of one record")
+@Threshold("1 ms")
+@StackTrace(false)
+public class MessageValidateEvent extends Event {
+    @Label("Violations")
+    public int violations;
+}
@@ -0,0 +1,17 @@
+package shpp.azaika.util.jfr;
+
+import jdk.jfr.*;
+
+@Name("shpp.azaika.WriterFlush")
+@Label("Writer Flush")
+@Category({"Pipeline", "Writer"})
+@Description("Buffered CSV bytes or an off-heap slab written to the output file")
+@StackTrace(false)
+public class WriterFlushEvent extends Event {
+    @Label("File")
+    public String file;
+
+    @Label("Bytes")
+    @DataAmount(DataAmount.BYTES)
+    public long bytes;
+}
@@ -0,0 +1,104 @@
+package shpp.azaika.util.latency;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear latency histogram in the style of HdrHistogram: values below 128 ns are counted
+ * exactly, larger ones in 64 linear sub-buckets per power of two (under 1.6% relative error).
+ * <p>
+ * Recording is single-writer: only the owning thread may call {@link #record(long)}, which is a
+ * plain read and an ordered store, no CAS. Any thread may read or {@link #add} it concurrently and
+ * sees counts that are at most a few records behind.
+ */
+public final class LatencyHistogram {
+    private static final int EXACT_BUCKETS = 128;
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = EXACT_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private volatile long totalCount;
+    private volatile long max;
+
+    /**
+     * Records a latency in nanoseconds; negative values (clock skew) are counted as zero.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        int index = indexOf(value);
+        counts.lazySet(index, counts.get(index) + 1);
+        totalCount = totalCount + 1;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Adds the counts of another histogram into this one. Not safe against concurrent {@link #record}.
+     */
+    public synchronized void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.set(i, counts.get(i) + count);
+            }
+        }
+        totalCount = totalCount + other.totalCount;
+        max = Math.max(max, other.max);
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @param percentile in {@code [0, 100]}
+     * @return the highest value equivalent to the recorded one at that percentile, capped at the max
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be within [0, 100]");
+        }
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestEquivalentValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    static int indexOf(long value) {
+        if (value < EXACT_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return EXACT_BUCKETS + (shift - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < EXACT_BUCKETS) {
+            return index;
+        }
+        int offset = index - EXACT_BUCKETS;
+        int shift = offset / SUB_BUCKETS + 1;
+        long subBucket = offset % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,44 @@
+package shpp.azaika.util.latency;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Latency of one pipeline stage. Each recording thread gets its own {@link LatencyHistogram},
+ * so the hot path never contends; {@link #snapshot()} merges them.
+ */
+public final class LatencyRecorder {
+    private final String stageName;
+    private final Queue<LatencyHistogram> histograms = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<LatencyHistogram> threadHistogram = ThreadLocal.withInitial(this::newHistogram);
+
+    public LatencyRecorder(String stageName) {
+        if (stageName == null) {
+            throw new IllegalArgumentException("Stage name must not be null");
+        }
+        this.stageName = stageName;
+    }
+
+    private LatencyHistogram newHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histograms.add(histogram);
+        return histogram;
+    }
+
+    public void record(long nanos) {
+        threadHistogram.get().record(nanos);
+    }
+
+    /**
+     * @return a new histogram with everything recorded so far by all threads
+     */
+    public LatencyHistogram snapshot() {
+        LatencyHistogram merged = new LatencyHistogram();
+        histograms.forEach(merged::add);
+        return merged;
+    }
+
+    public String getStageName() {
+        return stageName;
+    }
+}
@@ -0,0 +1,86 @@
+package shpp.azaika.util.latency;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end latency of a run, split into the broker, validation and writer stages.
+ * Timestamps come from {@link System#nanoTime()}, so producers and consumers must share the JVM.
+ */
+public final class LatencyTracker implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(LatencyTracker.class);
+
+    private final LatencyRecorder enqueueToConsume = new LatencyRecorder("enqueue->consume");
+    private final LatencyRecorder consumeToValidated = new LatencyRecorder("consume->validated");
+    private final LatencyRecorder validatedToWritten = new LatencyRecorder("validated->written");
+    private ScheduledExecutorService reporter;
+
+    /**
+     * Logs percentiles of everything recorded so far every {@code intervalMillis}.
+     */
+    public synchronized void startReporting(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Report interval must be positive");
+        }
+        if (reporter != null) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "latency-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::report, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void report() {
+        for (LatencyRecorder recorder : getRecorders()) {
+            LatencyHistogram histogram = recorder.snapshot();
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            logger.info("**Latency {} (us): count {}, p50 {}, p90 {}, p99 {}, p99.9 {}, max {}",
+                    recorder.getStageName(), histogram.getTotalCount(),
+                    micros(histogram.getValueAtPercentile(50)), micros(histogram.getValueAtPercentile(90)),
+                    micros(histogram.getValueAtPercentile(99)), micros(histogram.getValueAtPercentile(99.9)),
+                    micros(histogram.getMax()));
+        }
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    public LatencyRecorder getEnqueueToConsume() {
+        return enqueueToConsume;
+    }
+
+    public LatencyRecorder getConsumeToValidated() {
+        return consumeToValidated;
+    }
+
+    public LatencyRecorder getValidatedToWritten() {
+        return validatedToWritten;
+    }
+
+    public List<LatencyRecorder> getRecorders() {
+        return List.of(enqueueToConsume, consumeToValidated, validatedToWritten);
+    }
+
+    /**
+     * Stops periodic reporting and logs the final percentiles.
+     */
+    @Override
+    public synchronized void close() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+        report();
+    }
+}
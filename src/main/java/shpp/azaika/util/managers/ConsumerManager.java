@@ -1,63 +1,467 @@
 package shpp.azaika.util.managers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.validation.Configuration;
 import jakarta.validation.Validation;
 import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
 import org.apache.activemq.ActiveMQConnectionFactory;
-import shpp.azaika.pojo.UserPojo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import shpp.azaika.pojo.ValidatedRecord;
 import shpp.azaika.util.MessageHandler;
+import shpp.azaika.util.RedeliveryDeduplicator;
+import shpp.azaika.util.ResizableBlockingQueue;
+import shpp.azaika.util.RoutingCounters;
+import shpp.azaika.util.SharedComponents;
+import shpp.azaika.util.latency.LatencyTracker;
+import shpp.azaika.util.mq.AcknowledgementLog;
+import shpp.azaika.util.mq.BrokerConnectionMonitor;
 import shpp.azaika.util.mq.Consumer;
+import shpp.azaika.util.mq.ShardedDestination;
+import shpp.azaika.util.mq.StreamCoordinator;
+import shpp.azaika.util.offheap.OffHeapRecordQueue;
+import shpp.azaika.validation.EddrCacheConstraintValidatorFactory;
+import shpp.azaika.validation.EddrValidationCache;
+import shpp.azaika.validation.FailFastUserPojoReader;
+import shpp.azaika.validation.ValidationHints;
+import shpp.azaika.validation.ViolationCatalog;
 
 import javax.jms.JMSException;
+import javax.jms.JMSRuntimeException;
+import javax.jms.Session;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.*;
 
-public class ConsumerManager {
-    private final List<Consumer> consumers = new ArrayList<>();
-    private final ExecutorService consumerExecutor;
-    private final BlockingQueue<UserPojo> validQueue;
-    private final BlockingQueue<UserPojo> invalidQueue;
+public class ConsumerManager implements ConsumerManagerMBean {
+    private static final Logger logger = LoggerFactory.getLogger(ConsumerManager.class);
+    private static final int QUEUE_CAPACITY_PER_CONSUMER = 3000;
+    private final List<Consumer> consumers = new CopyOnWriteArrayList<>();
+    private final List<Consumer> scalableConsumers = new ArrayList<>();
+    private StreamCoordinator streamCoordinator = new StreamCoordinator();
+    private AcknowledgementLog acknowledgementLog;
+    private final RoutingCounters routingCounters = new RoutingCounters();
+    private volatile long startedNanos;
+    private ActiveMQConnectionFactory connectionFactory;
+    private String destinationName;
+    private String scalableSelector;
+    private ShardedDestination shards;
+    private boolean workStealing;
+    private final ThreadPoolExecutor consumerExecutor;
+    private final ResizableBlockingQueue<ValidatedRecord> validQueue;
+    private final ResizableBlockingQueue<ValidatedRecord> invalidQueue;
+    private final OffHeapRecordQueue offHeapValidQueue;
+    private final OffHeapRecordQueue offHeapInvalidQueue;
+    private final boolean violationReport;
+    private EddrValidationCache eddrCache;
+    private RedeliveryDeduplicator deduplicator;
+    private LatencyTracker latencyTracker;
+    private Validator validator;
+    private ValidatorFactory validatorFactory;
+    private boolean failFast;
+    private FailFastUserPojoReader failFastReader;
+    private int ackBatchSize;
+    private long ackTimeoutMillis;
+    private BrokerConnectionMonitor connectionMonitor;
+    private long reconnectTimeoutMillis;
+    private int acknowledgeMode = Session.AUTO_ACKNOWLEDGE;
 
     public ConsumerManager(int consumerQty) {
-        consumerExecutor = Executors.newFixedThreadPool(consumerQty);
-        validQueue = new LinkedBlockingDeque<>(consumerQty * 3000);
-        invalidQueue = new LinkedBlockingDeque<>(consumerQty * 3000);
+        this(consumerQty, true);
+    }
+
+    public ConsumerManager(int consumerQty, boolean violationReport) {
+        this.violationReport = violationReport;
+        consumerExecutor = newFixedPool(consumerQty);
+        validQueue = new ResizableBlockingQueue<>(consumerQty * QUEUE_CAPACITY_PER_CONSUMER);
+        invalidQueue = new ResizableBlockingQueue<>(consumerQty * QUEUE_CAPACITY_PER_CONSUMER);
+        offHeapValidQueue = null;
+        offHeapInvalidQueue = null;
+    }
+
+    public ConsumerManager(int consumerQty, boolean violationReport, int slabsPerQueue, int slabSize) {
+        if (slabsPerQueue <= consumerQty) {
+            throw new IllegalArgumentException("Slabs per queue must exceed the consumer count, otherwise writers starve");
+        }
+        this.violationReport = violationReport;
+        consumerExecutor = newFixedPool(consumerQty);
+        validQueue = null;
+        invalidQueue = null;
+        offHeapValidQueue = new OffHeapRecordQueue(slabsPerQueue, slabSize);
+        offHeapInvalidQueue = new OffHeapRecordQueue(slabsPerQueue, slabSize, violationReport ? ViolationCatalog.forUserPojo() : null);
+    }
+
+    private static ThreadPoolExecutor newFixedPool(int size) {
+        return new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
     }
 
     public void startConsumers(ActiveMQConnectionFactory connectionFactory, String destinationName, int consumerQty) throws JMSException {
+        startConsumers(connectionFactory, destinationName, consumerQty, null);
+    }
+
+    /**
+     * Starts consumers for records the producer hinted as valid and, separately, consumers that
+     * only receive records whose hints already fail validation. Requires producers with validation hints.
+     */
+    public void startHintRoutedConsumers(ActiveMQConnectionFactory connectionFactory, String destinationName, int consumerQty, int rejectedConsumerQty) throws JMSException {
+        startConsumers(connectionFactory, destinationName, consumerQty, ValidationHints.ACCEPTED_SELECTOR);
+        startConsumers(connectionFactory, destinationName, rejectedConsumerQty, ValidationHints.REJECTED_SELECTOR);
+    }
+
+    private synchronized void startConsumers(ActiveMQConnectionFactory connectionFactory, String destinationName, int consumerQty, String messageSelector) throws JMSException {
+        if (startedNanos == 0) {
+            startedNanos = System.nanoTime();
+            this.connectionFactory = connectionFactory;
+            this.destinationName = destinationName;
+            this.scalableSelector = messageSelector;
+        }
+        requireConsumerPerShard(consumerQty);
         for (int i = 0; i < consumerQty; i++) {
-             ObjectMapper objectMapper = new ObjectMapper()
-                    .registerModule(new JavaTimeModule())
-                    .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
-            Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
-            Consumer consumer = new Consumer(connectionFactory, new MessageHandler(objectMapper, validator, validQueue, invalidQueue));
-            consumers.add(consumer);
-            consumer.connect(destinationName);
-            consumerExecutor.submit(consumer);
+            startConsumer(connectionFactory, destinationName, messageSelector, i);
         }
     }
 
+    private void requireConsumerPerShard(int consumerQty) {
+        if (shards != null && !workStealing && consumerQty < shards.getShardCount()) {
+            throw new IllegalArgumentException("Every shard needs a consumer unless work stealing is enabled");
+        }
+    }
+
+    /**
+     * @param index position of the consumer within its group; picks the home shard round robin
+     */
+    private void startConsumer(ActiveMQConnectionFactory connectionFactory, String destinationName, String messageSelector, int index) throws JMSException {
+        Consumer consumer = new Consumer(connectionFactory, createMessageHandler(SharedComponents.objectMapper(), getValidator()), streamCoordinator);
+        consumer.setAcknowledgeMode(acknowledgeMode);
+        if (ackBatchSize > 0) {
+            consumer.setAcknowledgeAfterWrite(ackBatchSize, ackTimeoutMillis);
+            if (acknowledgementLog != null) {
+                consumer.setAcknowledgementLog(acknowledgementLog);
+            }
+        }
+        if (connectionMonitor != null) {
+            consumer.setReconnection(connectionMonitor, reconnectTimeoutMillis);
+        }
+        if (shards == null) {
+            consumer.connect(destinationName, messageSelector);
+        } else {
+            int homeShard = index % shards.getShardCount();
+            List<String> stealFrom = new ArrayList<>();
+            if (workStealing) {
+                for (int i = 1; i < shards.getShardCount(); i++) {
+                    stealFrom.add(shards.getShardName((homeShard + i) % shards.getShardCount()));
+                }
+            }
+            consumer.connect(shards.getShardName(homeShard), stealFrom, messageSelector);
+        }
+        consumers.add(consumer);
+        if (Objects.equals(messageSelector, scalableSelector)) {
+            scalableConsumers.add(consumer);
+        }
+        consumerExecutor.submit(consumer);
+    }
+
+    /**
+     * Grows or shrinks the consumers started first (the accepted-records group when consumers are
+     * hint-routed). Stopped consumers finish the message in hand; their unhandled prefetch is redelivered
+     * to the others, so no message is lost.
+     */
+    @Override
+    public synchronized void setConsumerCount(int consumerQty) {
+        if (connectionFactory == null) {
+            throw new IllegalStateException("Consumers have not been started");
+        }
+        if (consumerQty < 1) {
+            throw new IllegalArgumentException("At least one consumer is required");
+        }
+        requireConsumerPerShard(consumerQty);
+        int current = scalableConsumers.size();
+        if (consumerQty > current) {
+            ExecutorServiceManager.resize(consumerExecutor, consumerExecutor.getMaximumPoolSize() + consumerQty - current);
+            try {
+                for (int i = current; i < consumerQty; i++) {
+                    startConsumer(connectionFactory, destinationName, scalableSelector, i);
+                }
+            } catch (JMSException e) {
+                logger.error("Failed to start additional consumer", e);
+                throw new JMSRuntimeException(e.getMessage());
+            }
+        } else {
+            while (scalableConsumers.size() > consumerQty) {
+                scalableConsumers.removeLast().stop();
+            }
+            ExecutorServiceManager.resize(consumerExecutor, consumerExecutor.getMaximumPoolSize() - current + consumerQty);
+        }
+        logger.info("Consumer count changed from {} to {}", current, consumerQty);
+    }
+
+    /**
+     * Capacity of each heap hand-off queue. Lowering it never drops records: consumers block until
+     * writers have drained the queue below the new bound.
+     */
+    @Override
+    public void setQueueCapacity(int capacity) {
+        if (isOffHeap()) {
+            throw new UnsupportedOperationException("Off-heap hand-off queues have a fixed number of slabs");
+        }
+        validQueue.setCapacity(capacity);
+        invalidQueue.setCapacity(capacity);
+        logger.info("Hand-off queue capacity changed to {}", capacity);
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return isOffHeap() ? 0 : validQueue.getCapacity();
+    }
+
+    /**
+     * One validator for all consumers; validators are thread-safe. With an EDDR cache it comes from
+     * a factory of this manager's own, since the cache is wired into the constraint validators.
+     */
+    private Validator getValidator() {
+        if (validator != null) {
+            return validator;
+        }
+        if (eddrCache == null) {
+            validator = SharedComponents.validatorFactory().getValidator();
+        } else {
+            Configuration<?> configuration = Validation.byDefaultProvider().configure();
+            validatorFactory = configuration
+                    .constraintValidatorFactory(new EddrCacheConstraintValidatorFactory(configuration.getDefaultConstraintValidatorFactory(), eddrCache))
+                    .buildValidatorFactory();
+            validator = validatorFactory.getValidator();
+        }
+        return validator;
+    }
+
+    private synchronized FailFastUserPojoReader getFailFastReader(ObjectMapper objectMapper) {
+        if (failFastReader == null) {
+            failFastReader = new FailFastUserPojoReader(objectMapper, eddrCache, violationReport ? ViolationCatalog.forUserPojo() : null);
+        }
+        return failFastReader;
+    }
+
+    private MessageHandler createMessageHandler(ObjectMapper objectMapper, Validator validator) {
+        MessageHandler messageHandler = isOffHeap()
+                ? new MessageHandler(objectMapper, validator, offHeapValidQueue, offHeapInvalidQueue)
+                : new MessageHandler(objectMapper, validator, validQueue, invalidQueue);
+        messageHandler.setViolationReport(violationReport);
+        if (failFast) {
+            messageHandler.setFailFastReader(getFailFastReader(objectMapper));
+        }
+        messageHandler.setDeduplicator(deduplicator);
+        messageHandler.setLatencyTracker(latencyTracker);
+        messageHandler.setRoutingCounters(routingCounters);
+        return messageHandler;
+    }
+
     public ExecutorService getExecutor() {
         return consumerExecutor;
     }
 
+    /**
+     * Makes consumers started afterwards read the shards of {@code shards} instead of the destination
+     * passed to {@code startConsumers}: consumer {@code i} of a group reads shard {@code i mod N}
+     * and, with work stealing, polls the other shards whenever its own is empty.
+     */
+    public void setShards(ShardedDestination shards, boolean workStealing) {
+        this.shards = shards;
+        this.workStealing = workStealing;
+    }
+
+    public long getStolenMessageCount() {
+        return consumers.stream().mapToLong(Consumer::getStolenMessagesCount).sum();
+    }
+
+    /**
+     * Shares a bounded EDDR result cache between all consumers started afterwards.
+     */
+    public void setEddrCache(EddrValidationCache eddrCache) {
+        this.eddrCache = eddrCache;
+    }
+
+    public EddrValidationCache getEddrCache() {
+        return eddrCache;
+    }
+
+    /**
+     * Makes consumers started afterwards check records while streaming their JSON, see
+     * {@link FailFastUserPojoReader}. Routing is the same as with the validator.
+     */
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    /**
+     * Shares a redelivery deduplicator between all consumers started afterwards.
+     */
+    public void setDeduplicator(RedeliveryDeduplicator deduplicator) {
+        this.deduplicator = deduplicator;
+    }
+
+    public RedeliveryDeduplicator getDeduplicator() {
+        return deduplicator;
+    }
+
+    /**
+     * Makes consumers started afterwards record their stage latencies.
+     */
+    public void setLatencyTracker(LatencyTracker latencyTracker) {
+        this.latencyTracker = latencyTracker;
+    }
+
+    /**
+     * Makes consumers started afterwards acknowledge messages in batches, each only once the writers
+     * synced its records. Needs heap hand-off and writers with a durability mode.
+     */
+    public void setAcknowledgeAfterWrite(int batchSize, long timeoutMillis) {
+        if (isOffHeap()) {
+            throw new UnsupportedOperationException("Off-heap records cannot be acknowledged after write");
+        }
+        if (batchSize <= 0 || timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Acknowledgement batch size and timeout must be positive");
+        }
+        this.ackBatchSize = batchSize;
+        this.ackTimeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Makes consumers started afterwards with acknowledge-after-write keep their count in
+     * {@code acknowledgementLog}, see {@link Consumer#setAcknowledgementLog}.
+     */
+    public void setAcknowledgementLog(AcknowledgementLog acknowledgementLog) {
+        this.acknowledgementLog = acknowledgementLog;
+    }
+
+    /**
+     * Makes consumers started afterwards use {@code acknowledgeMode}, see {@link Consumer#setAcknowledgeMode}.
+     */
+    public void setAcknowledgeMode(int acknowledgeMode) {
+        if (acknowledgeMode != Session.AUTO_ACKNOWLEDGE && acknowledgeMode != Session.DUPS_OK_ACKNOWLEDGE) {
+            throw new IllegalArgumentException("Acknowledge mode must be AUTO_ACKNOWLEDGE or DUPS_OK_ACKNOWLEDGE");
+        }
+        this.acknowledgeMode = acknowledgeMode;
+    }
+
+    /**
+     * Makes consumers started afterwards replace failed connections instead of stopping, see
+     * {@link Consumer#setReconnection}.
+     */
+    public void setReconnection(BrokerConnectionMonitor connectionMonitor, long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Reconnect timeout must be positive");
+        }
+        this.connectionMonitor = connectionMonitor;
+        this.reconnectTimeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Makes consumers started afterwards share {@code streamCoordinator}, e.g. one that also counts
+     * the messages consumed by other processes.
+     */
+    public void setStreamCoordinator(StreamCoordinator streamCoordinator) {
+        if (streamCoordinator == null) {
+            throw new IllegalArgumentException("StreamCoordinator must not be null");
+        }
+        this.streamCoordinator = streamCoordinator;
+    }
+
+    public StreamCoordinator getStreamCoordinator() {
+        return streamCoordinator;
+    }
+
     public void closeConsumers() {
         consumers.forEach(Consumer::close);
+        if (validatorFactory != null) {
+            validatorFactory.close();
+        }
+    }
+
+    public boolean isOffHeap() {
+        return offHeapValidQueue != null;
     }
 
-    public BlockingQueue<UserPojo> getValidQueue() {
+    public BlockingQueue<ValidatedRecord> getValidQueue() {
         return validQueue;
     }
 
-    public BlockingQueue<UserPojo> getInvalidQueue() {
+    public BlockingQueue<ValidatedRecord> getInvalidQueue() {
         return invalidQueue;
     }
 
+    public OffHeapRecordQueue getOffHeapValidQueue() {
+        return offHeapValidQueue;
+    }
+
+    public OffHeapRecordQueue getOffHeapInvalidQueue() {
+        return offHeapInvalidQueue;
+    }
+
     public int getConsumedMessageCount() {
         return consumers.stream().mapToInt(Consumer::getConsumedMessagesCount).sum();
     }
-}
 
+    public int getPreRejectedMessageCount() {
+        return consumers.stream().mapToInt(consumer -> consumer.getMessageHandler().getPreRejectedCount()).sum();
+    }
+
+    @Override
+    public int getConsumerCount() {
+        return (int) consumers.stream().filter(Consumer::isRunning).count();
+    }
+
+    @Override
+    public long getConsumedMessages() {
+        return getConsumedMessageCount();
+    }
+
+    @Override
+    public double getMessagesPerSecond() {
+        return MBeanRegistrar.perSecond(getConsumedMessages(), startedNanos);
+    }
+
+    @Override
+    public long[] getConsumedMessagesPerThread() {
+        return consumers.stream().mapToLong(Consumer::getConsumedMessagesCount).toArray();
+    }
+
+    @Override
+    public double[] getMessagesPerSecondPerThread() {
+        return consumers.stream()
+                .mapToDouble(consumer -> MBeanRegistrar.perSecond(consumer.getConsumedMessagesCount(), startedNanos))
+                .toArray();
+    }
+
+    @Override
+    public long getValidMessages() {
+        return routingCounters.getValidMessages();
+    }
+
+    @Override
+    public long getInvalidMessages() {
+        return routingCounters.getInvalidMessages();
+    }
+
+    @Override
+    public long getDuplicateMessages() {
+        return routingCounters.getDuplicateMessages();
+    }
+
+    @Override
+    public long getProcessingErrors() {
+        return routingCounters.getDeserializationErrors()
+                + consumers.stream().mapToLong(Consumer::getProcessingErrorCount).sum();
+    }
+
+    @Override
+    public int getValidQueueDepth() {
+        return isOffHeap() ? offHeapValidQueue.size() : validQueue.size();
+    }
+
+    @Override
+    public int getInvalidQueueDepth() {
+        return isOffHeap() ? offHeapInvalidQueue.size() : invalidQueue.size();
+    }
+}
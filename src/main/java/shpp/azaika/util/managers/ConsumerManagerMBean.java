@@ -0,0 +1,39 @@
+package shpp.azaika.util.managers;
+
+/**
+ * JMX view of the consumers and their hand-off queues. Rates are averages since the consumers were started;
+ * off-heap queue depths are counted in filled slabs rather than records. Consumer count and the heap
+ * queue capacity are writable while the run is in progress.
+ */
+public interface ConsumerManagerMBean {
+    int getConsumerCount();
+
+    void setConsumerCount(int consumerCount);
+
+    /**
+     * @return capacity of each heap hand-off queue, {@code 0} with the off-heap hand-off
+     */
+    int getQueueCapacity();
+
+    void setQueueCapacity(int capacity);
+
+    long getConsumedMessages();
+
+    double getMessagesPerSecond();
+
+    long[] getConsumedMessagesPerThread();
+
+    double[] getMessagesPerSecondPerThread();
+
+    long getValidMessages();
+
+    long getInvalidMessages();
+
+    long getDuplicateMessages();
+
+    long getProcessingErrors();
+
+    int getValidQueueDepth();
+
+    int getInvalidQueueDepth();
+}
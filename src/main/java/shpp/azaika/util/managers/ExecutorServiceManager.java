@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 public class ExecutorServiceManager {
@@ -23,5 +24,20 @@ public class ExecutorServiceManager {
             Thread.currentThread().interrupt();
         }
     }
-}
 
+    /**
+     * Changes a fixed-size pool to {@code size} threads. Surplus threads exit once their current task returns.
+     */
+    public static void resize(ThreadPoolExecutor executor, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        if (size > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(size);
+            executor.setCorePoolSize(size);
+        } else {
+            executor.setCorePoolSize(size);
+            executor.setMaximumPoolSize(size);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package shpp.azaika.util.managers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registers the managers on the platform MBean server as {@code shpp.azaika:type=<type>}.
+ */
+public final class MBeanRegistrar {
+    private static final Logger logger = LoggerFactory.getLogger(MBeanRegistrar.class);
+    private static final String DOMAIN = "shpp.azaika";
+
+    private MBeanRegistrar() {
+    }
+
+    /**
+     * Registers the bean, replacing one left over from a previous run in the same JVM.
+     *
+     * @return the name to pass to {@link #unregister(ObjectName)}, or {@code null} if registration failed
+     */
+    public static ObjectName register(Object mbean, String type) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(DOMAIN, "type", type);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(mbean, name);
+            return name;
+        } catch (JMException e) {
+            logger.warn("Failed to register MBean {}", type, e);
+            return null;
+        }
+    }
+
+    public static void unregister(ObjectName name) {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            logger.warn("Failed to unregister MBean {}", name, e);
+        }
+    }
+
+    static double perSecond(long count, long startedNanos) {
+        if (startedNanos == 0) {
+            return 0;
+        }
+        long elapsedNanos = Math.max(1, System.nanoTime() - startedNanos);
+        return count * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+}
@@ -1,47 +1,348 @@
 package shpp.azaika.util.managers;
 
 import org.apache.activemq.ActiveMQConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import shpp.azaika.util.FastUserPojoGenerator;
 import shpp.azaika.util.UserPojoGenerator;
+import shpp.azaika.util.mq.BrokerConnectionMonitor;
+import shpp.azaika.util.mq.MessageQuota;
 import shpp.azaika.util.mq.Producer;
+import shpp.azaika.util.mq.ShardedDestination;
 
 import javax.jms.JMSException;
+import javax.jms.JMSRuntimeException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
-public class ProducerManager {
-    private final List<Producer> producers = new ArrayList<>();
-    private final ExecutorService producerExecutor;
-    private final int consumersQty;
-    public ProducerManager(int producerQty, int consumersQty) {
-        producerExecutor = Executors.newFixedThreadPool(producerQty);
-        this.consumersQty = consumersQty;
+public class ProducerManager implements ProducerManagerMBean {
+    private static final Logger logger = LoggerFactory.getLogger(ProducerManager.class);
+    private static final long CANCEL_TIMEOUT_SECONDS = 10;
+    private final List<Producer> producers = new CopyOnWriteArrayList<>();
+    private final List<Producer> activeProducers = new ArrayList<>();
+    private final List<Future<Integer>> producerTasks = new CopyOnWriteArrayList<>();
+    private final ThreadPoolExecutor producerExecutor;
+    private final boolean validationHints;
+    private boolean recordIds;
+    private Long generatorSeed;
+    private int instanceId = ThreadLocalRandom.current().nextInt(1 << Producer.RECORD_ID_INSTANCE_BITS);
+    private String processId = UUID.randomUUID().toString();
+    private boolean latencyStamps;
+    private boolean fastGenerator;
+    private double validRatio = Double.NaN;
+    private boolean persistent;
+    private BrokerConnectionMonitor connectionMonitor;
+    private long reconnectTimeoutMillis;
+    private int replayBufferCapacity;
+    private volatile int batchSize = Producer.DEFAULT_BATCH_SIZE;
+    private volatile long startedNanos;
+    private ActiveMQConnectionFactory connectionFactory;
+    private String destinationName;
+    private MessageQuota quota;
+    private long durationInMillis;
+    private boolean finished;
+    private ShardedDestination shards;
+
+    public ProducerManager(int producerQty) {
+        this(producerQty, false);
+    }
+
+    public ProducerManager(int producerQty, boolean validationHints) {
+        producerExecutor = new ThreadPoolExecutor(producerQty, producerQty, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        this.validationHints = validationHints;
     }
 
-    public void startProducers(ActiveMQConnectionFactory connectionFactory, String destinationName, int producerQty, int messagesToSend, long durationInMillis) throws JMSException {
-        int messagesPerThread = messagesToSend / producerQty;
-        int pendingMessages = messagesToSend % producerQty;
+    /**
+     * Starts producers that share one quota of {@code messagesToSend}, so {@link #setProducerCount(int)}
+     * can add or stop producers later without changing the total.
+     */
+    public synchronized void startProducers(ActiveMQConnectionFactory connectionFactory, String destinationName, int producerQty, int messagesToSend, long durationInMillis) throws JMSException {
+        this.connectionFactory = connectionFactory;
+        this.destinationName = destinationName;
+        this.quota = new MessageQuota(messagesToSend);
+        this.durationInMillis = durationInMillis;
+        startedNanos = System.nanoTime();
 
         for (int i = 0; i < producerQty; i++) {
-            int messagesForThisThread = (i == producerQty - 1) ? messagesPerThread + pendingMessages : messagesPerThread;
-            Producer producer = new Producer(connectionFactory, new UserPojoGenerator(), messagesForThisThread, durationInMillis);
-            producers.add(producer);
-            producer.connect(destinationName);
-            producerExecutor.submit(producer);
+            startProducer();
+        }
+    }
+
+    private void startProducer() throws JMSException {
+        Producer producer = new Producer(connectionFactory, createGenerator(producers.size()), quota, durationInMillis, validationHints);
+        if (recordIds) {
+            producer.setRecordIds(instanceId, producers.size());
+        }
+        producer.setLatencyStamps(latencyStamps);
+        producer.setBatchSize(batchSize);
+        producer.setPersistent(persistent);
+        if (connectionMonitor != null) {
+            producer.setReconnection(connectionMonitor, reconnectTimeoutMillis, replayBufferCapacity);
+        }
+        producer.connect(shards != null ? shards : ShardedDestination.single(destinationName));
+        producers.add(producer);
+        activeProducers.add(producer);
+        producerTasks.add(producerExecutor.submit(producer));
+    }
+
+    /**
+     * Grows or shrinks the running producers. Stopped producers finish their current batch and
+     * leave the rest of the quota to the others; the first producer is never stopped because it
+     * sends the end of stream.
+     */
+    @Override
+    public synchronized void setProducerCount(int producerQty) {
+        if (quota == null) {
+            throw new IllegalStateException("Producers have not been started");
+        }
+        if (producerQty < 1) {
+            throw new IllegalArgumentException("At least one producer is required");
+        }
+        int current = activeProducers.size();
+        if (producerQty > current && finished) {
+            throw new IllegalStateException("Producers have finished, none can be added");
+        }
+        if (producerQty > current) {
+            ExecutorServiceManager.resize(producerExecutor, producerExecutor.getMaximumPoolSize() + producerQty - current);
+            try {
+                for (int i = current; i < producerQty; i++) {
+                    startProducer();
+                }
+            } catch (JMSException e) {
+                logger.error("Failed to start additional producer", e);
+                throw new JMSRuntimeException(e.getMessage());
+            }
+        } else {
+            while (activeProducers.size() > producerQty) {
+                activeProducers.removeLast().stop();
+            }
+            ExecutorServiceManager.resize(producerExecutor, producerQty);
+        }
+        logger.info("Producer count changed from {} to {}", current, producerQty);
+    }
+
+    @Override
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.batchSize = batchSize;
+        producers.forEach(producer -> producer.setBatchSize(batchSize));
+        logger.info("Producer batch size changed to {}", batchSize);
+    }
+
+    @Override
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    private UserPojoGenerator createGenerator(int producerIndex) {
+        if (fastGenerator) {
+            return generatorSeed == null ? new FastUserPojoGenerator(validRatio) : new FastUserPojoGenerator(validRatio, generatorSeed + producerIndex);
         }
+        return generatorSeed == null ? new UserPojoGenerator() : new UserPojoGenerator(generatorSeed + producerIndex);
+    }
+
+    /**
+     * Makes producers started afterwards generate reproducible records, producer {@code i} from seed {@code seed + i}.
+     */
+    public void setGeneratorSeed(long generatorSeed) {
+        this.generatorSeed = generatorSeed;
+    }
+
+    /**
+     * Makes producers started afterwards spread messages over {@code shards} instead of the
+     * destination passed to {@link #startProducers}.
+     */
+    public void setShards(ShardedDestination shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Makes producers started afterwards tag messages with record ids for redelivery deduplication.
+     */
+    public void setRecordIds(boolean recordIds) {
+        this.recordIds = recordIds;
+    }
+
+    /**
+     * Replaces the random producer instance id that keeps record ids of this manager apart from
+     * those of other processes and runs; a configured id must not be reused while their messages
+     * can still reach the same consumers.
+     */
+    public void setInstanceId(int instanceId) {
+        if (instanceId < 0 || instanceId >= 1 << Producer.RECORD_ID_INSTANCE_BITS) {
+            throw new IllegalArgumentException("Producer instance id must be between 0 and " + ((1 << Producer.RECORD_ID_INSTANCE_BITS) - 1));
+        }
+        this.instanceId = instanceId;
+    }
+
+    public int getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Replaces the random id the end of stream of this process is sent under. Consumers expecting
+     * several producer processes wait for one end of stream per id, so ids must be distinct.
+     */
+    public void setProcessId(String processId) {
+        if (processId == null || processId.isEmpty()) {
+            throw new IllegalArgumentException("Process id must not be null or empty");
+        }
+        this.processId = processId;
+    }
+
+    public String getProcessId() {
+        return processId;
+    }
+
+    /**
+     * Makes producers started afterwards stamp messages with their send time for latency tracking.
+     */
+    public void setLatencyStamps(boolean latencyStamps) {
+        this.latencyStamps = latencyStamps;
+    }
+
+    /**
+     * Waits until every producer, including ones {@link #setProducerCount(int)} adds meanwhile, has
+     * returned. The pool stays open until then, so it can still grow; afterwards the count is fixed.
+     *
+     * @return {@code false} if the producers were still running when the timeout elapsed
+     */
+    public boolean awaitProducers(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int awaited = 0;
+        while (true) {
+            synchronized (this) {
+                if (awaited == producerTasks.size()) {
+                    finished = true;
+                    return true;
+                }
+            }
+            try {
+                producerTasks.get(awaited).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                return false;
+            } catch (ExecutionException e) {
+                logger.error("Producer failed", e.getCause());
+            }
+            awaited++;
+        }
+    }
+
+    /**
+     * Makes producers started afterwards use {@link FastUserPojoGenerator}, each with its own.
+     *
+     * @param validRatio share of records that pass validation, or {@code NaN} for the distribution
+     *                   of {@link UserPojoGenerator}
+     */
+    public void setFastGenerator(boolean fastGenerator, double validRatio) {
+        if (validRatio < 0 || validRatio > 1) {
+            throw new IllegalArgumentException("Valid ratio must be within [0, 1]");
+        }
+        this.fastGenerator = fastGenerator;
+        this.validRatio = validRatio;
+    }
+
+    /**
+     * Makes producers started afterwards send messages with persistent delivery.
+     */
+    public void setPersistent(boolean persistent) {
+        this.persistent = persistent;
+    }
+
+    /**
+     * Makes producers started afterwards replace failed connections and replay up to
+     * {@code replayBufferCapacity} messages the broker has not confirmed, see {@link Producer#setReconnection}.
+     */
+    public void setReconnection(BrokerConnectionMonitor connectionMonitor, long timeoutMillis, int replayBufferCapacity) {
+        if (timeoutMillis <= 0 || replayBufferCapacity < 0) {
+            throw new IllegalArgumentException("Reconnect timeout must be positive and replay buffer capacity non-negative");
+        }
+        this.connectionMonitor = connectionMonitor;
+        this.reconnectTimeoutMillis = timeoutMillis;
+        this.replayBufferCapacity = replayBufferCapacity;
     }
 
     public ExecutorService getExecutor() {
         return producerExecutor;
     }
 
+    /**
+     * Sends the end of stream and closes the producers. Producers still running are cancelled and
+     * joined first, and the broker must confirm their buffered messages, so the count it carries is
+     * final; if they do not stop, no end of stream is sent and consumers stop at their drain timeout.
+     */
     public void closeProducers() {
-        producers.getFirst().sendPoisonPill(consumersQty);
+        producerExecutor.shutdownNow();
+        try {
+            if (producerExecutor.awaitTermination(CANCEL_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                producers.forEach(Producer::awaitConfirmed);
+                producers.getFirst().sendEndOfStream(processId, getProducedMessageCount());
+                producers.getFirst().awaitConfirmed();
+            } else {
+                logger.error("Producers did not stop after being cancelled, end of stream not sent.");
+            }
+        } catch (InterruptedException e) {
+            logger.error("Waiting for cancelled producers was interrupted, end of stream not sent.", e);
+            Thread.currentThread().interrupt();
+        }
         producers.forEach(Producer::close);
     }
 
     public int getProducedMessageCount() {
         return producers.stream().mapToInt(Producer::getProducedMessageCount).sum();
     }
+
+    @Override
+    public synchronized int getProducerCount() {
+        return activeProducers.size();
+    }
+
+    @Override
+    public long getGeneratedMessages() {
+        return producers.stream().mapToLong(Producer::getGeneratedMessageCount).sum();
+    }
+
+    @Override
+    public long getProducedMessages() {
+        return getProducedMessageCount();
+    }
+
+    @Override
+    public double getMessagesPerSecond() {
+        return MBeanRegistrar.perSecond(getProducedMessages(), startedNanos);
+    }
+
+    @Override
+    public long[] getProducedMessagesPerThread() {
+        return producers.stream().mapToLong(Producer::getProducedMessageCount).toArray();
+    }
+
+    @Override
+    public double[] getMessagesPerSecondPerThread() {
+        return producers.stream()
+                .mapToDouble(producer -> MBeanRegistrar.perSecond(producer.getProducedMessageCount(), startedNanos))
+                .toArray();
+    }
+
+    @Override
+    public long getSendErrors() {
+        return producers.stream().mapToLong(Producer::getSendErrorCount).sum();
+    }
+
+    @Override
+    public long getReplayedMessages() {
+        return producers.stream().mapToLong(Producer::getReplayedMessageCount).sum();
+    }
 }
@@ -0,0 +1,32 @@
+package shpp.azaika.util.managers;
+
+/**
+ * JMX view of the producers. Rates are averages since the producers were started.
+ * Producer count and batch size are writable while the run is in progress.
+ */
+public interface ProducerManagerMBean {
+    int getProducerCount();
+
+    void setProducerCount(int producerCount);
+
+    int getBatchSize();
+
+    void setBatchSize(int batchSize);
+
+    long getGeneratedMessages();
+
+    long getProducedMessages();
+
+    double getMessagesPerSecond();
+
+    long[] getProducedMessagesPerThread();
+
+    double[] getMessagesPerSecondPerThread();
+
+    long getSendErrors();
+
+    /**
+     * @return messages sent again after a reconnect because the broker had not confirmed them
+     */
+    long getReplayedMessages();
+}
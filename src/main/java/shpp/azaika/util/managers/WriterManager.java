@@ -2,42 +2,522 @@ package shpp.azaika.util.managers;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import shpp.azaika.pojo.UserPojo;
-import shpp.azaika.util.CsvWriter;
+import shpp.azaika.pojo.ValidatedRecord;
+import shpp.azaika.util.AckWindow;
+import shpp.azaika.util.jfr.WriterFlushEvent;
+import shpp.azaika.util.latency.LatencyHistogram;
+import shpp.azaika.util.latency.LatencyRecorder;
+import shpp.azaika.util.latency.LatencyTracker;
+import shpp.azaika.util.mq.AcknowledgementLog;
+import shpp.azaika.util.offheap.OffHeapRecordQueue;
+import shpp.azaika.util.sink.ColumnarRecordSink;
+import shpp.azaika.util.sink.DurabilityMode;
+import shpp.azaika.util.sink.DurabilityPolicy;
+import shpp.azaika.util.sink.FanOutSink;
+import shpp.azaika.util.sink.JdbcRecordSink;
+import shpp.azaika.util.sink.JdbcSinkSettings;
+import shpp.azaika.util.sink.OverflowPolicy;
+import shpp.azaika.util.sink.RecordFormat;
+import shpp.azaika.util.sink.RecordSink;
+import shpp.azaika.util.sink.WriterCheckpoint;
+import shpp.azaika.validation.ViolationCatalog;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
-public class WriterManager {
+public class WriterManager implements WriterManagerMBean {
     private static final Logger logger = LoggerFactory.getLogger(WriterManager.class);
+    public static final String VALID_BASE_NAME = "valid_users";
+    public static final String INVALID_BASE_NAME = "invalid_users";
+    public static final String VALID_FILE_NAME = RecordFormat.CSV.fileName(VALID_BASE_NAME);
+    public static final String INVALID_FILE_NAME = RecordFormat.CSV.fileName(INVALID_BASE_NAME);
+    public static final int DEFAULT_BATCH_SIZE = 512;
+    public static final int DEFAULT_SINK_BUFFER_BATCHES = 64;
+    /**
+     * One writer per output file; more threads could not write the same file without interleaving rows.
+     */
+    private static final int WRITER_THREADS = 2;
     private final ExecutorService writerExecutor;
+    private final boolean violationReport;
+    private final Path outputDirectory;
+    private String outputShard;
+    private List<RecordFormat> formats = List.of(RecordFormat.CSV);
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int sinkBufferBatches = DEFAULT_SINK_BUFFER_BATCHES;
+    private int rowGroupSize = ColumnarRecordSink.DEFAULT_ROW_GROUP_SIZE;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+    private final List<FanOutSink> fanOuts = new CopyOnWriteArrayList<>();
+    private JdbcSinkSettings jdbcSettings;
+    private DurabilityPolicy durability = DurabilityPolicy.NONE;
+    private boolean checkpointing;
+    private LatencyTracker latencyTracker;
+    private final LatencyRecorder syncLatency = new LatencyRecorder("sync");
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder recordsSynced = new LongAdder();
+    private final LongAdder validRecordsWritten = new LongAdder();
+    private final LongAdder invalidRecordsWritten = new LongAdder();
+    private final LongAdder bytesFlushed = new LongAdder();
+    private final LongAdder writeErrors = new LongAdder();
+    private volatile long startedNanos;
 
     public WriterManager() {
-        writerExecutor = Executors.newFixedThreadPool(2);
+        this(true);
     }
 
-    public void startWriters(BlockingQueue<UserPojo> validQueue, BlockingQueue<UserPojo> invalidQueue) {
-        writerExecutor.submit(() -> writeUsersToCsv(validQueue, "valid_users.csv"));
-        writerExecutor.submit(() -> writeUsersToCsv(invalidQueue, "invalid_users.csv"));
+    /**
+     * @param violationReport whether {@code invalid_users.csv} gets the errors column
+     */
+    public WriterManager(boolean violationReport) {
+        this(violationReport, Path.of("."));
     }
 
-    private void writeUsersToCsv(BlockingQueue<UserPojo> queue, String fileName) {
-        try (CsvWriter writer = new CsvWriter(fileName)) {
+    public WriterManager(boolean violationReport, Path outputDirectory) {
+        writerExecutor = Executors.newFixedThreadPool(WRITER_THREADS);
+        this.violationReport = violationReport;
+        this.outputDirectory = outputDirectory;
+    }
+
+    public void startWriters(BlockingQueue<ValidatedRecord> validQueue, BlockingQueue<ValidatedRecord> invalidQueue) {
+        if (checkpointing && durability.mode() == DurabilityMode.NONE) {
+            throw new IllegalStateException("Checkpoints need a durability mode other than none");
+        }
+        ViolationCatalog invalidCatalog = violationReport ? ViolationCatalog.forUserPojo() : null;
+        startedNanos = System.nanoTime();
+        writerExecutor.submit(() -> writeRecords(validQueue, VALID_BASE_NAME, null, validRecordsWritten));
+        writerExecutor.submit(() -> writeRecords(invalidQueue, INVALID_BASE_NAME, invalidCatalog, invalidRecordsWritten));
+    }
+
+    public void startOffHeapWriters(OffHeapRecordQueue validQueue, OffHeapRecordQueue invalidQueue) {
+        if (checkpointing) {
+            throw new IllegalStateException("Off-heap writers do not keep checkpoints");
+        }
+        startedNanos = System.nanoTime();
+        writerExecutor.submit(() -> writeSlabsToFile(validQueue, outputFile(VALID_FILE_NAME), validRecordsWritten));
+        writerExecutor.submit(() -> writeSlabsToFile(invalidQueue, outputFile(INVALID_FILE_NAME), invalidRecordsWritten));
+    }
+
+    /**
+     * Makes heap writers started afterwards write every format in {@code formats}, e.g. CSV and
+     * JSON Lines side by side. Off-heap writers receive encoded CSV rows and always write CSV.
+     */
+    public void setFormats(List<RecordFormat> formats) {
+        if (formats == null) {
+            throw new IllegalArgumentException("Record formats must not be null");
+        }
+        this.formats = List.copyOf(formats);
+    }
+
+    /**
+     * Makes heap writers started afterwards also insert their records into the tables
+     * {@code valid_users} and {@code invalid_users}; {@code null} turns it off.
+     */
+    public void setJdbcSink(JdbcSinkSettings jdbcSettings) {
+        this.jdbcSettings = jdbcSettings;
+    }
+
+    /**
+     * When writers started afterwards force their output to stable storage.
+     */
+    public void setDurability(DurabilityPolicy durability) {
+        if (durability == null) {
+            throw new IllegalArgumentException("DurabilityPolicy must not be null");
+        }
+        this.durability = durability;
+    }
+
+    /**
+     * Makes heap writers started afterwards keep a checkpoint next to their files, e.g.
+     * {@code valid_users.checkpoint}, advanced on every sync, and truncate their files to it on start.
+     */
+    public void setCheckpointing(boolean checkpointing) {
+        if (checkpointing && overflowPolicy != OverflowPolicy.BLOCK) {
+            throw new IllegalStateException("Checkpoints need the block overflow policy, " + overflowPolicy + " drops records");
+        }
+        this.checkpointing = checkpointing;
+    }
+
+    /**
+     * Deletes the checkpoints once the whole stream is written and acknowledged, so the next run
+     * starts a new stream instead of resuming this one. The consumers' {@link AcknowledgementLog} goes too.
+     */
+    public void deleteCheckpoints() throws IOException {
+        for (String baseName : List.of(VALID_BASE_NAME, INVALID_BASE_NAME)) {
+            Files.deleteIfExists(Path.of(outputFile(baseName + WriterCheckpoint.FILE_EXTENSION)));
+        }
+        Files.deleteIfExists(Path.of(outputFile(AcknowledgementLog.FILE_NAME)));
+    }
+
+    /**
+     * Maximum number of records a heap writer hands to its sinks at once.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Records per row group of columnar output.
+     */
+    public void setRowGroupSize(int rowGroupSize) {
+        if (rowGroupSize <= 0) {
+            throw new IllegalArgumentException("Row group size must be positive");
+        }
+        this.rowGroupSize = rowGroupSize;
+    }
+
+    /**
+     * Buffer of each sink behind a fan-out, in batches, and what happens when it is full.
+     */
+    public void setFanOut(int sinkBufferBatches, OverflowPolicy overflowPolicy) {
+        if (sinkBufferBatches <= 0) {
+            throw new IllegalArgumentException("Sink buffer must be positive");
+        }
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("OverflowPolicy must not be null");
+        }
+        if (checkpointing && overflowPolicy != OverflowPolicy.BLOCK) {
+            throw new IllegalStateException("Checkpoints need the block overflow policy, " + overflowPolicy + " drops records");
+        }
+        this.sinkBufferBatches = sinkBufferBatches;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Makes writers started afterwards write {@code valid_users-<shard>.csv} and
+     * {@code invalid_users-<shard>.csv}, so processes sharing a directory do not overwrite each other.
+     */
+    public void setOutputShard(String outputShard) {
+        this.outputShard = outputShard;
+    }
+
+    public String getOutputShard() {
+        return outputShard;
+    }
+
+    /**
+     * @return {@code fileName} with {@code -<shard>} inserted before its extension, or unchanged without a shard
+     */
+    public static String shardFileName(String fileName, String shard) {
+        if (shard == null || shard.isEmpty()) {
+            return fileName;
+        }
+        int extension = fileName.lastIndexOf('.');
+        return extension < 0 ? fileName + "-" + shard
+                : fileName.substring(0, extension) + "-" + shard + fileName.substring(extension);
+    }
+
+    private String outputFile(String fileName) {
+        return outputDirectory.resolve(shardFileName(fileName, outputShard)).toString();
+    }
+
+    private void writeRecords(BlockingQueue<ValidatedRecord> queue, String baseName, ViolationCatalog violationCatalog, LongAdder recordsWritten) {
+        List<ValidatedRecord> batch = new ArrayList<>(batchSize);
+        List<Path> files = formats.stream().map(format -> Path.of(outputFile(format.fileName(baseName)))).toList();
+        Path checkpointFile = Path.of(outputFile(baseName + WriterCheckpoint.FILE_EXTENSION));
+        try {
+            PendingSync pending = new PendingSync(checkpointing ? WriterCheckpoint.recover(checkpointFile, files) : null);
+            try (RecordSink sink = openSink(baseName, files, violationCatalog)) {
+                boolean unflushed = false;
+                while (true) {
+                    ValidatedRecord first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        if (writerExecutor.isShutdown()) break;
+                        if (durability.shouldSync(pending.records, System.nanoTime() - pending.lastSyncNanos, true)) {
+                            sync(sink, pending, checkpointFile, files);
+                            unflushed = false;
+                        } else if (unflushed) {
+                            sink.flush();
+                            unflushed = false;
+                        }
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    sink.write(batch);
+                    recordsWritten.add(batch.size());
+                    if (latencyTracker != null) {
+                        long nowNanos = System.nanoTime();
+                        for (ValidatedRecord record : batch) {
+                            if (record.validatedNanos() != 0) {
+                                latencyTracker.getValidatedToWritten().record(nowNanos - record.validatedNanos());
+                            }
+                        }
+                    }
+                    pending.written(batch);
+                    batch.clear();
+                    unflushed = true;
+                    if (durability.shouldSync(pending.records, System.nanoTime() - pending.lastSyncNanos, queue.isEmpty())) {
+                        sync(sink, pending, checkpointFile, files);
+                        unflushed = false;
+                    }
+                }
+                if (durability.shouldSync(pending.records, Long.MAX_VALUE, true)) {
+                    sync(sink, pending, checkpointFile, files);
+                }
+            }
+        } catch (IOException e) {
+            writeErrors.increment();
+            logger.error("Error writing {} records", baseName, e);
+        } catch (InterruptedException e) {
+            logger.error("Writer for {} was interrupted", baseName, e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Syncs the sink, then advances the checkpoint, then releases the consumers waiting to
+     * acknowledge the synced records; a crash in between leaves rows the checkpoint still covers.
+     */
+    private void sync(RecordSink sink, PendingSync pending, Path checkpointFile, List<Path> files) throws IOException {
+        long started = System.nanoTime();
+        sink.sync();
+        if (pending.checkpoint != null) {
+            pending.checkpoint = pending.checkpoint.advance(pending.records, pending.lastMessageId, files);
+            pending.checkpoint.store(checkpointFile);
+        }
+        pending.lastSyncNanos = recordSync(started, pending.records);
+        pending.ackWindows.forEach(AckWindow::recordsDurable);
+        pending.ackWindows.clear();
+        pending.records = 0;
+        pending.lastMessageId = null;
+    }
+
+    /**
+     * What one heap writer wrote since its last sync.
+     */
+    private static final class PendingSync {
+        private final Map<AckWindow, Integer> ackWindows = new HashMap<>();
+        private WriterCheckpoint checkpoint;
+        private long records;
+        private String lastMessageId;
+        private long lastSyncNanos = System.nanoTime();
+
+        private PendingSync(WriterCheckpoint checkpoint) {
+            this.checkpoint = checkpoint;
+        }
+
+        private void written(List<ValidatedRecord> batch) {
+            records += batch.size();
+            for (ValidatedRecord record : batch) {
+                if (record.ackWindow() != null) {
+                    ackWindows.merge(record.ackWindow(), 1, Integer::sum);
+                    lastMessageId = record.messageId();
+                }
+            }
+        }
+    }
+
+    private long forceChannel(FileChannel channel, long records) throws IOException {
+        long started = System.nanoTime();
+        channel.force(false);
+        return recordSync(started, records);
+    }
+
+    private long recordSync(long startedNanos, long records) {
+        long finished = System.nanoTime();
+        syncLatency.record(finished - startedNanos);
+        syncs.increment();
+        recordsSynced.add(records);
+        return finished;
+    }
+
+    /**
+     * Opens one sink per configured format plus the JDBC sink; several sinks are fed through a {@link FanOutSink}.
+     */
+    private RecordSink openSink(String baseName, List<Path> files, ViolationCatalog violationCatalog) throws IOException {
+        List<RecordSink> sinks = new ArrayList<>();
+        try {
+            for (int i = 0; i < formats.size(); i++) {
+                sinks.add(formats.get(i).open(files.get(i), violationCatalog, bytesFlushed, rowGroupSize));
+            }
+            if (jdbcSettings != null) {
+                sinks.add(new JdbcRecordSink(baseName, violationCatalog, jdbcSettings));
+            }
+        } catch (IOException e) {
+            for (RecordSink sink : sinks) {
+                sink.close();
+            }
+            throw e;
+        }
+        if (sinks.isEmpty()) {
+            throw new IllegalStateException("No record format or JDBC sink configured");
+        }
+        if (sinks.size() == 1) {
+            return sinks.getFirst();
+        }
+        FanOutSink fanOut = new FanOutSink(sinks, sinkBufferBatches, overflowPolicy, checkpointing);
+        fanOuts.add(fanOut);
+        return fanOut;
+    }
+
+    private void writeSlabsToFile(OffHeapRecordQueue queue, String fileName, LongAdder recordsWritten) {
+        try (FileChannel channel = FileChannel.open(Path.of(fileName),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            logger.info("Off-heap writer initialized for file: {}", fileName);
+            long unsynced = 0;
+            long lastSyncNanos = System.nanoTime();
             while (true) {
-                UserPojo userPojo = queue.poll();
-                if (userPojo == null && writerExecutor.isShutdown()) break;
-                if (userPojo != null){
-                    writer.write(userPojo);
+                ByteBuffer slab = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (slab == null && writerExecutor.isShutdown()) break;
+                if (slab != null) {
+                    int rows = countRows(slab);
+                    recordsWritten.add(rows);
+                    unsynced += rows;
+                    WriterFlushEvent flushEvent = new WriterFlushEvent();
+                    flushEvent.begin();
+                    int slabBytes = slab.remaining();
+                    while (slab.hasRemaining()) {
+                        bytesFlushed.add(channel.write(slab));
+                    }
+                    if (flushEvent.shouldCommit()) {
+                        flushEvent.file = fileName;
+                        flushEvent.bytes = slabBytes;
+                        flushEvent.commit();
+                    }
+                    queue.release(slab);
+                }
+                if (durability.shouldSync(unsynced, System.nanoTime() - lastSyncNanos, slab == null)) {
+                    lastSyncNanos = forceChannel(channel, unsynced);
+                    unsynced = 0;
                 }
             }
+            if (durability.shouldSync(unsynced, Long.MAX_VALUE, true)) {
+                forceChannel(channel, unsynced);
+            }
         } catch (IOException e) {
+            writeErrors.increment();
             logger.error("Error writing to file: {}", fileName, e);
+        } catch (InterruptedException e) {
+            logger.error("Off-heap writer for {} was interrupted", fileName, e);
+            Thread.currentThread().interrupt();
         }
     }
 
+    private static int countRows(ByteBuffer slab) {
+        int rows = 0;
+        for (int i = slab.position(); i < slab.limit(); i++) {
+            if (slab.get(i) == '\n') {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Makes heap writers started afterwards record validated→written latency. Off-heap writers
+     * only see encoded bytes, so that stage is not tracked for them.
+     */
+    public void setLatencyTracker(LatencyTracker latencyTracker) {
+        this.latencyTracker = latencyTracker;
+    }
+
+    public ExecutorService getExecutor() {
+        return writerExecutor;
+    }
+
     public void shutdownWriterExecutor() {
         writerExecutor.shutdown();
     }
-}
\ No newline at end of file
+
+    @Override
+    public long getValidRecordsWritten() {
+        return validRecordsWritten.sum();
+    }
+
+    @Override
+    public long getInvalidRecordsWritten() {
+        return invalidRecordsWritten.sum();
+    }
+
+    @Override
+    public double getRecordsPerSecond() {
+        return MBeanRegistrar.perSecond(getValidRecordsWritten() + getInvalidRecordsWritten(), startedNanos);
+    }
+
+    @Override
+    public long getBytesFlushed() {
+        return bytesFlushed.sum();
+    }
+
+    @Override
+    public long getWriteErrors() {
+        return writeErrors.sum();
+    }
+
+    @Override
+    public long getSyncCount() {
+        return syncs.sum();
+    }
+
+    @Override
+    public long getRecordsSynced() {
+        return recordsSynced.sum();
+    }
+
+    @Override
+    public double getRecordsPerSync() {
+        long count = getSyncCount();
+        return count == 0 ? 0 : getRecordsSynced() / (double) count;
+    }
+
+    @Override
+    public double getSyncLatencyP99Micros() {
+        return syncLatency.snapshot().getValueAtPercentile(99) / 1000.0;
+    }
+
+    @Override
+    public double getSyncLatencyMaxMicros() {
+        return syncLatency.snapshot().getMax() / 1000.0;
+    }
+
+    /**
+     * @return latency of every sync so far, from every writer
+     */
+    public LatencyHistogram getSyncLatency() {
+        return syncLatency.snapshot();
+    }
+
+    public DurabilityPolicy getDurability() {
+        return durability;
+    }
+
+    public List<FanOutSink.SinkStats> getSinkStats() {
+        return fanOuts.stream().flatMap(fanOut -> fanOut.getStats().stream()).toList();
+    }
+
+    @Override
+    public String[] getSinkNames() {
+        return getSinkStats().stream().map(FanOutSink.SinkStats::name).toArray(String[]::new);
+    }
+
+    @Override
+    public long[] getSinkRecordsWritten() {
+        return getSinkStats().stream().mapToLong(FanOutSink.SinkStats::writtenRecords).toArray();
+    }
+
+    @Override
+    public long[] getSinkDroppedRecords() {
+        return getSinkStats().stream().mapToLong(FanOutSink.SinkStats::droppedRecords).toArray();
+    }
+
+    @Override
+    public long[] getSinkLag() {
+        return getSinkStats().stream().mapToLong(FanOutSink.SinkStats::lag).toArray();
+    }
+}
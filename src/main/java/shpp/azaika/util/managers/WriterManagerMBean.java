@@ -0,0 +1,36 @@
+package shpp.azaika.util.managers;
+
+/**
+ * JMX view of the writers. Each output file has its own writer thread. The sink arrays list the
+ * sinks behind fan-outs, in the same order, and are empty when only one format is written.
+ * The sync attributes stay 0 unless a durability mode other than {@code none} is configured.
+ */
+public interface WriterManagerMBean {
+    long getValidRecordsWritten();
+
+    long getInvalidRecordsWritten();
+
+    double getRecordsPerSecond();
+
+    long getBytesFlushed();
+
+    long getWriteErrors();
+
+    long getSyncCount();
+
+    long getRecordsSynced();
+
+    double getRecordsPerSync();
+
+    double getSyncLatencyP99Micros();
+
+    double getSyncLatencyMaxMicros();
+
+    String[] getSinkNames();
+
+    long[] getSinkRecordsWritten();
+
+    long[] getSinkDroppedRecords();
+
+    long[] getSinkLag();
+}
@@ -0,0 +1,60 @@
+package shpp.azaika.util.metrics;
+
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * One combination of settings of a {@link BenchmarkMatrix}.
+ *
+ * @param persistent persistent delivery to a KahaDB broker instead of non-persistent delivery to an
+ *                   in-memory one
+ * @param ackMode    {@code auto}, {@code dups_ok} or {@code after_write}, which acknowledges once the
+ *                   writers synced the records ({@code writer.checkpoint})
+ * @param prefetch   queue prefetch of every consumer
+ */
+public record BenchmarkCell(int producerThreads, int consumerThreads, boolean persistent, String ackMode,
+                            int prefetch, int messageCount) {
+    public static final List<String> ACK_MODES = List.of("auto", "dups_ok", "after_write");
+
+    public BenchmarkCell {
+        if (producerThreads < 1 || consumerThreads < 1) {
+            throw new IllegalArgumentException("At least one producer and one consumer are required");
+        }
+        if (!ACK_MODES.contains(ackMode)) {
+            throw new IllegalArgumentException("Unknown ack mode " + ackMode + ", expected one of " + ACK_MODES);
+        }
+        if (prefetch < 0 || messageCount < 1) {
+            throw new IllegalArgumentException("Prefetch must be non-negative and message count positive");
+        }
+    }
+
+    /**
+     * @return {@code base} with this cell's settings applied
+     */
+    public Properties toProperties(Properties base) {
+        Properties properties = new Properties();
+        properties.putAll(base);
+        properties.setProperty("threads_producer", String.valueOf(producerThreads));
+        properties.setProperty("threads_consumer", String.valueOf(consumerThreads));
+        properties.setProperty("broker.persistent", String.valueOf(persistent));
+        properties.setProperty("producer.persistent", String.valueOf(persistent));
+        properties.setProperty("consumer.prefetch", String.valueOf(prefetch));
+        if (ackMode.equals("after_write")) {
+            properties.setProperty("writer.checkpoint", "true");
+            properties.setProperty("consumer.ack_mode", "auto");
+        } else {
+            properties.setProperty("writer.checkpoint", "false");
+            properties.setProperty("consumer.ack_mode", ackMode);
+        }
+        return properties;
+    }
+
+    public String getDelivery() {
+        return persistent ? "persistent" : "non_persistent";
+    }
+
+    public String label() {
+        return "producers " + producerThreads + ", consumers " + consumerThreads + ", " + getDelivery()
+                + ", ack " + ackMode + ", prefetch " + prefetch + ", messages " + messageCount;
+    }
+}
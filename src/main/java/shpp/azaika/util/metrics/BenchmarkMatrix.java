@@ -0,0 +1,86 @@
+package shpp.azaika.util.metrics;
+
+import shpp.azaika.util.PropertyManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Settings to sweep, read from {@code matrix.*} properties holding comma-separated values. Every
+ * combination of the values is one {@link BenchmarkCell}; each cell gets a discarded warm-up run
+ * and then {@code trials} measured ones.
+ */
+public final class BenchmarkMatrix {
+    private final List<BenchmarkCell> cells;
+    private final int trials;
+    private final int warmUpMessages;
+
+    public BenchmarkMatrix(List<BenchmarkCell> cells, int trials, int warmUpMessages) {
+        if (cells == null || cells.isEmpty()) {
+            throw new IllegalArgumentException("The matrix needs at least one cell");
+        }
+        if (trials < 1 || warmUpMessages < 0) {
+            throw new IllegalArgumentException("Trials must be positive and warm-up messages non-negative");
+        }
+        this.cells = List.copyOf(cells);
+        this.trials = trials;
+        this.warmUpMessages = warmUpMessages;
+    }
+
+    public static BenchmarkMatrix fromProperties(PropertyManager properties) {
+        List<Integer> producerThreads = integers(properties.getProperty("matrix.producer_threads", "1,4"));
+        List<Integer> consumerThreads = integers(properties.getProperty("matrix.consumer_threads", "1,4"));
+        List<String> deliveries = values(properties.getProperty("matrix.delivery", "non_persistent,persistent"));
+        List<String> ackModes = values(properties.getProperty("matrix.ack_mode", "auto,dups_ok"));
+        List<Integer> prefetches = integers(properties.getProperty("matrix.prefetch", "1000"));
+        List<Integer> messageCounts = integers(properties.getProperty("matrix.messages", "100000"));
+
+        List<BenchmarkCell> cells = new ArrayList<>();
+        for (int messageCount : messageCounts) {
+            for (String delivery : deliveries) {
+                for (String ackMode : ackModes) {
+                    for (int prefetch : prefetches) {
+                        for (int producers : producerThreads) {
+                            for (int consumers : consumerThreads) {
+                                cells.add(new BenchmarkCell(producers, consumers, parsePersistent(delivery), ackMode, prefetch, messageCount));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return new BenchmarkMatrix(cells,
+                Integer.parseInt(properties.getProperty("matrix.trials", "3")),
+                Integer.parseInt(properties.getProperty("matrix.warmup_messages", "20000")));
+    }
+
+    private static boolean parsePersistent(String delivery) {
+        return switch (delivery) {
+            case "persistent" -> true;
+            case "non_persistent" -> false;
+            default -> throw new IllegalArgumentException("Unknown delivery " + delivery + ", expected persistent or non_persistent");
+        };
+    }
+
+    private static List<String> values(String list) {
+        return Arrays.stream(list.split(",")).map(String::trim).filter(value -> !value.isEmpty())
+                .map(String::toLowerCase).toList();
+    }
+
+    private static List<Integer> integers(String list) {
+        return values(list).stream().map(Integer::parseInt).toList();
+    }
+
+    public List<BenchmarkCell> getCells() {
+        return cells;
+    }
+
+    public int getTrials() {
+        return trials;
+    }
+
+    public int getWarmUpMessages() {
+        return warmUpMessages;
+    }
+}
@@ -0,0 +1,121 @@
+package shpp.azaika.util.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import shpp.azaika.util.latency.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Results of the trials of a {@link BenchmarkMatrix}: a CSV row per trial, a JSON summary per
+ * cell with its trials, and a logged table. A cell's rate is the median of its trials' sustained
+ * rates; its latency percentiles come from the broker latencies of all its trials merged.
+ */
+public final class BenchmarkReport {
+    private static final Logger logger = LoggerFactory.getLogger(BenchmarkReport.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String CSV_HEADER = "producer_threads,consumer_threads,delivery,ack_mode,prefetch,messages,trial,"
+            + "consumed,duration_ms,sustained_mps,overall_mps,latency_p50_us,latency_p90_us,latency_p99_us,latency_p999_us,latency_max_us";
+
+    public record Trial(int trial, int consumedMessages, long durationMillis, double sustainedMps, double overallMps,
+                        long latencyP50Micros, long latencyP90Micros, long latencyP99Micros, long latencyP999Micros,
+                        long latencyMaxMicros) {
+    }
+
+    public record CellSummary(BenchmarkCell cell, double medianSustainedMps, double minSustainedMps, double maxSustainedMps,
+                              long latencyP50Micros, long latencyP90Micros, long latencyP99Micros, long latencyP999Micros,
+                              long latencyMaxMicros, List<Trial> trials) {
+    }
+
+    private final Map<BenchmarkCell, List<Trial>> trials = new LinkedHashMap<>();
+    private final Map<BenchmarkCell, LatencyHistogram> latencies = new LinkedHashMap<>();
+
+    /**
+     * @param sustainedMps rate without start-up and drain, or {@code 0} to fall back to the overall rate
+     * @param latency      broker latencies of the trial, or {@code null} if they were not tracked
+     */
+    public synchronized Trial add(BenchmarkCell cell, int consumedMessages, long durationMillis, double sustainedMps,
+                                  LatencyHistogram latency) {
+        double overallMps = durationMillis <= 0 ? 0 : consumedMessages * (double) TimeUnit.SECONDS.toMillis(1) / durationMillis;
+        LatencyHistogram histogram = latency == null ? new LatencyHistogram() : latency;
+        List<Trial> cellTrials = trials.computeIfAbsent(cell, key -> new ArrayList<>());
+        Trial trial = new Trial(cellTrials.size() + 1, consumedMessages, durationMillis,
+                sustainedMps > 0 ? sustainedMps : overallMps, overallMps,
+                micros(histogram.getValueAtPercentile(50)), micros(histogram.getValueAtPercentile(90)),
+                micros(histogram.getValueAtPercentile(99)), micros(histogram.getValueAtPercentile(99.9)),
+                micros(histogram.getMax()));
+        cellTrials.add(trial);
+        latencies.computeIfAbsent(cell, key -> new LatencyHistogram()).add(histogram);
+        return trial;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    public synchronized List<CellSummary> summarize() {
+        List<CellSummary> summaries = new ArrayList<>();
+        trials.forEach((cell, cellTrials) -> {
+            double[] rates = cellTrials.stream().mapToDouble(Trial::sustainedMps).sorted().toArray();
+            LatencyHistogram latency = latencies.get(cell);
+            summaries.add(new CellSummary(cell, median(rates), rates[0], rates[rates.length - 1],
+                    micros(latency.getValueAtPercentile(50)), micros(latency.getValueAtPercentile(90)),
+                    micros(latency.getValueAtPercentile(99)), micros(latency.getValueAtPercentile(99.9)),
+                    micros(latency.getMax()), List.copyOf(cellTrials)));
+        });
+        return summaries;
+    }
+
+    private static double median(double[] sorted) {
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    public synchronized void writeCsv(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+            for (Map.Entry<BenchmarkCell, List<Trial>> entry : trials.entrySet()) {
+                BenchmarkCell cell = entry.getKey();
+                for (Trial trial : entry.getValue()) {
+                    writer.write(String.format(Locale.ROOT, "%d,%d,%s,%s,%d,%d,%d,%d,%d,%.1f,%.1f,%d,%d,%d,%d,%d%n",
+                            cell.producerThreads(), cell.consumerThreads(), cell.getDelivery(), cell.ackMode(),
+                            cell.prefetch(), cell.messageCount(), trial.trial(), trial.consumedMessages(),
+                            trial.durationMillis(), trial.sustainedMps(), trial.overallMps(), trial.latencyP50Micros(),
+                            trial.latencyP90Micros(), trial.latencyP99Micros(), trial.latencyP999Micros(),
+                            trial.latencyMaxMicros()));
+                }
+            }
+        }
+    }
+
+    public void writeJson(Path file) throws IOException {
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), summarize());
+    }
+
+    public void log() {
+        logger.info("------------BENCHMARK MATRIX------------");
+        logger.info(String.format(Locale.ROOT, "%9s %9s %-14s %-11s %8s %9s %12s %21s %8s %8s %8s",
+                "producers", "consumers", "delivery", "ack", "prefetch", "messages", "msg/s", "min-max msg/s",
+                "p50 us", "p99 us", "p99.9 us"));
+        for (CellSummary summary : summarize()) {
+            BenchmarkCell cell = summary.cell();
+            logger.info(String.format(Locale.ROOT, "%9d %9d %-14s %-11s %8d %9d %12.0f %21s %8d %8d %8d",
+                    cell.producerThreads(), cell.consumerThreads(), cell.getDelivery(), cell.ackMode(), cell.prefetch(),
+                    cell.messageCount(), summary.medianSustainedMps(),
+                    String.format(Locale.ROOT, "%.0f-%.0f", summary.minSustainedMps(), summary.maxSustainedMps()),
+                    summary.latencyP50Micros(), summary.latencyP99Micros(), summary.latencyP999Micros()));
+        }
+    }
+}
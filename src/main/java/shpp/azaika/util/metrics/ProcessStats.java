@@ -0,0 +1,15 @@
+package shpp.azaika.util.metrics;
+
+/**
+ * Counts of one pipeline process, written at shutdown so the stats of several processes can be
+ * merged by {@link RunStatsReport}. Times are epoch milliseconds, so processes on different hosts
+ * are comparable as far as their clocks agree.
+ */
+public record ProcessStats(String processId, String role, long producedMessages, long consumedMessages,
+                           long validMessages, long invalidMessages, long writtenRecords,
+                           long startedAtMillis, long finishedAtMillis) {
+
+    public long durationMillis() {
+        return finishedAtMillis - startedAtMillis;
+    }
+}
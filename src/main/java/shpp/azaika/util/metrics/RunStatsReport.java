@@ -0,0 +1,119 @@
+package shpp.azaika.util.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Merges the {@link ProcessStats} files of the processes of one run. Totals are sums; the run
+ * rate divides them by the wall-clock span from the first start to the last finish, since the
+ * processes overlap.
+ * <p>
+ * Run as {@code java -cp <jar> shpp.azaika.util.metrics.RunStatsReport <dir>} after collecting
+ * the files of processes that ran on different hosts.
+ */
+public final class RunStatsReport {
+    private static final Logger logger = LoggerFactory.getLogger(RunStatsReport.class);
+    private static final String FILE_PREFIX = "run-stats-";
+    private static final String FILE_SUFFIX = ".json";
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final List<ProcessStats> processes;
+
+    public RunStatsReport(List<ProcessStats> processes) {
+        if (processes == null) {
+            throw new IllegalArgumentException("Process stats must not be null");
+        }
+        this.processes = List.copyOf(processes);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            logger.error("Please provide the directory of the run-stats files as the first argument.");
+            throw new IllegalArgumentException();
+        }
+        load(Path.of(args[0])).log();
+    }
+
+    public static Path write(Path directory, ProcessStats stats) throws IOException {
+        Path file = directory.resolve(FILE_PREFIX + stats.processId() + FILE_SUFFIX);
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), stats);
+        return file;
+    }
+
+    public static RunStatsReport load(Path directory) throws IOException {
+        List<ProcessStats> processes = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                processes.add(objectMapper.readValue(file.toFile(), ProcessStats.class));
+            }
+        }
+        processes.sort(Comparator.comparing(ProcessStats::processId));
+        return new RunStatsReport(processes);
+    }
+
+    public List<ProcessStats> getProcesses() {
+        return processes;
+    }
+
+    public long getProducedMessages() {
+        return sum(ProcessStats::producedMessages);
+    }
+
+    public long getConsumedMessages() {
+        return sum(ProcessStats::consumedMessages);
+    }
+
+    public long getValidMessages() {
+        return sum(ProcessStats::validMessages);
+    }
+
+    public long getInvalidMessages() {
+        return sum(ProcessStats::invalidMessages);
+    }
+
+    public long getWrittenRecords() {
+        return sum(ProcessStats::writtenRecords);
+    }
+
+    private long sum(ToLongFunction<ProcessStats> counter) {
+        return processes.stream().mapToLong(counter).sum();
+    }
+
+    public long getWallClockMillis() {
+        if (processes.isEmpty()) {
+            return 0;
+        }
+        long startedAt = processes.stream().mapToLong(ProcessStats::startedAtMillis).min().orElseThrow();
+        long finishedAt = processes.stream().mapToLong(ProcessStats::finishedAtMillis).max().orElseThrow();
+        return finishedAt - startedAt;
+    }
+
+    public double perSecond(long count) {
+        long millis = getWallClockMillis();
+        return millis <= 0 ? 0 : count * (double) TimeUnit.SECONDS.toMillis(1) / millis;
+    }
+
+    public void log() {
+        logger.info("------------RUN REPORT ({} processes)------------", processes.size());
+        for (ProcessStats stats : processes) {
+            logger.info("**{} ({}): produced {}, consumed {}, valid {}, invalid {}, written {} in {} ms",
+                    stats.processId(), stats.role(), stats.producedMessages(), stats.consumedMessages(),
+                    stats.validMessages(), stats.invalidMessages(), stats.writtenRecords(), stats.durationMillis());
+        }
+        logger.info("**Total produced {} ({}/s)", getProducedMessages(), Math.round(perSecond(getProducedMessages())));
+        logger.info("**Total consumed {} ({}/s)", getConsumedMessages(), Math.round(perSecond(getConsumedMessages())));
+        logger.info("**Total valid {}, invalid {}, written {} in {} ms", getValidMessages(), getInvalidMessages(),
+                getWrittenRecords(), getWallClockMillis());
+    }
+}
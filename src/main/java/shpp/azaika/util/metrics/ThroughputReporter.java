@@ -0,0 +1,158 @@
+package shpp.azaika.util.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Samples stage counters once a second on its own thread and logs rolling 1s/10s/60s rates plus
+ * queue depths. Counters are only read, so workers are never slowed down; on {@link #close()} it logs
+ * the peak one-second rate and the sustained rate over each stage's active period.
+ */
+public final class ThroughputReporter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ThroughputReporter.class);
+    private static final long SAMPLE_INTERVAL_MILLIS = 1000;
+    private static final int HISTORY = 61;
+
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+    private final Map<String, IntSupplier> gauges = new LinkedHashMap<>();
+    private final long[] sampleNanos = new long[HISTORY];
+    private final long reportEverySamples;
+    private int sampleCount;
+    private ScheduledExecutorService sampler;
+
+    /**
+     * @param reportIntervalMillis how often rolling rates are logged; {@code 0} only logs the final summary
+     */
+    public ThroughputReporter(long reportIntervalMillis) {
+        if (reportIntervalMillis < 0) {
+            throw new IllegalArgumentException("Report interval must be non-negative");
+        }
+        this.reportEverySamples = reportIntervalMillis == 0 ? 0 : Math.max(1, reportIntervalMillis / SAMPLE_INTERVAL_MILLIS);
+    }
+
+    public synchronized ThroughputReporter addStage(String name, LongSupplier counter) {
+        stages.put(name, new Stage(counter));
+        return this;
+    }
+
+    public synchronized ThroughputReporter addGauge(String name, IntSupplier depth) {
+        gauges.put(name, depth);
+        return this;
+    }
+
+    public synchronized void start() {
+        if (sampler != null) {
+            return;
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "throughput-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sample(System.nanoTime());
+        sampler.scheduleAtFixedRate(this::sampleAndReport, SAMPLE_INTERVAL_MILLIS, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void sampleAndReport() {
+        sample(System.nanoTime());
+        if (reportEverySamples > 0 && (sampleCount - 1) % reportEverySamples == 0) {
+            report();
+        }
+    }
+
+    synchronized void sample(long nowNanos) {
+        int index = sampleCount % HISTORY;
+        sampleNanos[index] = nowNanos;
+        for (Stage stage : stages.values()) {
+            stage.sample(index, nowNanos, sampleCount == 0 ? -1 : (sampleCount - 1) % HISTORY, sampleNanos);
+        }
+        sampleCount++;
+    }
+
+    /**
+     * @return the rate over the last {@code windowSeconds} samples, or over all samples if fewer were taken
+     */
+    synchronized double rate(String stageName, int windowSeconds) {
+        int back = Math.min(windowSeconds, sampleCount - 1);
+        if (back <= 0) {
+            return 0;
+        }
+        int newest = (sampleCount - 1) % HISTORY;
+        int oldest = (sampleCount - 1 - back) % HISTORY;
+        long[] counts = stages.get(stageName).counts;
+        return perSecond(counts[newest] - counts[oldest], sampleNanos[newest] - sampleNanos[oldest]);
+    }
+
+    synchronized double peakRate(String stageName) {
+        return stages.get(stageName).peakRate;
+    }
+
+    synchronized double sustainedRate(String stageName) {
+        Stage stage = stages.get(stageName);
+        return perSecond(stage.lastActiveCount - stage.firstActiveCount, stage.lastActiveNanos - stage.firstActiveNanos);
+    }
+
+    private synchronized void report() {
+        stages.keySet().forEach(name -> logger.info("**{} rate 1s {}/s, 10s {}/s, 60s {}/s, total {}", name,
+                Math.round(rate(name, 1)), Math.round(rate(name, 10)), Math.round(rate(name, 60)),
+                stages.get(name).lastCount));
+        gauges.forEach((name, depth) -> logger.info("**{} depth {}", name, depth.getAsInt()));
+    }
+
+    private static double perSecond(long delta, long elapsedNanos) {
+        return elapsedNanos <= 0 ? 0 : delta * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * Stops sampling, takes a last sample and logs total, peak and sustained rate per stage.
+     */
+    @Override
+    public synchronized void close() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+            sampler = null;
+        }
+        sample(System.nanoTime());
+        stages.keySet().forEach(name -> logger.info("**{} total {}, peak {}/s, sustained {}/s", name,
+                stages.get(name).lastCount, Math.round(peakRate(name)), Math.round(sustainedRate(name))));
+    }
+
+    private static final class Stage {
+        private final LongSupplier counter;
+        private final long[] counts = new long[HISTORY];
+        private long lastCount;
+        private double peakRate;
+        private long firstActiveNanos = -1;
+        private long firstActiveCount;
+        private long lastActiveNanos;
+        private long lastActiveCount;
+
+        private Stage(LongSupplier counter) {
+            this.counter = counter;
+        }
+
+        private void sample(int index, long nowNanos, int previousIndex, long[] sampleNanos) {
+            long count = counter.getAsLong();
+            counts[index] = count;
+            if (previousIndex >= 0 && count > counts[previousIndex]) {
+                long previousNanos = sampleNanos[previousIndex];
+                peakRate = Math.max(peakRate, perSecond(count - counts[previousIndex], nowNanos - previousNanos));
+                if (firstActiveNanos < 0) {
+                    firstActiveNanos = previousNanos;
+                    firstActiveCount = counts[previousIndex];
+                }
+                lastActiveNanos = nowNanos;
+                lastActiveCount = count;
+            }
+            lastCount = count;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package shpp.azaika.util.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Samples a counter at a fixed interval on a daemon thread. The sustained rate is taken between
+ * the samples where the counter passed two fractions of its expected total, which leaves out
+ * start-up and the drain at the end.
+ */
+public final class ThroughputSampler implements AutoCloseable {
+    private final LongSupplier counter;
+    private final long intervalMillis;
+    private final List<long[]> samples = new ArrayList<>();
+    private ScheduledExecutorService sampler;
+
+    public ThroughputSampler(LongSupplier counter, long intervalMillis) {
+        if (counter == null) {
+            throw new IllegalArgumentException("Counter must not be null");
+        }
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Sample interval must be positive");
+        }
+        this.counter = counter;
+        this.intervalMillis = intervalMillis;
+    }
+
+    public synchronized void start() {
+        if (sampler != null) {
+            return;
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "throughput-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(() -> sample(System.nanoTime(), counter.getAsLong()), 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void sample(long nanos, long count) {
+        samples.add(new long[]{nanos, count});
+    }
+
+    /**
+     * @return counts per second between the first sample at or above {@code fromFraction} of
+     * {@code total} and the last one at or below {@code toFraction}, or {@code 0} if the samples
+     * are too sparse to tell. Samples after the counter dropped, e.g. because its source went
+     * away at the end of the run, are ignored.
+     */
+    public synchronized double sustainedRate(long total, double fromFraction, double toFraction) {
+        if (fromFraction < 0 || toFraction > 1 || fromFraction >= toFraction) {
+            throw new IllegalArgumentException("Fractions must satisfy 0 <= from < to <= 1");
+        }
+        long[] first = null;
+        long[] last = null;
+        for (long[] sample : samples) {
+            if (sample[1] > toFraction * total || last != null && sample[1] < last[1]) {
+                break;
+            }
+            if (first == null && sample[1] >= fromFraction * total) {
+                first = sample;
+            }
+            last = sample;
+        }
+        if (first == null || last == null || last[0] <= first[0] || last[1] <= first[1]) {
+            return 0;
+        }
+        return (last[1] - first[1]) * (double) TimeUnit.SECONDS.toNanos(1) / (last[0] - first[0]);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+            sampler = null;
+        }
+    }
+}
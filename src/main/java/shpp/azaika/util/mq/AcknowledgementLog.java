@@ -0,0 +1,129 @@
+package shpp.azaika.util.mq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Messages the consumers of one process acknowledged after write, kept in a checkpoint file so a
+ * restarted process resumes the stream count. Every message counts, whether it produced a record
+ * or not. Before a consumer acknowledges a batch, the log adds the batch to the count and stores
+ * the JMS ids of its messages as pending; the writers have synced their records by then. If the
+ * process dies before the acknowledgement reaches the broker, the redelivered messages carry those
+ * ids and {@link #isAcknowledged} tells the consumers to skip them instead of counting and writing
+ * them a second time.
+ */
+public final class AcknowledgementLog {
+    private static final Logger logger = LoggerFactory.getLogger(AcknowledgementLog.class);
+    public static final String FILE_NAME = "consumer.checkpoint";
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * What is stored on disk.
+     *
+     * @param producerCounts messages of every producer process whose end of stream arrived, see
+     *                       {@link StreamCoordinator#getProducerCounts()}
+     */
+    record Checkpoint(long acknowledgedMessages, Map<String, Long> producerCounts, Set<String> pendingMessageIds) {
+    }
+
+    private final Path checkpointFile;
+    private final Set<String> resumedPending;
+    private final Map<Consumer, List<String>> pending = new HashMap<>();
+    private final Map<String, Long> producerCounts;
+    private long acknowledgedMessages;
+
+    /**
+     * Loads the checkpoint in {@code checkpointFile}, or starts from nothing if there is none.
+     */
+    public AcknowledgementLog(Path checkpointFile) throws IOException {
+        if (checkpointFile == null) {
+            throw new IllegalArgumentException("Checkpoint file must not be null");
+        }
+        this.checkpointFile = checkpointFile;
+        Checkpoint checkpoint = Files.exists(checkpointFile)
+                ? objectMapper.readValue(checkpointFile.toFile(), Checkpoint.class)
+                : new Checkpoint(0, Map.of(), Set.of());
+        this.acknowledgedMessages = checkpoint.acknowledgedMessages();
+        this.producerCounts = new HashMap<>(checkpoint.producerCounts());
+        this.resumedPending = Set.copyOf(checkpoint.pendingMessageIds());
+        if (acknowledgedMessages > 0 || !resumedPending.isEmpty()) {
+            logger.info("Resuming {} after {} acknowledged messages, {} of them possibly redelivered",
+                    checkpointFile, acknowledgedMessages, resumedPending.size());
+        }
+    }
+
+    public synchronized long getAcknowledgedMessages() {
+        return acknowledgedMessages;
+    }
+
+    /**
+     * @return end-of-stream counts of the producer processes as stored by an earlier run
+     */
+    public synchronized Map<String, Long> getProducerCounts() {
+        return Map.copyOf(producerCounts);
+    }
+
+    /**
+     * @return whether {@code messageId} was counted and written by an earlier run that died before
+     * acknowledging it
+     */
+    public boolean isAcknowledged(String messageId) {
+        return resumedPending.contains(messageId);
+    }
+
+    /**
+     * Counts the batch {@code consumer} is about to acknowledge and stores the checkpoint.
+     *
+     * @param countedMessages messages of the batch the stream coordinator counted
+     * @param messageIds      JMS ids of every message of the batch
+     * @param producerCounts  end-of-stream counts of the producer processes received so far
+     */
+    public synchronized void acknowledging(Consumer consumer, long countedMessages, List<String> messageIds, Map<String, Long> producerCounts) throws IOException {
+        Map<String, Long> counts = new HashMap<>(this.producerCounts);
+        counts.putAll(producerCounts);
+        Set<String> pendingMessageIds = new HashSet<>(resumedPending);
+        pending.values().forEach(pendingMessageIds::addAll);
+        pendingMessageIds.addAll(messageIds);
+        store(new Checkpoint(acknowledgedMessages + countedMessages, counts, pendingMessageIds));
+        acknowledgedMessages += countedMessages;
+        this.producerCounts.putAll(counts);
+        pending.put(consumer, List.copyOf(messageIds));
+    }
+
+    /**
+     * Called once the broker has the acknowledgement of the batch passed to {@link #acknowledging}.
+     */
+    public synchronized void acknowledged(Consumer consumer) {
+        pending.remove(consumer);
+    }
+
+    /**
+     * Replaces the checkpoint file atomically, so a crash leaves either the old or the new checkpoint.
+     */
+    private void store(Checkpoint checkpoint) throws IOException {
+        Path temporary = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer content = ByteBuffer.wrap(objectMapper.writeValueAsBytes(checkpoint));
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, checkpointFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,92 @@
+package shpp.azaika.util.mq;
+
+import org.apache.activemq.ActiveMQConnection;
+import org.apache.activemq.transport.DefaultTransportListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.Connection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts how often producers and consumers lose and regain the broker and how long it takes until
+ * all of them are back. Failover connections report through their transport listener; clients
+ * that replace a failed connection report themselves.
+ */
+public class BrokerConnectionMonitor implements BrokerConnectionMonitorMBean {
+    private static final Logger logger = LoggerFactory.getLogger(BrokerConnectionMonitor.class);
+
+    private final Set<Object> disconnectedClients = new HashSet<>();
+    private long outageStartedNanos;
+    private long outages;
+    private long reconnects;
+    private long lastRecoveryNanos;
+    private long maxRecoveryNanos;
+
+    /**
+     * Reports the interruptions and resumptions of a failover connection as those of {@code client}.
+     */
+    public void watch(Connection connection, Object client) {
+        if (connection instanceof ActiveMQConnection activeMqConnection) {
+            activeMqConnection.addTransportListener(new DefaultTransportListener() {
+                @Override
+                public void transportInterupted() {
+                    disconnected(client);
+                }
+
+                @Override
+                public void transportResumed() {
+                    reconnected(client);
+                }
+            });
+        }
+    }
+
+    public synchronized void disconnected(Object client) {
+        if (disconnectedClients.isEmpty()) {
+            outageStartedNanos = System.nanoTime();
+            outages++;
+            logger.warn("Lost the broker connection");
+        }
+        disconnectedClients.add(client);
+    }
+
+    public synchronized void reconnected(Object client) {
+        if (!disconnectedClients.remove(client)) {
+            return;
+        }
+        reconnects++;
+        if (disconnectedClients.isEmpty()) {
+            lastRecoveryNanos = System.nanoTime() - outageStartedNanos;
+            maxRecoveryNanos = Math.max(maxRecoveryNanos, lastRecoveryNanos);
+            logger.info("All clients reconnected to the broker after {} ms", TimeUnit.NANOSECONDS.toMillis(lastRecoveryNanos));
+        }
+    }
+
+    @Override
+    public synchronized long getOutages() {
+        return outages;
+    }
+
+    @Override
+    public synchronized long getReconnects() {
+        return reconnects;
+    }
+
+    @Override
+    public synchronized int getDisconnectedClients() {
+        return disconnectedClients.size();
+    }
+
+    @Override
+    public synchronized long getLastRecoveryMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastRecoveryNanos);
+    }
+
+    @Override
+    public synchronized long getMaxRecoveryMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxRecoveryNanos);
+    }
+}
@@ -0,0 +1,17 @@
+package shpp.azaika.util.mq;
+
+/**
+ * JMX view of the clients' broker connections. An outage lasts from the first client losing the
+ * broker until the last one is connected again.
+ */
+public interface BrokerConnectionMonitorMBean {
+    long getOutages();
+
+    long getReconnects();
+
+    int getDisconnectedClients();
+
+    long getLastRecoveryMillis();
+
+    long getMaxRecoveryMillis();
+}
@@ -3,46 +3,169 @@ package shpp.azaika.util.mq;
 import org.apache.activemq.ActiveMQConnectionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import shpp.azaika.util.AckWindow;
 import shpp.azaika.util.MessageHandler;
+import shpp.azaika.util.jfr.MessageHandleEvent;
+import shpp.azaika.util.jfr.MessageReceiveEvent;
 
 import javax.jms.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public final class Consumer implements Callable<Integer>, AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(Consumer.class);
+    private static final long RECEIVE_TIMEOUT_MILLIS = 100;
+    private static final String PULL_CONSUMER_OPTION = "?consumer.prefetchSize=0";
+    private static final long INITIAL_RECONNECT_DELAY_MILLIS = 100;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 1000;
     private final ActiveMQConnectionFactory connectionFactory;
+    private final StreamCoordinator streamCoordinator;
 
     private final AtomicInteger messagesConsumed = new AtomicInteger(0);
+    private final AtomicInteger processingErrors = new AtomicInteger(0);
+    private final AtomicInteger messagesStolen = new AtomicInteger(0);
 
     private Connection connection;
     private Session session;
     private MessageConsumer messageConsumer;
+    private final List<MessageConsumer> stealingConsumers = new ArrayList<>();
     private final MessageHandler messageHandler;
+    private AckWindow ackWindow;
+    private int ackBatchSize;
+    private long ackTimeoutMillis;
+    private Message lastUnacknowledged;
+    private int unacknowledged;
+    private AcknowledgementLog acknowledgementLog;
+    private final List<String> unacknowledgedIds = new ArrayList<>();
+    private int unacknowledgedCounted;
+    private int acknowledgeMode = Session.AUTO_ACKNOWLEDGE;
+    private BrokerConnectionMonitor connectionMonitor;
+    private long reconnectTimeoutMillis;
+    private String destinationName;
+    private List<String> stealFromNames = List.of();
+    private String messageSelector;
+    private volatile boolean connectionFailed;
 
     private volatile boolean running = true;
 
     public Consumer(ActiveMQConnectionFactory connectionFactory, MessageHandler messageHandler) {
+        this(connectionFactory, messageHandler, new StreamCoordinator());
+    }
+
+    public Consumer(ActiveMQConnectionFactory connectionFactory, MessageHandler messageHandler, StreamCoordinator streamCoordinator) {
         if (connectionFactory == null) {
             throw new IllegalArgumentException("ConnectionFactory must not be null");
         }
         if (messageHandler == null) {
             throw new IllegalArgumentException("MessageHandler must not be null");
         }
+        if (streamCoordinator == null) {
+            throw new IllegalArgumentException("StreamCoordinator must not be null");
+        }
         this.messageHandler = messageHandler;
         this.connectionFactory = connectionFactory;
+        this.streamCoordinator = streamCoordinator;
+    }
+
+    /**
+     * Makes the consumer acknowledge messages only once the writers synced their records: after
+     * every {@code batchSize} messages, and whenever the destination is idle, it waits for the
+     * writers and acknowledges the batch. Call before {@code connect}.
+     *
+     * @param timeoutMillis how long to wait for the writers before stopping without acknowledging,
+     *                      so the broker redelivers the batch
+     */
+    public void setAcknowledgeAfterWrite(int batchSize, long timeoutMillis) {
+        if (batchSize <= 0 || timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Acknowledgement batch size and timeout must be positive");
+        }
+        this.ackBatchSize = batchSize;
+        this.ackTimeoutMillis = timeoutMillis;
+        this.ackWindow = new AckWindow();
+        messageHandler.setAckWindow(ackWindow);
+    }
+
+    /**
+     * Makes the consumer record every acknowledgement in {@code acknowledgementLog} first and skip
+     * redelivered messages the log already counted. Call after {@link #setAcknowledgeAfterWrite}.
+     */
+    public void setAcknowledgementLog(AcknowledgementLog acknowledgementLog) {
+        if (ackWindow == null) {
+            throw new java.lang.IllegalStateException("The acknowledgement log needs acknowledge-after-write");
+        }
+        this.acknowledgementLog = acknowledgementLog;
+    }
+
+    /**
+     * Session acknowledge mode, {@link Session#AUTO_ACKNOWLEDGE} or {@link Session#DUPS_OK_ACKNOWLEDGE},
+     * which lets the broker client acknowledge lazily in batches. Acknowledge-after-write overrides it.
+     * Call before {@code connect}.
+     */
+    public void setAcknowledgeMode(int acknowledgeMode) {
+        if (acknowledgeMode != Session.AUTO_ACKNOWLEDGE && acknowledgeMode != Session.DUPS_OK_ACKNOWLEDGE) {
+            throw new IllegalArgumentException("Acknowledge mode must be AUTO_ACKNOWLEDGE or DUPS_OK_ACKNOWLEDGE");
+        }
+        this.acknowledgeMode = acknowledgeMode;
+    }
+
+    /**
+     * Makes the consumer replace a failed connection instead of stopping, retrying for up to
+     * {@code timeoutMillis}. Messages it received but had not acknowledged are redelivered by the
+     * broker, so pair it with redelivery deduplication. Call before {@code connect}.
+     */
+    public void setReconnection(BrokerConnectionMonitor connectionMonitor, long timeoutMillis) {
+        if (connectionMonitor == null) {
+            throw new IllegalArgumentException("BrokerConnectionMonitor must not be null");
+        }
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Reconnect timeout must be positive");
+        }
+        this.connectionMonitor = connectionMonitor;
+        this.reconnectTimeoutMillis = timeoutMillis;
     }
 
     public void connect(String destinationName) throws JMSException {
+        connect(destinationName, null);
+    }
+
+    public void connect(String destinationName, String messageSelector) throws JMSException {
+        connect(destinationName, List.of(), messageSelector);
+    }
+
+    /**
+     * Connects to a home shard and, for work stealing, to other shards that are only polled when the
+     * home shard is empty. Stealing consumers have no prefetch, so they never hold back other
+     * shards' messages from those shards' own consumers.
+     */
+    public void connect(String destinationName, List<String> stealFromNames, String messageSelector) throws JMSException {
         if (destinationName == null || destinationName.isEmpty()) {
             throw new IllegalArgumentException("Queue name must not be null or empty");
         }
+        this.destinationName = destinationName;
+        this.stealFromNames = stealFromNames;
+        this.messageSelector = messageSelector;
         try {
-            connection = connectionFactory.createConnection();
-            connection.start();
-            session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-            messageConsumer = createMessageConsumer(session, destinationName);
+            Connection current = connectionFactory.createConnection();
+            connection = current;
+            if (connectionMonitor != null) {
+                current.setExceptionListener(failure -> {
+                    if (connection == current) {
+                        connectionFailed = true;
+                    }
+                });
+                connectionMonitor.watch(current, this);
+            }
+            current.start();
+            session = current.createSession(false, ackWindow == null ? acknowledgeMode : Session.CLIENT_ACKNOWLEDGE);
+            messageConsumer = createMessageConsumer(session, destinationName, messageSelector);
+            for (String stealFromName : stealFromNames) {
+                stealingConsumers.add(createMessageConsumer(session, stealFromName + PULL_CONSUMER_OPTION, messageSelector));
+            }
             logger.debug("Connected to queue: {}", destinationName);
         } catch (JMSException e) {
             close();
@@ -50,50 +173,224 @@ public final class Consumer implements Callable<Integer>, AutoCloseable {
         }
     }
 
-    private MessageConsumer createMessageConsumer(Session session, String destinationName) throws JMSException {
+    private MessageConsumer createMessageConsumer(Session session, String destinationName, String messageSelector) throws JMSException {
         Destination destination = session.createQueue(destinationName);
-        return session.createConsumer(destination);
+        if (messageSelector == null) {
+            return session.createConsumer(destination);
+        }
+        return session.createConsumer(destination, messageSelector);
     }
 
+    /**
+     * Receives and handles one message.
+     *
+     * @return {@code false} once the consumer should stop: the stream is drained or receiving failed
+     * and, with reconnection, the broker stayed unreachable
+     */
     public boolean processNextMessage() {
+        if (connectionFailed) {
+            return reconnect();
+        }
         try {
-            Message message = messageConsumer.receive();
+            MessageReceiveEvent receiveEvent = new MessageReceiveEvent();
+            receiveEvent.begin();
+            Message message = messageConsumer.receive(RECEIVE_TIMEOUT_MILLIS);
             if (message == null) {
-                logger.warn("Received null message, stopping consumer.");
-                return false;
+                message = steal();
+            }
+            if (receiveEvent.shouldCommit()) {
+                receiveEvent.timedOut = message == null;
+                receiveEvent.commit();
+            }
+            if (message == null) {
+                return acknowledgeWritten() && !isStreamDrained();
             }
 
-            if (messageHandler.isPoisonPill(message)) {
-                logger.info("Received poison pill, stopping consumer.");
-                running = false;
-                return false;
+            if (messageHandler.isEndOfStream(message)) {
+                String producerProcess = messageHandler.getProducerProcess(message);
+                long expectedCount = messageHandler.getExpectedMessageCount(message);
+                logger.info("Received end of stream of producer {}, {} messages.", producerProcess, expectedCount);
+                streamCoordinator.endOfStream(producerProcess, expectedCount);
+                return trackAcknowledgement(message, false) && !isStreamDrained();
+            }
+            if (acknowledgementLog != null && acknowledgementLog.isAcknowledged(message.getJMSMessageID())) {
+                logger.debug("Skipped message {}, counted and written before a restart", message.getJMSMessageID());
+                return trackAcknowledgement(message, false) && !isStreamDrained();
             }
 
-            messageHandler.handleMessage(message);
-            return true;
+            boolean counted = true;
+            try {
+                MessageHandleEvent handleEvent = new MessageHandleEvent();
+                handleEvent.begin();
+                counted = messageHandler.handleMessage(message);
+                if (handleEvent.shouldCommit()) {
+                    handleEvent.duplicate = !counted;
+                    handleEvent.commit();
+                }
+            } finally {
+                // a message whose handling failed is counted too, otherwise the stream would never drain
+                if (counted) {
+                    streamCoordinator.messageConsumed();
+                    int consumed = messagesConsumed.incrementAndGet();
+                    if (consumed % 10000 == 0) {
+                        logger.info("Thread {} consumed {} messages", Thread.currentThread().getName(), consumed);
+                    }
+                }
+            }
+            return trackAcknowledgement(message, counted) && !isStreamDrained();
+        } catch (JMSException e) {
+            if (connectionMonitor != null) {
+                logger.warn("Receiving failed, reconnecting", e);
+                return reconnect();
+            }
+            processingErrors.incrementAndGet();
+            logger.error("Error processing message", e);
+            return false;
         } catch (Exception e) {
+            processingErrors.incrementAndGet();
             logger.error("Error processing message", e);
             return false;
         }
     }
 
+    /**
+     * Replaces the connection, retrying with backoff until the reconnect timeout elapses. Messages
+     * received on the old connection and not yet acknowledged are left to the broker to redeliver.
+     *
+     * @return {@code false} if the broker stayed unreachable or the consumer was stopped or interrupted
+     */
+    private boolean reconnect() {
+        connectionMonitor.disconnected(this);
+        lastUnacknowledged = null;
+        unacknowledged = 0;
+        unacknowledgedIds.clear();
+        unacknowledgedCounted = 0;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(reconnectTimeoutMillis);
+        long delayMillis = INITIAL_RECONNECT_DELAY_MILLIS;
+        while (running && !Thread.currentThread().isInterrupted()) {
+            close();
+            stealingConsumers.clear();
+            try {
+                connectionFailed = false;
+                connect(destinationName, stealFromNames, messageSelector);
+                connectionMonitor.reconnected(this);
+                logger.info("Reconnected to {}", destinationName);
+                return true;
+            } catch (JMSException e) {
+                if (System.nanoTime() - deadline > 0) {
+                    processingErrors.incrementAndGet();
+                    logger.error("Broker unreachable for {} ms, stopping consumer", reconnectTimeoutMillis, e);
+                    return false;
+                }
+                logger.debug("Reconnect failed, retrying in {} ms", delayMillis, e);
+            }
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            delayMillis = Math.min(delayMillis * 2, MAX_RECONNECT_DELAY_MILLIS);
+        }
+        return false;
+    }
+
+    /**
+     * @param counted whether the stream coordinator counted the message
+     * @return {@code false} if a due acknowledgement failed
+     */
+    private boolean trackAcknowledgement(Message message, boolean counted) throws JMSException, InterruptedException, IOException {
+        if (ackWindow == null) {
+            return true;
+        }
+        lastUnacknowledged = message;
+        if (acknowledgementLog != null) {
+            unacknowledgedIds.add(message.getJMSMessageID());
+            unacknowledgedCounted += counted ? 1 : 0;
+        }
+        return ++unacknowledged < ackBatchSize || acknowledgeWritten();
+    }
+
+    /**
+     * Waits until the writers synced every record routed since the last acknowledgement, then
+     * acknowledges the messages received since then, the end-of-stream message included.
+     *
+     * @return {@code false} if the writers did not sync in time; the messages stay unacknowledged
+     */
+    private boolean acknowledgeWritten() throws JMSException, InterruptedException, IOException {
+        if (lastUnacknowledged == null) {
+            return true;
+        }
+        Message last = lastUnacknowledged;
+        lastUnacknowledged = null;
+        if (!ackWindow.awaitDurable(ackTimeoutMillis)) {
+            logger.error("Writers did not sync {} records within {} ms, stopping without acknowledging {} messages",
+                    ackWindow.getPendingRecords(), ackTimeoutMillis, unacknowledged);
+            return false;
+        }
+        if (acknowledgementLog != null) {
+            acknowledgementLog.acknowledging(this, unacknowledgedCounted, unacknowledgedIds, streamCoordinator.getProducerCounts());
+        }
+        last.acknowledge();
+        unacknowledged = 0;
+        if (acknowledgementLog != null) {
+            acknowledgementLog.acknowledged(this);
+            unacknowledgedIds.clear();
+            unacknowledgedCounted = 0;
+        }
+        return true;
+    }
+
+    private Message steal() throws JMSException {
+        for (MessageConsumer stealingConsumer : stealingConsumers) {
+            Message message = stealingConsumer.receiveNoWait();
+            if (message != null) {
+                messagesStolen.incrementAndGet();
+                return message;
+            }
+        }
+        return null;
+    }
+
+    private boolean isStreamDrained() {
+        if (streamCoordinator.isDrained()) {
+            logger.info("All {} messages drained, stopping consumer.", streamCoordinator.getExpectedCount());
+            running = false;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Makes the consumer return after the message in hand. Messages it prefetched but did not
+     * handle go back to the broker when its session closes.
+     */
+    public void stop() {
+        running = false;
+    }
+
     @Override
     public Integer call() {
         try {
             logger.info("Consumer thread started");
-            while (running) {
+            while (running && !Thread.currentThread().isInterrupted()) {
                 if (!processNextMessage()) {
                     break;
                 }
-                messagesConsumed.incrementAndGet();
-                if (messagesConsumed.get() % 10000 == 0) {
-                    logger.info("Thread {} consumed {} messages",Thread.currentThread().getName(),messagesConsumed.get());
-                }
             }
         } catch (Exception e) {
             logger.error("Unexpected error in consumer thread", e);
         } finally {
-                close();
+            messageHandler.flush();
+            try {
+                acknowledgeWritten();
+            } catch (JMSException | IOException e) {
+                logger.error("Failed to acknowledge the last messages", e);
+            } catch (InterruptedException e) {
+                logger.error("Interrupted while waiting for writers, leaving the last messages unacknowledged", e);
+                Thread.currentThread().interrupt();
+            }
+            close();
             logger.info("Consumer thread finished. Total processed messages: {}", messagesConsumed.get());
         }
         return messagesConsumed.get();
@@ -103,6 +400,9 @@ public final class Consumer implements Callable<Integer>, AutoCloseable {
     public void close() {
         try {
             if (messageConsumer != null) messageConsumer.close();
+            for (MessageConsumer stealingConsumer : stealingConsumers) {
+                stealingConsumer.close();
+            }
             if (session != null) session.close();
             if (connection != null) connection.close();
         } catch (JMSException e) {
@@ -114,6 +414,18 @@ public final class Consumer implements Callable<Integer>, AutoCloseable {
         return messagesConsumed.get();
     }
 
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getStolenMessagesCount() {
+        return messagesStolen.get();
+    }
+
+    public int getProcessingErrorCount() {
+        return processingErrors.get();
+    }
+
     public ActiveMQConnectionFactory getConnectionFactory() {
         return connectionFactory;
     }
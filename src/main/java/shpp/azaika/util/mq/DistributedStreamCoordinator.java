@@ -0,0 +1,164 @@
+package shpp.azaika.util.mq;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.*;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-of-stream state shared by consumer processes that drain one queue. Each end-of-stream
+ * message reaches only one process, so every process publishes the producer counts it received
+ * and its consumed count on a coordination topic; a process is drained once the end of stream of
+ * every producer process is known and the counts of all consumer processes together reach their sum.
+ * <p>
+ * The topic is not durable: a process must join before the stream is drained by the others.
+ */
+public class DistributedStreamCoordinator extends StreamCoordinator implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(DistributedStreamCoordinator.class);
+    static final String PROCESS_ID_FIELD = "processId";
+    static final String CONSUMED_FIELD = "consumed";
+    static final String END_OF_STREAM_FIELD_PREFIX = "endOfStream.";
+
+    private final ConnectionFactory connectionFactory;
+    private final String topicName;
+    private final String processId;
+    private final long publishIntervalMillis;
+    private final Map<String, Long> peerConsumedCounts = new ConcurrentHashMap<>();
+    private volatile long peerConsumedCount;
+
+    private Connection connection;
+    private Session publishSession;
+    private MessageProducer publisher;
+    private ScheduledExecutorService scheduler;
+
+    public DistributedStreamCoordinator(ConnectionFactory connectionFactory, String topicName, String processId, long publishIntervalMillis) {
+        this(connectionFactory, topicName, processId, publishIntervalMillis, 1);
+    }
+
+    /**
+     * @param processId             unique id of this process among the consumer processes
+     * @param publishIntervalMillis how often this process publishes its counts
+     * @param producerProcesses     number of producer processes that each send an end of stream
+     */
+    public DistributedStreamCoordinator(ConnectionFactory connectionFactory, String topicName, String processId,
+                                        long publishIntervalMillis, int producerProcesses) {
+        super(producerProcesses);
+        if (connectionFactory == null) {
+            throw new IllegalArgumentException("ConnectionFactory must not be null");
+        }
+        if (topicName == null || topicName.isEmpty()) {
+            throw new IllegalArgumentException("Topic name must not be null or empty");
+        }
+        if (processId == null || processId.isEmpty()) {
+            throw new IllegalArgumentException("Process id must not be null or empty");
+        }
+        if (publishIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Publish interval must be positive");
+        }
+        this.connectionFactory = connectionFactory;
+        this.topicName = topicName;
+        this.processId = processId;
+        this.publishIntervalMillis = publishIntervalMillis;
+    }
+
+    /**
+     * Subscribes to the peers' counts and starts publishing this process's counts.
+     */
+    public void start() throws JMSException {
+        try {
+            connection = connectionFactory.createConnection();
+            Session listenSession = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageConsumer subscriber = listenSession.createConsumer(listenSession.createTopic(topicName), null, true);
+            subscriber.setMessageListener(this::onPeerMessage);
+            publishSession = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            publisher = publishSession.createProducer(publishSession.createTopic(topicName));
+            publisher.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+            connection.start();
+        } catch (JMSException e) {
+            close();
+            throw e;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stream-coordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::publishCounts, 0, publishIntervalMillis, TimeUnit.MILLISECONDS);
+        logger.info("Coordinating end of stream on topic {} as {}", topicName, processId);
+    }
+
+    private void publishCounts() {
+        try {
+            MapMessage message = publishSession.createMapMessage();
+            message.setString(PROCESS_ID_FIELD, processId);
+            message.setLong(CONSUMED_FIELD, getConsumedCount());
+            for (Map.Entry<String, Long> producerCount : getProducerCounts().entrySet()) {
+                message.setLong(END_OF_STREAM_FIELD_PREFIX + producerCount.getKey(), producerCount.getValue());
+            }
+            publisher.send(message);
+        } catch (JMSException e) {
+            logger.warn("Failed to publish stream counts", e);
+        }
+    }
+
+    void onPeerMessage(Message message) {
+        try {
+            MapMessage counts = (MapMessage) message;
+            String peer = counts.getString(PROCESS_ID_FIELD);
+            if (processId.equals(peer)) {
+                return;
+            }
+            Enumeration<?> names = counts.getMapNames();
+            while (names.hasMoreElements()) {
+                String name = (String) names.nextElement();
+                String producerProcess = name.startsWith(END_OF_STREAM_FIELD_PREFIX)
+                        ? name.substring(END_OF_STREAM_FIELD_PREFIX.length()) : null;
+                if (producerProcess != null && !getProducerCounts().containsKey(producerProcess)) {
+                    long expected = counts.getLong(name);
+                    logger.info("Process {} received end of stream of producer {}, {} messages.", peer, producerProcess, expected);
+                    endOfStream(producerProcess, expected);
+                }
+            }
+            peerConsumedCounts.merge(peer, counts.getLong(CONSUMED_FIELD), Math::max);
+            peerConsumedCount = peerConsumedCounts.values().stream().mapToLong(Long::longValue).sum();
+        } catch (JMSException | ClassCastException e) {
+            logger.warn("Ignoring malformed coordination message", e);
+        }
+    }
+
+    @Override
+    public boolean isDrained() {
+        return isEndOfStreamReceived() && getConsumedCount() + peerConsumedCount >= getExpectedCount();
+    }
+
+    public long getPeerConsumedCount() {
+        return peerConsumedCount;
+    }
+
+    /**
+     * Publishes the final counts, so peers still draining see everything this process consumed.
+     */
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            try {
+                scheduler.awaitTermination(publishIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            publishCounts();
+        }
+        try {
+            if (connection != null) connection.close();
+        } catch (JMSException e) {
+            logger.error("Error while closing JMS resources", e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package shpp.azaika.util.mq;
+
+import org.apache.activemq.broker.BrokerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * In-process ActiveMQ broker, so the whole pipeline can run without an external service.
+ * Clients in the same JVM connect through {@link #getVmUrl()}; an optional TCP connector
+ * lets other processes on the host connect too.
+ */
+public class EmbeddedBroker implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedBroker.class);
+
+    private final String brokerName;
+    private final boolean persistent;
+    private final String dataDirectory;
+    private final String tcpUrl;
+    private BrokerService brokerService;
+
+    /**
+     * @param brokerName    name used in the {@code vm://} url
+     * @param persistent    whether messages are stored in KahaDB under {@code dataDirectory}
+     * @param dataDirectory directory of the persistence store
+     * @param tcpUrl        url of an additional TCP connector, e.g. {@code tcp://localhost:61616}, or {@code null}
+     */
+    public EmbeddedBroker(String brokerName, boolean persistent, String dataDirectory, String tcpUrl) throws Exception {
+        if (brokerName == null || brokerName.isEmpty()) {
+            throw new IllegalArgumentException("Broker name must not be null or empty");
+        }
+        this.brokerName = brokerName;
+        this.persistent = persistent;
+        this.dataDirectory = dataDirectory;
+        this.tcpUrl = tcpUrl;
+        this.brokerService = createBrokerService(true);
+    }
+
+    private BrokerService createBrokerService(boolean deleteMessages) throws Exception {
+        BrokerService service = new BrokerService();
+        service.setBrokerName(brokerName);
+        service.setPersistent(persistent);
+        service.setUseJmx(false);
+        service.setUseShutdownHook(false);
+        service.setDataDirectoryFile(new File(dataDirectory));
+        if (persistent) {
+            service.setDeleteAllMessagesOnStartup(deleteMessages);
+        }
+        if (tcpUrl != null && !tcpUrl.isEmpty()) {
+            service.addConnector(tcpUrl);
+        }
+        return service;
+    }
+
+    public void start() throws Exception {
+        brokerService.start();
+        brokerService.waitUntilStarted();
+        logger.info("Embedded broker {} started (persistent: {})", brokerService.getBrokerName(), brokerService.isPersistent());
+    }
+
+    /**
+     * Stops the broker and, after {@code downtimeMillis}, starts a new one with the same name,
+     * connectors and store. A persistent broker keeps the messages it stored; clients have to
+     * reconnect, which failover connections do by themselves.
+     */
+    public void restart(long downtimeMillis) throws Exception {
+        close();
+        Thread.sleep(downtimeMillis);
+        brokerService = createBrokerService(false);
+        start();
+    }
+
+    public String getVmUrl() {
+        return "vm://" + brokerService.getBrokerName() + "?create=false";
+    }
+
+    public BrokerService getBrokerService() {
+        return brokerService;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            brokerService.stop();
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("Failed to stop embedded broker " + brokerService.getBrokerName(), e);
+        }
+        brokerService.waitUntilStopped();
+        logger.info("Embedded broker {} stopped", brokerService.getBrokerName());
+    }
+}
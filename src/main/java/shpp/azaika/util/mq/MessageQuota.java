@@ -0,0 +1,35 @@
+package shpp.azaika.util.mq;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Number of messages still to be generated, shared by all producers of a run so that producers
+ * added or stopped mid-run split the remaining work between them.
+ */
+public final class MessageQuota {
+    private final AtomicInteger remaining;
+
+    public MessageQuota(int messages) {
+        if (messages < 0) {
+            throw new IllegalArgumentException("Messages to send must be non-negative");
+        }
+        this.remaining = new AtomicInteger(messages);
+    }
+
+    /**
+     * @return how many messages the caller may send, between {@code 0} (quota used up) and {@code max}
+     */
+    public int claim(int max) {
+        while (true) {
+            int current = remaining.get();
+            int claimed = Math.min(current, max);
+            if (claimed <= 0 || remaining.compareAndSet(current, current - claimed)) {
+                return Math.max(0, claimed);
+            }
+        }
+    }
+
+    public int getRemaining() {
+        return remaining.get();
+    }
+}
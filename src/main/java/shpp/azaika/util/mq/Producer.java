@@ -1,24 +1,35 @@
 package shpp.azaika.util.mq;
 
+import org.apache.activemq.ActiveMQMessageProducer;
+import org.apache.activemq.AsyncCallback;
 import org.apache.activemq.util.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import shpp.azaika.pojo.UserPojo;
 import shpp.azaika.util.UserPojoGenerator;
+import shpp.azaika.util.jfr.MessageSendEvent;
+import shpp.azaika.validation.ValidationHints;
 
 import javax.jms.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
+import java.util.function.Supplier;
 
 public final class Producer implements Callable<Integer>, AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(Producer.class);
+    private static final long INITIAL_RECONNECT_DELAY_MILLIS = 100;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 1000;
 
     private final AtomicInteger messagesSent = new AtomicInteger(0);
-    private final int messagesToSend;
+    private final AtomicInteger sendErrors = new AtomicInteger(0);
+    private final AtomicInteger messagesGenerated = new AtomicInteger(0);
+    private final MessageQuota quota;
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile boolean running = true;
 
     private final long durationInMillis;
     private StopWatch stopWatch;
@@ -26,96 +37,393 @@ public final class Producer implements Callable<Integer>, AutoCloseable {
     private final ConnectionFactory connectionFactory;
     private Connection connection;
     private Session session;
-    private MessageProducer messageProducer;
+    private MessageProducer[] shardProducers = new MessageProducer[0];
+    private ShardedDestination shards;
 
-    public static final String POISON_PILL = "POISON PILL 'DUDE STOP!'";
+    public static final String END_OF_STREAM_TYPE = "END_OF_STREAM";
+    public static final String EXPECTED_COUNT_PROPERTY = "expectedCount";
+    public static final String PRODUCER_PROCESS_PROPERTY = "producerProcess";
+    public static final String RECORD_ID_PROPERTY = "recordId";
+    public static final int RECORD_ID_SEQUENCE_BITS = 36;
+    public static final int RECORD_ID_PRODUCER_BITS = 8;
+    public static final int RECORD_ID_INSTANCE_BITS = 63 - RECORD_ID_PRODUCER_BITS - RECORD_ID_SEQUENCE_BITS;
+    public static final String SEND_NANOS_PROPERTY = "sendNanos";
+    public static final int DEFAULT_BATCH_SIZE = 10000;
 
     private final UserPojoGenerator pojoGenerator;
+    private final boolean validationHints;
+    private long recordIdPrefix = -1;
+    private boolean latencyStamps;
+    private boolean persistent;
+    private BrokerConnectionMonitor connectionMonitor;
+    private long reconnectTimeoutMillis;
+    private ReplayBuffer replayBuffer;
+    private volatile boolean connectionFailed;
 
     public Producer(ConnectionFactory connectionFactory, UserPojoGenerator userPojoGenerator, int messagesToSend, long durationInMillis) {
+        this(connectionFactory, userPojoGenerator, messagesToSend, durationInMillis, false);
+    }
+
+    public Producer(ConnectionFactory connectionFactory, UserPojoGenerator userPojoGenerator, int messagesToSend, long durationInMillis, boolean validationHints) {
+        this(connectionFactory, userPojoGenerator, new MessageQuota(messagesToSend), durationInMillis, validationHints);
+    }
+
+    /**
+     * @param quota remaining messages, shared with the other producers of the run
+     */
+    public Producer(ConnectionFactory connectionFactory, UserPojoGenerator userPojoGenerator, MessageQuota quota, long durationInMillis, boolean validationHints) {
         if (connectionFactory == null) {
             throw new IllegalArgumentException("ConnectionFactory must not be null");
         }
         if (userPojoGenerator == null) {
             throw new IllegalArgumentException("UserPojoGenerator must not be null");
         }
-        if (messagesToSend < 0) {
-            throw new IllegalArgumentException("Messages to send must be non-negative");
+        if (quota == null) {
+            throw new IllegalArgumentException("MessageQuota must not be null");
         }
         if (durationInMillis < 0){
             throw new IllegalArgumentException("Duration to execute must be non-negative");
         }
         this.connectionFactory = connectionFactory;
         this.pojoGenerator = userPojoGenerator;
-        this.messagesToSend = messagesToSend;
+        this.quota = quota;
         this.durationInMillis = durationInMillis;
+        this.validationHints = validationHints;
+    }
+
+    /**
+     * Tags every data message with a unique {@link #RECORD_ID_PROPERTY}: the producer instance id
+     * in the high {@value #RECORD_ID_INSTANCE_BITS} bits, so ids of other processes and runs do not
+     * collide, then the producer id in {@value #RECORD_ID_PRODUCER_BITS} bits and the producer's
+     * send sequence in the low {@value #RECORD_ID_SEQUENCE_BITS} bits.
+     */
+    public void setRecordIds(int instanceId, int producerId) {
+        if (instanceId < 0 || instanceId >= 1 << RECORD_ID_INSTANCE_BITS) {
+            throw new IllegalArgumentException("Producer instance id must be between 0 and " + ((1 << RECORD_ID_INSTANCE_BITS) - 1));
+        }
+        if (producerId < 0 || producerId >= 1 << RECORD_ID_PRODUCER_BITS) {
+            throw new IllegalArgumentException("Producer id must be between 0 and " + ((1 << RECORD_ID_PRODUCER_BITS) - 1));
+        }
+        this.recordIdPrefix = (long) instanceId << (RECORD_ID_PRODUCER_BITS + RECORD_ID_SEQUENCE_BITS)
+                | (long) producerId << RECORD_ID_SEQUENCE_BITS;
+    }
+
+    /**
+     * Stamps every data message with {@link #SEND_NANOS_PROPERTY}, the {@link System#nanoTime()} of sending.
+     */
+    public void setLatencyStamps(boolean latencyStamps) {
+        this.latencyStamps = latencyStamps;
+    }
+
+    /**
+     * Sends messages with persistent delivery, so a persistent broker keeps them across a restart.
+     * Call before {@code connect}.
+     */
+    public void setPersistent(boolean persistent) {
+        this.persistent = persistent;
+    }
+
+    /**
+     * Replaces a failed connection instead of failing the send, retrying for up to {@code timeoutMillis}.
+     * With a replay buffer, sends wait for a broker receipt asynchronously; up to {@code replayBufferCapacity}
+     * unconfirmed messages are kept and sent again on the new connection. Call before {@code connect}.
+     *
+     * @param replayBufferCapacity {@code 0} to reconnect without replaying; needs an ActiveMQ connection otherwise
+     */
+    public void setReconnection(BrokerConnectionMonitor connectionMonitor, long timeoutMillis, int replayBufferCapacity) {
+        if (connectionMonitor == null) {
+            throw new IllegalArgumentException("BrokerConnectionMonitor must not be null");
+        }
+        if (timeoutMillis <= 0 || replayBufferCapacity < 0) {
+            throw new IllegalArgumentException("Reconnect timeout must be positive and replay buffer capacity non-negative");
+        }
+        this.connectionMonitor = connectionMonitor;
+        this.reconnectTimeoutMillis = timeoutMillis;
+        this.replayBuffer = replayBufferCapacity > 0 ? new ReplayBuffer(replayBufferCapacity) : null;
+    }
+
+    /**
+     * Number of messages generated before they are sent together; takes effect from the next batch.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Makes the producer return after its current batch, leaving the unclaimed quota to the others.
+     */
+    public void stop() {
+        running = false;
     }
 
     public void connect(String destinationName) throws JMSException {
+        connect(ShardedDestination.single(destinationName));
+    }
+
+    /**
+     * Connects one message producer per shard; data messages are spread by the shard strategy.
+     */
+    public void connect(ShardedDestination destination) throws JMSException {
         try {
-            connection = connectionFactory.createConnection();
-            connection.start();
-            session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-            Destination destination = session.createQueue(destinationName);
-            messageProducer = createMessageProducer(session, destination);
+            Connection current = connectionFactory.createConnection();
+            connection = current;
+            if (connectionMonitor != null) {
+                current.setExceptionListener(failure -> {
+                    if (connection == current) {
+                        connectionFailed = true;
+                    }
+                });
+                connectionMonitor.watch(current, this);
+            }
+            current.start();
+            session = current.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            shards = destination;
+            shardProducers = new MessageProducer[destination.getShardCount()];
+            for (int i = 0; i < shardProducers.length; i++) {
+                shardProducers[i] = createMessageProducer(session, session.createQueue(destination.getShardName(i)));
+            }
         } catch (JMSException e) {
             close();
             throw e;
         }
+        if (replayBuffer != null && !(shardProducers[0] instanceof ActiveMQMessageProducer)) {
+            close();
+            throw new java.lang.IllegalStateException("The replay buffer needs an ActiveMQ connection");
+        }
     }
 
     private MessageProducer createMessageProducer(Session session, Destination destination) throws JMSException {
         MessageProducer producer = session.createProducer(destination);
-        producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+        producer.setDeliveryMode(persistent ? DeliveryMode.PERSISTENT : DeliveryMode.NON_PERSISTENT);
         producer.setDisableMessageTimestamp(true);
         return producer;
     }
 
     public void sendTextMessage(String text) {
+        sendTextMessage(text, null);
+    }
+
+    public void sendUserPojo(UserPojo userPojo) {
+        sendTextMessage(pojoGenerator.toJson(userPojo), userPojo);
+    }
+
+    private void sendTextMessage(String text, UserPojo userPojo) {
         try {
             if(messagesSent.get() % 10000 == 0) {
                 logger.info("Thread {} sent {} messages",Thread.currentThread().getName(),messagesSent.get());
             }
             TextMessage textMessage = session.createTextMessage(text);
-            messageProducer.send(textMessage);
+            if (validationHints && userPojo != null) {
+                ValidationHints.attach(textMessage, userPojo);
+            }
+            if (recordIdPrefix >= 0) {
+                textMessage.setLongProperty(RECORD_ID_PROPERTY, recordIdPrefix | messagesSent.get());
+            }
+            if (latencyStamps) {
+                textMessage.setLongProperty(SEND_NANOS_PROPERTY, System.nanoTime());
+            }
+            MessageSendEvent sendEvent = new MessageSendEvent();
+            sendEvent.begin();
+            send(shardIndex(userPojo), textMessage);
+            if (sendEvent.shouldCommit()) {
+                sendEvent.messageLength = text.length();
+                sendEvent.commit();
+            }
             messagesSent.getAndIncrement();
         } catch (JMSException e) {
+            sendErrors.incrementAndGet();
             logger.error("Failed to send message: {}", text, e);
             throw new JMSRuntimeException(e.getMessage());
         }
 
     }
 
-    public void sendPoisonPill() {
-        logger.info("Sending POISON PILL");
-        sendTextMessage(POISON_PILL);
+    private int shardIndex(UserPojo userPojo) {
+        if (shardProducers.length == 1) {
+            return 0;
+        }
+        return shards.shardFor(messagesSent.get(), userPojo);
+    }
+
+    private void send(int shard, Message message) throws JMSException {
+        if (connectionFailed) {
+            reconnectAndReplay();
+        }
+        if (replayBuffer == null) {
+            try {
+                shardProducers[shard].send(message);
+            } catch (JMSException e) {
+                if (connectionMonitor == null) {
+                    throw e;
+                }
+                logger.warn("Send failed, reconnecting", e);
+                reconnectAndReplay();
+                shardProducers[shard].send(message);
+            }
+            return;
+        }
+        ReplayBuffer.Entry entry = bufferForReplay(shard, message);
+        try {
+            sendTracked(entry);
+        } catch (JMSException e) {
+            logger.warn("Send failed, reconnecting to replay {} unconfirmed messages", replayBuffer.size(), e);
+            reconnectAndReplay();
+        }
+    }
+
+    private ReplayBuffer.Entry bufferForReplay(int shard, Message message) throws JMSException {
+        try {
+            ReplayBuffer.Entry entry;
+            while ((entry = replayBuffer.add(shard, message)) == null) {
+                reconnectAndReplay();
+            }
+            return entry;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JMSException("Interrupted while waiting for broker receipts");
+        }
     }
 
-    public void sendPoisonPill(int consumersQty) {
-        IntStream.range(0, consumersQty).forEach(i -> sendPoisonPill());
+    private void sendTracked(ReplayBuffer.Entry entry) throws JMSException {
+        int generation = replayBuffer.getGeneration();
+        ((ActiveMQMessageProducer) shardProducers[entry.shard()]).send(entry.message(), new AsyncCallback() {
+            @Override
+            public void onSuccess() {
+                replayBuffer.confirm(entry);
+            }
+
+            @Override
+            public void onException(JMSException e) {
+                logger.debug("Broker did not confirm message {}", entry.sequence(), e);
+                replayBuffer.fail(generation);
+            }
+        });
     }
 
-    private void sendMessagesInBatch() {
-        List<String> batch = new ArrayList<>();
-        Stream.generate(pojoGenerator::generateUserPojoAsJson)
-                .limit(messagesToSend)
-                .takeWhile(o-> stopWatch.taken() < durationInMillis)
-                .forEach(msg -> {
-                    batch.add(msg);
-                    if (batch.size() >= 10000) {
-                        sendBatch(batch);
-                        batch.clear();
+    /**
+     * Replaces the connection and sends the unconfirmed messages again, retrying with backoff until
+     * the reconnect timeout elapses. A cancelled producer thread gives up instead.
+     */
+    private void reconnectAndReplay() throws JMSException {
+        connectionMonitor.disconnected(this);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(reconnectTimeoutMillis);
+        long delayMillis = INITIAL_RECONNECT_DELAY_MILLIS;
+        while (true) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new JMSException("Interrupted, not reconnecting");
+            }
+            close();
+            try {
+                connectionFailed = false;
+                connect(shards);
+                if (replayBuffer != null) {
+                    List<ReplayBuffer.Entry> entries = replayBuffer.replay();
+                    for (ReplayBuffer.Entry entry : entries) {
+                        sendTracked(entry);
                     }
+                    logger.info("Reconnected to the broker, replayed {} unconfirmed messages", entries.size());
+                }
+                connectionMonitor.reconnected(this);
+                return;
+            } catch (JMSException e) {
+                if (System.nanoTime() - deadline > 0) {
+                    logger.error("Broker unreachable for {} ms, giving up", reconnectTimeoutMillis);
+                    throw e;
+                }
+                logger.debug("Reconnect failed, retrying in {} ms", delayMillis, e);
+            }
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JMSException("Interrupted while reconnecting");
+            }
+            delayMillis = Math.min(delayMillis * 2, MAX_RECONNECT_DELAY_MILLIS);
+        }
+    }
 
-                });
+    /**
+     * Waits until the broker confirmed every message in the replay buffer, reconnecting and
+     * replaying them if the connection fails meanwhile.
+     *
+     * @return {@code false} if they were not confirmed within the reconnect timeout
+     */
+    public boolean awaitConfirmed() {
+        if (replayBuffer == null) {
+            return true;
+        }
+        try {
+            while (!replayBuffer.awaitConfirmed(reconnectTimeoutMillis)) {
+                if (!replayBuffer.isFailed() && !connectionFailed) {
+                    logger.error("Broker did not confirm {} messages within {} ms", replayBuffer.size(), reconnectTimeoutMillis);
+                    return false;
+                }
+                reconnectAndReplay();
+            }
+            return true;
+        } catch (JMSException e) {
+            logger.error("Failed to replay unconfirmed messages", e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
 
-        if (!batch.isEmpty() && stopWatch.taken() < durationInMillis) {
-            sendBatch(batch);
+    /**
+     * Sends the end of stream to the first shard only; consumers share one {@link StreamCoordinator},
+     * and the first consumer always reads that shard.
+     */
+    /**
+     * Sends the end of stream of the producer process {@code producerProcess}, which sent
+     * {@code expectedCount} data messages with all its producers.
+     */
+    public void sendEndOfStream(String producerProcess, long expectedCount) {
+        try {
+            Message message = session.createMessage();
+            message.setJMSType(END_OF_STREAM_TYPE);
+            message.setStringProperty(PRODUCER_PROCESS_PROPERTY, producerProcess);
+            message.setLongProperty(EXPECTED_COUNT_PROPERTY, expectedCount);
+            send(0, message);
+            logger.info("Sent END OF STREAM of {}, expected message count {}", producerProcess, expectedCount);
+        } catch (JMSException e) {
+            logger.error("Failed to send end of stream", e);
+            throw new JMSRuntimeException(e.getMessage());
+        }
+    }
+
+    private void sendMessagesInBatch() {
+        if (validationHints || shards.needsRecord()) {
+            sendMessagesInBatch(pojoGenerator::generate, this::sendUserPojo);
+        } else {
+            sendMessagesInBatch(pojoGenerator::generateUserPojoAsJson, this::sendTextMessage);
         }
     }
 
-    private void sendBatch(List<String> batch) {
-        batch.forEach(this::sendTextMessage);
+    private <T> void sendMessagesInBatch(Supplier<T> messageSupplier, java.util.function.Consumer<T> sender) {
+        List<T> batch = new ArrayList<>();
+        while (running && !Thread.currentThread().isInterrupted()) {
+            int claimed = quota.claim(batchSize);
+            if (claimed == 0) {
+                break;
+            }
+            while (batch.size() < claimed && stopWatch.taken() < durationInMillis) {
+                messagesGenerated.incrementAndGet();
+                batch.add(messageSupplier.get());
+            }
+            if (batch.size() < claimed) {
+                break;
+            }
+            batch.forEach(sender);
+            batch.clear();
+        }
     }
 
     @Override
@@ -130,7 +438,9 @@ public final class Producer implements Callable<Integer>, AutoCloseable {
     @Override
     public void close() {
         try {
-            if (messageProducer != null) messageProducer.close();
+            for (MessageProducer shardProducer : shardProducers) {
+                if (shardProducer != null) shardProducer.close();
+            }
             if (session != null) session.close();
             if (connection != null) connection.close();
         } catch (JMSException e) {
@@ -140,4 +450,16 @@ public final class Producer implements Callable<Integer>, AutoCloseable {
     public int getProducedMessageCount() {
         return messagesSent.get();
     }
+
+    public int getGeneratedMessageCount() {
+        return messagesGenerated.get();
+    }
+
+    public int getSendErrorCount() {
+        return sendErrors.get();
+    }
+
+    public long getReplayedMessageCount() {
+        return replayBuffer == null ? 0 : replayBuffer.getReplayedCount();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,109 @@
+package shpp.azaika.util.mq;
+
+import javax.jms.Message;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messages a producer sent that the broker has not confirmed yet, in send order. Adding blocks
+ * while the buffer is full, so at most {@code capacity} messages are unconfirmed; after a failed
+ * send the producer reconnects and sends them again.
+ */
+final class ReplayBuffer {
+    record Entry(long sequence, int shard, Message message) {
+    }
+
+    private final int capacity;
+    private final Map<Long, Entry> unconfirmed = new LinkedHashMap<>();
+    private long nextSequence;
+    private int generation;
+    private boolean failed;
+    private long replayed;
+
+    ReplayBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Replay buffer capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Waits for room and buffers the message.
+     *
+     * @return the entry to send, or {@code null} if a send failed and the producer has to replay first
+     */
+    synchronized Entry add(int shard, Message message) throws InterruptedException {
+        while (unconfirmed.size() >= capacity && !failed) {
+            wait();
+        }
+        if (failed) {
+            return null;
+        }
+        Entry entry = new Entry(nextSequence++, shard, message);
+        unconfirmed.put(entry.sequence(), entry);
+        return entry;
+    }
+
+    synchronized void confirm(Entry entry) {
+        unconfirmed.remove(entry.sequence());
+        notifyAll();
+    }
+
+    /**
+     * Marks the connection of {@code generation} as failed; failures reported for connections
+     * already replaced are ignored.
+     */
+    synchronized void fail(int generation) {
+        if (generation == this.generation) {
+            failed = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Starts a new connection generation.
+     *
+     * @return the unconfirmed entries to send again, oldest first
+     */
+    synchronized List<Entry> replay() {
+        generation++;
+        failed = false;
+        replayed += unconfirmed.size();
+        return new ArrayList<>(unconfirmed.values());
+    }
+
+    /**
+     * @return {@code true} once every message is confirmed, {@code false} if a send failed or the
+     * timeout elapsed first
+     */
+    synchronized boolean awaitConfirmed(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!unconfirmed.isEmpty() && !failed) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return !failed;
+    }
+
+    synchronized int getGeneration() {
+        return generation;
+    }
+
+    synchronized boolean isFailed() {
+        return failed;
+    }
+
+    synchronized int size() {
+        return unconfirmed.size();
+    }
+
+    synchronized long getReplayedCount() {
+        return replayed;
+    }
+}
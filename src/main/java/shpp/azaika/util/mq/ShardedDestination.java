@@ -0,0 +1,93 @@
+package shpp.azaika.util.mq;
+
+import shpp.azaika.pojo.UserPojo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A logical queue spread over {@code shardCount} broker queues named {@code <base>.0 .. <base>.N-1},
+ * so no single destination and its dispatch thread limit throughput. With one shard the base
+ * name is used unchanged.
+ */
+public final class ShardedDestination {
+
+    public enum Strategy {
+        /**
+         * Each producer cycles through the shards.
+         */
+        ROUND_ROBIN,
+        /**
+         * Records with the same EDDR always land on the same shard.
+         */
+        EDDR_HASH
+    }
+
+    private final List<String> shardNames;
+    private final Strategy strategy;
+
+    public ShardedDestination(String baseName, int shardCount, Strategy strategy) {
+        if (baseName == null || baseName.isEmpty()) {
+            throw new IllegalArgumentException("Queue name must not be null or empty");
+        }
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        if (strategy == null) {
+            throw new IllegalArgumentException("Strategy must not be null");
+        }
+        List<String> names = new ArrayList<>(shardCount);
+        if (shardCount == 1) {
+            names.add(baseName);
+        } else {
+            for (int i = 0; i < shardCount; i++) {
+                names.add(baseName + "." + i);
+            }
+        }
+        this.shardNames = List.copyOf(names);
+        this.strategy = strategy;
+    }
+
+    public static ShardedDestination single(String name) {
+        return new ShardedDestination(name, 1, Strategy.ROUND_ROBIN);
+    }
+
+    /**
+     * @param sequence the producer's send sequence, used by {@link Strategy#ROUND_ROBIN}
+     * @param userPojo the record, used by {@link Strategy#EDDR_HASH}; may be {@code null} for round robin
+     */
+    public int shardFor(long sequence, UserPojo userPojo) {
+        int shardCount = shardNames.size();
+        if (shardCount == 1) {
+            return 0;
+        }
+        if (strategy == Strategy.EDDR_HASH) {
+            return Math.floorMod(Objects.hashCode(userPojo.getEddr()), shardCount);
+        }
+        return (int) Math.floorMod(sequence, (long) shardCount);
+    }
+
+    public String getShardName(int shard) {
+        return shardNames.get(shard);
+    }
+
+    public List<String> getShardNames() {
+        return shardNames;
+    }
+
+    public int getShardCount() {
+        return shardNames.size();
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Whether producers need the generated {@link UserPojo}, not only its JSON, to pick a shard.
+     */
+    public boolean needsRecord() {
+        return strategy == Strategy.EDDR_HASH && shardNames.size() > 1;
+    }
+}
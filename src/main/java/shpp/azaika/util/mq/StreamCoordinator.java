@@ -0,0 +1,108 @@
+package shpp.azaika.util.mq;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shared end-of-stream state of the consumers in one process. Every producer process sends
+ * one end-of-stream control message carrying the number of data messages it sent; once the
+ * messages of all producer processes have arrived, the consumers stop when their sum has been
+ * handled, whichever consumers received the control messages.
+ */
+public class StreamCoordinator {
+    private static final Logger logger = LoggerFactory.getLogger(StreamCoordinator.class);
+    private static final long UNKNOWN = -1;
+
+    private final int producerProcesses;
+    private final Map<String, Long> producerCounts = new ConcurrentHashMap<>();
+    private final AtomicLong expectedCount = new AtomicLong(UNKNOWN);
+    private final LongAdder consumedCount = new LongAdder();
+
+    public StreamCoordinator() {
+        this(1);
+    }
+
+    /**
+     * @param producerProcesses number of producer processes whose end of stream must arrive
+     *                          before the expected count is known
+     */
+    public StreamCoordinator(int producerProcesses) {
+        if (producerProcesses < 1) {
+            throw new IllegalArgumentException("At least one producer process is required");
+        }
+        this.producerProcesses = producerProcesses;
+    }
+
+    /**
+     * Records the end of stream of one producer process; repeated ones of the same process are ignored.
+     */
+    public void endOfStream(String producerProcess, long expected) {
+        if (producerProcess == null || producerProcess.isEmpty()) {
+            throw new IllegalArgumentException("Producer process must not be null or empty");
+        }
+        if (expected < 0) {
+            throw new IllegalArgumentException("Expected message count must be non-negative");
+        }
+        if (producerCounts.putIfAbsent(producerProcess, expected) != null) {
+            return;
+        }
+        int received = producerCounts.size();
+        if (received > producerProcesses) {
+            logger.warn("Received end of stream from {} producer processes, but only {} were configured.", received, producerProcesses);
+        }
+        if (received >= producerProcesses) {
+            expectedCount.set(producerCounts.values().stream().mapToLong(Long::longValue).sum());
+        }
+    }
+
+    public void messageConsumed() {
+        consumedCount.increment();
+    }
+
+    /**
+     * Counts {@code count} messages a previous run of this process consumed and acknowledged, so a
+     * resumed run stops once the rest of the stream is drained.
+     */
+    public void resumeAfter(long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Resumed message count must be non-negative");
+        }
+        consumedCount.add(count);
+    }
+
+    public boolean isEndOfStreamReceived() {
+        return expectedCount.get() != UNKNOWN;
+    }
+
+    public boolean isDrained() {
+        long expected = expectedCount.get();
+        return expected != UNKNOWN && consumedCount.sum() >= expected;
+    }
+
+    /**
+     * Sum of the counts of all producer processes, or -1 until every end of stream has arrived.
+     */
+    public long getExpectedCount() {
+        return expectedCount.get();
+    }
+
+    /**
+     * Count of every producer process whose end of stream has arrived so far.
+     */
+    public Map<String, Long> getProducerCounts() {
+        return Map.copyOf(producerCounts);
+    }
+
+    public int getProducerProcesses() {
+        return producerProcesses;
+    }
+
+    public long getConsumedCount() {
+        return consumedCount.sum();
+    }
+}
@@ -0,0 +1,134 @@
+package shpp.azaika.util.offheap;
+
+import shpp.azaika.pojo.UserPojo;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+
+/**
+ * Encodes a {@link UserPojo} as a UTF-8 CSV row straight into a buffer, producing the
+ * same bytes as the Jackson {@code CsvGenerator} used by {@link shpp.azaika.util.CsvWriter}:
+ * a string is quoted when it is longer than 24 chars or contains a character below
+ * {@code '-'} or a backslash, inner quotes are doubled, and the date is written as
+ * {@code year;month;day}, the way Jackson writes a {@link LocalDate} array.
+ */
+final class CsvRowEncoder {
+    static final int MIN_SLAB_SIZE = 256;
+
+    private static final byte SEPARATOR = ',';
+    private static final byte QUOTE = '"';
+    private static final byte LINE_FEED = '\n';
+    private static final byte ARRAY_SEPARATOR = ';';
+    private static final int MAX_UNQUOTED_LENGTH = 24;
+    private static final int FIXED_ROW_OVERHEAD = 64;
+
+    private CsvRowEncoder() {
+    }
+
+    /**
+     * Upper bound of the encoded row length: every char takes at most three
+     * bytes in UTF-8 (a doubled quote takes two), plus quotes, count, date and separators.
+     */
+    static int maxEncodedLength(UserPojo userPojo, String errors) {
+        return 3 * (length(userPojo.getName()) + length(userPojo.getEddr()) + length(errors)) + FIXED_ROW_OVERHEAD;
+    }
+
+    /**
+     * @param errors value of the trailing errors column, or {@code null} for rows without it
+     */
+    static void encode(UserPojo userPojo, String errors, ByteBuffer target) {
+        writeString(userPojo.getName(), target);
+        target.put(SEPARATOR);
+        writeString(userPojo.getEddr(), target);
+        target.put(SEPARATOR);
+        writeInt(userPojo.getCount(), target);
+        target.put(SEPARATOR);
+        writeDate(userPojo.getDate(), target);
+        if (errors != null) {
+            target.put(SEPARATOR);
+            writeString(errors, target);
+        }
+        target.put(LINE_FEED);
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static void writeString(String value, ByteBuffer target) {
+        if (value == null) {
+            return;
+        }
+        boolean quoted = needsQuotes(value);
+        if (quoted) {
+            target.put(QUOTE);
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == QUOTE) {
+                target.put(QUOTE).put(QUOTE);
+            } else if (c < 0x80) {
+                target.put((byte) c);
+            } else if (c < 0x800) {
+                target.put((byte) (0xC0 | (c >> 6)));
+                target.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                target.put((byte) (0xF0 | (codePoint >> 18)));
+                target.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                target.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                target.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else {
+                target.put((byte) (0xE0 | (c >> 12)));
+                target.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                target.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        if (quoted) {
+            target.put(QUOTE);
+        }
+    }
+
+    private static boolean needsQuotes(String value) {
+        if (value.length() > MAX_UNQUOTED_LENGTH) {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '-' || c == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void writeInt(int value, ByteBuffer target) {
+        if (value < 0) {
+            target.put((byte) '-');
+            if (value == Integer.MIN_VALUE) {
+                target.put((byte) '2');
+                value = -147483648;
+            }
+            value = -value;
+        }
+        int divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        while (divisor > 0) {
+            target.put((byte) ('0' + (value / divisor) % 10));
+            divisor /= 10;
+        }
+    }
+
+    private static void writeDate(LocalDate date, ByteBuffer target) {
+        if (date == null) {
+            return;
+        }
+        writeInt(date.getYear(), target);
+        target.put(ARRAY_SEPARATOR);
+        writeInt(date.getMonthValue(), target);
+        target.put(ARRAY_SEPARATOR);
+        writeInt(date.getDayOfMonth(), target);
+    }
+}
@@ -0,0 +1,82 @@
+package shpp.azaika.util.offheap;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Bloom filter of {@code long} keys stored in direct memory. Bits are set with atomic
+ * {@code getAndBitwiseOr}, so concurrent threads can add keys without locking.
+ */
+public class OffHeapBloomFilter {
+    private static final VarHandle WORDS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer bits;
+    private final long bitMask;
+    private final int hashCount;
+
+    /**
+     * @param sizeInBytes memory used by the filter, rounded down to a power of two (at least 8 bytes)
+     * @param hashCount   number of bit positions per key
+     */
+    public OffHeapBloomFilter(int sizeInBytes, int hashCount) {
+        if (sizeInBytes < Long.BYTES) {
+            throw new IllegalArgumentException("Bloom filter needs at least " + Long.BYTES + " bytes");
+        }
+        if (hashCount < 1) {
+            throw new IllegalArgumentException("Hash count must be positive");
+        }
+        int bytes = Integer.highestOneBit(sizeInBytes);
+        this.bits = ByteBuffer.allocateDirect(bytes + Long.BYTES).alignedSlice(Long.BYTES);
+        this.bitMask = (long) bytes * Byte.SIZE - 1;
+        this.hashCount = hashCount;
+    }
+
+    public void put(long key) {
+        long hash = mix(key);
+        long h1 = hash;
+        long h2 = (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = (h1 + i * h2) & bitMask;
+            WORDS.getAndBitwiseOr(bits, wordOffset(bit), 1L << (bit & 63));
+        }
+    }
+
+    public boolean mightContain(long key) {
+        long hash = mix(key);
+        long h1 = hash;
+        long h2 = (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = (h1 + i * h2) & bitMask;
+            long word = (long) WORDS.getAcquire(bits, wordOffset(bit));
+            if ((word & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Theoretical false positive probability after {@code insertions} distinct keys: (1 - e^(-kn/m))^k.
+     */
+    public double expectedFalsePositiveRate(long insertions) {
+        double bitCount = bitMask + 1.0;
+        return Math.pow(1 - Math.exp(-hashCount * insertions / bitCount), hashCount);
+    }
+
+    public long getSizeInBytes() {
+        return (bitMask + 1) / Byte.SIZE;
+    }
+
+    private static int wordOffset(long bit) {
+        return (int) (bit >>> 6) * Long.BYTES;
+    }
+
+    // Stafford variant 13 of the MurmurHash3 64-bit finalizer
+    private static long mix(long key) {
+        key = (key ^ (key >>> 30)) * 0xbf58476d1ce4e5b9L;
+        key = (key ^ (key >>> 27)) * 0x94d049bb133111ebL;
+        return key ^ (key >>> 31);
+    }
+}
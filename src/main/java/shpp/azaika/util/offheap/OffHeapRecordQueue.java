@@ -0,0 +1,91 @@
+package shpp.azaika.util.offheap;
+
+import shpp.azaika.pojo.ValidatedRecord;
+import shpp.azaika.validation.ViolationCatalog;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Off-heap replacement for the {@code BlockingQueue<ValidatedRecord>} hand-off.
+ * Each consumer appends CSV rows into its own slab through an {@link Appender};
+ * full slabs are published to the writer, which copies them to disk and
+ * releases them back to the arena.
+ */
+public class OffHeapRecordQueue {
+    private final RecordArena arena;
+    private final BlockingQueue<ByteBuffer> filledSlabs;
+    private final ViolationCatalog violationCatalog;
+
+    public OffHeapRecordQueue(int slabCount, int slabSize) {
+        this(slabCount, slabSize, null);
+    }
+
+    /**
+     * @param violationCatalog when not {@code null}, rows get an {@code errors} column rendered from the violation mask
+     */
+    public OffHeapRecordQueue(int slabCount, int slabSize, ViolationCatalog violationCatalog) {
+        this.arena = new RecordArena(slabCount, slabSize);
+        this.filledSlabs = new ArrayBlockingQueue<>(slabCount);
+        this.violationCatalog = violationCatalog;
+    }
+
+    public Appender newAppender() {
+        return new Appender();
+    }
+
+    public ByteBuffer poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return filledSlabs.poll(timeout, unit);
+    }
+
+    public void release(ByteBuffer slab) {
+        arena.release(slab);
+    }
+
+    public int size() {
+        return filledSlabs.size();
+    }
+
+    public int getFreeSlabCount() {
+        return arena.getFreeSlabCount();
+    }
+
+    /**
+     * Single-threaded writer side of the queue. Not thread-safe: every consumer owns its own appender.
+     */
+    public final class Appender {
+        private ByteBuffer current;
+
+        private Appender() {
+        }
+
+        public void append(ValidatedRecord record) throws InterruptedException {
+            String errors = violationCatalog == null ? null : violationCatalog.toJson(record.violationMask());
+            int required = CsvRowEncoder.maxEncodedLength(record.userPojo(), errors);
+            if (required > arena.getSlabSize()) {
+                throw new IllegalArgumentException("Record does not fit into a slab of " + arena.getSlabSize() + " bytes");
+            }
+            if (current != null && current.remaining() < required) {
+                publish();
+            }
+            if (current == null) {
+                current = arena.acquire();
+            }
+            CsvRowEncoder.encode(record.userPojo(), errors, current);
+        }
+
+        public void flush() throws InterruptedException {
+            if (current != null && current.position() > 0) {
+                publish();
+            }
+        }
+
+        private void publish() throws InterruptedException {
+            current.flip();
+            filledSlabs.put(current);
+            current = null;
+        }
+    }
+}
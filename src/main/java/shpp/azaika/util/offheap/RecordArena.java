@@ -0,0 +1,45 @@
+package shpp.azaika.util.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Fixed pool of direct-memory slabs. Slabs are allocated once and recycled,
+ * so the hand-off between consumers and writers does not allocate per record.
+ */
+public class RecordArena {
+    private final BlockingQueue<ByteBuffer> freeSlabs;
+    private final int slabSize;
+
+    public RecordArena(int slabCount, int slabSize) {
+        if (slabCount < 1) {
+            throw new IllegalArgumentException("Slab count must be positive");
+        }
+        if (slabSize < CsvRowEncoder.MIN_SLAB_SIZE) {
+            throw new IllegalArgumentException("Slab size must be at least " + CsvRowEncoder.MIN_SLAB_SIZE + " bytes");
+        }
+        this.slabSize = slabSize;
+        this.freeSlabs = new ArrayBlockingQueue<>(slabCount);
+        for (int i = 0; i < slabCount; i++) {
+            freeSlabs.add(ByteBuffer.allocateDirect(slabSize));
+        }
+    }
+
+    public ByteBuffer acquire() throws InterruptedException {
+        return freeSlabs.take();
+    }
+
+    public void release(ByteBuffer slab) {
+        slab.clear();
+        freeSlabs.add(slab);
+    }
+
+    public int getFreeSlabCount() {
+        return freeSlabs.size();
+    }
+
+    public int getSlabSize() {
+        return slabSize;
+    }
+}
@@ -0,0 +1,120 @@
+package shpp.azaika.util.sink;
+
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.pojo.ValidatedRecord;
+import shpp.azaika.util.InstrumentedOutputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compact append-only log of varint-encoded records: name and EDDR as UTF-8 prefixed by
+ * length + 1 ({@code 0} for {@code null}), the count zigzag-encoded, the date as zigzag epoch
+ * day + 1 ({@code 0} for {@code null}) and the violation mask. The mask replaces the rendered
+ * errors column; {@link shpp.azaika.validation.ViolationCatalog} turns it back into text.
+ */
+public final class BinaryLogRecordSink implements RecordSink {
+    static final int MAGIC = 0x55504C31;
+
+    private final FileOutputStream fileOutputStream;
+    private final DataOutputStream output;
+    private final String name;
+
+    public BinaryLogRecordSink(Path file, LongAdder bytesFlushed) throws IOException {
+        boolean newFile = !Files.exists(file) || Files.size(file) == 0;
+        this.fileOutputStream = new FileOutputStream(file.toFile(), true);
+        this.output = new DataOutputStream(new BufferedOutputStream(
+                new InstrumentedOutputStream(fileOutputStream, file.toString(), bytesFlushed), 16384));
+        this.name = file.getFileName().toString();
+        if (newFile) {
+            output.writeInt(MAGIC);
+        }
+    }
+
+    @Override
+    public void write(List<ValidatedRecord> records) throws IOException {
+        for (ValidatedRecord record : records) {
+            UserPojo userPojo = record.userPojo();
+            writeString(userPojo.getName());
+            writeString(userPojo.getEddr());
+            VarInts.write(output, VarInts.zigzag(userPojo.getCount()));
+            VarInts.write(output, userPojo.getDate() == null ? 0 : VarInts.zigzag(userPojo.getDate().toEpochDay()) + 1);
+            VarInts.write(output, Integer.toUnsignedLong(record.violationMask()));
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            VarInts.write(output, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        VarInts.write(output, bytes.length + 1L);
+        output.write(bytes);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    public void sync() throws IOException {
+        flush();
+        fileOutputStream.getChannel().force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Reads a whole log back, restoring each record's violation mask.
+     */
+    public static List<ValidatedRecord> read(Path file) throws IOException {
+        List<ValidatedRecord> records = new ArrayList<>();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a binary record log: " + file);
+            }
+            while (true) {
+                int first = input.read();
+                if (first < 0) {
+                    return records;
+                }
+                String name = readString(input, VarInts.read(input, first));
+                String eddr = readString(input, VarInts.read(input));
+                int count = (int) VarInts.unzigzag(VarInts.read(input));
+                long date = VarInts.read(input);
+                UserPojo userPojo = new UserPojo(name, eddr, count, date == 0 ? null : LocalDate.ofEpochDay(VarInts.unzigzag(date - 1)));
+                records.add(new ValidatedRecord(userPojo, (int) VarInts.read(input)));
+            }
+        }
+    }
+
+    private static String readString(DataInputStream input, long prefix) throws IOException {
+        if (prefix == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) (prefix - 1)];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,71 @@
+package shpp.azaika.util.sink;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Packs unsigned values of a fixed bit width back to back, least significant bit first.
+ */
+final class BitPacking {
+    private BitPacking() {
+    }
+
+    /**
+     * @return bits needed for {@code maxValue}, treated as unsigned; {@code 0} for {@code 0}
+     */
+    static int bitWidth(long maxValue) {
+        return Long.SIZE - Long.numberOfLeadingZeros(maxValue);
+    }
+
+    static int packedLength(int count, int bitWidth) {
+        return (int) (((long) count * bitWidth + 7) / 8);
+    }
+
+    static void pack(long[] values, int count, int bitWidth, OutputStream output) throws IOException {
+        int current = 0;
+        int used = 0;
+        for (int i = 0; i < count; i++) {
+            int written = 0;
+            while (written < bitWidth) {
+                int take = Math.min(bitWidth - written, 8 - used);
+                current |= (int) ((values[i] >>> written) & mask(take)) << used;
+                used += take;
+                written += take;
+                if (used == 8) {
+                    output.write(current);
+                    current = 0;
+                    used = 0;
+                }
+            }
+        }
+        if (used > 0) {
+            output.write(current);
+        }
+    }
+
+    static void unpack(DataInput input, long[] values, int count, int bitWidth) throws IOException {
+        long buffer = 0;
+        int bufferedBits = 0;
+        for (int i = 0; i < count; i++) {
+            long value = 0;
+            int filled = 0;
+            while (filled < bitWidth) {
+                if (bufferedBits == 0) {
+                    buffer = input.readUnsignedByte();
+                    bufferedBits = 8;
+                }
+                int take = Math.min(bitWidth - filled, bufferedBits);
+                value |= (buffer & mask(take)) << filled;
+                buffer >>>= take;
+                bufferedBits -= take;
+                filled += take;
+            }
+            values[i] = value;
+        }
+    }
+
+    private static long mask(int bits) {
+        return bits == Long.SIZE ? -1L : (1L << bits) - 1;
+    }
+}
@@ -0,0 +1,141 @@
+package shpp.azaika.util.sink;
+
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.pojo.ValidatedRecord;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Streams a file written by {@link ColumnarRecordSink} one row group at a time. After
+ * {@link #nextRowGroup()} the caller either decodes the group with {@link #readRowGroup()} or
+ * moves on, which skips its body without decoding it.
+ */
+public final class ColumnarReader implements AutoCloseable {
+    private final DataInputStream input;
+    private RowGroupStats current;
+    private int unreadBodyLength;
+    private long skippedRowGroups;
+
+    public ColumnarReader(Path file) throws IOException {
+        this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 65536));
+        if (input.readInt() != ColumnarRecordSink.MAGIC) {
+            input.close();
+            throw new IOException("Not a columnar record file: " + file);
+        }
+    }
+
+    /**
+     * @return the stats of the next row group, or {@code null} at the end of the file
+     */
+    public RowGroupStats nextRowGroup() throws IOException {
+        if (current != null && unreadBodyLength > 0) {
+            input.skipNBytes(unreadBodyLength);
+            skippedRowGroups++;
+        }
+        int first = input.read();
+        if (first < 0) {
+            current = null;
+            return null;
+        }
+        int rowCount = (first << 24) | (input.readUnsignedByte() << 16) | (input.readUnsignedByte() << 8) | input.readUnsignedByte();
+        unreadBodyLength = input.readInt();
+        current = new RowGroupStats(rowCount, input.readInt(), input.readInt(), toDate(input.readLong()), toDate(input.readLong()));
+        return current;
+    }
+
+    private static LocalDate toDate(long epochDay) {
+        return epochDay == ColumnarRecordSink.NULL_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    /**
+     * Decodes the row group returned by the last {@link #nextRowGroup()}.
+     */
+    public List<ValidatedRecord> readRowGroup() throws IOException {
+        if (current == null || unreadBodyLength == 0) {
+            throw new IllegalStateException("No unread row group");
+        }
+        int rows = current.rowCount();
+        long[] values = new long[rows];
+
+        LocalDate[] dictionary = new LocalDate[(int) VarInts.read(input)];
+        for (int i = 0; i < dictionary.length; i++) {
+            long date = VarInts.read(input);
+            dictionary[i] = date == 0 ? null : LocalDate.ofEpochDay(VarInts.unzigzag(date - 1));
+        }
+        BitPacking.unpack(input, values, rows, input.readUnsignedByte());
+        LocalDate[] dates = new LocalDate[rows];
+        for (int i = 0; i < rows; i++) {
+            dates[i] = dictionary[(int) values[i]];
+        }
+
+        long minCount = VarInts.unzigzag(VarInts.read(input));
+        BitPacking.unpack(input, values, rows, input.readUnsignedByte());
+        int[] counts = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            counts[i] = (int) (minCount + values[i]);
+        }
+
+        BitPacking.unpack(input, values, rows, input.readUnsignedByte());
+        String[] names = readStrings(rows);
+        List<ValidatedRecord> records = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            records.add(new ValidatedRecord(new UserPojo(names[i], readString(), counts[i], dates[i]), (int) values[i]));
+        }
+        unreadBodyLength = 0;
+        return records;
+    }
+
+    private String[] readStrings(int count) throws IOException {
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = readString();
+        }
+        return values;
+    }
+
+    private String readString() throws IOException {
+        long prefix = VarInts.read(input);
+        if (prefix == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) (prefix - 1)];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Passes every record of the row groups {@code rowGroupFilter} accepts to {@code action}.
+     *
+     * @return number of records read
+     */
+    public long scan(Predicate<RowGroupStats> rowGroupFilter, Consumer<ValidatedRecord> action) throws IOException {
+        long records = 0;
+        for (RowGroupStats stats = nextRowGroup(); stats != null; stats = nextRowGroup()) {
+            if (rowGroupFilter.test(stats)) {
+                List<ValidatedRecord> rows = readRowGroup();
+                rows.forEach(action);
+                records += rows.size();
+            }
+        }
+        return records;
+    }
+
+    public long getSkippedRowGroups() {
+        return skippedRowGroups;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
@@ -0,0 +1,179 @@
+package shpp.azaika.util.sink;
+
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.pojo.ValidatedRecord;
+import shpp.azaika.util.InstrumentedOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Column-oriented file of row groups, read back by {@link ColumnarReader}. Each group starts with
+ * its row count, body length and min/max of {@code count} and {@code date}, so readers can skip it.
+ * In the body the dates are dictionary encoded, counts and violation masks are bit-packed (counts
+ * relative to the group minimum) and names and EDDRs are length-prefixed UTF-8.
+ * <p>
+ * {@link #flush()} closes the pending row group early, so frequent flushes make smaller groups.
+ */
+public final class ColumnarRecordSink implements RecordSink {
+    static final int MAGIC = 0x55434C31;
+    static final long NULL_DATE = Long.MIN_VALUE;
+    public static final int DEFAULT_ROW_GROUP_SIZE = 8192;
+
+    private final FileOutputStream fileOutputStream;
+    private final DataOutputStream output;
+    private final String name;
+    private final int rowGroupSize;
+    private final String[] names;
+    private final String[] eddrs;
+    private final long[] counts;
+    private final long[] dates;
+    private final long[] masks;
+    private final long[] packed;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final DataOutputStream bodyOutput = new DataOutputStream(body);
+    private int rows;
+
+    public ColumnarRecordSink(Path file, int rowGroupSize, LongAdder bytesFlushed) throws IOException {
+        if (rowGroupSize <= 0) {
+            throw new IllegalArgumentException("Row group size must be positive");
+        }
+        boolean newFile = !Files.exists(file) || Files.size(file) == 0;
+        this.fileOutputStream = new FileOutputStream(file.toFile(), true);
+        this.output = new DataOutputStream(new BufferedOutputStream(
+                new InstrumentedOutputStream(fileOutputStream, file.toString(), bytesFlushed), 65536));
+        this.name = file.getFileName().toString();
+        this.rowGroupSize = rowGroupSize;
+        this.names = new String[rowGroupSize];
+        this.eddrs = new String[rowGroupSize];
+        this.counts = new long[rowGroupSize];
+        this.dates = new long[rowGroupSize];
+        this.masks = new long[rowGroupSize];
+        this.packed = new long[rowGroupSize];
+        if (newFile) {
+            output.writeInt(MAGIC);
+        }
+    }
+
+    @Override
+    public void write(List<ValidatedRecord> records) throws IOException {
+        for (ValidatedRecord record : records) {
+            UserPojo userPojo = record.userPojo();
+            names[rows] = userPojo.getName();
+            eddrs[rows] = userPojo.getEddr();
+            counts[rows] = userPojo.getCount();
+            dates[rows] = userPojo.getDate() == null ? NULL_DATE : userPojo.getDate().toEpochDay();
+            masks[rows] = Integer.toUnsignedLong(record.violationMask());
+            if (++rows == rowGroupSize) {
+                writeRowGroup();
+            }
+        }
+    }
+
+    private void writeRowGroup() throws IOException {
+        body.reset();
+        long minDate = Long.MAX_VALUE;
+        long maxDate = Long.MIN_VALUE;
+        Map<Long, Integer> dictionary = new LinkedHashMap<>();
+        for (int i = 0; i < rows; i++) {
+            packed[i] = dictionary.computeIfAbsent(dates[i], date -> dictionary.size());
+            if (dates[i] != NULL_DATE) {
+                minDate = Math.min(minDate, dates[i]);
+                maxDate = Math.max(maxDate, dates[i]);
+            }
+        }
+        VarInts.write(bodyOutput, dictionary.size());
+        for (long date : dictionary.keySet()) {
+            VarInts.write(bodyOutput, date == NULL_DATE ? 0 : VarInts.zigzag(date) + 1);
+        }
+        writePacked(packed, BitPacking.bitWidth(dictionary.size() - 1L));
+
+        long minCount = Long.MAX_VALUE;
+        long maxCount = Long.MIN_VALUE;
+        for (int i = 0; i < rows; i++) {
+            minCount = Math.min(minCount, counts[i]);
+            maxCount = Math.max(maxCount, counts[i]);
+        }
+        for (int i = 0; i < rows; i++) {
+            packed[i] = counts[i] - minCount;
+        }
+        VarInts.write(bodyOutput, VarInts.zigzag(minCount));
+        writePacked(packed, BitPacking.bitWidth(maxCount - minCount));
+
+        long maxMask = 0;
+        for (int i = 0; i < rows; i++) {
+            maxMask = Math.max(maxMask, masks[i]);
+        }
+        writePacked(masks, BitPacking.bitWidth(maxMask));
+        writeStrings(names);
+        writeStrings(eddrs);
+
+        output.writeInt(rows);
+        output.writeInt(body.size());
+        output.writeInt((int) minCount);
+        output.writeInt((int) maxCount);
+        output.writeLong(minDate == Long.MAX_VALUE ? NULL_DATE : minDate);
+        output.writeLong(maxDate == Long.MIN_VALUE ? NULL_DATE : maxDate);
+        body.writeTo(output);
+        rows = 0;
+    }
+
+    private void writePacked(long[] values, int bitWidth) throws IOException {
+        bodyOutput.writeByte(bitWidth);
+        BitPacking.pack(values, rows, bitWidth, bodyOutput);
+    }
+
+    private void writeStrings(String[] values) throws IOException {
+        for (int i = 0; i < rows; i++) {
+            if (values[i] == null) {
+                VarInts.write(bodyOutput, 0);
+            } else {
+                byte[] bytes = values[i].getBytes(StandardCharsets.UTF_8);
+                VarInts.write(bodyOutput, bytes.length + 1L);
+                bodyOutput.write(bytes);
+            }
+            values[i] = null;
+        }
+    }
+
+    /**
+     * Writes the pending rows as a row group, even if it is not full.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (rows > 0) {
+            writeRowGroup();
+        }
+        output.flush();
+    }
+
+    @Override
+    public void sync() throws IOException {
+        flush();
+        fileOutputStream.getChannel().force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            output.close();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,50 @@
+package shpp.azaika.util.sink;
+
+import shpp.azaika.pojo.ValidatedRecord;
+import shpp.azaika.util.CsvWriter;
+import shpp.azaika.validation.ViolationCatalog;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One CSV row per record, through {@link CsvWriter}.
+ */
+public final class CsvRecordSink implements RecordSink {
+    private final CsvWriter writer;
+    private final String name;
+
+    public CsvRecordSink(Path file, ViolationCatalog violationCatalog, LongAdder bytesFlushed) throws IOException {
+        this.writer = new CsvWriter(file.toString(), violationCatalog, bytesFlushed);
+        this.name = file.getFileName().toString();
+    }
+
+    @Override
+    public void write(List<ValidatedRecord> records) throws IOException {
+        for (ValidatedRecord record : records) {
+            writer.write(record);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void sync() throws IOException {
+        writer.sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+}
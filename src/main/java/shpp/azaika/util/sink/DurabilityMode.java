@@ -0,0 +1,29 @@
+package shpp.azaika.util.sink;
+
+import java.util.Locale;
+
+/**
+ * When writers force their output to stable storage, selected by {@code writer.durability}.
+ */
+public enum DurabilityMode {
+    /**
+     * Never; the OS writes pages back when it likes, so a machine crash loses an unknown tail.
+     */
+    NONE,
+    /**
+     * Once per interval while records are pending, bounding the loss window in time.
+     */
+    PERIODIC,
+    /**
+     * As soon as the writer's queue runs empty, or earlier once a group of records or the interval
+     * is reached: under load many records share one sync, when idle records are synced at once.
+     */
+    GROUP_COMMIT;
+
+    public static DurabilityMode parse(String mode) {
+        if (mode == null || mode.isBlank()) {
+            throw new IllegalArgumentException("Durability mode must not be null or empty");
+        }
+        return valueOf(mode.trim().toUpperCase(Locale.ROOT));
+    }
+}
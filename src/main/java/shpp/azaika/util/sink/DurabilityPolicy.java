@@ -0,0 +1,41 @@
+package shpp.azaika.util.sink;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides after each written batch, and whenever a writer's queue is empty, whether to
+ * {@link RecordSink#sync()} the records written since the last sync.
+ *
+ * @param intervalMillis longest time records stay unsynced; ignored by {@link DurabilityMode#NONE}
+ * @param groupSize      pending records that trigger a group commit without waiting for the interval
+ */
+public record DurabilityPolicy(DurabilityMode mode, long intervalMillis, int groupSize) {
+    public static final long DEFAULT_INTERVAL_MILLIS = 100;
+    public static final int DEFAULT_GROUP_SIZE = 10_000;
+    public static final DurabilityPolicy NONE = new DurabilityPolicy(DurabilityMode.NONE, DEFAULT_INTERVAL_MILLIS, DEFAULT_GROUP_SIZE);
+
+    public DurabilityPolicy {
+        if (mode == null) {
+            throw new IllegalArgumentException("DurabilityMode must not be null");
+        }
+        if (intervalMillis <= 0 || groupSize <= 0) {
+            throw new IllegalArgumentException("Sync interval and group size must be positive");
+        }
+    }
+
+    /**
+     * @param pendingRecords records written since the last sync
+     * @param idle           whether the writer's queue is empty
+     */
+    public boolean shouldSync(long pendingRecords, long nanosSinceSync, boolean idle) {
+        if (pendingRecords == 0) {
+            return false;
+        }
+        boolean intervalElapsed = nanosSinceSync >= TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        return switch (mode) {
+            case NONE -> false;
+            case PERIODIC -> intervalElapsed;
+            case GROUP_COMMIT -> idle || intervalElapsed || pendingRecords >= groupSize;
+        };
+    }
+}
@@ -0,0 +1,308 @@
+package shpp.azaika.util.sink;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import shpp.azaika.pojo.ValidatedRecord;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feeds every batch to several sinks, each through its own bounded buffer and thread, so a slow
+ * sink only falls behind instead of holding back the others. When a sink's buffer is full the
+ * {@link OverflowPolicy} decides between waiting and dropping batches for that sink.
+ * <p>
+ * A sink that fails keeps draining its buffer, counting the batches as dropped, so the others go on.
+ * With strict syncs, as checkpoints need, {@link #sync()} fails instead once any sink has failed.
+ */
+public final class FanOutSink implements RecordSink {
+    private static final Logger logger = LoggerFactory.getLogger(FanOutSink.class);
+    private static final long POLL_MILLIS = 100;
+
+    private final List<Channel> channels = new ArrayList<>();
+    private final OverflowPolicy overflowPolicy;
+    private final boolean strictSync;
+    private final long startedNanos = System.nanoTime();
+    private volatile boolean closing;
+
+    public FanOutSink(List<RecordSink> sinks, int bufferBatches, OverflowPolicy overflowPolicy) {
+        this(sinks, bufferBatches, overflowPolicy, false);
+    }
+
+    /**
+     * @param bufferBatches batches each sink may have waiting before the overflow policy applies
+     * @param strictSync    make {@link #sync()} fail once a sink has failed, so no record is reported
+     *                      durable unless every sink has it; needs {@link OverflowPolicy#BLOCK}
+     */
+    public FanOutSink(List<RecordSink> sinks, int bufferBatches, OverflowPolicy overflowPolicy, boolean strictSync) {
+        if (sinks == null || sinks.isEmpty()) {
+            throw new IllegalArgumentException("At least one sink is required");
+        }
+        if (bufferBatches <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive");
+        }
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("OverflowPolicy must not be null");
+        }
+        if (strictSync && overflowPolicy != OverflowPolicy.BLOCK) {
+            throw new IllegalArgumentException("Strict syncs need the block overflow policy, " + overflowPolicy + " drops records");
+        }
+        this.overflowPolicy = overflowPolicy;
+        this.strictSync = strictSync;
+        for (RecordSink sink : sinks) {
+            Channel channel = new Channel(sink, bufferBatches);
+            channels.add(channel);
+            channel.thread.start();
+        }
+    }
+
+    /**
+     * Hands {@code records} to every sink's buffer; the sinks write them asynchronously.
+     */
+    @Override
+    public void write(List<ValidatedRecord> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        List<ValidatedRecord> batch = List.copyOf(records);
+        try {
+            for (Channel channel : channels) {
+                channel.offer(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a sink buffer", e);
+        }
+    }
+
+    /**
+     * Asks every sink to flush once it has written what is buffered; does not wait for it.
+     */
+    @Override
+    public void flush() {
+        channels.forEach(channel -> channel.flushRequested = true);
+    }
+
+    /**
+     * Waits for every sink to write and sync what is buffered. A failed sink is not waited for;
+     * its failure surfaces on {@link #close()}, or here with strict syncs.
+     *
+     * @throws IOException with strict syncs, if any sink failed or dropped records
+     */
+    @Override
+    public void sync() throws IOException {
+        try {
+            for (Channel channel : channels) {
+                channel.awaitSync(channel.requestSync());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for sinks to sync", e);
+        }
+        if (strictSync) {
+            for (Channel channel : channels) {
+                if (channel.failure != null) {
+                    throw new IOException("Sink " + channel.sink.getName() + " failed", channel.failure);
+                }
+                if (channel.droppedRecords.get() > 0) {
+                    throw new IOException("Sink " + channel.sink.getName() + " dropped " + channel.droppedRecords.get() + " records");
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for every sink to write its buffer, then closes them.
+     *
+     * @throws IOException if any sink failed during the run
+     */
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        IOException failure = null;
+        for (Channel channel : channels) {
+            try {
+                channel.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (channel.failure != null) {
+                failure = failure == null ? new IOException("Sink " + channel.sink.getName() + " failed", channel.failure) : failure;
+            }
+        }
+        getStats().forEach(stats -> logger.info("**Sink {} wrote {} records ({}/s), dropped {}",
+                stats.name(), stats.writtenRecords(), Math.round(stats.recordsPerSecond()), stats.droppedRecords()));
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return channels.stream().map(channel -> channel.sink.getName()).toList().toString();
+    }
+
+    public List<SinkStats> getStats() {
+        double elapsedSeconds = (System.nanoTime() - startedNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        return channels.stream().map(channel -> channel.stats(elapsedSeconds)).toList();
+    }
+
+    /**
+     * Totals of one sink behind the fan-out.
+     *
+     * @param lag records handed to the fan-out for this sink that are neither written nor dropped yet
+     */
+    public record SinkStats(String name, long writtenRecords, long droppedRecords, long lag, double recordsPerSecond, boolean failed) {
+    }
+
+    private final class Channel implements Runnable {
+        private final RecordSink sink;
+        private final BlockingQueue<List<ValidatedRecord>> buffer;
+        private final Thread thread;
+        private final AtomicLong offeredRecords = new AtomicLong();
+        private final AtomicLong writtenRecords = new AtomicLong();
+        private final AtomicLong droppedRecords = new AtomicLong();
+        private volatile boolean flushRequested;
+        private volatile IOException failure;
+        private long syncsRequested;
+        private long syncsCompleted;
+
+        private Channel(RecordSink sink, int bufferBatches) {
+            this.sink = sink;
+            this.buffer = new ArrayBlockingQueue<>(bufferBatches);
+            this.thread = new Thread(this, "sink-" + sink.getName());
+        }
+
+        private void offer(List<ValidatedRecord> batch) throws InterruptedException {
+            offeredRecords.addAndGet(batch.size());
+            switch (overflowPolicy) {
+                case BLOCK -> buffer.put(batch);
+                case DROP_NEWEST -> {
+                    if (!buffer.offer(batch)) {
+                        droppedRecords.addAndGet(batch.size());
+                    }
+                }
+                case DROP_OLDEST -> {
+                    while (!buffer.offer(batch)) {
+                        List<ValidatedRecord> oldest = buffer.poll();
+                        if (oldest != null) {
+                            droppedRecords.addAndGet(oldest.size());
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    List<ValidatedRecord> batch = buffer.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (batch != null) {
+                        write(batch);
+                    } else if (closing) {
+                        break;
+                    }
+                    if (buffer.isEmpty()) {
+                        long syncTarget = pendingSync();
+                        if (syncTarget > 0) {
+                            flushRequested = false;
+                            syncSink(syncTarget);
+                        } else if (flushRequested) {
+                            flushRequested = false;
+                            flushSink();
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    sink.close();
+                } catch (IOException e) {
+                    fail(e);
+                }
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+
+        private synchronized long requestSync() {
+            return ++syncsRequested;
+        }
+
+        /**
+         * @return the newest requested sync not completed yet, or 0
+         */
+        private synchronized long pendingSync() {
+            return syncsRequested > syncsCompleted ? syncsRequested : 0;
+        }
+
+        private void awaitSync(long target) throws InterruptedException {
+            synchronized (this) {
+                while (syncsCompleted < target && failure == null && thread.isAlive()) {
+                    wait(POLL_MILLIS);
+                }
+            }
+        }
+
+        private void syncSink(long target) {
+            if (failure == null) {
+                try {
+                    sink.sync();
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+            synchronized (this) {
+                syncsCompleted = target;
+                notifyAll();
+            }
+        }
+
+        private void flushSink() {
+            if (failure != null) {
+                return;
+            }
+            try {
+                sink.flush();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void write(List<ValidatedRecord> batch) {
+            if (failure != null) {
+                droppedRecords.addAndGet(batch.size());
+                return;
+            }
+            try {
+                sink.write(batch);
+                writtenRecords.addAndGet(batch.size());
+            } catch (IOException e) {
+                droppedRecords.addAndGet(batch.size());
+                fail(e);
+            }
+        }
+
+        private void fail(IOException e) {
+            if (failure == null) {
+                failure = e;
+                logger.error("Sink {} failed, dropping its remaining batches", sink.getName(), e);
+            }
+        }
+
+        private SinkStats stats(double elapsedSeconds) {
+            long written = writtenRecords.get();
+            long dropped = droppedRecords.get();
+            return new SinkStats(sink.getName(), written, dropped, offeredRecords.get() - written - dropped,
+                    elapsedSeconds <= 0 ? 0 : written / elapsedSeconds, failure != null);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package shpp.azaika.util.sink;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.pojo.ValidatedRecord;
+import shpp.azaika.validation.ViolationCatalog;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Phaser;
+
+/**
+ * Inserts records into a table through JDBC with batched prepared statements. Batches are handed
+ * round robin to {@code connections} writer threads, each with its own connection in manual-commit
+ * mode, committing every {@code commitInterval} rows and on {@link #flush()}.
+ * <p>
+ * The table is created if missing: {@code name}, {@code eddr}, {@code user_count},
+ * {@code user_date} and, with a violation catalog, {@code errors}.
+ */
+public final class JdbcRecordSink implements RecordSink {
+    private static final Logger logger = LoggerFactory.getLogger(JdbcRecordSink.class);
+    private static final List<ValidatedRecord> FLUSH = new ArrayList<>();
+    private static final List<ValidatedRecord> CLOSE = new ArrayList<>();
+    private static final int QUEUED_BATCHES_PER_CONNECTION = 4;
+
+    private final String table;
+    private final ViolationCatalog violationCatalog;
+    private final JdbcSinkSettings settings;
+    private final List<ConnectionWriter> writers = new ArrayList<>();
+    private final Phaser flushes = new Phaser(1);
+    private int next;
+
+    /**
+     * @param violationCatalog when not {@code null}, rows get the rendered {@code errors} column
+     */
+    public JdbcRecordSink(String table, ViolationCatalog violationCatalog, JdbcSinkSettings settings) throws IOException {
+        if (table == null || table.isEmpty()) {
+            throw new IllegalArgumentException("Table name must not be null or empty");
+        }
+        if (settings == null) {
+            throw new IllegalArgumentException("JdbcSinkSettings must not be null");
+        }
+        this.table = table;
+        this.violationCatalog = violationCatalog;
+        this.settings = settings;
+        try {
+            try (Connection connection = connect()) {
+                createTableIfMissing(connection);
+            }
+            for (int i = 0; i < settings.connections(); i++) {
+                ConnectionWriter writer = new ConnectionWriter(connect(), i);
+                writers.add(writer);
+                writer.thread.start();
+            }
+        } catch (SQLException e) {
+            closeQuietly();
+            throw new IOException("Failed to open JDBC sink for table " + table, e);
+        }
+        logger.info("JDBC sink initialized for table {} with {} connections", table, settings.connections());
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(settings.url(), settings.user(), settings.password());
+    }
+
+    private void createTableIfMissing(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        for (String name : List.of(table, table.toUpperCase(Locale.ROOT), table.toLowerCase(Locale.ROOT))) {
+            try (ResultSet tables = metaData.getTables(null, null, name, new String[]{"TABLE"})) {
+                if (tables.next()) {
+                    return;
+                }
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE " + table + " (name VARCHAR(255), eddr VARCHAR(64), user_count INT, user_date DATE"
+                    + (violationCatalog == null ? "" : ", errors VARCHAR(4000)") + ")");
+        }
+    }
+
+    private String insertSql() {
+        return violationCatalog == null
+                ? "INSERT INTO " + table + " (name, eddr, user_count, user_date) VALUES (?, ?, ?, ?)"
+                : "INSERT INTO " + table + " (name, eddr, user_count, user_date, errors) VALUES (?, ?, ?, ?, ?)";
+    }
+
+    @Override
+    public void write(List<ValidatedRecord> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        ConnectionWriter writer = writers.get(next);
+        next = (next + 1) % writers.size();
+        writer.enqueue(List.copyOf(records));
+    }
+
+    /**
+     * Executes the pending batches and commits on every connection before returning.
+     */
+    @Override
+    public void flush() throws IOException {
+        for (ConnectionWriter writer : writers) {
+            flushes.register();
+            writer.enqueue(FLUSH);
+        }
+        flushes.arriveAndAwaitAdvance();
+        rethrowFailure();
+    }
+
+    private void rethrowFailure() throws IOException {
+        for (ConnectionWriter writer : writers) {
+            if (writer.failure != null) {
+                throw new IOException("JDBC writer for table " + table + " failed", writer.failure);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            closeQuietly();
+        }
+    }
+
+    private void closeQuietly() {
+        for (ConnectionWriter writer : writers) {
+            try {
+                writer.enqueue(CLOSE);
+                writer.thread.join();
+            } catch (IOException e) {
+                logger.warn("JDBC writer for table {} did not stop cleanly", table, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "jdbc:" + table;
+    }
+
+    public long getRowsCommitted() {
+        return writers.stream().mapToLong(writer -> writer.rowsCommitted).sum();
+    }
+
+    private final class ConnectionWriter implements Runnable {
+        private final Connection connection;
+        private final PreparedStatement insert;
+        private final BlockingQueue<List<ValidatedRecord>> queue = new ArrayBlockingQueue<>(QUEUED_BATCHES_PER_CONNECTION);
+        private final Thread thread;
+        private int batchedRows;
+        private int uncommittedRows;
+        private volatile long rowsCommitted;
+        private volatile Exception failure;
+
+        private ConnectionWriter(Connection connection, int index) throws SQLException {
+            this.connection = connection;
+            connection.setAutoCommit(false);
+            this.insert = connection.prepareStatement(insertSql());
+            this.thread = new Thread(this, "jdbc-" + table + "-" + index);
+        }
+
+        private void enqueue(List<ValidatedRecord> batch) throws IOException {
+            try {
+                queue.put(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while handing a batch to the JDBC writer", e);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    List<ValidatedRecord> batch = queue.take();
+                    if (batch == CLOSE) {
+                        break;
+                    }
+                    if (batch == FLUSH) {
+                        commitQuietly();
+                        flushes.arriveAndDeregister();
+                    } else if (failure == null) {
+                        insert(batch);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    logger.warn("Error while closing JDBC connection", e);
+                }
+            }
+        }
+
+        private void insert(List<ValidatedRecord> batch) {
+            try {
+                for (ValidatedRecord record : batch) {
+                    UserPojo userPojo = record.userPojo();
+                    insert.setString(1, userPojo.getName());
+                    insert.setString(2, userPojo.getEddr());
+                    insert.setInt(3, userPojo.getCount());
+                    if (userPojo.getDate() == null) {
+                        insert.setNull(4, Types.DATE);
+                    } else {
+                        insert.setDate(4, Date.valueOf(userPojo.getDate()));
+                    }
+                    if (violationCatalog != null) {
+                        insert.setString(5, violationCatalog.toJson(record.violationMask()));
+                    }
+                    insert.addBatch();
+                    if (++batchedRows == settings.batchSize()) {
+                        executeBatch();
+                    }
+                }
+                if (uncommittedRows + batchedRows >= settings.commitInterval()) {
+                    commit();
+                }
+            } catch (SQLException e) {
+                fail(e);
+            }
+        }
+
+        private void executeBatch() throws SQLException {
+            insert.executeBatch();
+            uncommittedRows += batchedRows;
+            batchedRows = 0;
+        }
+
+        private void commit() throws SQLException {
+            if (batchedRows > 0) {
+                executeBatch();
+            }
+            connection.commit();
+            rowsCommitted += uncommittedRows;
+            uncommittedRows = 0;
+        }
+
+        private void commitQuietly() {
+            if (failure != null) {
+                return;
+            }
+            try {
+                commit();
+            } catch (SQLException e) {
+                fail(e);
+            }
+        }
+
+        private void fail(SQLException e) {
+            failure = e;
+            logger.error("JDBC writer for table {} failed, dropping its remaining batches", table, e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package shpp.azaika.util.sink;
+
+/**
+ * Connection and batching settings of {@link JdbcRecordSink}.
+ *
+ * @param batchSize      rows per {@code executeBatch}
+ * @param commitInterval rows per connection between commits
+ * @param connections    connections writing in parallel, each with its own thread
+ */
+public record JdbcSinkSettings(String url, String user, String password, int batchSize, int commitInterval, int connections) {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_COMMIT_INTERVAL = 10_000;
+    public static final int DEFAULT_CONNECTIONS = 2;
+
+    public JdbcSinkSettings {
+        if (url == null || url.isEmpty()) {
+            throw new IllegalArgumentException("JDBC url must not be null or empty");
+        }
+        if (batchSize <= 0 || commitInterval <= 0 || connections <= 0) {
+            throw new IllegalArgumentException("Batch size, commit interval and connections must be positive");
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package shpp.azaika.util.sink;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import shpp.azaika.pojo.InvalidUserRecord;
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.pojo.ValidatedRecord;
+import shpp.azaika.util.InstrumentedOutputStream;
+import shpp.azaika.validation.ViolationCatalog;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One JSON object per line, with the same fields as the CSV output.
+ */
+public final class JsonLinesRecordSink implements RecordSink {
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
+            .configure(SerializationFeature.FLUSH_AFTER_WRITE_VALUE, false)
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+    private final FileOutputStream fileOutputStream;
+    private final OutputStream outputStream;
+    private final ObjectWriter objectWriter;
+    private final ViolationCatalog violationCatalog;
+    private final String name;
+
+    /**
+     * @param violationCatalog when not {@code null}, every line gets an {@code errors} field
+     */
+    public JsonLinesRecordSink(Path file, ViolationCatalog violationCatalog, LongAdder bytesFlushed) throws IOException {
+        this.fileOutputStream = new FileOutputStream(file.toFile(), true);
+        this.outputStream = new BufferedOutputStream(
+                new InstrumentedOutputStream(fileOutputStream, file.toString(), bytesFlushed), 16384);
+        this.objectWriter = objectMapper.writerFor(violationCatalog == null ? UserPojo.class : InvalidUserRecord.class);
+        this.violationCatalog = violationCatalog;
+        this.name = file.getFileName().toString();
+    }
+
+    @Override
+    public void write(List<ValidatedRecord> records) throws IOException {
+        for (ValidatedRecord record : records) {
+            objectWriter.writeValue(outputStream, violationCatalog == null ? record.userPojo()
+                    : new InvalidUserRecord(record.userPojo(), violationCatalog.toJson(record.violationMask())));
+            outputStream.write('\n');
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        outputStream.flush();
+    }
+
+    @Override
+    public void sync() throws IOException {
+        flush();
+        fileOutputStream.getChannel().force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        outputStream.close();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,28 @@
+package shpp.azaika.util.sink;
+
+import java.util.Locale;
+
+/**
+ * What {@link FanOutSink} does with a batch for a sink whose buffer is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * Wait for the sink to catch up; no record is lost, but the slowest sink sets the pace once its buffer is full.
+     */
+    BLOCK,
+    /**
+     * Drop the incoming batch for that sink.
+     */
+    DROP_NEWEST,
+    /**
+     * Drop the oldest buffered batch for that sink to make room.
+     */
+    DROP_OLDEST;
+
+    public static OverflowPolicy parse(String policy) {
+        if (policy == null || policy.isBlank()) {
+            throw new IllegalArgumentException("Overflow policy must not be null or empty");
+        }
+        return valueOf(policy.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,58 @@
+package shpp.azaika.util.sink;
+
+import shpp.azaika.validation.ViolationCatalog;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Output formats a writer can produce, selected by {@code writer.formats}.
+ */
+public enum RecordFormat {
+    CSV("csv"),
+    JSONL("jsonl"),
+    BINARY("bin"),
+    COLUMNAR("ucol");
+
+    private final String extension;
+
+    RecordFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public static RecordFormat parse(String format) {
+        if (format == null || format.isBlank()) {
+            throw new IllegalArgumentException("Record format must not be null or empty");
+        }
+        return valueOf(format.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * @return {@code baseName} with this format's extension, e.g. {@code valid_users.jsonl}
+     */
+    public String fileName(String baseName) {
+        return baseName + "." + extension;
+    }
+
+    /**
+     * @param violationCatalog when not {@code null}, text formats add the errors column; binary
+     *                         formats always keep the violation mask instead
+     */
+    public RecordSink open(Path file, ViolationCatalog violationCatalog, LongAdder bytesFlushed) throws IOException {
+        return open(file, violationCatalog, bytesFlushed, ColumnarRecordSink.DEFAULT_ROW_GROUP_SIZE);
+    }
+
+    /**
+     * @param rowGroupSize records per row group of the columnar format; ignored by the others
+     */
+    public RecordSink open(Path file, ViolationCatalog violationCatalog, LongAdder bytesFlushed, int rowGroupSize) throws IOException {
+        return switch (this) {
+            case CSV -> new CsvRecordSink(file, violationCatalog, bytesFlushed);
+            case JSONL -> new JsonLinesRecordSink(file, violationCatalog, bytesFlushed);
+            case BINARY -> new BinaryLogRecordSink(file, bytesFlushed);
+            case COLUMNAR -> new ColumnarRecordSink(file, rowGroupSize, bytesFlushed);
+        };
+    }
+}
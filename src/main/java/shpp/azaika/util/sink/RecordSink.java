@@ -0,0 +1,33 @@
+package shpp.azaika.util.sink;
+
+import shpp.azaika.pojo.ValidatedRecord;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination of routed records. Writers hand records over in batches; {@link #write} may buffer
+ * them, {@link #flush} passes everything written so far to the underlying storage.
+ * Implementations are used by one writer thread at a time.
+ */
+public interface RecordSink extends AutoCloseable {
+
+    void write(List<ValidatedRecord> records) throws IOException;
+
+    void flush() throws IOException;
+
+    /**
+     * Flushes and forces everything written so far to stable storage, so it survives a machine crash.
+     */
+    default void sync() throws IOException {
+        flush();
+    }
+
+    /**
+     * Flushes and releases the sink.
+     */
+    @Override
+    void close() throws IOException;
+
+    String getName();
+}
@@ -0,0 +1,18 @@
+package shpp.azaika.util.sink;
+
+import java.time.LocalDate;
+
+/**
+ * Header of one row group of a columnar file: enough to decide whether to read or skip it.
+ * Date bounds are {@code null} when every date in the group is {@code null}.
+ */
+public record RowGroupStats(int rowCount, int minCount, int maxCount, LocalDate minDate, LocalDate maxDate) {
+
+    public boolean mayContainCount(int from, int to) {
+        return maxCount >= from && minCount <= to;
+    }
+
+    public boolean mayContainDate(LocalDate date) {
+        return minDate != null && !date.isBefore(minDate) && !date.isAfter(maxDate);
+    }
+}
@@ -0,0 +1,51 @@
+package shpp.azaika.util.sink;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * LEB128 varints and zigzag encoding shared by the binary formats.
+ */
+final class VarInts {
+    private VarInts() {
+    }
+
+    static void write(OutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    static long read(DataInput input) throws IOException {
+        return read(input, input.readUnsignedByte());
+    }
+
+    /**
+     * Continues a varint whose first byte the caller already read, e.g. to detect the end of a file.
+     */
+    static long read(DataInput input, int firstByte) throws IOException {
+        long value = firstByte & 0x7F;
+        int shift = 7;
+        int current = firstByte;
+        while ((current & 0x80) != 0) {
+            if (shift > 63) {
+                throw new IOException("Malformed varint");
+            }
+            current = input.readUnsignedByte();
+            value |= (long) (current & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,111 @@
+package shpp.azaika.util.sink;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Durable progress of one writer: the length of each of its files at its last sync, the records
+ * written up to then and the JMS id of the last one. Consumers acknowledge a message only after the
+ * sync that covers its record, so anything past the offsets belongs to unacknowledged messages the
+ * broker redelivers, and {@link #recover} cuts it off.
+ *
+ * @param offsets file length in bytes by file name
+ */
+public record WriterCheckpoint(long records, String lastMessageId, Map<String, Long> offsets) {
+    private static final Logger logger = LoggerFactory.getLogger(WriterCheckpoint.class);
+    public static final String FILE_EXTENSION = ".checkpoint";
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    public WriterCheckpoint {
+        if (records < 0) {
+            throw new IllegalArgumentException("Record count must be non-negative");
+        }
+        if (offsets == null) {
+            throw new IllegalArgumentException("Offsets must not be null");
+        }
+        offsets = Map.copyOf(offsets);
+    }
+
+    /**
+     * @return the checkpoint stored in {@code checkpointFile}, or {@code null} if there is none
+     */
+    public static WriterCheckpoint load(Path checkpointFile) throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return null;
+        }
+        return objectMapper.readValue(checkpointFile.toFile(), WriterCheckpoint.class);
+    }
+
+    /**
+     * Truncates {@code files} to their checkpointed lengths, dropping torn rows and rows whose
+     * messages were never acknowledged. Without a checkpoint the files are kept as they are and a
+     * first checkpoint is stored at their current ends.
+     *
+     * @return the checkpoint to continue from
+     */
+    public static WriterCheckpoint recover(Path checkpointFile, List<Path> files) throws IOException {
+        WriterCheckpoint checkpoint = load(checkpointFile);
+        if (checkpoint == null) {
+            checkpoint = new WriterCheckpoint(0, null, Map.of()).advance(0, null, files);
+            checkpoint.store(checkpointFile);
+            logger.info("No checkpoint at {}, starting one", checkpointFile);
+            return checkpoint;
+        }
+        for (Path file : files) {
+            long offset = checkpoint.offsets.getOrDefault(file.getFileName().toString(), 0L);
+            long size = Files.exists(file) ? Files.size(file) : 0;
+            if (size > offset) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(offset);
+                    channel.force(true);
+                }
+                logger.warn("Truncated {} from {} to {} bytes; the records past its checkpoint are redelivered", file, size, offset);
+            } else if (size < offset) {
+                logger.error("{} has {} bytes, fewer than the {} of its checkpoint", file, size, offset);
+            }
+        }
+        logger.info("Resuming {} after {} records, the last from message {}", checkpointFile, checkpoint.records, checkpoint.lastMessageId);
+        return checkpoint;
+    }
+
+    /**
+     * @param records       records synced since this checkpoint
+     * @param lastMessageId id of the last of them; {@code null} keeps the current one
+     * @return a checkpoint at the current lengths of {@code files}
+     */
+    public WriterCheckpoint advance(long records, String lastMessageId, List<Path> files) throws IOException {
+        Map<String, Long> fileOffsets = new HashMap<>();
+        for (Path file : files) {
+            fileOffsets.put(file.getFileName().toString(), Files.exists(file) ? Files.size(file) : 0);
+        }
+        return new WriterCheckpoint(this.records + records, lastMessageId == null ? this.lastMessageId : lastMessageId, fileOffsets);
+    }
+
+    /**
+     * Replaces {@code checkpointFile} atomically, so a crash leaves either the old or the new checkpoint.
+     */
+    public void store(Path checkpointFile) throws IOException {
+        Path temporary = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer content = ByteBuffer.wrap(objectMapper.writeValueAsBytes(this));
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, checkpointFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
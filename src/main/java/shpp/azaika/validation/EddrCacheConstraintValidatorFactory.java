@@ -0,0 +1,37 @@
+package shpp.azaika.validation;
+
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorFactory;
+import shpp.azaika.validation.constraints.constraintvalidators.CheckEddrValidator;
+
+/**
+ * Hands out {@link CheckEddrValidator}s backed by a shared {@link EddrValidationCache}
+ * and delegates every other validator to the provider's default factory.
+ */
+public class EddrCacheConstraintValidatorFactory implements ConstraintValidatorFactory {
+    private final ConstraintValidatorFactory delegate;
+    private final EddrValidationCache cache;
+
+    public EddrCacheConstraintValidatorFactory(ConstraintValidatorFactory delegate, EddrValidationCache cache) {
+        if (delegate == null || cache == null) {
+            throw new IllegalArgumentException("Constructor arguments must not be null");
+        }
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public <T extends ConstraintValidator<?, ?>> T getInstance(Class<T> key) {
+        if (key == CheckEddrValidator.class) {
+            return key.cast(new CheckEddrValidator(cache));
+        }
+        return delegate.getInstance(key);
+    }
+
+    @Override
+    public void releaseInstance(ConstraintValidator<?, ?> instance) {
+        if (!(instance instanceof CheckEddrValidator)) {
+            delegate.releaseInstance(instance);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package shpp.azaika.validation;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Bounded cache of EDDR validation results. Keys are spread over independently locked
+ * stripes, each evicting with the CLOCK (second chance) policy, so concurrent consumers
+ * rarely contend and a hit costs one map lookup and a flag write.
+ * <p>
+ * The date check depends on the current year, so results may go stale across a year boundary;
+ * size the cache for a run, not for a long-lived process.
+ */
+public class EddrValidationCache {
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public EddrValidationCache(int capacity) {
+        this(capacity, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    public EddrValidationCache(int capacity, int concurrencyLevel) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be positive");
+        }
+        if (concurrencyLevel < 1) {
+            throw new IllegalArgumentException("Concurrency level must be positive");
+        }
+        int stripeCount = Integer.highestOneBit(Math.min(capacity, concurrencyLevel));
+        int stripeCapacity = (capacity + stripeCount - 1) / stripeCount;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+        this.stripeMask = stripeCount - 1;
+    }
+
+    /**
+     * Returns the cached result for the EDDR or computes it with {@code check} and caches it.
+     * The check runs outside the stripe lock, so concurrent misses on one key may both compute it.
+     */
+    public boolean isValid(String eddr, Predicate<String> check) {
+        Stripe stripe = stripeFor(eddr);
+        Boolean cached = stripe.get(eddr);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        boolean valid = check.test(eddr);
+        if (stripe.put(eddr, valid)) {
+            evictions.increment();
+        }
+        return valid;
+    }
+
+    private Stripe stripeFor(String eddr) {
+        int hash = eddr.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & stripeMask];
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private static final class Stripe {
+        private final Map<String, Integer> slots;
+        private final String[] keys;
+        private final boolean[] values;
+        private final boolean[] referenced;
+        private int size;
+        private int hand;
+
+        private Stripe(int capacity) {
+            this.slots = new HashMap<>(capacity * 2);
+            this.keys = new String[capacity];
+            this.values = new boolean[capacity];
+            this.referenced = new boolean[capacity];
+        }
+
+        private synchronized Boolean get(String key) {
+            Integer slot = slots.get(key);
+            if (slot == null) {
+                return null;
+            }
+            referenced[slot] = true;
+            return values[slot];
+        }
+
+        /**
+         * @return {@code true} if an entry was evicted to make room
+         */
+        private synchronized boolean put(String key, boolean value) {
+            if (slots.containsKey(key)) {
+                return false;
+            }
+            boolean evicted = false;
+            int slot;
+            if (size < keys.length) {
+                slot = size++;
+            } else {
+                while (referenced[hand]) {
+                    referenced[hand] = false;
+                    hand = (hand + 1) % keys.length;
+                }
+                slot = hand;
+                hand = (hand + 1) % keys.length;
+                slots.remove(keys[slot]);
+                evicted = true;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            referenced[slot] = false;
+            slots.put(key, slot);
+            return evicted;
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+    }
+}
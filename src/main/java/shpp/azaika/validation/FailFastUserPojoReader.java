@@ -0,0 +1,239 @@
+package shpp.azaika.validation;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import org.hibernate.validator.constraints.Length;
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.validation.constraints.CheckEddr;
+import shpp.azaika.validation.constraints.constraintvalidators.CheckEddrValidator;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.time.LocalDate;
+import java.util.regex.Pattern;
+
+/**
+ * Reads a {@link UserPojo} from JSON with a streaming parser and checks its constraints as the
+ * fields arrive, instead of binding the whole record and running the bean validator on it.
+ * Without a violation catalog it stops checking at the first violation; the rest of the record
+ * is still read, since invalid records are written out in full. The EDDR check, the most
+ * expensive one, runs last.
+ * <p>
+ * Records the streaming path does not expect (unknown or repeated fields, values of other JSON
+ * types) are bound by the mapper and then checked, so the outcome always matches the validator.
+ */
+public final class FailFastUserPojoReader {
+    private static final String NAME = "name";
+    private static final String EDDR = "eddr";
+    private static final String COUNT = "count";
+    private static final String DATE = "date";
+    private static final int NAME_FIELD = 1;
+    private static final int EDDR_FIELD = 1 << 1;
+    private static final int COUNT_FIELD = 1 << 2;
+    private static final int DATE_FIELD = 1 << 3;
+    private static final Pattern NAME_PATTERN = Pattern.compile("(?iu).*[aа].*");
+
+    /**
+     * @param valid         {@code true} if the record satisfies every constraint of {@link UserPojo}
+     * @param violationMask violated constraints encoded by the violation catalog; zero without one
+     */
+    public record Result(UserPojo userPojo, boolean valid, int violationMask) {
+    }
+
+    private final ObjectMapper mapper;
+    private final CheckEddrValidator eddrValidator;
+    private final ViolationCatalog violationCatalog;
+    private final int nameNotNull;
+    private final int nameLength;
+    private final int namePattern;
+    private final int eddrNotNull;
+    private final int eddrCheck;
+    private final int countMin;
+    private final int dateNotNull;
+
+    /**
+     * @param eddrCache        shared EDDR result cache, or {@code null}
+     * @param violationCatalog when not {@code null}, every constraint is checked and invalid records
+     *                         get their violation mask, as with the validator and a violation report
+     */
+    public FailFastUserPojoReader(ObjectMapper mapper, EddrValidationCache eddrCache, ViolationCatalog violationCatalog) {
+        if (mapper == null) {
+            throw new IllegalArgumentException("ObjectMapper must not be null");
+        }
+        this.mapper = mapper;
+        this.eddrValidator = new CheckEddrValidator(eddrCache);
+        this.violationCatalog = violationCatalog;
+        this.nameNotNull = code(NAME, NotNull.class);
+        this.nameLength = code(NAME, Length.class);
+        this.namePattern = code(NAME, jakarta.validation.constraints.Pattern.class);
+        this.eddrNotNull = code(EDDR, NotNull.class);
+        this.eddrCheck = code(EDDR, CheckEddr.class);
+        this.countMin = code(COUNT, Min.class);
+        this.dateNotNull = code(DATE, NotNull.class);
+    }
+
+    private int code(String propertyName, Class<? extends Annotation> constraintType) {
+        if (violationCatalog == null) {
+            return 1;
+        }
+        int mask = violationCatalog.maskOf(propertyName, constraintType);
+        if (mask == 0) {
+            throw new IllegalArgumentException("Violation catalog has no " + constraintType.getSimpleName() + " on " + propertyName);
+        }
+        return mask;
+    }
+
+    public Result read(String json) throws IOException {
+        UserPojo userPojo = new UserPojo();
+        int violations = 0;
+        int seen = 0;
+        try (JsonParser parser = mapper.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return readBound(json);
+            }
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                JsonToken token = parser.nextToken();
+                int fieldBit = fieldBit(field);
+                if (fieldBit == 0 || (seen & fieldBit) != 0) {
+                    return readBound(json);
+                }
+                seen |= fieldBit;
+                switch (fieldBit) {
+                    case NAME_FIELD -> {
+                        if (token != JsonToken.VALUE_STRING && token != JsonToken.VALUE_NULL) {
+                            return readBound(json);
+                        }
+                        userPojo.setName(parser.getValueAsString());
+                        if (isChecking(violations)) {
+                            violations |= checkName(userPojo.getName());
+                        }
+                    }
+                    case EDDR_FIELD -> {
+                        if (token != JsonToken.VALUE_STRING && token != JsonToken.VALUE_NULL) {
+                            return readBound(json);
+                        }
+                        userPojo.setEddr(parser.getValueAsString());
+                    }
+                    case COUNT_FIELD -> {
+                        if (token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NULL) {
+                            return readBound(json);
+                        }
+                        userPojo.setCount(token == JsonToken.VALUE_NULL ? 0 : parser.getIntValue());
+                        if (isChecking(violations)) {
+                            violations |= checkCount(userPojo.getCount());
+                        }
+                    }
+                    default -> {
+                        userPojo.setDate(parser.readValueAs(LocalDate.class));
+                        if (isChecking(violations)) {
+                            violations |= checkDate(userPojo.getDate());
+                        }
+                    }
+                }
+            }
+        }
+        if ((seen & NAME_FIELD) == 0 && isChecking(violations)) {
+            violations |= checkName(null);
+        }
+        if ((seen & COUNT_FIELD) == 0 && isChecking(violations)) {
+            violations |= checkCount(0);
+        }
+        if ((seen & DATE_FIELD) == 0 && isChecking(violations)) {
+            violations |= checkDate(null);
+        }
+        if (isChecking(violations)) {
+            violations |= checkEddr(userPojo.getEddr());
+        }
+        return result(userPojo, violations);
+    }
+
+    private static int fieldBit(String field) {
+        return switch (field) {
+            case NAME -> NAME_FIELD;
+            case EDDR -> EDDR_FIELD;
+            case COUNT -> COUNT_FIELD;
+            case DATE -> DATE_FIELD;
+            default -> 0;
+        };
+    }
+
+    private Result readBound(String json) throws IOException {
+        UserPojo userPojo = mapper.readValue(json, UserPojo.class);
+        if (userPojo == null) {
+            throw new JsonMappingException(null, "Expected a JSON object, got null");
+        }
+        return result(userPojo, check(userPojo));
+    }
+
+    /**
+     * Checks a record that is already bound, in the same order as the streaming path.
+     */
+    private int check(UserPojo userPojo) {
+        int violations = checkName(userPojo.getName());
+        if (isChecking(violations)) {
+            violations |= checkCount(userPojo.getCount());
+        }
+        if (isChecking(violations)) {
+            violations |= checkDate(userPojo.getDate());
+        }
+        if (isChecking(violations)) {
+            violations |= checkEddr(userPojo.getEddr());
+        }
+        return violations;
+    }
+
+    private Result result(UserPojo userPojo, int violations) {
+        return new Result(userPojo, violations == 0, violationCatalog != null ? violations : 0);
+    }
+
+    private boolean isChecking(int violations) {
+        return violations == 0 || violationCatalog != null;
+    }
+
+    private int checkName(String name) {
+        if (name == null) {
+            return nameNotNull;
+        }
+        int violations = name.length() < ValidationHints.MIN_NAME_LENGTH ? nameLength : 0;
+        if (isChecking(violations) && !containsLetterA(name)) {
+            violations |= namePattern;
+        }
+        return violations;
+    }
+
+    /**
+     * Same as matching the name's {@code @Pattern}; the regular expression only runs for names
+     * with a line break, which its {@code .} does not match.
+     */
+    static boolean containsLetterA(String name) {
+        boolean found = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return NAME_PATTERN.matcher(name).matches();
+            }
+            found |= c == 'a' || c == 'A' || c == 'а' || c == 'А';
+        }
+        return found;
+    }
+
+    private int checkEddr(String eddr) {
+        if (eddr == null) {
+            return eddrNotNull | eddrCheck;
+        }
+        return eddrValidator.isValid(eddr, null) ? 0 : eddrCheck;
+    }
+
+    private int checkCount(int count) {
+        return count < ValidationHints.MIN_COUNT ? countMin : 0;
+    }
+
+    private int checkDate(LocalDate date) {
+        return date == null ? dateNotNull : 0;
+    }
+}
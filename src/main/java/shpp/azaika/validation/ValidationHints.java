@@ -0,0 +1,40 @@
+package shpp.azaika.validation;
+
+import shpp.azaika.pojo.UserPojo;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+/**
+ * Cheap facts about a {@link UserPojo} that the producer attaches as JMS properties,
+ * so records that certainly fail validation can be selected by the broker and
+ * routed to the invalid output without running the validator.
+ * The thresholds mirror the {@code @Min} and {@code @Length} constraints of {@link UserPojo}.
+ */
+public final class ValidationHints {
+    public static final String COUNT_PROPERTY = "hintCount";
+    public static final String NAME_LENGTH_PROPERTY = "hintNameLength";
+
+    public static final int MIN_COUNT = 10;
+    public static final int MIN_NAME_LENGTH = 7;
+
+    public static final String REJECTED_SELECTOR =
+            COUNT_PROPERTY + " < " + MIN_COUNT + " OR " + NAME_LENGTH_PROPERTY + " < " + MIN_NAME_LENGTH;
+    public static final String ACCEPTED_SELECTOR =
+            COUNT_PROPERTY + " IS NULL OR (" + COUNT_PROPERTY + " >= " + MIN_COUNT
+                    + " AND " + NAME_LENGTH_PROPERTY + " >= " + MIN_NAME_LENGTH + ")";
+
+    private ValidationHints() {
+    }
+
+    public static void attach(Message message, UserPojo userPojo) throws JMSException {
+        message.setIntProperty(COUNT_PROPERTY, userPojo.getCount());
+        message.setIntProperty(NAME_LENGTH_PROPERTY, userPojo.getName() == null ? -1 : userPojo.getName().length());
+    }
+
+    public static boolean isClearlyInvalid(Message message) throws JMSException {
+        return message.propertyExists(COUNT_PROPERTY)
+                && (message.getIntProperty(COUNT_PROPERTY) < MIN_COUNT
+                || message.getIntProperty(NAME_LENGTH_PROPERTY) < MIN_NAME_LENGTH);
+    }
+}
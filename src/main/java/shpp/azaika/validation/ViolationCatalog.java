@@ -0,0 +1,175 @@
+package shpp.azaika.validation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.MessageInterpolator;
+import jakarta.validation.Path;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import jakarta.validation.metadata.BeanDescriptor;
+import jakarta.validation.metadata.ConstraintDescriptor;
+import jakarta.validation.metadata.PropertyDescriptor;
+import shpp.azaika.pojo.UserPojo;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Assigns every constraint of a bean a bit code and pre-renders its JSON fragment once,
+ * so a validation result is reduced to an {@code int} mask and turned into the
+ * errors column by a table lookup instead of formatting {@link ConstraintViolation}s per record.
+ */
+public final class ViolationCatalog {
+    private static final int MAX_CODES = Integer.SIZE - 1;
+    private static final int MAX_PRECOMPUTED_CODES = 12;
+
+    private final Map<String, Map<Class<? extends Annotation>, Integer>> codes = new HashMap<>();
+    private final List<String> fragments = new ArrayList<>();
+    private final String[] errorsByMask;
+
+    private ViolationCatalog(ValidatorFactory validatorFactory, Class<?> beanClass) {
+        ObjectMapper mapper = new ObjectMapper();
+        MessageInterpolator interpolator = validatorFactory.getMessageInterpolator();
+        BeanDescriptor beanDescriptor = validatorFactory.getValidator().getConstraintsForClass(beanClass);
+        List<PropertyDescriptor> properties = new ArrayList<>(beanDescriptor.getConstrainedProperties());
+        properties.sort(Comparator.comparing(PropertyDescriptor::getPropertyName));
+        for (PropertyDescriptor property : properties) {
+            List<ConstraintDescriptor<?>> constraints = new ArrayList<>(property.getConstraintDescriptors());
+            constraints.sort(Comparator.comparing(c -> c.getAnnotation().annotationType().getSimpleName()));
+            for (ConstraintDescriptor<?> constraint : constraints) {
+                register(property.getPropertyName(), constraint, interpolator, mapper);
+            }
+        }
+        int precomputed = Math.min(fragments.size(), MAX_PRECOMPUTED_CODES);
+        this.errorsByMask = new String[1 << precomputed];
+        for (int mask = 0; mask < errorsByMask.length; mask++) {
+            errorsByMask[mask] = render(mask);
+        }
+    }
+
+    public static ViolationCatalog of(ValidatorFactory validatorFactory, Class<?> beanClass) {
+        return new ViolationCatalog(validatorFactory, beanClass);
+    }
+
+    public static ViolationCatalog forUserPojo() {
+        return UserPojoCatalogHolder.INSTANCE;
+    }
+
+    private void register(String propertyName, ConstraintDescriptor<?> constraint, MessageInterpolator interpolator, ObjectMapper mapper) {
+        if (fragments.size() == MAX_CODES) {
+            throw new IllegalStateException("Too many constraints to encode in a violation mask");
+        }
+        Class<? extends Annotation> annotationType = constraint.getAnnotation().annotationType();
+        codes.computeIfAbsent(propertyName, k -> new HashMap<>()).put(annotationType, fragments.size());
+
+        ObjectNode fragment = mapper.createObjectNode()
+                .put("field", propertyName)
+                .put("constraint", annotationType.getSimpleName())
+                .put("message", interpolate(constraint, interpolator));
+        fragments.add(fragment.toString());
+    }
+
+    private static String interpolate(ConstraintDescriptor<?> constraint, MessageInterpolator interpolator) {
+        String template = constraint.getMessageTemplate();
+        try {
+            return interpolator.interpolate(template, new MessageInterpolator.Context() {
+                @Override
+                public ConstraintDescriptor<?> getConstraintDescriptor() {
+                    return constraint;
+                }
+
+                @Override
+                public Object getValidatedValue() {
+                    return null;
+                }
+
+                @Override
+                public <T> T unwrap(Class<T> type) {
+                    throw new UnsupportedOperationException("Unwrapping is not supported for " + type);
+                }
+            });
+        } catch (RuntimeException e) {
+            return template;
+        }
+    }
+
+    /**
+     * Encodes the violated constraints as a bit mask. Violations of constraints unknown to the catalog are ignored.
+     */
+    public <T> int maskOf(Set<ConstraintViolation<T>> violations) {
+        int mask = 0;
+        for (ConstraintViolation<T> violation : violations) {
+            mask |= bitOf(violation);
+        }
+        return mask;
+    }
+
+    private int bitOf(ConstraintViolation<?> violation) {
+        ConstraintDescriptor<?> descriptor = violation.getConstraintDescriptor();
+        Path path = violation.getPropertyPath();
+        if (descriptor == null || path == null) {
+            return 0;
+        }
+        String propertyName = null;
+        for (Path.Node node : path) {
+            propertyName = node.getName();
+        }
+        return maskOf(propertyName, descriptor.getAnnotation().annotationType());
+    }
+
+    /**
+     * Mask of a single violated constraint, for validators that check constraints themselves;
+     * zero if the catalog does not know it.
+     */
+    public int maskOf(String propertyName, Class<? extends Annotation> constraintType) {
+        Map<Class<? extends Annotation>, Integer> propertyCodes = codes.get(propertyName);
+        if (propertyCodes == null) {
+            return 0;
+        }
+        Integer code = propertyCodes.get(constraintType);
+        return code == null ? 0 : 1 << code;
+    }
+
+    /**
+     * JSON array of the violations encoded in the mask, ordered by code.
+     */
+    public String toJson(int mask) {
+        if (mask >= 0 && mask < errorsByMask.length) {
+            return errorsByMask[mask];
+        }
+        return render(mask);
+    }
+
+    public int size() {
+        return fragments.size();
+    }
+
+    private String render(int mask) {
+        StringBuilder json = new StringBuilder("[");
+        for (int code = 0; code < fragments.size(); code++) {
+            if ((mask & (1 << code)) != 0) {
+                if (json.length() > 1) {
+                    json.append(',');
+                }
+                json.append(fragments.get(code));
+            }
+        }
+        return json.append(']').toString();
+    }
+
+    private static final class UserPojoCatalogHolder {
+        private static final ViolationCatalog INSTANCE = create();
+
+        private static ViolationCatalog create() {
+            try (ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory()) {
+                return of(validatorFactory, UserPojo.class);
+            }
+        }
+    }
+}
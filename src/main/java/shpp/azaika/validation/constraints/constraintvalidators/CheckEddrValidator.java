@@ -2,14 +2,27 @@ package shpp.azaika.validation.constraints.constraintvalidators;
 
 import jakarta.validation.ConstraintValidator;
 import jakarta.validation.ConstraintValidatorContext;
+import shpp.azaika.validation.EddrValidationCache;
 import shpp.azaika.validation.constraints.CheckEddr;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.function.Predicate;
 import java.util.stream.IntStream;
 
 public class CheckEddrValidator implements ConstraintValidator<CheckEddr, String> {
+    private final EddrValidationCache cache;
+    private final Predicate<String> uncachedCheck = this::check;
+
+    public CheckEddrValidator() {
+        this(null);
+    }
+
+    public CheckEddrValidator(EddrValidationCache cache) {
+        this.cache = cache;
+    }
+
     @Override
     public void initialize(CheckEddr constraintAnnotation) {
         ConstraintValidator.super.initialize(constraintAnnotation);
@@ -17,7 +30,14 @@ public class CheckEddrValidator implements ConstraintValidator<CheckEddr, String
 
     @Override
     public boolean isValid(String eddr, ConstraintValidatorContext context) {
-        return eddr != null && eddr.matches("\\d{8}-\\d{5}") && isDateValid(eddr) && isValidControlNumber(eddr);
+        if (eddr == null) {
+            return false;
+        }
+        return cache == null ? check(eddr) : cache.isValid(eddr, uncachedCheck);
+    }
+
+    private boolean check(String eddr) {
+        return eddr.matches("\\d{8}-\\d{5}") && isDateValid(eddr) && isValidControlNumber(eddr);
     }
 
     public boolean isDateValid(String eddr) {
@@ -0,0 +1,129 @@
+package shpp.azaika;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import shpp.azaika.util.PropertyManager;
+import shpp.azaika.util.managers.WriterManager;
+import shpp.azaika.util.mq.EmbeddedBroker;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BrokerFailoverTest {
+    private static final Logger logger = LoggerFactory.getLogger(BrokerFailoverTest.class);
+    private static final long RATE_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    @TempDir
+    Path outputDirectory;
+
+    private static long consumedMessages() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("shpp.azaika", "type", "ConsumerManager");
+        return server.isRegistered(name) ? (Long) server.getAttribute(name, "ConsumedMessages") : 0;
+    }
+
+    private static void awaitConsumed(long count, Future<RunSummary> run) throws Exception {
+        while (consumedMessages() < count) {
+            assertFalse(run.isDone(), "The run finished before the broker was restarted");
+            Thread.sleep(10);
+        }
+    }
+
+    private static double measureRate(long millis) throws Exception {
+        long startedNanos = System.nanoTime();
+        long startCount = consumedMessages();
+        Thread.sleep(millis);
+        return (consumedMessages() - startCount) * (double) TimeUnit.SECONDS.toNanos(1) / (System.nanoTime() - startedNanos);
+    }
+
+    /**
+     * @return ms from now until consumers handle at least {@code targetRate} messages per second
+     * again, or until the run finishes
+     */
+    private static long millisUntilRate(double targetRate, Future<RunSummary> run) throws Exception {
+        long restartedNanos = System.nanoTime();
+        long windowStartNanos = restartedNanos;
+        long windowStartCount = consumedMessages();
+        while (!run.isDone()) {
+            Thread.sleep(50);
+            long now = System.nanoTime();
+            long count = consumedMessages();
+            if (now - windowStartNanos >= RATE_WINDOW_NANOS) {
+                double rate = (count - windowStartCount) * (double) TimeUnit.SECONDS.toNanos(1) / (now - windowStartNanos);
+                if (rate >= targetRate) {
+                    return TimeUnit.NANOSECONDS.toMillis(now - restartedNanos);
+                }
+                windowStartNanos = now;
+                windowStartCount = count;
+            }
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - restartedNanos);
+    }
+
+    private long countLines(String fileName) throws Exception {
+        Path file = outputDirectory.resolve(fileName);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (var lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            return lines.count();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void pipelineRecoversFromBrokerRestart(boolean failover) throws Exception {
+        int messageCount = 50_000;
+        String dataDirectory = outputDirectory.resolve("activemq-data").toString();
+        ExecutorService runner = Executors.newSingleThreadExecutor();
+        try (EmbeddedBroker broker = new EmbeddedBroker("failover-test-" + failover, true, dataDirectory, null)) {
+            broker.start();
+            Properties properties = new Properties();
+            properties.setProperty("activemq.url", broker.getVmUrl());
+            properties.setProperty("activemq.queue", "failover.test");
+            properties.setProperty("activemq.failover", String.valueOf(failover));
+            properties.setProperty("broker.reconnect_timeout", "60000");
+            properties.setProperty("producer.persistent", "true");
+            properties.setProperty("producer.replay_buffer", "1000");
+            properties.setProperty("dedup.enabled", "true");
+            properties.setProperty("generation.duration", "180000");
+            properties.setProperty("consumer.drain_timeout", "180000");
+            properties.setProperty("threads_producer", "2");
+            properties.setProperty("threads_consumer", "2");
+            properties.setProperty("output.dir", outputDirectory.toString());
+
+            Future<RunSummary> run = runner.submit(() -> App.run(new PropertyManager(properties), messageCount));
+            awaitConsumed(messageCount / 10, run);
+            double steadyRate = measureRate(300);
+            broker.restart(500);
+            long recoveryMillis = millisUntilRate(steadyRate / 2, run);
+            RunSummary summary = run.get(5, TimeUnit.MINUTES);
+
+            logger.info("Failover {}: steady {} msg/s, back to half of it {} ms after the restart, clients reconnected after {} ms",
+                    failover, Math.round(steadyRate), recoveryMillis, summary.brokerRecoveryMillis());
+            assertEquals(messageCount, summary.producedMessages());
+            assertEquals(messageCount, summary.consumedMessages());
+            assertEquals(messageCount, countLines(WriterManager.VALID_FILE_NAME) + countLines(WriterManager.INVALID_FILE_NAME));
+            assertTrue(summary.brokerReconnects() > 0, "Clients reconnected");
+            assertTrue(summary.brokerRecoveryMillis() > 0 && summary.brokerRecoveryMillis() < 30_000,
+                    "Clients reconnected within 30 s, took " + summary.brokerRecoveryMillis() + " ms");
+            assertTrue(recoveryMillis < 30_000, "Throughput recovered within 30 s, took " + recoveryMillis + " ms");
+        } finally {
+            runner.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package shpp.azaika;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import shpp.azaika.util.PropertyManager;
+import shpp.azaika.util.managers.WriterManager;
+import shpp.azaika.util.mq.AcknowledgementLog;
+import shpp.azaika.util.mq.EmbeddedBroker;
+import shpp.azaika.util.mq.Producer;
+import shpp.azaika.util.sink.WriterCheckpoint;
+
+import javax.jms.Connection;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Restarts a checkpointed {@code consume} process in the middle of a stream, with the checkpoint a
+ * run that died would have left, and checks that it drains the rest of the stream exactly once.
+ */
+class CheckpointRestartTest {
+    private static final String QUEUE = "checkpoint.restart.test";
+    private static final String PROCESS_ID = "restart-test";
+    private static final int STREAM_MESSAGES = 1_000;
+    private static final String VALID_JSON = "{\"name\":\"Andrew Zaika\",\"eddr\":\"19760506-26585\",\"count\":15,\"date\":\"2024-01-01\"}";
+    private static final String MALFORMED_JSON = "{\"name\":\"Andrew Zaika\",";
+    private static final String WRITTEN_ROW = "Andrew Zaika,19760506-26585,15,2024-01-01\n";
+
+    @TempDir
+    Path outputDirectory;
+
+    private Path outputFile(String fileName) {
+        return outputDirectory.resolve(WriterManager.shardFileName(fileName, PROCESS_ID));
+    }
+
+    private Properties consumerProperties(EmbeddedBroker broker) {
+        Properties properties = new Properties();
+        properties.setProperty("activemq.url", broker.getVmUrl());
+        properties.setProperty("activemq.queue", QUEUE);
+        properties.setProperty("generation.duration", "60000");
+        properties.setProperty("consumer.drain_timeout", "20000");
+        properties.setProperty("threads_consumer", "2");
+        properties.setProperty("consumer.ack_batch", "50");
+        properties.setProperty("output.dir", outputDirectory.toString());
+        properties.setProperty("process.id", PROCESS_ID);
+        properties.setProperty("writer.checkpoint", "true");
+        properties.setProperty("jmx.enabled", "false");
+        properties.setProperty("throughput.report_interval", "0");
+        return properties;
+    }
+
+    /**
+     * Sends data messages {@code from} to {@code STREAM_MESSAGES - 1}, every tenth one malformed,
+     * then the end of stream unless an earlier run already received it.
+     *
+     * @return JMS ids of the data messages, in order
+     */
+    private List<String> sendStreamFrom(EmbeddedBroker broker, int from, boolean endOfStream) throws Exception {
+        List<String> messageIds = new ArrayList<>();
+        Connection connection = new ActiveMQConnectionFactory(broker.getVmUrl()).createConnection();
+        try {
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageProducer producer = session.createProducer(session.createQueue(QUEUE));
+            for (int i = from; i < STREAM_MESSAGES; i++) {
+                TextMessage message = session.createTextMessage(i % 10 == 0 ? MALFORMED_JSON : VALID_JSON);
+                producer.send(message);
+                messageIds.add(message.getJMSMessageID());
+            }
+            if (endOfStream) {
+                Message endOfStreamMessage = session.createMessage();
+                endOfStreamMessage.setJMSType(Producer.END_OF_STREAM_TYPE);
+                endOfStreamMessage.setStringProperty(Producer.PRODUCER_PROCESS_PROPERTY, "producer");
+                endOfStreamMessage.setLongProperty(Producer.EXPECTED_COUNT_PROPERTY, STREAM_MESSAGES);
+                producer.send(endOfStreamMessage);
+            }
+        } finally {
+            connection.close();
+        }
+        return messageIds;
+    }
+
+    /**
+     * Leaves the files and checkpoints of a run that wrote {@code rows} rows and counted
+     * {@code acknowledgedMessages} messages before it died, having received the end of stream of
+     * {@code producerCounts}.
+     */
+    private void leaveCheckpoints(int rows, long acknowledgedMessages, List<String> pendingMessageIds,
+                                  Map<String, Long> producerCounts) throws Exception {
+        String content = WRITTEN_ROW.repeat(rows);
+        Files.writeString(outputFile(WriterManager.VALID_FILE_NAME), content, StandardCharsets.UTF_8);
+        new WriterCheckpoint(rows, null, Map.of(outputFile(WriterManager.VALID_FILE_NAME).getFileName().toString(), (long) content.length()))
+                .store(outputFile(WriterManager.VALID_BASE_NAME + WriterCheckpoint.FILE_EXTENSION));
+        new ObjectMapper().writeValue(outputFile(AcknowledgementLog.FILE_NAME).toFile(), Map.of(
+                "acknowledgedMessages", acknowledgedMessages,
+                "producerCounts", producerCounts,
+                "pendingMessageIds", pendingMessageIds));
+    }
+
+    private long countLines(String fileName) throws Exception {
+        Path file = outputFile(fileName);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (var lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            return lines.count();
+        }
+    }
+
+    private void assertQueueEmpty(EmbeddedBroker broker) throws Exception {
+        Connection connection = new ActiveMQConnectionFactory(broker.getVmUrl()).createConnection();
+        try {
+            connection.start();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageConsumer consumer = session.createConsumer(session.createQueue(QUEUE));
+            assertNull(consumer.receive(500), "The restarted run left messages on the queue");
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    void resumedRunCountsAcknowledgedMessagesThatWroteNoRecord() throws Exception {
+        int acknowledged = 400;
+        int writtenRows = acknowledged - acknowledged / 10;
+        try (EmbeddedBroker broker = new EmbeddedBroker("checkpoint-restart-failures", false, outputDirectory.resolve("activemq-data").toString(), null)) {
+            broker.start();
+            leaveCheckpoints(writtenRows, acknowledged, List.of(), Map.of());
+            sendStreamFrom(broker, acknowledged, true);
+
+            RunSummary summary = App.run(new PropertyManager(consumerProperties(broker)), 0, Role.CONSUME);
+
+            assertEquals(STREAM_MESSAGES - acknowledged, summary.consumedMessages());
+            assertEquals(STREAM_MESSAGES - STREAM_MESSAGES / 10,
+                    countLines(WriterManager.VALID_FILE_NAME) + countLines(WriterManager.INVALID_FILE_NAME));
+            assertFalse(Files.exists(outputFile(AcknowledgementLog.FILE_NAME)), "The resumed run did not drain the stream");
+            assertQueueEmpty(broker);
+        }
+    }
+
+    @Test
+    void redeliveredBatchWrittenBeforeTheCrashIsCountedAndWrittenOnce() throws Exception {
+        int acknowledged = 400;
+        int unacknowledgedBatch = 100;
+        int counted = acknowledged + unacknowledgedBatch;
+        try (EmbeddedBroker broker = new EmbeddedBroker("checkpoint-restart-redelivery", false, outputDirectory.resolve("activemq-data").toString(), null)) {
+            broker.start();
+            List<String> messageIds = sendStreamFrom(broker, acknowledged, true);
+            leaveCheckpoints(counted - counted / 10, counted, messageIds.subList(0, unacknowledgedBatch), Map.of());
+
+            RunSummary summary = App.run(new PropertyManager(consumerProperties(broker)), 0, Role.CONSUME);
+
+            assertEquals(STREAM_MESSAGES - counted, summary.consumedMessages());
+            assertEquals(STREAM_MESSAGES - STREAM_MESSAGES / 10,
+                    countLines(WriterManager.VALID_FILE_NAME) + countLines(WriterManager.INVALID_FILE_NAME));
+            assertFalse(Files.exists(outputFile(AcknowledgementLog.FILE_NAME)), "The resumed run did not drain the stream");
+            assertQueueEmpty(broker);
+        }
+    }
+
+    @Test
+    void resumedRunDrainsOnTheEndOfStreamItsPredecessorReceived() throws Exception {
+        int acknowledged = 400;
+        int writtenRows = acknowledged - acknowledged / 10;
+        try (EmbeddedBroker broker = new EmbeddedBroker("checkpoint-restart-end-of-stream", false, outputDirectory.resolve("activemq-data").toString(), null)) {
+            broker.start();
+            leaveCheckpoints(writtenRows, acknowledged, List.of(), Map.of("producer", (long) STREAM_MESSAGES));
+            sendStreamFrom(broker, acknowledged, false);
+
+            RunSummary summary = App.run(new PropertyManager(consumerProperties(broker)), 0, Role.CONSUME);
+
+            assertEquals(STREAM_MESSAGES - acknowledged, summary.consumedMessages());
+            assertFalse(Files.exists(outputFile(AcknowledgementLog.FILE_NAME)), "The resumed run did not drain the stream");
+            assertQueueEmpty(broker);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package shpp.azaika;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import shpp.azaika.util.PropertyManager;
+import shpp.azaika.util.managers.WriterManager;
+import shpp.azaika.util.sink.BinaryLogRecordSink;
+import shpp.azaika.util.sink.WriterCheckpoint;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddedPipelineTest {
+    @TempDir
+    Path outputDirectory;
+
+    private Properties embeddedProperties(String brokerName) {
+        Properties properties = new Properties();
+        properties.setProperty("broker.embedded", "true");
+        properties.setProperty("broker.name", brokerName);
+        properties.setProperty("broker.data_dir", outputDirectory.resolve("activemq-data").toString());
+        properties.setProperty("activemq.queue", "pipeline.test");
+        properties.setProperty("generation.duration", "60000");
+        properties.setProperty("consumer.drain_timeout", "60000");
+        properties.setProperty("threads_producer", "2");
+        properties.setProperty("threads_consumer", "2");
+        properties.setProperty("output.dir", outputDirectory.toString());
+        return properties;
+    }
+
+    private long countLines(String fileName) throws Exception {
+        Path file = outputDirectory.resolve(fileName);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (var lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            return lines.count();
+        }
+    }
+
+    /**
+     * Properties of a reproducible run: one seeded producer writing into its own directory.
+     */
+    private Properties seededProperties(String brokerName, Path runDirectory) throws Exception {
+        Properties properties = embeddedProperties(brokerName);
+        properties.setProperty("output.dir", Files.createDirectories(runDirectory).toString());
+        properties.setProperty("threads_producer", "1");
+        properties.setProperty("generator.seed", "42");
+        return properties;
+    }
+
+    private List<String> sortedLines(Path file) throws Exception {
+        try (var lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            return lines.sorted().toList();
+        }
+    }
+
+    private void assertSameRecordsWritten(Path expectedDirectory, Path actualDirectory) throws Exception {
+        for (String fileName : List.of(WriterManager.VALID_FILE_NAME, WriterManager.INVALID_FILE_NAME)) {
+            List<String> expected = sortedLines(expectedDirectory.resolve(fileName));
+            assertFalse(expected.isEmpty(), fileName);
+            assertEquals(expected, sortedLines(actualDirectory.resolve(fileName)), fileName);
+        }
+    }
+
+    private void assertAllMessagesWritten(RunSummary summary, int messageCount) throws Exception {
+        assertEquals(messageCount, summary.producedMessages());
+        assertEquals(messageCount, summary.consumedMessages());
+        assertEquals(messageCount, countLines(WriterManager.VALID_FILE_NAME) + countLines(WriterManager.INVALID_FILE_NAME));
+    }
+
+    @Test
+    void fullPipelineRunsAgainstNonPersistentEmbeddedBroker() throws Exception {
+        int messageCount = 2_000;
+
+        RunSummary summary = App.run(new PropertyManager(embeddedProperties("pipeline-test")), messageCount);
+
+        assertAllMessagesWritten(summary, messageCount);
+    }
+
+    @Test
+    void fullPipelineRunsAgainstPersistentEmbeddedBroker() throws Exception {
+        int messageCount = 500;
+        Properties properties = embeddedProperties("pipeline-test-persistent");
+        properties.setProperty("broker.persistent", "true");
+
+        RunSummary summary = App.run(new PropertyManager(properties), messageCount);
+
+        assertAllMessagesWritten(summary, messageCount);
+    }
+
+    @Test
+    void offHeapHandOffWritesTheSameRecordsAsHeapHandOff() throws Exception {
+        int messageCount = 1_000;
+        Path heapDirectory = outputDirectory.resolve("heap");
+        Path offHeapDirectory = outputDirectory.resolve("offheap");
+        Properties offHeapProperties = seededProperties("pipeline-test-offheap", offHeapDirectory);
+        offHeapProperties.setProperty("handoff.mode", "offheap");
+
+        App.run(new PropertyManager(seededProperties("pipeline-test-heap", heapDirectory)), messageCount);
+        App.run(new PropertyManager(offHeapProperties), messageCount);
+
+        assertSameRecordsWritten(heapDirectory, offHeapDirectory);
+    }
+
+    @Test
+    void validationHintsWriteTheSameRecordsAsFullValidation() throws Exception {
+        int messageCount = 1_000;
+        Path validatedDirectory = outputDirectory.resolve("validated");
+        Path hintedDirectory = outputDirectory.resolve("hinted");
+        Properties validatedProperties = seededProperties("pipeline-test-validated", validatedDirectory);
+        validatedProperties.setProperty("writer.invalid_errors", "false");
+        Properties hintedProperties = seededProperties("pipeline-test-hinted", hintedDirectory);
+        hintedProperties.setProperty("writer.invalid_errors", "false");
+        hintedProperties.setProperty("producer.validation_hints", "true");
+        hintedProperties.setProperty("threads_consumer_rejected", "1");
+
+        App.run(new PropertyManager(validatedProperties), messageCount);
+        App.run(new PropertyManager(hintedProperties), messageCount);
+
+        assertSameRecordsWritten(validatedDirectory, hintedDirectory);
+    }
+
+    @Test
+    void shardedPipelineDeliversEveryMessage() throws Exception {
+        int messageCount = 2_000;
+        Properties properties = embeddedProperties("pipeline-test-sharded");
+        properties.setProperty("activemq.shards", "3");
+        properties.setProperty("threads_consumer", "3");
+
+        RunSummary summary = App.run(new PropertyManager(properties), messageCount);
+
+        assertAllMessagesWritten(summary, messageCount);
+    }
+
+    @Test
+    void fanOutWritesEveryFormat() throws Exception {
+        int messageCount = 2_000;
+        Properties properties = embeddedProperties("pipeline-test-fan-out");
+        properties.setProperty("writer.formats", "csv,jsonl,binary");
+
+        RunSummary summary = App.run(new PropertyManager(properties), messageCount);
+
+        assertAllMessagesWritten(summary, messageCount);
+        assertEquals(messageCount, countLines("valid_users.jsonl") + countLines("invalid_users.jsonl"));
+        assertEquals(messageCount, BinaryLogRecordSink.read(outputDirectory.resolve("valid_users.bin")).size()
+                + BinaryLogRecordSink.read(outputDirectory.resolve("invalid_users.bin")).size());
+    }
+
+    @Test
+    void jdbcSinkReceivesEveryRecordAlongsideCsv() throws Exception {
+        int messageCount = 2_000;
+        Properties properties = embeddedProperties("pipeline-test-jdbc");
+        String url = "jdbc:h2:mem:pipeline-test-jdbc;DB_CLOSE_DELAY=-1";
+        properties.setProperty("jdbc.url", url);
+        properties.setProperty("jdbc.user", "sa");
+        properties.setProperty("jdbc.password", "");
+
+        RunSummary summary = App.run(new PropertyManager(properties), messageCount);
+
+        assertAllMessagesWritten(summary, messageCount);
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT (SELECT COUNT(*) FROM valid_users) + (SELECT COUNT(*) FROM invalid_users)")) {
+            assertTrue(result.next());
+            assertEquals(messageCount, result.getLong(1));
+        }
+    }
+
+    @Test
+    void workStealingDrainsShardsWithoutOwnConsumers() throws Exception {
+        int messageCount = 2_000;
+        Properties properties = embeddedProperties("pipeline-test-stealing");
+        properties.setProperty("activemq.shards", "4");
+        properties.setProperty("activemq.shard_strategy", "eddr_hash");
+        properties.setProperty("consumer.work_stealing", "true");
+
+        RunSummary summary = App.run(new PropertyManager(properties), messageCount);
+
+        assertAllMessagesWritten(summary, messageCount);
+    }
+
+    @Test
+    void failFastValidationWritesEveryMessage() throws Exception {
+        int messageCount = 2_000;
+        Properties properties = embeddedProperties("pipeline-test-fail-fast");
+        properties.setProperty("consumer.fail_fast", "true");
+        properties.setProperty("writer.invalid_errors", "false");
+
+        RunSummary summary = App.run(new PropertyManager(properties), messageCount);
+
+        assertAllMessagesWritten(summary, messageCount);
+    }
+
+    @Test
+    void checkpointedRunTruncatesTornTailAndWritesEveryMessageOnce() throws Exception {
+        int messageCount = 2_000;
+        String syncedRow = "Andrew Zaika,19760506-26585,15,2024-01-01\n";
+        Files.writeString(outputDirectory.resolve(WriterManager.VALID_FILE_NAME), syncedRow + "Anna Kov", StandardCharsets.UTF_8);
+        new WriterCheckpoint(1, null, Map.of(WriterManager.VALID_FILE_NAME, (long) syncedRow.length()))
+                .store(outputDirectory.resolve(WriterManager.VALID_BASE_NAME + WriterCheckpoint.FILE_EXTENSION));
+        Properties properties = embeddedProperties("pipeline-test-checkpoint");
+        properties.setProperty("writer.checkpoint", "true");
+
+        RunSummary summary = App.run(new PropertyManager(properties), messageCount);
+
+        assertEquals(messageCount, summary.consumedMessages());
+        assertEquals(messageCount + 1, countLines(WriterManager.VALID_FILE_NAME) + countLines(WriterManager.INVALID_FILE_NAME));
+        assertTrue(Files.readString(outputDirectory.resolve(WriterManager.VALID_FILE_NAME), StandardCharsets.UTF_8).startsWith(syncedRow));
+        assertFalse(Files.exists(outputDirectory.resolve(WriterManager.VALID_BASE_NAME + WriterCheckpoint.FILE_EXTENSION)),
+                "A drained run leaves no checkpoint to resume");
+    }
+
+    @Test
+    void checkpointsRejectOverflowPoliciesThatDropRecords() {
+        Properties properties = embeddedProperties("pipeline-test-checkpoint-overflow");
+        properties.setProperty("writer.checkpoint", "true");
+        properties.setProperty("writer.formats", "csv,jsonl");
+        properties.setProperty("writer.overflow", "drop_newest");
+
+        assertThrows(IllegalArgumentException.class, () -> App.run(new PropertyManager(properties), 100));
+    }
+}
@@ -0,0 +1,90 @@
+package shpp.azaika;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import shpp.azaika.util.PropertyManager;
+import shpp.azaika.util.managers.WriterManager;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveReconfigurationTest {
+    private static final ObjectName PRODUCERS = name("ProducerManager");
+    private static final ObjectName CONSUMERS = name("ConsumerManager");
+
+    @TempDir
+    Path outputDirectory;
+
+    private static ObjectName name(String type) {
+        try {
+            return new ObjectName("shpp.azaika", "type", type);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private long countLines(String fileName) throws Exception {
+        try (var lines = Files.lines(outputDirectory.resolve(fileName), StandardCharsets.UTF_8)) {
+            return lines.count();
+        }
+    }
+
+    private void awaitConsumed(MBeanServer server, long messages) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!server.isRegistered(CONSUMERS) || (long) server.getAttribute(CONSUMERS, "ConsumedMessages") < messages) {
+            assertTrue(System.nanoTime() < deadline, "Pipeline did not reach " + messages + " consumed messages");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void poolsBatchesAndQueuesChangeMidRunWithoutLosingMessages() throws Exception {
+        int messageCount = 30_000;
+        Properties properties = new Properties();
+        properties.setProperty("broker.embedded", "true");
+        properties.setProperty("broker.name", "live-reconfiguration-test");
+        properties.setProperty("activemq.queue", "live.reconfiguration.test");
+        properties.setProperty("generation.duration", "120000");
+        properties.setProperty("consumer.drain_timeout", "120000");
+        properties.setProperty("threads_producer", "1");
+        properties.setProperty("threads_consumer", "2");
+        properties.setProperty("output.dir", outputDirectory.toString());
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ExecutorService runner = Executors.newSingleThreadExecutor();
+        try {
+            Future<RunSummary> run = runner.submit(() -> App.run(new PropertyManager(properties), messageCount));
+
+            awaitConsumed(server, 1_000);
+            server.setAttribute(PRODUCERS, new Attribute("BatchSize", 200));
+            server.setAttribute(PRODUCERS, new Attribute("ProducerCount", 3));
+            server.setAttribute(CONSUMERS, new Attribute("ConsumerCount", 4));
+            server.setAttribute(CONSUMERS, new Attribute("QueueCapacity", 50));
+            assertEquals(3, server.getAttribute(PRODUCERS, "ProducerCount"));
+            assertEquals(4, server.getAttribute(CONSUMERS, "ConsumerCount"));
+
+            awaitConsumed(server, 5_000);
+            server.setAttribute(PRODUCERS, new Attribute("ProducerCount", 1));
+            server.setAttribute(CONSUMERS, new Attribute("ConsumerCount", 1));
+            server.setAttribute(CONSUMERS, new Attribute("QueueCapacity", 10_000));
+
+            RunSummary summary = run.get(120, TimeUnit.SECONDS);
+            assertEquals(messageCount, summary.producedMessages());
+            assertEquals(messageCount, summary.consumedMessages());
+            assertEquals(messageCount, countLines(WriterManager.VALID_FILE_NAME) + countLines(WriterManager.INVALID_FILE_NAME));
+        } finally {
+            runner.shutdownNow();
+        }
+    }
+}
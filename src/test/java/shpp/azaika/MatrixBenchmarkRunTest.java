@@ -0,0 +1,34 @@
+package shpp.azaika;
+
+import org.junit.jupiter.api.Test;
+import shpp.azaika.util.metrics.BenchmarkCell;
+import shpp.azaika.util.metrics.BenchmarkMatrix;
+import shpp.azaika.util.metrics.BenchmarkReport;
+
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MatrixBenchmarkRunTest {
+    @Test
+    void everyCellGetsItsTrials() throws Exception {
+        int messageCount = 1_000;
+        List<BenchmarkCell> cells = List.of(
+                new BenchmarkCell(1, 2, false, "dups_ok", 100, messageCount),
+                new BenchmarkCell(2, 1, true, "after_write", 10, messageCount));
+
+        BenchmarkReport report = MatrixBenchmarkRun.run(new BenchmarkMatrix(cells, 2, 200), new Properties());
+
+        List<BenchmarkReport.CellSummary> summaries = report.summarize();
+        assertEquals(cells, summaries.stream().map(BenchmarkReport.CellSummary::cell).toList());
+        for (BenchmarkReport.CellSummary summary : summaries) {
+            assertEquals(2, summary.trials().size());
+            for (BenchmarkReport.Trial trial : summary.trials()) {
+                assertEquals(messageCount, trial.consumedMessages());
+                assertTrue(trial.sustainedMps() > 0);
+            }
+            assertTrue(summary.latencyMaxMicros() > 0, "Broker latency is tracked");
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package shpp.azaika;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import shpp.azaika.util.metrics.RunStatsReport;
+import shpp.azaika.util.mq.EmbeddedBroker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs producer and consumer JVMs against a broker listening on localhost, the way processes
+ * on different hosts would share it.
+ */
+class MultiProcessPipelineTest {
+    private static final int CONSUMER_PROCESSES = 2;
+    /**
+     * Two consumer threads plus the coordination connection per consumer process.
+     */
+    private static final int CONNECTIONS_PER_CONSUMER_PROCESS = 3;
+
+    @TempDir
+    Path workDirectory;
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private Path writeConfiguration(int port, Path outputDirectory, int producerProcesses) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("activemq.url", "tcp://localhost:" + port);
+        properties.setProperty("activemq.queue", "multi.process.test");
+        properties.setProperty("generation.duration", "60000");
+        properties.setProperty("consumer.drain_timeout", "60000");
+        properties.setProperty("threads_producer", "2");
+        properties.setProperty("threads_consumer", "2");
+        properties.setProperty("output.dir", outputDirectory.toString());
+        properties.setProperty("jmx.enabled", "false");
+        properties.setProperty("throughput.report_interval", "0");
+        properties.setProperty("producer.processes", String.valueOf(producerProcesses));
+        Path configurationDirectory = Files.createDirectories(workDirectory.resolve("conf"));
+        try (OutputStream out = Files.newOutputStream(configurationDirectory.resolve("app.properties"))) {
+            properties.store(out, null);
+        }
+        return configurationDirectory;
+    }
+
+    private Process startJvm(Path configurationDirectory, String logName, String... args) throws IOException {
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", configurationDirectory + File.pathSeparator + System.getProperty("java.class.path"),
+                App.class.getName()));
+        command.addAll(List.of(args));
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(workDirectory.resolve(logName + ".log").toFile())
+                .start();
+    }
+
+    private void awaitExit(Process process, String logName) throws Exception {
+        if (!process.waitFor(120, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            fail(logName + " did not finish, see " + workDirectory.resolve(logName + ".log"));
+        }
+        assertEquals(0, process.exitValue(), logName + " failed, see " + workDirectory.resolve(logName + ".log"));
+    }
+
+    private long countLines(Path directory, String glob) throws IOException {
+        long lines = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, glob)) {
+            for (Path file : files) {
+                try (var fileLines = Files.lines(file, StandardCharsets.UTF_8)) {
+                    lines += fileLines.count();
+                }
+            }
+        }
+        return lines;
+    }
+
+    private long countFiles(Path directory, String glob) throws IOException {
+        long count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, glob)) {
+            for (Path ignored : files) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Starts the consumer processes, then {@code producerProcesses} producers of
+     * {@code messagesPerProducer} messages each, and checks every message was written once.
+     */
+    private void runProcesses(int producerProcesses, int messagesPerProducer) throws Exception {
+        int messageCount = producerProcesses * messagesPerProducer;
+        int port = freePort();
+        Path outputDirectory = Files.createDirectories(workDirectory.resolve("output"));
+        Path configurationDirectory = writeConfiguration(port, outputDirectory, producerProcesses);
+
+        try (EmbeddedBroker broker = new EmbeddedBroker("multi-process-test", false,
+                workDirectory.resolve("activemq-data").toString(), "tcp://localhost:" + port)) {
+            broker.start();
+            List<Process> consumers = new ArrayList<>();
+            for (int i = 0; i < CONSUMER_PROCESSES; i++) {
+                consumers.add(startJvm(configurationDirectory, "consumer-" + i, "consume"));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            while (broker.getBrokerService().getBroker().getClients().length < CONSUMER_PROCESSES * CONNECTIONS_PER_CONSUMER_PROCESS) {
+                assertTrue(System.nanoTime() < deadline, "Consumer processes did not connect");
+                Thread.sleep(50);
+            }
+
+            List<Process> producers = new ArrayList<>();
+            for (int i = 0; i < producerProcesses; i++) {
+                producers.add(startJvm(configurationDirectory, "producer-" + i, String.valueOf(messagesPerProducer), "produce"));
+            }
+            for (int i = 0; i < producers.size(); i++) {
+                awaitExit(producers.get(i), "producer-" + i);
+            }
+            for (int i = 0; i < consumers.size(); i++) {
+                awaitExit(consumers.get(i), "consumer-" + i);
+            }
+        }
+
+        RunStatsReport report = RunStatsReport.load(outputDirectory);
+        assertEquals(producerProcesses + CONSUMER_PROCESSES, report.getProcesses().size());
+        assertEquals(messageCount, report.getProducedMessages());
+        assertEquals(messageCount, report.getConsumedMessages());
+        assertEquals(messageCount, report.getWrittenRecords());
+        assertEquals(CONSUMER_PROCESSES, countFiles(outputDirectory, "valid_users-*.csv"));
+        assertEquals(messageCount, countLines(outputDirectory, "valid_users-*.csv") + countLines(outputDirectory, "invalid_users-*.csv"));
+    }
+
+    @Test
+    void consumerProcessesDrainOneQueueIntoTheirOwnShards() throws Exception {
+        runProcesses(1, 20_000);
+    }
+
+    @Test
+    void consumerProcessesWaitForTheEndOfStreamOfEveryProducerProcess() throws Exception {
+        runProcesses(2, 10_000);
+    }
+}
@@ -0,0 +1,29 @@
+package shpp.azaika.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AckWindowTest {
+    @Test
+    void awaitReturnsOnceEveryRoutedRecordIsDurable() throws Exception {
+        AckWindow window = new AckWindow();
+        window.recordRouted();
+        window.recordRouted();
+        Thread writer = new Thread(() -> window.recordsDurable(2));
+        writer.start();
+
+        assertTrue(window.awaitDurable(10_000));
+        writer.join();
+        assertEquals(0, window.getPendingRecords());
+    }
+
+    @Test
+    void awaitTimesOutWhileRecordsArePending() throws Exception {
+        AckWindow window = new AckWindow();
+        window.recordRouted();
+
+        assertFalse(window.awaitDurable(20));
+        assertEquals(1, window.getPendingRecords());
+    }
+}
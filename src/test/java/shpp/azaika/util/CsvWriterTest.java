@@ -0,0 +1,50 @@
+package shpp.azaika.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.pojo.ValidatedRecord;
+import shpp.azaika.validation.ViolationCatalog;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvWriterTest {
+    @TempDir
+    Path tempDir;
+
+    private List<String> writeAndRead(ValidatedRecord record, ViolationCatalog catalog) throws Exception {
+        Path file = tempDir.resolve("users.csv");
+        try (CsvWriter writer = new CsvWriter(file.toString(), catalog)) {
+            writer.write(record);
+        }
+        return Files.readAllLines(file, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void invalidReportAppendsQuotedErrorsColumn() throws Exception {
+        ValidatedRecord record = new ValidatedRecord(new UserPojo("Andrew Zaika", "19760506-26585", 5, LocalDate.now()), 0b101);
+        ViolationCatalog catalog = ViolationCatalog.forUserPojo();
+
+        List<String> lines = writeAndRead(record, catalog);
+
+        assertEquals(1, lines.size());
+        String expectedErrors = "\"" + catalog.toJson(0b101).replace("\"", "\"\"") + "\"";
+        assertTrue(lines.getFirst().endsWith("," + expectedErrors), lines.getFirst());
+    }
+
+    @Test
+    void plainWriterHasNoErrorsColumn() throws Exception {
+        ValidatedRecord record = new ValidatedRecord(new UserPojo("Andrew Zaika", "19760506-26585", 5, LocalDate.now()), 0b101);
+
+        List<String> lines = writeAndRead(record, null);
+
+        assertEquals(1, lines.size());
+        assertFalse(lines.getFirst().contains("constraint"), lines.getFirst());
+    }
+}
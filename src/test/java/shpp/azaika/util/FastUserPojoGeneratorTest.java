@@ -0,0 +1,106 @@
+package shpp.azaika.util;
+
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+import shpp.azaika.pojo.UserPojo;
+
+import java.time.LocalDate;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FastUserPojoGeneratorTest {
+    private static final int SAMPLES = 10_000;
+    private final Validator validator = SharedComponents.validatorFactory().getValidator();
+
+    private record Distribution(double validRecords, double validEddrs, double threePartNames,
+                                double meanNameLength, double meanCount, int minBirthYear, int maxBirthYear) {
+    }
+
+    private Distribution sample(Supplier<UserPojo> generator) {
+        int validRecords = 0;
+        int validEddrs = 0;
+        int threePartNames = 0;
+        long nameLength = 0;
+        long count = 0;
+        int minBirthYear = Integer.MAX_VALUE;
+        int maxBirthYear = Integer.MIN_VALUE;
+        for (int i = 0; i < SAMPLES; i++) {
+            UserPojo user = generator.get();
+            assertTrue(user.getEddr().matches("\\d{8}-\\d{5}"), user.getEddr());
+            assertTrue(user.getCount() >= 0 && user.getCount() < 999);
+            if (validator.validate(user).isEmpty()) {
+                validRecords++;
+            }
+            if (validator.validateProperty(user, "eddr").isEmpty()) {
+                validEddrs++;
+            }
+            if (user.getName().split(" ").length == 3) {
+                threePartNames++;
+            }
+            nameLength += user.getName().length();
+            count += user.getCount();
+            int birthYear = Integer.parseInt(user.getEddr().substring(0, 4));
+            minBirthYear = Math.min(minBirthYear, birthYear);
+            maxBirthYear = Math.max(maxBirthYear, birthYear);
+        }
+        return new Distribution((double) validRecords / SAMPLES, (double) validEddrs / SAMPLES, (double) threePartNames / SAMPLES,
+                (double) nameLength / SAMPLES, (double) count / SAMPLES, minBirthYear, maxBirthYear);
+    }
+
+    @Test
+    void defaultDistributionMatchesFakerGenerator() {
+        UserPojoGenerator faker = new UserPojoGenerator();
+        FastUserPojoGenerator fast = new FastUserPojoGenerator();
+
+        Distribution expected = sample(faker::generate);
+        Distribution actual = sample(fast::generate);
+
+        assertEquals(expected.validRecords(), actual.validRecords(), 0.03);
+        assertEquals(expected.validEddrs(), actual.validEddrs(), 0.03);
+        assertEquals(expected.threePartNames(), actual.threePartNames(), 0.03);
+        assertEquals(expected.meanNameLength(), actual.meanNameLength(), 0.5);
+        assertEquals(expected.meanCount(), actual.meanCount(), 15);
+        assertEquals(expected.minBirthYear(), actual.minBirthYear(), 1);
+        assertEquals(expected.maxBirthYear(), actual.maxBirthYear(), 1);
+    }
+
+    @Test
+    void validRatioControlsShareOfValidRecords() {
+        for (double validRatio : new double[]{0.0, 0.2, 0.9, 1.0}) {
+            FastUserPojoGenerator fast = new FastUserPojoGenerator(validRatio);
+
+            assertEquals(validRatio, sample(fast::generate).validRecords(), 0.02, "valid ratio " + validRatio);
+        }
+    }
+
+    @Test
+    void sameSeedGeneratesSameRecords() {
+        FastUserPojoGenerator first = new FastUserPojoGenerator(0.5, 42);
+        FastUserPojoGenerator second = new FastUserPojoGenerator(0.5, 42);
+
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(first.generateUserPojoAsJson(), second.generateUserPojoAsJson());
+        }
+    }
+
+    @Test
+    void generatedRecordsAreDatedToday() {
+        assertEquals(LocalDate.now(), new FastUserPojoGenerator().generate().getDate());
+    }
+
+    @Test
+    void nameCheckMatchesNameConstraints() {
+        assertTrue(FastUserPojoGenerator.isValidName("Андрій Зайка"));
+        assertTrue(FastUserPojoGenerator.isValidName("Anton Ivanov"));
+        assertTrue(FastUserPojoGenerator.isValidName("АНТОН Ів"));
+        assertFalse(FastUserPojoGenerator.isValidName("Іван"));
+        assertFalse(FastUserPojoGenerator.isValidName("Петро Осипенко"));
+    }
+
+    @Test
+    void rejectsRatioOutsideUnitInterval() {
+        assertThrows(IllegalArgumentException.class, () -> new FastUserPojoGenerator(1.5));
+        assertThrows(IllegalArgumentException.class, () -> new FastUserPojoGenerator(-0.1));
+    }
+}
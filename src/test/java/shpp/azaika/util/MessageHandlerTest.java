@@ -9,7 +9,9 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.pojo.ValidatedRecord;
 import shpp.azaika.util.mq.Producer;
+import shpp.azaika.validation.ValidationHints;
 
 import javax.jms.JMSException;
 import javax.jms.TextMessage;
@@ -30,8 +32,8 @@ class MessageHandlerTest {
     @Mock
     private TextMessage textMessage;
 
-    private BlockingQueue<UserPojo> validQueue;
-    private BlockingQueue<UserPojo> invalidQueue;
+    private BlockingQueue<ValidatedRecord> validQueue;
+    private BlockingQueue<ValidatedRecord> invalidQueue;
 
     private MessageHandler messageHandler;
 
@@ -62,7 +64,7 @@ class MessageHandlerTest {
 
         messageHandler.handleMessage(textMessage);
 
-        assertTrue(validQueue.contains(userPojo));
+        assertSame(userPojo, validQueue.peek().userPojo());
         assertTrue(invalidQueue.isEmpty());
     }
 
@@ -77,17 +79,81 @@ class MessageHandlerTest {
 
         messageHandler.handleMessage(textMessage);
 
-        assertTrue(invalidQueue.contains(userPojo));
+        assertSame(userPojo, invalidQueue.peek().userPojo());
         assertTrue(validQueue.isEmpty());
     }
 
     @Test
-    void testPoisonPillDetection() throws JMSException {
-        when(textMessage.getText()).thenReturn(Producer.POISON_PILL);
+    void testHintedInvalidMessageSkipsValidation() throws Exception {
+        UserPojo userPojo = new UserPojo();
+        String messageContent = "{\"name\":\"Андрій\",\"count\":3}";
+
+        when(textMessage.getText()).thenReturn(messageContent);
+        when(textMessage.propertyExists(ValidationHints.COUNT_PROPERTY)).thenReturn(true);
+        when(textMessage.getIntProperty(ValidationHints.COUNT_PROPERTY)).thenReturn(3);
+        when(textMessage.getIntProperty(ValidationHints.NAME_LENGTH_PROPERTY)).thenReturn(6);
+        when(mapper.readValue(messageContent, UserPojo.class)).thenReturn(userPojo);
+        messageHandler.setViolationReport(false);
+
+        messageHandler.handleMessage(textMessage);
 
-        boolean isPoisonPill = messageHandler.isPoisonPill(textMessage);
+        assertSame(userPojo, invalidQueue.peek().userPojo());
+        assertTrue(validQueue.isEmpty());
+        verify(validator, never()).validate(any());
+        assertEquals(1, messageHandler.getPreRejectedCount());
+    }
+
+    @Test
+    void testHintedPlausibleMessageIsValidated() throws Exception {
+        UserPojo userPojo = new UserPojo();
+        String messageContent = "{\"name\":\"Андрій Заїка\",\"count\":30}";
+
+        when(textMessage.getText()).thenReturn(messageContent);
+        when(textMessage.propertyExists(ValidationHints.COUNT_PROPERTY)).thenReturn(true);
+        when(textMessage.getIntProperty(ValidationHints.COUNT_PROPERTY)).thenReturn(30);
+        when(textMessage.getIntProperty(ValidationHints.NAME_LENGTH_PROPERTY)).thenReturn(12);
+        when(mapper.readValue(messageContent, UserPojo.class)).thenReturn(userPojo);
+        when(validator.validate(userPojo)).thenReturn(Collections.emptySet());
+
+        messageHandler.handleMessage(textMessage);
+
+        assertSame(userPojo, validQueue.peek().userPojo());
+        verify(validator).validate(userPojo);
+    }
+
+    @Test
+    void testRedeliveredMessageIsDropped() throws Exception {
+        UserPojo userPojo = new UserPojo();
+        String messageContent = "{\"name\":\"Андрій\"}";
+
+        when(textMessage.getText()).thenReturn(messageContent);
+        when(textMessage.propertyExists(Producer.RECORD_ID_PROPERTY)).thenReturn(true);
+        when(textMessage.getLongProperty(Producer.RECORD_ID_PROPERTY)).thenReturn(42L);
+        when(mapper.readValue(messageContent, UserPojo.class)).thenReturn(userPojo);
+        when(validator.validate(userPojo)).thenReturn(Collections.emptySet());
+        messageHandler.setDeduplicator(new RedeliveryDeduplicator(1024, 3, 16));
+
+        assertTrue(messageHandler.handleMessage(textMessage));
+        assertFalse(messageHandler.handleMessage(textMessage));
+
+        assertEquals(1, validQueue.size());
+    }
+
+    @Test
+    void testEndOfStreamDetection() throws JMSException {
+        when(textMessage.getJMSType()).thenReturn(Producer.END_OF_STREAM_TYPE);
+
+        boolean isEndOfStream = messageHandler.isEndOfStream(textMessage);
+
+        assertTrue(isEndOfStream);
+        verify(textMessage, never()).getText();
+    }
+
+    @Test
+    void testDataMessageIsNotEndOfStream() throws JMSException {
+        when(textMessage.getJMSType()).thenReturn(null);
 
-        assertTrue(isPoisonPill);
+        assertFalse(messageHandler.isEndOfStream(textMessage));
     }
 
     @Test
@@ -0,0 +1,79 @@
+package shpp.azaika.util;
+
+import org.junit.jupiter.api.Test;
+import shpp.azaika.util.offheap.OffHeapBloomFilter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedeliveryDeduplicatorTest {
+
+    @Test
+    void secondDeliveryOfAnIdIsADuplicate() {
+        RedeliveryDeduplicator deduplicator = new RedeliveryDeduplicator(4096, 4, 128);
+
+        assertFalse(deduplicator.isDuplicate(7));
+        assertTrue(deduplicator.isDuplicate(7));
+        assertFalse(deduplicator.isDuplicate(8));
+
+        assertEquals(3, deduplicator.getCheckCount());
+        assertEquals(1, deduplicator.getDuplicateCount());
+    }
+
+    @Test
+    void exactCheckRejectsBloomFalsePositives() {
+        // 8 bytes = 64 bits: the filter saturates quickly and reports possible hits for new ids
+        RedeliveryDeduplicator deduplicator = new RedeliveryDeduplicator(8, 2, 10_000);
+
+        for (long id = 0; id < 1_000; id++) {
+            assertFalse(deduplicator.isDuplicate(id), "id " + id);
+        }
+
+        assertEquals(0, deduplicator.getDuplicateCount());
+        assertTrue(deduplicator.getFalsePositiveCount() > 0);
+    }
+
+    @Test
+    void idsOlderThanTheWindowAreTreatedAsNew() {
+        RedeliveryDeduplicator deduplicator = new RedeliveryDeduplicator(4096, 4, 1);
+
+        deduplicator.isDuplicate(1);
+        deduplicator.isDuplicate(2);
+
+        assertFalse(deduplicator.isDuplicate(1));
+    }
+
+    @Test
+    void windowKeepsExactlyTheLastIdsAcrossEvictions() {
+        int capacity = 64;
+        RedeliveryDeduplicator.IdWindow window = new RedeliveryDeduplicator.IdWindow(capacity);
+
+        for (long id = 0; id < 10_000; id++) {
+            window.add(id * 31);
+            for (long recent = Math.max(0, id - capacity + 1); recent <= id; recent++) {
+                assertTrue(window.contains(recent * 31), "id " + recent + " after adding " + id);
+            }
+            if (id >= capacity) {
+                assertFalse(window.contains((id - capacity) * 31), "evicted id " + (id - capacity));
+            }
+        }
+    }
+
+    @Test
+    void measuredFalsePositiveRateStaysNearTheoreticalRate() {
+        OffHeapBloomFilter filter = new OffHeapBloomFilter(1 << 16, 4);
+        int insertions = 50_000;
+        for (long id = 0; id < insertions; id++) {
+            filter.put(id);
+        }
+        int probes = 100_000;
+        int falsePositives = 0;
+        for (long id = insertions; id < insertions + probes; id++) {
+            if (filter.mightContain(id)) {
+                falsePositives++;
+            }
+        }
+
+        double measured = (double) falsePositives / probes;
+        assertEquals(filter.expectedFalsePositiveRate(insertions), measured, 0.01);
+    }
+}
@@ -0,0 +1,79 @@
+package shpp.azaika.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResizableBlockingQueueTest {
+
+    @Test
+    void offerRespectsCapacity() {
+        ResizableBlockingQueue<Integer> queue = new ResizableBlockingQueue<>(2);
+
+        assertTrue(queue.offer(1));
+        assertTrue(queue.offer(2));
+        assertFalse(queue.offer(3));
+        assertEquals(0, queue.remainingCapacity());
+    }
+
+    @Test
+    void growingCapacityReleasesBlockedPut() throws Exception {
+        ResizableBlockingQueue<Integer> queue = new ResizableBlockingQueue<>(1);
+        queue.put(1);
+        CompletableFuture<Void> blockedPut = CompletableFuture.runAsync(() -> {
+            try {
+                queue.put(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(blockedPut.isDone());
+
+        queue.setCapacity(2);
+
+        blockedPut.get(1, TimeUnit.SECONDS);
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    void shrinkingKeepsElementsAndBlocksUntilDrained() throws Exception {
+        ResizableBlockingQueue<Integer> queue = new ResizableBlockingQueue<>(3);
+        queue.put(1);
+        queue.put(2);
+        queue.put(3);
+
+        queue.setCapacity(1);
+
+        assertEquals(3, queue.size());
+        assertFalse(queue.offer(4, 10, TimeUnit.MILLISECONDS));
+        assertEquals(1, queue.poll());
+        assertEquals(2, queue.poll());
+        assertFalse(queue.offer(4, 10, TimeUnit.MILLISECONDS), "Still at the new capacity");
+        assertEquals(3, queue.poll());
+        assertTrue(queue.offer(4, 1, TimeUnit.SECONDS));
+        assertEquals(4, queue.poll());
+    }
+
+    @Test
+    void pollWakesBlockedPut() throws Exception {
+        ResizableBlockingQueue<Integer> queue = new ResizableBlockingQueue<>(1);
+        queue.put(1);
+        CompletableFuture<Void> blockedPut = CompletableFuture.runAsync(() -> {
+            try {
+                queue.put(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.sleep(50);
+
+        assertEquals(1, queue.poll());
+
+        blockedPut.get(1, TimeUnit.SECONDS);
+        assertEquals(2, queue.poll());
+    }
+}
@@ -0,0 +1,31 @@
+package shpp.azaika.util;
+
+import org.junit.jupiter.api.Test;
+import shpp.azaika.pojo.UserPojo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedComponentsTest {
+    @Test
+    void componentsAreBuiltOnce() {
+        assertSame(SharedComponents.objectMapper(), SharedComponents.objectMapper());
+        assertSame(SharedComponents.validatorFactory(), SharedComponents.validatorFactory());
+    }
+
+    @Test
+    void sharedMapperReadsMessagesTheProducerWrites() throws Exception {
+        UserPojoGenerator generator = new UserPojoGenerator();
+        UserPojo generated = generator.generate();
+
+        UserPojo read = SharedComponents.objectMapper().readValue(generator.toJson(generated), UserPojo.class);
+
+        assertEquals(generated.toString(), read.toString());
+    }
+
+    @Test
+    void warmUpRunsWithAndWithoutGenerator() {
+        assertDoesNotThrow(() -> SharedComponents.warmUp(10, false, true));
+        assertDoesNotThrow(() -> SharedComponents.warmUp(10, true, true));
+        assertDoesNotThrow(() -> SharedComponents.warmUp(10, true, false));
+    }
+}
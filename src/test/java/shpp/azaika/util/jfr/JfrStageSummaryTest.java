@@ -0,0 +1,42 @@
+package shpp.azaika.util.jfr;
+
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JfrStageSummaryTest {
+
+    @Test
+    void summarisesRecordedStages(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("run.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(MessageValidateEvent.class).withThreshold(Duration.ZERO);
+            recording.enable(WriterFlushEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+            for (int i = 0; i < 3; i++) {
+                MessageValidateEvent event = new MessageValidateEvent();
+                event.begin();
+                event.violations = i;
+                event.commit();
+            }
+            WriterFlushEvent flushEvent = new WriterFlushEvent();
+            flushEvent.begin();
+            flushEvent.bytes = 16384;
+            flushEvent.commit();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        Map<String, JfrStageSummary.StageStats> stages = JfrStageSummary.summarise(file);
+
+        assertEquals(3, stages.get("MessageValidate").getCount());
+        assertEquals(1, stages.get("WriterFlush").getCount());
+        assertFalse(stages.containsKey("MessageSend"));
+    }
+}
@@ -0,0 +1,70 @@
+package shpp.azaika.util.latency;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(100, histogram.getTotalCount());
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(99, histogram.getValueAtPercentile(99));
+        assertEquals(100, histogram.getMax());
+    }
+
+    @Test
+    void largeValuesStayWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1_000; value <= 1_000_000; value += 1_000) {
+            histogram.record(value);
+        }
+
+        long p90 = histogram.getValueAtPercentile(90);
+        assertTrue(Math.abs(p90 - 900_000) <= 900_000 * 0.016, "p90 was " + p90);
+        assertEquals(1_000_000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void bucketBoundariesRoundTrip() {
+        for (long value : new long[]{0, 127, 128, 255, 256, 1_000_003, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.highestEquivalentValue(index) >= value, "value " + value);
+            if (index > 0) {
+                assertTrue(LatencyHistogram.highestEquivalentValue(index - 1) < value, "value " + value);
+            }
+        }
+    }
+
+    @Test
+    void recorderMergesPerThreadHistograms() throws InterruptedException {
+        LatencyRecorder recorder = new LatencyRecorder("stage");
+        Thread first = new Thread(() -> recorder.record(10));
+        Thread second = new Thread(() -> recorder.record(20));
+        first.start();
+        second.start();
+        first.join();
+        second.join();
+        recorder.record(30);
+
+        LatencyHistogram merged = recorder.snapshot();
+        assertEquals(3, merged.getTotalCount());
+        assertEquals(30, merged.getMax());
+        assertEquals(20, merged.getValueAtPercentile(50));
+    }
+
+    @Test
+    void negativeLatencyIsCountedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertEquals(1, histogram.getTotalCount());
+        assertEquals(0, histogram.getMax());
+    }
+}
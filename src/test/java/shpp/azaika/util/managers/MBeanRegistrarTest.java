@@ -0,0 +1,53 @@
+package shpp.azaika.util.managers;
+
+import org.junit.jupiter.api.Test;
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.pojo.ValidatedRecord;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MBeanRegistrarTest {
+
+    @Test
+    void managersAreReadableOverJmx() throws Exception {
+        ConsumerManager consumerManager = new ConsumerManager(2);
+        ObjectName name = MBeanRegistrar.register(consumerManager, "ConsumerManagerTest");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertNotNull(name);
+            consumerManager.getValidQueue().add(new ValidatedRecord(new UserPojo(), 0));
+
+            assertEquals(1, server.getAttribute(name, "ValidQueueDepth"));
+            assertEquals(0L, server.getAttribute(name, "ConsumedMessages"));
+            assertArrayEquals(new long[0], (long[]) server.getAttribute(name, "ConsumedMessagesPerThread"));
+        } finally {
+            MBeanRegistrar.unregister(name);
+            consumerManager.getExecutor().shutdownNow();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    void registeringAgainReplacesThePreviousBean() throws Exception {
+        WriterManager first = new WriterManager();
+        WriterManager second = new WriterManager();
+        MBeanRegistrar.register(first, "WriterManagerTest");
+        ObjectName name = MBeanRegistrar.register(second, "WriterManagerTest");
+        try {
+            assertEquals(0L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "BytesFlushed"));
+        } finally {
+            MBeanRegistrar.unregister(name);
+            first.shutdownWriterExecutor();
+            second.shutdownWriterExecutor();
+        }
+    }
+
+    @Test
+    void rateIsZeroBeforeStart() {
+        assertEquals(0, MBeanRegistrar.perSecond(100, 0));
+    }
+}
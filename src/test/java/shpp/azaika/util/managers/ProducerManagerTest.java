@@ -0,0 +1,82 @@
+package shpp.azaika.util.managers;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.junit.jupiter.api.Test;
+import shpp.azaika.util.RedeliveryDeduplicator;
+import shpp.azaika.util.mq.Producer;
+
+import javax.jms.Connection;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ProducerManagerTest {
+    private static final String QUEUE = "producer.manager.test";
+
+    /**
+     * A connection factory whose producers hand the record id of every sent message to {@code recordIds}.
+     */
+    private ActiveMQConnectionFactory recordingConnectionFactory(List<Long> recordIds) throws Exception {
+        ActiveMQConnectionFactory connectionFactory = mock(ActiveMQConnectionFactory.class);
+        Connection connection = mock(Connection.class);
+        Session session = mock(Session.class);
+        Queue queue = mock(Queue.class);
+        when(connectionFactory.createConnection()).thenReturn(connection);
+        when(connection.createSession(anyBoolean(), anyInt())).thenReturn(session);
+        when(session.createQueue(QUEUE)).thenReturn(queue);
+        when(session.createProducer(queue)).thenReturn(mock(MessageProducer.class));
+        when(session.createTextMessage(anyString())).thenAnswer(invocation -> {
+            TextMessage message = mock(TextMessage.class);
+            doAnswer(property -> recordIds.add(property.getArgument(1)))
+                    .when(message).setLongProperty(eq(Producer.RECORD_ID_PROPERTY), anyLong());
+            return message;
+        });
+        return connectionFactory;
+    }
+
+    private ProducerManager produce(ActiveMQConnectionFactory connectionFactory, int messageCount) throws Exception {
+        ProducerManager producerManager = new ProducerManager(2);
+        producerManager.setRecordIds(true);
+        producerManager.startProducers(connectionFactory, QUEUE, 2, messageCount, 60_000);
+        producerManager.getExecutor().shutdown();
+        assertTrue(producerManager.getExecutor().awaitTermination(60, TimeUnit.SECONDS));
+        return producerManager;
+    }
+
+    @Test
+    void recordIdsOfTwoManagersDoNotCollide() throws Exception {
+        int messageCount = 2_000;
+        List<Long> recordIds = Collections.synchronizedList(new ArrayList<>());
+        ActiveMQConnectionFactory connectionFactory = recordingConnectionFactory(recordIds);
+
+        ProducerManager first = produce(connectionFactory, messageCount);
+        ProducerManager second = produce(connectionFactory, messageCount);
+        assertNotEquals(first.getInstanceId(), second.getInstanceId());
+
+        RedeliveryDeduplicator deduplicator = new RedeliveryDeduplicator(1 << 16, 4, 2 * messageCount);
+        for (long recordId : recordIds) {
+            assertFalse(deduplicator.isDuplicate(recordId));
+        }
+        assertEquals(2 * messageCount, recordIds.size());
+        assertEquals(0, deduplicator.getDuplicateCount());
+    }
+
+    @Test
+    void instanceIdMustFitItsBits() {
+        ProducerManager producerManager = new ProducerManager(1);
+
+        assertThrows(IllegalArgumentException.class, () -> producerManager.setInstanceId(-1));
+        assertThrows(IllegalArgumentException.class, () -> producerManager.setInstanceId(1 << Producer.RECORD_ID_INSTANCE_BITS));
+        producerManager.setInstanceId((1 << Producer.RECORD_ID_INSTANCE_BITS) - 1);
+        producerManager.getExecutor().shutdown();
+    }
+}
@@ -0,0 +1,98 @@
+package shpp.azaika.util.managers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.pojo.ValidatedRecord;
+import shpp.azaika.util.sink.DurabilityMode;
+import shpp.azaika.util.sink.DurabilityPolicy;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Kills a writing JVM mid-run and checks that every record it reported as synced is in the file.
+ * Killing the process leaves the OS page cache intact, so this proves the writer's bookkeeping and
+ * the file's recoverable shape rather than what a power loss would keep.
+ */
+class WriterCrashTest {
+    private static final String SYNCED_PREFIX = "synced ";
+    private static final int SYNCED_BEFORE_KILL = 20_000;
+
+    @TempDir
+    Path outputDirectory;
+
+    /**
+     * Writes sequentially numbered records with group commit forever, printing how many are synced.
+     */
+    public static final class CrashingWriter {
+        public static void main(String[] args) throws Exception {
+            BlockingQueue<ValidatedRecord> validQueue = new ArrayBlockingQueue<>(4096);
+            WriterManager writerManager = new WriterManager(false, Path.of(args[0]));
+            writerManager.setDurability(new DurabilityPolicy(DurabilityMode.GROUP_COMMIT, 5, 1000));
+            writerManager.startWriters(validQueue, new LinkedBlockingQueue<>());
+            Thread reporter = new Thread(() -> {
+                while (true) {
+                    System.out.println(SYNCED_PREFIX + writerManager.getRecordsSynced());
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            reporter.setDaemon(true);
+            reporter.start();
+            LocalDate date = LocalDate.of(2024, 1, 1);
+            for (int i = 0; ; i++) {
+                validQueue.put(new ValidatedRecord(new UserPojo(recordName(i), "19760506-26585", 15, date), 0));
+            }
+        }
+    }
+
+    private static String recordName(int sequence) {
+        return String.format("Record-%08d", sequence);
+    }
+
+    @Test
+    void recordsReportedAsSyncedSurviveAKill() throws Exception {
+        Process process = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                CrashingWriter.class.getName(), outputDirectory.toString())
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        long synced = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while (synced < SYNCED_BEFORE_KILL && (line = reader.readLine()) != null) {
+                if (line.startsWith(SYNCED_PREFIX)) {
+                    synced = Long.parseLong(line.substring(SYNCED_PREFIX.length()));
+                }
+            }
+        } finally {
+            process.destroyForcibly();
+            assertTrue(process.waitFor(30, TimeUnit.SECONDS), "Writer process did not die");
+        }
+        assertTrue(synced >= SYNCED_BEFORE_KILL, "Writer exited before syncing " + SYNCED_BEFORE_KILL + " records");
+
+        String content = Files.readString(outputDirectory.resolve(WriterManager.VALID_FILE_NAME), StandardCharsets.UTF_8);
+        List<String> lines = content.lines().toList();
+        int completeRows = content.endsWith("\n") ? lines.size() : lines.size() - 1;
+        for (int i = 0; i < completeRows; i++) {
+            assertTrue(lines.get(i).startsWith(recordName(i) + ","), "Row " + i + " is " + lines.get(i));
+        }
+        assertTrue(completeRows >= synced, completeRows + " complete rows survived, " + synced + " were synced");
+    }
+}
@@ -0,0 +1,62 @@
+package shpp.azaika.util.metrics;
+
+import org.junit.jupiter.api.Test;
+import shpp.azaika.util.PropertyManager;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BenchmarkMatrixTest {
+    @Test
+    void everyCombinationIsOneCell() {
+        Properties properties = new Properties();
+        properties.setProperty("matrix.producer_threads", "1, 2");
+        properties.setProperty("matrix.consumer_threads", "4");
+        properties.setProperty("matrix.delivery", "non_persistent,persistent");
+        properties.setProperty("matrix.ack_mode", "auto,dups_ok,after_write");
+        properties.setProperty("matrix.prefetch", "100,1000");
+        properties.setProperty("matrix.messages", "5000");
+        properties.setProperty("matrix.trials", "5");
+        properties.setProperty("matrix.warmup_messages", "0");
+
+        BenchmarkMatrix matrix = BenchmarkMatrix.fromProperties(new PropertyManager(properties));
+
+        assertEquals(2 * 2 * 3 * 2, matrix.getCells().size());
+        assertEquals(new BenchmarkCell(1, 4, false, "auto", 100, 5000), matrix.getCells().getFirst());
+        assertEquals(new BenchmarkCell(2, 4, true, "after_write", 1000, 5000), matrix.getCells().getLast());
+        assertEquals(5, matrix.getTrials());
+        assertEquals(0, matrix.getWarmUpMessages());
+    }
+
+    @Test
+    void cellSettingsBecomeAppProperties() {
+        Properties base = new Properties();
+        base.setProperty("activemq.queue", "bench");
+        base.setProperty("writer.checkpoint", "true");
+
+        Properties persistentAfterWrite = new BenchmarkCell(2, 3, true, "after_write", 50, 1000).toProperties(base);
+        Properties dupsOk = new BenchmarkCell(1, 1, false, "dups_ok", 0, 1000).toProperties(base);
+
+        assertEquals("bench", persistentAfterWrite.getProperty("activemq.queue"));
+        assertEquals("2", persistentAfterWrite.getProperty("threads_producer"));
+        assertEquals("3", persistentAfterWrite.getProperty("threads_consumer"));
+        assertEquals("true", persistentAfterWrite.getProperty("broker.persistent"));
+        assertEquals("true", persistentAfterWrite.getProperty("producer.persistent"));
+        assertEquals("50", persistentAfterWrite.getProperty("consumer.prefetch"));
+        assertEquals("true", persistentAfterWrite.getProperty("writer.checkpoint"));
+        assertEquals("false", dupsOk.getProperty("producer.persistent"));
+        assertEquals("dups_ok", dupsOk.getProperty("consumer.ack_mode"));
+        assertEquals("false", dupsOk.getProperty("writer.checkpoint"));
+        assertEquals("true", base.getProperty("writer.checkpoint"), "The base properties are not modified");
+    }
+
+    @Test
+    void rejectsUnknownSettings() {
+        Properties properties = new Properties();
+        properties.setProperty("matrix.delivery", "transactional");
+
+        assertThrows(IllegalArgumentException.class, () -> BenchmarkMatrix.fromProperties(new PropertyManager(properties)));
+        assertThrows(IllegalArgumentException.class, () -> new BenchmarkCell(1, 1, false, "client", 10, 10));
+    }
+}
@@ -0,0 +1,81 @@
+package shpp.azaika.util.metrics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import shpp.azaika.util.latency.LatencyHistogram;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BenchmarkReportTest {
+    @TempDir
+    Path reportDirectory;
+
+    private final BenchmarkCell auto = new BenchmarkCell(1, 2, false, "auto", 1000, 1000);
+    private final BenchmarkCell persistent = new BenchmarkCell(1, 2, true, "dups_ok", 1000, 1000);
+
+    private static LatencyHistogram latencies(long... micros) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value : micros) {
+            histogram.record(value * 1000);
+        }
+        return histogram;
+    }
+
+    @Test
+    void cellSummaryTakesMedianRateAndMergedLatencies() {
+        BenchmarkReport report = new BenchmarkReport();
+        report.add(auto, 1000, 1000, 3000, latencies(10, 10));
+        report.add(auto, 1000, 1000, 1000, latencies(10, 10));
+        report.add(auto, 1000, 1000, 2000, latencies(100, 100));
+
+        BenchmarkReport.CellSummary summary = report.summarize().getFirst();
+
+        assertEquals(2000, summary.medianSustainedMps(), 1e-9);
+        assertEquals(1000, summary.minSustainedMps(), 1e-9);
+        assertEquals(3000, summary.maxSustainedMps(), 1e-9);
+        assertEquals(10, summary.latencyP50Micros(), 1);
+        assertEquals(100, summary.latencyP99Micros(), 2);
+        assertEquals(List.of(1, 2, 3), summary.trials().stream().map(BenchmarkReport.Trial::trial).toList());
+    }
+
+    @Test
+    void missingSustainedRateFallsBackToOverallRate() {
+        BenchmarkReport report = new BenchmarkReport();
+
+        BenchmarkReport.Trial trial = report.add(auto, 500, 250, 0, null);
+
+        assertEquals(2000, trial.overallMps(), 1e-9);
+        assertEquals(2000, trial.sustainedMps(), 1e-9);
+        assertEquals(0, trial.latencyP99Micros());
+    }
+
+    @Test
+    void writesCsvRowPerTrialAndJsonPerCell() throws Exception {
+        BenchmarkReport report = new BenchmarkReport();
+        report.add(auto, 1000, 1000, 1500, latencies(10));
+        report.add(auto, 1000, 1000, 1600, latencies(20));
+        report.add(persistent, 1000, 2000, 700, latencies(300));
+        Path csv = reportDirectory.resolve("report.csv");
+        Path json = reportDirectory.resolve("report.json");
+
+        report.writeCsv(csv);
+        report.writeJson(json);
+        report.log();
+
+        List<String> rows = Files.readAllLines(csv);
+        assertEquals(4, rows.size());
+        assertTrue(rows.get(0).startsWith("producer_threads,consumer_threads,delivery,ack_mode"));
+        assertTrue(rows.get(3).startsWith("1,2,persistent,dups_ok,1000,1000,1,1000,2000,700.0,500.0,"));
+        JsonNode cells = new ObjectMapper().readTree(json.toFile());
+        assertEquals(2, cells.size());
+        assertEquals(2, cells.get(0).get("trials").size());
+        assertEquals("persistent", cells.get(1).get("cell").get("delivery").asText());
+        assertEquals(700, cells.get(1).get("medianSustainedMps").asDouble(), 1e-9);
+    }
+}
@@ -0,0 +1,42 @@
+package shpp.azaika.util.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RunStatsReportTest {
+    @TempDir
+    Path statsDirectory;
+
+    @Test
+    void mergesStatsFilesOfAllProcesses() throws Exception {
+        RunStatsReport.write(statsDirectory, new ProcessStats("producer", "produce", 1000, 0, 0, 0, 0, 1_000, 3_000));
+        RunStatsReport.write(statsDirectory, new ProcessStats("consumer-a", "consume", 0, 600, 400, 200, 600, 500, 4_000));
+        RunStatsReport.write(statsDirectory, new ProcessStats("consumer-b", "consume", 0, 400, 300, 100, 400, 800, 5_500));
+
+        RunStatsReport report = RunStatsReport.load(statsDirectory);
+
+        assertEquals(List.of("consumer-a", "consumer-b", "producer"),
+                report.getProcesses().stream().map(ProcessStats::processId).toList());
+        assertEquals(1000, report.getProducedMessages());
+        assertEquals(1000, report.getConsumedMessages());
+        assertEquals(700, report.getValidMessages());
+        assertEquals(300, report.getInvalidMessages());
+        assertEquals(1000, report.getWrittenRecords());
+        assertEquals(5_000, report.getWallClockMillis());
+        assertEquals(200, report.perSecond(report.getConsumedMessages()), 1e-9);
+    }
+
+    @Test
+    void emptyDirectoryGivesEmptyReport() throws Exception {
+        RunStatsReport report = RunStatsReport.load(statsDirectory);
+
+        assertTrue(report.getProcesses().isEmpty());
+        assertEquals(0, report.getWallClockMillis());
+        assertEquals(0, report.perSecond(100), 1e-9);
+    }
+}
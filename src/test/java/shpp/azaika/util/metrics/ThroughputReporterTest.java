@@ -0,0 +1,52 @@
+package shpp.azaika.util.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThroughputReporterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void rollingRatesUseTheirWindow() {
+        AtomicLong counter = new AtomicLong();
+        ThroughputReporter reporter = new ThroughputReporter(0).addStage("sent", counter::get);
+        reporter.sample(0);
+        for (int second = 1; second <= 20; second++) {
+            counter.addAndGet(second <= 10 ? 100 : 300);
+            reporter.sample(second * SECOND);
+        }
+
+        assertEquals(300, reporter.rate("sent", 1), 1e-9);
+        assertEquals(300, reporter.rate("sent", 10), 1e-9);
+        assertEquals(200, reporter.rate("sent", 60), 1e-9);
+    }
+
+    @Test
+    void summaryReportsPeakAndSustainedRateOfTheActivePeriod() {
+        AtomicLong counter = new AtomicLong();
+        ThroughputReporter reporter = new ThroughputReporter(0).addStage("written", counter::get);
+        reporter.sample(0);
+        reporter.sample(SECOND);
+        counter.set(100);
+        reporter.sample(2 * SECOND);
+        counter.set(500);
+        reporter.sample(3 * SECOND);
+        reporter.sample(4 * SECOND);
+
+        assertEquals(400, reporter.peakRate("written"), 1e-9);
+        assertEquals(250, reporter.sustainedRate("written"), 1e-9);
+    }
+
+    @Test
+    void noRateBeforeSecondSample() {
+        ThroughputReporter reporter = new ThroughputReporter(0).addStage("consumed", () -> 42);
+        reporter.sample(0);
+
+        assertEquals(0, reporter.rate("consumed", 1));
+        assertEquals(0, reporter.sustainedRate("consumed"));
+    }
+}
@@ -0,0 +1,59 @@
+package shpp.azaika.util.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThroughputSamplerTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void sustainedRateLeavesOutStartUpAndDrain() {
+        ThroughputSampler sampler = new ThroughputSampler(() -> 0, 100);
+        sampler.sample(0, 0);
+        sampler.sample(SECOND, 0);
+        sampler.sample(2 * SECOND, 100);
+        sampler.sample(3 * SECOND, 300);
+        sampler.sample(4 * SECOND, 500);
+        sampler.sample(5 * SECOND, 700);
+        sampler.sample(6 * SECOND, 900);
+        sampler.sample(20 * SECOND, 1000);
+
+        assertEquals(200, sampler.sustainedRate(1000, 0.1, 0.9), 1e-9);
+    }
+
+    @Test
+    void samplesAfterTheCounterDroppedAreIgnored() {
+        ThroughputSampler sampler = new ThroughputSampler(() -> 0, 100);
+        sampler.sample(0, 100);
+        sampler.sample(SECOND, 400);
+        sampler.sample(2 * SECOND, 0);
+
+        assertEquals(300, sampler.sustainedRate(1000, 0.1, 0.9), 1e-9);
+    }
+
+    @Test
+    void tooFewSamplesGiveZero() {
+        ThroughputSampler sampler = new ThroughputSampler(() -> 0, 100);
+        sampler.sample(0, 500);
+
+        assertEquals(0, sampler.sustainedRate(1000, 0.1, 0.9));
+    }
+
+    @Test
+    void samplesTheCounterPeriodically() throws Exception {
+        AtomicLong counter = new AtomicLong();
+        ThroughputSampler sampler = new ThroughputSampler(counter::get, 5);
+        sampler.start();
+        for (int i = 0; i < 20; i++) {
+            counter.addAndGet(50);
+            Thread.sleep(20);
+        }
+        sampler.close();
+
+        assertTrue(sampler.sustainedRate(1000, 0.1, 0.9) > 0);
+    }
+}
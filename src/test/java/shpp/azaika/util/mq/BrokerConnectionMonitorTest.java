@@ -0,0 +1,40 @@
+package shpp.azaika.util.mq;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BrokerConnectionMonitorTest {
+    @Test
+    void outageLastsUntilEveryClientIsBack() throws Exception {
+        BrokerConnectionMonitor monitor = new BrokerConnectionMonitor();
+        Object producer = new Object();
+        Object consumer = new Object();
+
+        monitor.disconnected(producer);
+        monitor.disconnected(consumer);
+        monitor.disconnected(consumer);
+        Thread.sleep(20);
+        monitor.reconnected(producer);
+        assertEquals(1, monitor.getDisconnectedClients());
+        assertEquals(0, monitor.getMaxRecoveryMillis());
+        Thread.sleep(20);
+        monitor.reconnected(consumer);
+
+        assertEquals(1, monitor.getOutages());
+        assertEquals(2, monitor.getReconnects());
+        assertEquals(0, monitor.getDisconnectedClients());
+        assertTrue(monitor.getLastRecoveryMillis() >= 40);
+        assertEquals(monitor.getLastRecoveryMillis(), monitor.getMaxRecoveryMillis());
+    }
+
+    @Test
+    void reconnectWithoutDisconnectIsIgnored() {
+        BrokerConnectionMonitor monitor = new BrokerConnectionMonitor();
+
+        monitor.reconnected(new Object());
+
+        assertEquals(0, monitor.getReconnects());
+        assertEquals(0, monitor.getOutages());
+    }
+}
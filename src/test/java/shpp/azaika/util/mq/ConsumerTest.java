@@ -8,6 +8,7 @@ import org.mockito.MockitoAnnotations;
 import shpp.azaika.util.MessageHandler;
 
 import javax.jms.*;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -15,7 +16,7 @@ import static org.mockito.Mockito.*;
 class ConsumerTest {
 
     @Mock
-    private Message poisonMessageMock;
+    private Message endOfStreamMock;
     @Mock
     private ActiveMQConnectionFactory connectionFactoryMock;
     @Mock
@@ -66,8 +67,9 @@ class ConsumerTest {
     void processNextMessageHandlesMessage() throws Exception {
         Message messageMock = mock(Message.class);
 
-        when(messageConsumerMock.receive()).thenReturn(messageMock);
-        when(messageHandlerMock.isPoisonPill(messageMock)).thenReturn(false);
+        when(messageConsumerMock.receive(anyLong())).thenReturn(messageMock);
+        when(messageHandlerMock.isEndOfStream(messageMock)).thenReturn(false);
+        when(messageHandlerMock.handleMessage(messageMock)).thenReturn(true);
 
         consumer.connect("testQueue");
 
@@ -75,33 +77,124 @@ class ConsumerTest {
 
         assertTrue(result);
         verify(messageHandlerMock).handleMessage(messageMock);
+        assertEquals(1, consumer.getConsumedMessagesCount());
     }
 
     @Test
-    void processNextMessageStopsOnPoisonPill() throws Exception {
-        when(messageConsumerMock.receive()).thenReturn(poisonMessageMock);
-        when(messageHandlerMock.isPoisonPill(poisonMessageMock)).thenReturn(true);
+    void processNextMessageStopsOnEndOfStreamWhenDrained() throws Exception {
+        when(messageConsumerMock.receive(anyLong())).thenReturn(endOfStreamMock);
+        when(messageHandlerMock.isEndOfStream(endOfStreamMock)).thenReturn(true);
+        when(messageHandlerMock.getProducerProcess(endOfStreamMock)).thenReturn("producer");
+        when(messageHandlerMock.getExpectedMessageCount(endOfStreamMock)).thenReturn(0L);
 
         consumer.connect("testQueue");
 
         boolean result = consumer.processNextMessage();
 
         assertFalse(result);
-        verify(messageHandlerMock, never()).handleMessage(poisonMessageMock);
+        verify(messageHandlerMock, never()).handleMessage(endOfStreamMock);
     }
 
     @Test
-    void processNextMessageHandlesNullMessage() throws Exception {
-        when(messageConsumerMock.receive()).thenReturn(null);
+    void processNextMessageDrainsRemainingMessagesAfterEndOfStream() throws Exception {
+        Message messageMock = mock(Message.class);
+        StreamCoordinator streamCoordinator = new StreamCoordinator();
+        streamCoordinator.endOfStream("producer", 2);
+        consumer = new Consumer(connectionFactoryMock, messageHandlerMock, streamCoordinator);
+
+        when(messageConsumerMock.receive(anyLong())).thenReturn(messageMock);
+        when(messageHandlerMock.handleMessage(messageMock)).thenReturn(true);
+
+        consumer.connect("testQueue");
+
+        assertTrue(consumer.processNextMessage());
+        assertFalse(consumer.processNextMessage());
+        verify(messageHandlerMock, times(2)).handleMessage(messageMock);
+    }
+
+    @Test
+    void processNextMessageCountsMessageWhoseHandlingFailed() throws Exception {
+        Message messageMock = mock(Message.class);
+        StreamCoordinator streamCoordinator = new StreamCoordinator();
+        streamCoordinator.endOfStream("producer", 1);
+        consumer = new Consumer(connectionFactoryMock, messageHandlerMock, streamCoordinator);
+
+        when(messageConsumerMock.receive(anyLong())).thenReturn(messageMock);
+        doThrow(new RuntimeException("broken handler")).when(messageHandlerMock).handleMessage(messageMock);
+
+        consumer.connect("testQueue");
+
+        assertFalse(consumer.processNextMessage());
+        assertEquals(1, streamCoordinator.getConsumedCount());
+        assertTrue(streamCoordinator.isDrained());
+    }
+
+    @Test
+    void duplicateMessagesDoNotCountTowardsEndOfStream() throws Exception {
+        Message messageMock = mock(Message.class);
+        StreamCoordinator streamCoordinator = new StreamCoordinator();
+        streamCoordinator.endOfStream("producer", 1);
+        consumer = new Consumer(connectionFactoryMock, messageHandlerMock, streamCoordinator);
+
+        when(messageConsumerMock.receive(anyLong())).thenReturn(messageMock);
+        when(messageHandlerMock.handleMessage(messageMock)).thenReturn(false);
+
+        consumer.connect("testQueue");
+
+        assertTrue(consumer.processNextMessage());
+        assertEquals(0, consumer.getConsumedMessagesCount());
+    }
+
+    @Test
+    void processNextMessageKeepsWaitingOnTimeoutBeforeEndOfStream() throws Exception {
+        when(messageConsumerMock.receive(anyLong())).thenReturn(null);
 
         consumer.connect("testQueue");
 
         boolean result = consumer.processNextMessage();
 
-        assertFalse(result);
+        assertTrue(result);
         verify(messageHandlerMock, never()).handleMessage(any());
     }
 
+    @Test
+    void emptyHomeShardStealsFromOtherShards() throws Exception {
+        Queue otherShard = mock(Queue.class);
+        MessageConsumer stealingConsumerMock = mock(MessageConsumer.class);
+        Message messageMock = mock(Message.class);
+        when(sessionMock.createQueue("testQueue.1?consumer.prefetchSize=0")).thenReturn(otherShard);
+        when(sessionMock.createConsumer(otherShard)).thenReturn(stealingConsumerMock);
+        when(messageConsumerMock.receive(anyLong())).thenReturn(null);
+        when(stealingConsumerMock.receiveNoWait()).thenReturn(messageMock);
+        when(messageHandlerMock.handleMessage(messageMock)).thenReturn(true);
+
+        consumer.connect("testQueue", List.of("testQueue.1"), null);
+
+        assertTrue(consumer.processNextMessage());
+        verify(messageHandlerMock).handleMessage(messageMock);
+        assertEquals(1, consumer.getStolenMessagesCount());
+        consumer.close();
+        verify(stealingConsumerMock).close();
+    }
+
+    @Test
+    void acknowledgeAfterWriteAcknowledgesEveryBatch() throws Exception {
+        Message first = mock(Message.class);
+        Message second = mock(Message.class);
+        when(connectionMock.createSession(false, Session.CLIENT_ACKNOWLEDGE)).thenReturn(sessionMock);
+        when(messageConsumerMock.receive(anyLong())).thenReturn(first, second);
+        when(messageHandlerMock.handleMessage(any(Message.class))).thenReturn(true);
+
+        consumer.setAcknowledgeAfterWrite(2, 1000);
+        consumer.connect("testQueue");
+
+        assertTrue(consumer.processNextMessage());
+        verify(first, never()).acknowledge();
+        assertTrue(consumer.processNextMessage());
+        verify(second).acknowledge();
+        verify(messageHandlerMock).setAckWindow(any());
+    }
+
     @Test
     void closeReleasesResources() throws Exception {
         consumer.connect("testQueue");
@@ -0,0 +1,88 @@
+package shpp.azaika.util.mq;
+
+import org.apache.activemq.command.ActiveMQMapMessage;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DistributedStreamCoordinatorTest {
+    private final DistributedStreamCoordinator coordinator =
+            new DistributedStreamCoordinator(mock(ConnectionFactory.class), "test.coordination", "local", 200);
+
+    private static MapMessage counts(String processId, long consumed, String producerProcess, long expected) throws JMSException {
+        MapMessage message = new ActiveMQMapMessage();
+        message.setString(DistributedStreamCoordinator.PROCESS_ID_FIELD, processId);
+        message.setLong(DistributedStreamCoordinator.CONSUMED_FIELD, consumed);
+        if (producerProcess != null) {
+            message.setLong(DistributedStreamCoordinator.END_OF_STREAM_FIELD_PREFIX + producerProcess, expected);
+        }
+        return message;
+    }
+
+    private static MapMessage counts(String processId, long consumed) throws JMSException {
+        return counts(processId, consumed, null, 0);
+    }
+
+    @Test
+    void drainedOnceAllProcessesTogetherReachTheExpectedCount() throws JMSException {
+        coordinator.endOfStream("producer", 10);
+        for (int i = 0; i < 4; i++) {
+            coordinator.messageConsumed();
+        }
+        coordinator.onPeerMessage(counts("peer-a", 3));
+        assertFalse(coordinator.isDrained());
+
+        coordinator.onPeerMessage(counts("peer-b", 3));
+
+        assertTrue(coordinator.isDrained());
+        assertEquals(6, coordinator.getPeerConsumedCount());
+    }
+
+    @Test
+    void learnsTheExpectedCountFromThePeerThatReceivedEndOfStream() throws JMSException {
+        coordinator.messageConsumed();
+        coordinator.onPeerMessage(counts("peer-a", 1, "producer", 2));
+
+        assertTrue(coordinator.isEndOfStreamReceived());
+        assertEquals(2, coordinator.getExpectedCount());
+        assertTrue(coordinator.isDrained());
+    }
+
+    @Test
+    void sumsTheEndsOfStreamOfProducerProcessesReceivedByDifferentPeers() throws JMSException {
+        DistributedStreamCoordinator twoProducers =
+                new DistributedStreamCoordinator(mock(ConnectionFactory.class), "test.coordination", "local", 200, 2);
+        twoProducers.endOfStream("producer-a", 4);
+        twoProducers.onPeerMessage(counts("peer-a", 2, "producer-a", 4));
+        assertFalse(twoProducers.isEndOfStreamReceived());
+
+        twoProducers.onPeerMessage(counts("peer-b", 5, "producer-b", 3));
+
+        assertEquals(7, twoProducers.getExpectedCount());
+        assertTrue(twoProducers.isDrained());
+    }
+
+    @Test
+    void outOfOrderCountsNeverGoBackwards() throws JMSException {
+        coordinator.endOfStream("producer", 5);
+        coordinator.onPeerMessage(counts("peer-a", 5));
+        coordinator.onPeerMessage(counts("peer-a", 2));
+
+        assertEquals(5, coordinator.getPeerConsumedCount());
+        assertTrue(coordinator.isDrained());
+    }
+
+    @Test
+    void ignoresItsOwnCounts() throws JMSException {
+        coordinator.endOfStream("producer", 3);
+        coordinator.onPeerMessage(counts("local", 3, "producer", 3));
+
+        assertEquals(0, coordinator.getPeerConsumedCount());
+        assertFalse(coordinator.isDrained());
+    }
+}
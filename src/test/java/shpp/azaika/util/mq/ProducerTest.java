@@ -5,10 +5,13 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import shpp.azaika.pojo.UserPojo;
 import shpp.azaika.util.UserPojoGenerator;
+import shpp.azaika.validation.ValidationHints;
 
 import javax.jms.*;
 import java.time.Duration;
+import java.time.LocalDate;
 
 import static org.mockito.Mockito.*;
 
@@ -71,17 +74,36 @@ class ProducerTest {
     }
 
     @Test
-    void sendPoisonPill() throws JMSException {
+    void sendUserPojoAttachesValidationHints() throws JMSException {
+        Producer producer = new Producer(connectionFactoryMock, userPojoGeneratorMock, 1, 100, true);
+        producer.connect("TestQueue");
+        UserPojo userPojo = new UserPojo("Andrew", "19760506-26583", 5, LocalDate.now());
+        when(userPojoGeneratorMock.toJson(userPojo)).thenReturn("{}");
+        TextMessage hintedMessageMock = mock(TextMessage.class);
+        when(sessionMock.createTextMessage("{}")).thenReturn(hintedMessageMock);
+
+        producer.sendUserPojo(userPojo);
+
+        verify(hintedMessageMock).setIntProperty(ValidationHints.COUNT_PROPERTY, 5);
+        verify(hintedMessageMock).setIntProperty(ValidationHints.NAME_LENGTH_PROPERTY, 6);
+        verify(messageProducerMock).send(hintedMessageMock);
+    }
+
+    @Test
+    void sendEndOfStream() throws JMSException {
         Producer producer = new Producer(connectionFactoryMock, userPojoGeneratorMock, 1, 100);
         producer.connect("TestQueue");
 
-        TextMessage poisonPillMessageMock = mock(TextMessage.class);
-        when(sessionMock.createTextMessage(Producer.POISON_PILL)).thenReturn(poisonPillMessageMock);
+        Message endOfStreamMock = mock(Message.class);
+        when(sessionMock.createMessage()).thenReturn(endOfStreamMock);
 
-        producer.sendPoisonPill();
+        producer.sendEndOfStream("producer-a", 42);
 
-        verify(sessionMock).createTextMessage(Producer.POISON_PILL);
-        verify(messageProducerMock).send(poisonPillMessageMock);
+        verify(endOfStreamMock).setJMSType(Producer.END_OF_STREAM_TYPE);
+        verify(endOfStreamMock).setStringProperty(Producer.PRODUCER_PROCESS_PROPERTY, "producer-a");
+        verify(endOfStreamMock).setLongProperty(Producer.EXPECTED_COUNT_PROPERTY, 42);
+        verify(messageProducerMock).send(endOfStreamMock);
+        verify(sessionMock, never()).createTextMessage(anyString());
     }
 
     @Test
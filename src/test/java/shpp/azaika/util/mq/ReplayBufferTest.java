@@ -0,0 +1,79 @@
+package shpp.azaika.util.mq;
+
+import org.junit.jupiter.api.Test;
+
+import javax.jms.Message;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class ReplayBufferTest {
+    @Test
+    void confirmedMessagesAreNotReplayed() throws Exception {
+        ReplayBuffer buffer = new ReplayBuffer(4);
+        ReplayBuffer.Entry first = buffer.add(0, mock(Message.class));
+        ReplayBuffer.Entry second = buffer.add(1, mock(Message.class));
+        ReplayBuffer.Entry third = buffer.add(0, mock(Message.class));
+
+        buffer.confirm(second);
+
+        assertEquals(List.of(first, third), buffer.replay());
+        assertEquals(2, buffer.getReplayedCount());
+    }
+
+    @Test
+    void addBlocksWhileFullUntilConfirmed() throws Exception {
+        ReplayBuffer buffer = new ReplayBuffer(1);
+        ReplayBuffer.Entry first = buffer.add(0, mock(Message.class));
+
+        CompletableFuture<ReplayBuffer.Entry> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return buffer.add(0, mock(Message.class));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(second.isDone());
+
+        buffer.confirm(first);
+        assertNotNull(second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void failureWakesBlockedSenderUntilReplay() throws Exception {
+        ReplayBuffer buffer = new ReplayBuffer(1);
+        buffer.add(0, mock(Message.class));
+
+        CompletableFuture<ReplayBuffer.Entry> blocked = CompletableFuture.supplyAsync(() -> {
+            try {
+                return buffer.add(0, mock(Message.class));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        buffer.fail(buffer.getGeneration());
+
+        assertNull(blocked.get(5, TimeUnit.SECONDS));
+        assertFalse(buffer.awaitConfirmed(1_000));
+        assertEquals(1, buffer.replay().size());
+        assertFalse(buffer.isFailed());
+    }
+
+    @Test
+    void failuresOfReplacedConnectionsAreIgnored() throws Exception {
+        ReplayBuffer buffer = new ReplayBuffer(2);
+        int oldGeneration = buffer.getGeneration();
+        ReplayBuffer.Entry entry = buffer.add(0, mock(Message.class));
+        buffer.replay();
+
+        buffer.fail(oldGeneration);
+        buffer.confirm(entry);
+
+        assertFalse(buffer.isFailed());
+        assertTrue(buffer.awaitConfirmed(1_000));
+    }
+}
@@ -0,0 +1,42 @@
+package shpp.azaika.util.mq;
+
+import org.junit.jupiter.api.Test;
+import shpp.azaika.pojo.UserPojo;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedDestinationTest {
+
+    @Test
+    void singleShardKeepsTheQueueName() {
+        ShardedDestination destination = ShardedDestination.single("users");
+
+        assertEquals(List.of("users"), destination.getShardNames());
+        assertEquals(0, destination.shardFor(7, null));
+        assertFalse(destination.needsRecord());
+    }
+
+    @Test
+    void roundRobinCyclesThroughNumberedShards() {
+        ShardedDestination destination = new ShardedDestination("users", 3, ShardedDestination.Strategy.ROUND_ROBIN);
+
+        assertEquals(List.of("users.0", "users.1", "users.2"), destination.getShardNames());
+        assertEquals(0, destination.shardFor(0, null));
+        assertEquals(1, destination.shardFor(1, null));
+        assertEquals(0, destination.shardFor(3, null));
+    }
+
+    @Test
+    void eddrHashKeepsTheSameEddrOnOneShard() {
+        ShardedDestination destination = new ShardedDestination("users", 4, ShardedDestination.Strategy.EDDR_HASH);
+        UserPojo first = new UserPojo("Andrew Zaika", "19760506-26583", 10, LocalDate.now());
+        UserPojo second = new UserPojo("Anna Zaika", "19760506-26583", 20, LocalDate.now());
+
+        assertTrue(destination.needsRecord());
+        assertEquals(destination.shardFor(0, first), destination.shardFor(1, second));
+        assertEquals(0, destination.shardFor(0, new UserPojo()));
+    }
+}
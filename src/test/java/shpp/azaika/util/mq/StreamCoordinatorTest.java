@@ -0,0 +1,44 @@
+package shpp.azaika.util.mq;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamCoordinatorTest {
+
+    @Test
+    void expectedCountIsTheSumOnceEveryProducerProcessEndedItsStream() {
+        StreamCoordinator coordinator = new StreamCoordinator(2);
+        for (int i = 0; i < 3; i++) {
+            coordinator.messageConsumed();
+        }
+
+        coordinator.endOfStream("producer-a", 3);
+        assertFalse(coordinator.isEndOfStreamReceived());
+        assertFalse(coordinator.isDrained());
+
+        coordinator.endOfStream("producer-b", 2);
+        assertEquals(5, coordinator.getExpectedCount());
+        assertFalse(coordinator.isDrained());
+
+        coordinator.messageConsumed();
+        coordinator.messageConsumed();
+        assertTrue(coordinator.isDrained());
+    }
+
+    @Test
+    void repeatedEndOfStreamOfOneProducerProcessCountsOnce() {
+        StreamCoordinator coordinator = new StreamCoordinator(2);
+
+        coordinator.endOfStream("producer-a", 3);
+        coordinator.endOfStream("producer-a", 3);
+
+        assertFalse(coordinator.isEndOfStreamReceived());
+        assertEquals(1, coordinator.getProducerCounts().size());
+    }
+
+    @Test
+    void atLeastOneProducerProcessIsRequired() {
+        assertThrows(IllegalArgumentException.class, () -> new StreamCoordinator(0));
+    }
+}
@@ -0,0 +1,90 @@
+package shpp.azaika.util.offheap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.pojo.ValidatedRecord;
+import shpp.azaika.util.CsvWriter;
+import shpp.azaika.validation.ViolationCatalog;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapRecordQueueTest {
+
+    private static String readSlab(ByteBuffer slab) {
+        byte[] bytes = new byte[slab.remaining()];
+        slab.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final List<UserPojo> USER_POJOS = List.of(
+            new UserPojo("Andrew Zaika", "19760506-26583", 42, LocalDate.of(2024, 1, 5)),
+            new UserPojo("Андрій Заїка", "19760506-26583", 10, LocalDate.of(1999, 12, 31)),
+            new UserPojo("abcdefghijklmnopqrstuvwx", "19760506-26583", 10, LocalDate.of(2024, 1, 1)),
+            new UserPojo("abcdefghijklmnopqrstuvwxy", "19760506-26583", 10, LocalDate.of(2024, 1, 1)),
+            new UserPojo("АндрійАндрійАндрійАндрійА", "19760506-26583", 10, LocalDate.of(2024, 1, 1)),
+            new UserPojo("O\"Neil", "a\\b", -7, LocalDate.of(-5, 1, 31)),
+            new UserPojo("Andrii", null, Integer.MIN_VALUE, null),
+            new UserPojo(null, "", 0, LocalDate.of(12345, 6, 7)));
+
+    private static void assertSameBytesAsCsvWriter(Path csvFile, ViolationCatalog violationCatalog) throws Exception {
+        try (CsvWriter csvWriter = new CsvWriter(csvFile.toString(), violationCatalog)) {
+            for (int i = 0; i < USER_POJOS.size(); i++) {
+                csvWriter.write(new ValidatedRecord(USER_POJOS.get(i), i));
+            }
+        }
+
+        OffHeapRecordQueue queue = new OffHeapRecordQueue(2, 4096, violationCatalog);
+        OffHeapRecordQueue.Appender appender = queue.newAppender();
+        for (int i = 0; i < USER_POJOS.size(); i++) {
+            appender.append(new ValidatedRecord(USER_POJOS.get(i), i));
+        }
+        appender.flush();
+
+        assertEquals(Files.readString(csvFile), readSlab(queue.poll(1, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    void encodesTheSameBytesAsCsvWriter(@TempDir Path directory) throws Exception {
+        assertSameBytesAsCsvWriter(directory.resolve("users.csv"), null);
+    }
+
+    @Test
+    void encodesTheSameErrorsColumnAsCsvWriter(@TempDir Path directory) throws Exception {
+        assertSameBytesAsCsvWriter(directory.resolve("invalid_users.csv"), ViolationCatalog.forUserPojo());
+    }
+
+    @Test
+    void publishesSlabWhenFullAndRecyclesReleasedSlabs() throws Exception {
+        OffHeapRecordQueue queue = new OffHeapRecordQueue(2, 256);
+        OffHeapRecordQueue.Appender appender = queue.newAppender();
+        UserPojo userPojo = new UserPojo("Andrew Zaika", "19760506-26583", 10, LocalDate.of(2024, 1, 1));
+
+        for (int i = 0; i < 4; i++) {
+            appender.append(new ValidatedRecord(userPojo, 0));
+        }
+
+        assertEquals(1, queue.size());
+        ByteBuffer slab = queue.poll(1, TimeUnit.SECONDS);
+        assertNotNull(slab);
+        queue.release(slab);
+        assertEquals(1, queue.getFreeSlabCount());
+    }
+
+    @Test
+    void rejectsRecordLargerThanSlab() {
+        OffHeapRecordQueue queue = new OffHeapRecordQueue(1, 256);
+        OffHeapRecordQueue.Appender appender = queue.newAppender();
+        UserPojo userPojo = new UserPojo("a".repeat(200), "19760506-26583", 10, LocalDate.now());
+
+        assertThrows(IllegalArgumentException.class, () -> appender.append(new ValidatedRecord(userPojo, 0)));
+    }
+}
@@ -0,0 +1,119 @@
+package shpp.azaika.util.sink;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.pojo.ValidatedRecord;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarFormatTest {
+    private static final LocalDate TODAY = LocalDate.of(2024, 5, 1);
+
+    @TempDir
+    Path tempDir;
+
+    private static List<ValidatedRecord> records(int size) {
+        List<ValidatedRecord> records = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            UserPojo userPojo = new UserPojo("Name Ananko " + i, "19760506-2658" + (i % 10), i, i % 100 == 0 ? TODAY.minusDays(1) : TODAY);
+            records.add(new ValidatedRecord(userPojo, i % 7));
+        }
+        return records;
+    }
+
+    private Path write(List<ValidatedRecord> records, int rowGroupSize) throws Exception {
+        Path file = tempDir.resolve("users.ucol");
+        try (ColumnarRecordSink sink = new ColumnarRecordSink(file, rowGroupSize, null)) {
+            sink.write(records);
+        }
+        return file;
+    }
+
+    @Test
+    void roundTripsRecordsAcrossRowGroups() throws Exception {
+        List<ValidatedRecord> records = records(2_500);
+        records.add(new ValidatedRecord(new UserPojo(null, null, -3, null), 0));
+
+        List<ValidatedRecord> read = new ArrayList<>();
+        try (ColumnarReader reader = new ColumnarReader(write(records, 1_000))) {
+            assertEquals(records.size(), reader.scan(stats -> true, read::add));
+        }
+
+        assertEquals(records.size(), read.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(records.get(i).userPojo().toString(), read.get(i).userPojo().toString());
+            assertEquals(records.get(i).violationMask(), read.get(i).violationMask());
+        }
+    }
+
+    @Test
+    void rowGroupStatsCoverTheirRecords() throws Exception {
+        try (ColumnarReader reader = new ColumnarReader(write(records(2_500), 1_000))) {
+            RowGroupStats first = reader.nextRowGroup();
+            assertEquals(new RowGroupStats(1_000, 0, 999, TODAY.minusDays(1), TODAY), first);
+            assertEquals(new RowGroupStats(1_000, 1_000, 1_999, TODAY.minusDays(1), TODAY), reader.nextRowGroup());
+            assertEquals(500, reader.nextRowGroup().rowCount());
+            assertNull(reader.nextRowGroup());
+        }
+    }
+
+    @Test
+    void scanSkipsRowGroupsOutsideTheFilter() throws Exception {
+        List<ValidatedRecord> read = new ArrayList<>();
+        try (ColumnarReader reader = new ColumnarReader(write(records(2_500), 1_000))) {
+            long records = reader.scan(stats -> stats.mayContainCount(1_200, 1_300), read::add);
+
+            assertEquals(1_000, records);
+            assertEquals(2, reader.getSkippedRowGroups());
+        }
+        assertEquals(1_000, read.getFirst().userPojo().getCount());
+    }
+
+    @Test
+    void appendsRowGroupsToAnExistingFile() throws Exception {
+        write(records(10), 4);
+        Path file = write(records(10), 4);
+
+        try (ColumnarReader reader = new ColumnarReader(file)) {
+            assertEquals(20, reader.scan(stats -> true, record -> { }));
+        }
+    }
+
+    @Test
+    void isMuchSmallerThanCsv() throws Exception {
+        List<ValidatedRecord> records = records(10_000);
+        Path csv = tempDir.resolve("users.csv");
+        try (RecordSink sink = RecordFormat.CSV.open(csv, null, null)) {
+            sink.write(records);
+        }
+
+        assertTrue(Files.size(write(records, ColumnarRecordSink.DEFAULT_ROW_GROUP_SIZE)) < Files.size(csv) * 4 / 5);
+    }
+
+    @Test
+    void bitPackingRoundTripsEveryWidth() throws Exception {
+        for (int bitWidth = 0; bitWidth <= 64; bitWidth++) {
+            long[] values = new long[37];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = bitWidth == 0 ? 0 : (0x9E3779B97F4A7C15L * (i + 1)) >>> (64 - bitWidth);
+            }
+            ByteArrayOutputStream packed = new ByteArrayOutputStream();
+            BitPacking.pack(values, values.length, bitWidth, packed);
+            assertEquals(BitPacking.packedLength(values.length, bitWidth), packed.size());
+
+            long[] unpacked = new long[values.length];
+            BitPacking.unpack(new DataInputStream(new ByteArrayInputStream(packed.toByteArray())), unpacked, values.length, bitWidth);
+            assertArrayEquals(values, unpacked, "bit width " + bitWidth);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package shpp.azaika.util.sink;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DurabilityPolicyTest {
+    private static final long INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    void noneNeverSyncs() {
+        assertFalse(DurabilityPolicy.NONE.shouldSync(1_000_000, Long.MAX_VALUE, true));
+    }
+
+    @Test
+    void periodicSyncsOnlyOnceTheIntervalElapsed() {
+        DurabilityPolicy policy = new DurabilityPolicy(DurabilityMode.PERIODIC, 100, 10);
+
+        assertFalse(policy.shouldSync(1_000, INTERVAL_NANOS - 1, true));
+        assertTrue(policy.shouldSync(1, INTERVAL_NANOS, false));
+        assertFalse(policy.shouldSync(0, INTERVAL_NANOS, true));
+    }
+
+    @Test
+    void groupCommitSyncsWhenIdleOrTheGroupIsFull() {
+        DurabilityPolicy policy = new DurabilityPolicy(DurabilityMode.GROUP_COMMIT, 100, 10);
+
+        assertFalse(policy.shouldSync(9, 0, false));
+        assertTrue(policy.shouldSync(10, 0, false));
+        assertTrue(policy.shouldSync(1, 0, true));
+        assertTrue(policy.shouldSync(1, INTERVAL_NANOS, false));
+        assertFalse(policy.shouldSync(0, 0, true));
+    }
+
+    @Test
+    void parsesModeNames() {
+        assertEquals(DurabilityMode.GROUP_COMMIT, DurabilityMode.parse("group_commit"));
+        assertThrows(IllegalArgumentException.class, () -> DurabilityMode.parse(""));
+    }
+}
@@ -0,0 +1,216 @@
+package shpp.azaika.util.sink;
+
+import org.junit.jupiter.api.Test;
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.pojo.ValidatedRecord;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FanOutSinkTest {
+    private static final List<ValidatedRecord> BATCH = List.of(
+            new ValidatedRecord(new UserPojo("Andrew Zaika", "19760506-26585", 15, LocalDate.now()), 0),
+            new ValidatedRecord(new UserPojo("Anna Kovalenko", "19900101-00017", 20, LocalDate.now()), 0));
+
+    private static class CountingSink implements RecordSink {
+        private final String name;
+        final AtomicInteger records = new AtomicInteger();
+        final AtomicInteger flushes = new AtomicInteger();
+        final AtomicInteger syncedRecords = new AtomicInteger();
+        volatile boolean closed;
+
+        CountingSink(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void write(List<ValidatedRecord> records) throws IOException {
+            this.records.addAndGet(records.size());
+        }
+
+        @Override
+        public void flush() {
+            flushes.incrementAndGet();
+        }
+
+        @Override
+        public void sync() {
+            syncedRecords.set(records.get());
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+    private static class BlockedSink extends CountingSink {
+        final CountDownLatch release = new CountDownLatch(1);
+
+        BlockedSink() {
+            super("blocked");
+        }
+
+        @Override
+        public void write(List<ValidatedRecord> records) throws IOException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            super.write(records);
+        }
+    }
+
+    @Test
+    void syncWaitsUntilEverySinkSyncedWhatWasBuffered() throws Exception {
+        CountingSink first = new CountingSink("first");
+        CountingSink second = new CountingSink("second");
+
+        try (FanOutSink fanOut = new FanOutSink(List.of(first, second), 64, OverflowPolicy.BLOCK)) {
+            for (int i = 0; i < 50; i++) {
+                fanOut.write(BATCH);
+            }
+            fanOut.sync();
+
+            assertEquals(100, first.syncedRecords.get());
+            assertEquals(100, second.syncedRecords.get());
+        }
+    }
+
+    @Test
+    void blockPolicyDeliversEveryBatchToEverySink() throws Exception {
+        CountingSink first = new CountingSink("first");
+        CountingSink second = new CountingSink("second");
+
+        try (FanOutSink fanOut = new FanOutSink(List.of(first, second), 2, OverflowPolicy.BLOCK)) {
+            for (int i = 0; i < 100; i++) {
+                fanOut.write(BATCH);
+            }
+        }
+
+        assertEquals(200, first.records.get());
+        assertEquals(200, second.records.get());
+        assertTrue(first.closed && second.closed);
+    }
+
+    @Test
+    void stalledSinkDropsItsOwnBatchesWithoutHoldingBackTheOthers() throws Exception {
+        CountingSink fast = new CountingSink("fast");
+        BlockedSink stalled = new BlockedSink();
+        FanOutSink fanOut = new FanOutSink(List.of(fast, stalled), 4, OverflowPolicy.DROP_NEWEST);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for (int i = 1; i <= 100; i++) {
+            fanOut.write(BATCH);
+            while (fast.records.get() < i * BATCH.size()) {
+                assertTrue(System.nanoTime() < deadline, "Fast sink was held back");
+                Thread.sleep(1);
+            }
+        }
+        FanOutSink.SinkStats stalledStats = fanOut.getStats().get(1);
+        assertTrue(stalledStats.droppedRecords() > 0);
+        assertEquals(200, stalledStats.writtenRecords() + stalledStats.droppedRecords() + stalledStats.lag());
+
+        stalled.release.countDown();
+        fanOut.close();
+        assertEquals(200, fast.records.get());
+        assertEquals(200, stalled.records.get() + fanOut.getStats().get(1).droppedRecords());
+        assertEquals(0, fanOut.getStats().get(1).lag());
+    }
+
+    @Test
+    void dropOldestKeepsTheNewestBatches() throws Exception {
+        BlockedSink stalled = new BlockedSink();
+        FanOutSink fanOut = new FanOutSink(List.of(stalled), 1, OverflowPolicy.DROP_OLDEST);
+
+        for (int i = 0; i < 10; i++) {
+            fanOut.write(BATCH);
+        }
+        stalled.release.countDown();
+        fanOut.close();
+
+        FanOutSink.SinkStats stats = fanOut.getStats().getFirst();
+        assertEquals(20, stats.writtenRecords() + stats.droppedRecords());
+        assertTrue(stats.writtenRecords() <= 4, "At most the batch in hand and the buffered one are written");
+    }
+
+    @Test
+    void failingSinkDoesNotStopTheOthers() {
+        CountingSink healthy = new CountingSink("healthy");
+        RecordSink failing = new CountingSink("failing") {
+            @Override
+            public void write(List<ValidatedRecord> records) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        FanOutSink fanOut = new FanOutSink(List.of(healthy, failing), 2, OverflowPolicy.BLOCK);
+
+        IOException failure = assertThrows(IOException.class, () -> {
+            for (int i = 0; i < 50; i++) {
+                fanOut.write(BATCH);
+            }
+            fanOut.close();
+        });
+
+        assertTrue(failure.getMessage().contains("failing"));
+        assertEquals(100, healthy.records.get());
+        assertTrue(fanOut.getStats().get(1).failed());
+        assertEquals(100, fanOut.getStats().get(1).droppedRecords());
+    }
+
+    @Test
+    void strictSyncFailsOnceASinkFailed() throws Exception {
+        CountingSink healthy = new CountingSink("healthy");
+        RecordSink failing = new CountingSink("failing") {
+            @Override
+            public void write(List<ValidatedRecord> records) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        FanOutSink fanOut = new FanOutSink(List.of(healthy, failing), 2, OverflowPolicy.BLOCK, true);
+
+        fanOut.write(BATCH);
+        IOException failure = assertThrows(IOException.class, fanOut::sync);
+
+        assertTrue(failure.getMessage().contains("failing"));
+        assertEquals(2, healthy.syncedRecords.get());
+        assertThrows(IOException.class, fanOut::close);
+    }
+
+    @Test
+    void strictSyncRejectsDropPolicies() {
+        List<RecordSink> sinks = List.of(new CountingSink("first"), new CountingSink("second"));
+
+        assertThrows(IllegalArgumentException.class, () -> new FanOutSink(sinks, 2, OverflowPolicy.DROP_NEWEST, true));
+        assertThrows(IllegalArgumentException.class, () -> new FanOutSink(sinks, 2, OverflowPolicy.DROP_OLDEST, true));
+    }
+
+    @Test
+    void flushReachesSinksAfterTheirBuffer() throws Exception {
+        CountingSink sink = new CountingSink("sink");
+        FanOutSink fanOut = new FanOutSink(List.of(sink), 2, OverflowPolicy.BLOCK);
+
+        fanOut.write(BATCH);
+        fanOut.flush();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (sink.flushes.get() == 0) {
+            assertTrue(System.nanoTime() < deadline, "Flush was not passed on");
+            Thread.sleep(5);
+        }
+        fanOut.close();
+
+        assertEquals(2, sink.records.get());
+    }
+}
@@ -0,0 +1,106 @@
+package shpp.azaika.util.sink;
+
+import org.junit.jupiter.api.Test;
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.pojo.ValidatedRecord;
+import shpp.azaika.validation.ViolationCatalog;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcRecordSinkTest {
+    private static final LocalDate TODAY = LocalDate.of(2024, 5, 1);
+
+    private static JdbcSinkSettings settings(String database, int batchSize, int commitInterval, int connections) {
+        return new JdbcSinkSettings("jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1", "sa", "", batchSize, commitInterval, connections);
+    }
+
+    private static List<ValidatedRecord> records(int size) {
+        List<ValidatedRecord> records = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            records.add(new ValidatedRecord(new UserPojo("Andrew Zaika " + i, "19760506-26585", i, TODAY), 0));
+        }
+        return records;
+    }
+
+    private static long count(JdbcSinkSettings settings, String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(settings.url(), settings.user(), settings.password());
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(sql)) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+
+    @Test
+    void insertsEveryRecordOverSeveralConnections() throws Exception {
+        JdbcSinkSettings settings = settings("jdbc-sink-all", 100, 1_000, 3);
+        List<ValidatedRecord> records = records(5_000);
+
+        try (JdbcRecordSink sink = new JdbcRecordSink("valid_users", null, settings)) {
+            for (int from = 0; from < records.size(); from += 250) {
+                sink.write(records.subList(from, from + 250));
+            }
+        }
+
+        assertEquals(5_000, count(settings, "SELECT COUNT(*) FROM valid_users"));
+        assertEquals(5_000, count(settings, "SELECT COUNT(DISTINCT name) FROM valid_users"));
+        assertEquals(4_999, count(settings, "SELECT MAX(user_count) FROM valid_users"));
+    }
+
+    @Test
+    void rowsBecomeVisibleOnFlushBeforeTheCommitInterval() throws Exception {
+        JdbcSinkSettings settings = settings("jdbc-sink-flush", 10, 1_000_000, 2);
+
+        try (JdbcRecordSink sink = new JdbcRecordSink("valid_users", null, settings)) {
+            sink.write(records(35));
+            sink.flush();
+
+            assertEquals(35, count(settings, "SELECT COUNT(*) FROM valid_users"));
+            assertEquals(35, sink.getRowsCommitted());
+        }
+    }
+
+    @Test
+    void invalidRecordsGetTheErrorsColumn() throws Exception {
+        JdbcSinkSettings settings = settings("jdbc-sink-invalid", 10, 10, 1);
+        ViolationCatalog catalog = ViolationCatalog.forUserPojo();
+        ValidatedRecord invalid = new ValidatedRecord(new UserPojo("Bob", null, 5, null), 0b11);
+
+        try (JdbcRecordSink sink = new JdbcRecordSink("invalid_users", catalog, settings)) {
+            sink.write(List.of(invalid));
+        }
+
+        try (Connection connection = DriverManager.getConnection(settings.url(), settings.user(), settings.password());
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT name, eddr, user_date, errors FROM invalid_users")) {
+            assertTrue(result.next());
+            assertEquals("Bob", result.getString(1));
+            assertNull(result.getString(2));
+            assertNull(result.getDate(3));
+            assertEquals(catalog.toJson(0b11), result.getString(4));
+        }
+    }
+
+    @Test
+    void reusesAnExistingTable() throws Exception {
+        JdbcSinkSettings settings = settings("jdbc-sink-reuse", 10, 10, 1);
+
+        try (JdbcRecordSink sink = new JdbcRecordSink("valid_users", null, settings)) {
+            sink.write(records(3));
+        }
+        try (JdbcRecordSink sink = new JdbcRecordSink("valid_users", null, settings)) {
+            sink.write(records(4));
+        }
+
+        assertEquals(7, count(settings, "SELECT COUNT(*) FROM valid_users"));
+    }
+}
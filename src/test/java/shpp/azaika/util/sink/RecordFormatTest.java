@@ -0,0 +1,77 @@
+package shpp.azaika.util.sink;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.pojo.ValidatedRecord;
+import shpp.azaika.validation.ViolationCatalog;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordFormatTest {
+    @TempDir
+    Path tempDir;
+
+    private final UserPojo validUser = new UserPojo("Andrew Zaika", "19760506-26585", 15, LocalDate.of(2024, 5, 1));
+    private final UserPojo invalidUser = new UserPojo("Bob", null, 5, LocalDate.of(2024, 5, 1));
+    private final ValidatedRecord valid = new ValidatedRecord(validUser, 0);
+
+    private Path write(RecordFormat format, ViolationCatalog catalog, List<ValidatedRecord> records) throws Exception {
+        Path file = tempDir.resolve(format.fileName("users"));
+        try (RecordSink sink = format.open(file, catalog, null)) {
+            sink.write(records);
+        }
+        return file;
+    }
+
+    @Test
+    void jsonLinesWritesOneObjectPerRecord() throws Exception {
+        ValidatedRecord invalid = new ValidatedRecord(invalidUser, 0b11);
+        ViolationCatalog catalog = ViolationCatalog.forUserPojo();
+
+        List<String> lines = Files.readAllLines(write(RecordFormat.JSONL, catalog, List.of(valid, invalid)), StandardCharsets.UTF_8);
+
+        assertEquals(2, lines.size());
+        JsonNode second = new ObjectMapper().readTree(lines.get(1));
+        assertEquals("Bob", second.get("name").asText());
+        assertEquals("2024-05-01", second.get("date").asText());
+        assertEquals(catalog.toJson(0b11), second.get("errors").asText());
+    }
+
+    @Test
+    void binaryLogRoundTripsRecordsAndViolationMasks() throws Exception {
+        ValidatedRecord invalid = new ValidatedRecord(invalidUser, 0b101);
+
+        List<ValidatedRecord> records = BinaryLogRecordSink.read(write(RecordFormat.BINARY, null, List.of(valid, invalid)));
+
+        assertEquals(2, records.size());
+        assertEquals(validUser.toString(), records.get(0).userPojo().toString());
+        assertEquals(invalidUser.toString(), records.get(1).userPojo().toString());
+        assertEquals(0, records.get(0).violationMask());
+        assertEquals(0b101, records.get(1).violationMask());
+    }
+
+    @Test
+    void binaryLogAppendsToAnExistingLog() throws Exception {
+        write(RecordFormat.BINARY, null, List.of(valid));
+
+        List<ValidatedRecord> records = BinaryLogRecordSink.read(write(RecordFormat.BINARY, null, List.of(new ValidatedRecord(invalidUser, 0))));
+
+        assertEquals(2, records.size());
+    }
+
+    @Test
+    void binaryLogIsSmallerThanCsv() throws Exception {
+        List<ValidatedRecord> records = List.of(valid, valid, valid, valid);
+
+        assertTrue(Files.size(write(RecordFormat.BINARY, null, records)) < Files.size(write(RecordFormat.CSV, null, records)));
+    }
+}
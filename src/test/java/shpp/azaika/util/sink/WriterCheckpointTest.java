@@ -0,0 +1,58 @@
+package shpp.azaika.util.sink;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriterCheckpointTest {
+    private static final String SYNCED_ROWS = "Andrew Zaika,19760506-26585,15,2024-01-01\n";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoverTruncatesRowsPastTheCheckpoint() throws Exception {
+        Path file = directory.resolve("valid_users.csv");
+        Path checkpointFile = directory.resolve("valid_users.checkpoint");
+        Files.writeString(file, SYNCED_ROWS + "Anna Kovalenko,1990", StandardCharsets.UTF_8);
+        new WriterCheckpoint(1, "ID:1", Map.of("valid_users.csv", (long) SYNCED_ROWS.length())).store(checkpointFile);
+
+        WriterCheckpoint checkpoint = WriterCheckpoint.recover(checkpointFile, List.of(file));
+
+        assertEquals(SYNCED_ROWS, Files.readString(file, StandardCharsets.UTF_8));
+        assertEquals(1, checkpoint.records());
+        assertEquals("ID:1", checkpoint.lastMessageId());
+    }
+
+    @Test
+    void recoverWithoutCheckpointKeepsFilesAndStoresOne() throws Exception {
+        Path file = directory.resolve("valid_users.csv");
+        Path checkpointFile = directory.resolve("valid_users.checkpoint");
+        Files.writeString(file, SYNCED_ROWS, StandardCharsets.UTF_8);
+
+        WriterCheckpoint.recover(checkpointFile, List.of(file));
+
+        assertEquals(SYNCED_ROWS, Files.readString(file, StandardCharsets.UTF_8));
+        assertEquals((long) SYNCED_ROWS.length(), WriterCheckpoint.load(checkpointFile).offsets().get("valid_users.csv"));
+    }
+
+    @Test
+    void advanceAddsRecordsAndKeepsTheLastMessageIdWhenNoneIsGiven() throws Exception {
+        Path file = directory.resolve("valid_users.csv");
+        Files.writeString(file, SYNCED_ROWS, StandardCharsets.UTF_8);
+        WriterCheckpoint checkpoint = new WriterCheckpoint(5, "ID:5", Map.of());
+
+        WriterCheckpoint advanced = checkpoint.advance(3, null, List.of(file));
+
+        assertEquals(8, advanced.records());
+        assertEquals("ID:5", advanced.lastMessageId());
+        assertEquals((long) SYNCED_ROWS.length(), advanced.offsets().get("valid_users.csv"));
+    }
+}
@@ -0,0 +1,66 @@
+package shpp.azaika.validation;
+
+import org.junit.jupiter.api.Test;
+import shpp.azaika.validation.constraints.constraintvalidators.CheckEddrValidator;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EddrValidationCacheTest {
+
+    @Test
+    void repeatedKeyIsComputedOnce() {
+        EddrValidationCache cache = new EddrValidationCache(16, 1);
+        AtomicInteger computations = new AtomicInteger();
+        Predicate<String> check = eddr -> {
+            computations.incrementAndGet();
+            return true;
+        };
+
+        assertTrue(cache.isValid("19760506-26583", check));
+        assertTrue(cache.isValid("19760506-26583", check));
+
+        assertEquals(1, computations.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void sizeStaysBoundedAndEvictionsAreCounted() {
+        EddrValidationCache cache = new EddrValidationCache(4, 1);
+
+        for (int i = 0; i < 10; i++) {
+            cache.isValid("key-" + i, eddr -> false);
+        }
+
+        assertEquals(4, cache.size());
+        assertEquals(6, cache.getEvictionCount());
+    }
+
+    @Test
+    void clockGivesReferencedEntriesASecondChance() {
+        EddrValidationCache cache = new EddrValidationCache(2, 1);
+        cache.isValid("hot", eddr -> true);
+        cache.isValid("cold", eddr -> true);
+        cache.isValid("hot", eddr -> true);
+
+        cache.isValid("new", eddr -> true);
+        AtomicInteger computations = new AtomicInteger();
+        cache.isValid("hot", eddr -> computations.incrementAndGet() > 0);
+
+        assertEquals(0, computations.get());
+    }
+
+    @Test
+    void cachedValidatorMatchesUncachedValidator() {
+        CheckEddrValidator uncached = new CheckEddrValidator();
+        CheckEddrValidator cached = new CheckEddrValidator(new EddrValidationCache(8));
+        String[] eddrs = {"19760506-26583", "19760506-26580", "20050407-18286", "19760506-2650583", "19760506-26583"};
+
+        for (String eddr : eddrs) {
+            assertEquals(uncached.isValid(eddr, null), cached.isValid(eddr, null), eddr);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package shpp.azaika.validation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import shpp.azaika.pojo.UserPojo;
+import shpp.azaika.util.FastUserPojoGenerator;
+import shpp.azaika.util.SharedComponents;
+import shpp.azaika.util.UserPojoGenerator;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FailFastUserPojoReaderTest {
+    private static final List<String> EDGE_CASES = List.of(
+            "{\"name\":\"Andrew Zaika\",\"eddr\":\"19760506-26585\",\"count\":15,\"date\":\"2024-01-01\"}",
+            "{\"name\":\"Bob\",\"eddr\":\"19760506-26584\",\"count\":5,\"date\":\"2024-01-01\"}",
+            "{\"name\":\"Olena Kovalenko\",\"eddr\":\"19760506-26585\",\"count\":15,\"date\":\"2024-01-01\"}",
+            "{\"name\":\"Petro Symonenko\",\"eddr\":\"19760506-26585\",\"count\":15,\"date\":\"2024-01-01\"}",
+            "{\"name\":\"Andrew\\nZaika\",\"eddr\":\"19760506-26585\",\"count\":15,\"date\":\"2024-01-01\"}",
+            "{\"name\":null,\"eddr\":null,\"count\":null,\"date\":null}",
+            "{\"eddr\":\"19760506-26585\",\"count\":15}",
+            "{}",
+            "{\"date\":\"2024-01-01\",\"count\":15,\"eddr\":\"19760506-26585\",\"name\":\"Andrew Zaika\"}",
+            "{\"name\":\"Bob\",\"eddr\":\"19760506-26585\",\"count\":15,\"date\":\"2024-01-01\",\"name\":\"Andrew Zaika\"}",
+            "{\"name\":\"Andrew Zaika\",\"eddr\":\"19760506-26585\",\"count\":\"15\",\"date\":\"2024-01-01\"}",
+            "{\"name\":\"Andrew Zaika\",\"eddr\":\"19760506-26585\",\"count\":15.0,\"date\":\"2024-01-01\"}",
+            "{\"name\":\"Andrew Zaika\",\"eddr\":\"1976-05-06\",\"count\":15,\"date\":\"2024-01-01\"}");
+
+    private final ObjectMapper mapper = SharedComponents.objectMapper();
+    private final Validator validator = SharedComponents.validatorFactory().getValidator();
+    private final ViolationCatalog catalog = ViolationCatalog.forUserPojo();
+
+    private void assertSameAsValidator(String json) throws IOException {
+        UserPojo bound = mapper.readValue(json, UserPojo.class);
+        int expectedMask = catalog.maskOf(validator.validate(bound));
+
+        FailFastUserPojoReader.Result failFast = new FailFastUserPojoReader(mapper, null, null).read(json);
+        FailFastUserPojoReader.Result reported = new FailFastUserPojoReader(mapper, null, catalog).read(json);
+
+        assertEquals(expectedMask == 0, failFast.valid(), json);
+        assertEquals(0, failFast.violationMask(), json);
+        assertEquals(expectedMask == 0, reported.valid(), json);
+        assertEquals(expectedMask, reported.violationMask(), json);
+        assertEquals(bound.toString(), failFast.userPojo().toString(), json);
+    }
+
+    @Test
+    void edgeCasesRouteLikeTheValidator() throws IOException {
+        for (String json : EDGE_CASES) {
+            assertSameAsValidator(json);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {0.0, 0.5, 0.9, 1.0})
+    void generatedRecordsRouteLikeTheValidator(double validRatio) throws IOException {
+        FastUserPojoGenerator generator = new FastUserPojoGenerator(validRatio);
+        for (int i = 0; i < 2_000; i++) {
+            assertSameAsValidator(generator.generateUserPojoAsJson());
+        }
+    }
+
+    @Test
+    void fakerRecordsRouteLikeTheValidator() throws IOException {
+        UserPojoGenerator generator = new UserPojoGenerator();
+        for (int i = 0; i < 500; i++) {
+            assertSameAsValidator(generator.generateUserPojoAsJson());
+        }
+    }
+
+    @Test
+    void malformedJsonStillFails() {
+        FailFastUserPojoReader reader = new FailFastUserPojoReader(mapper, null, null);
+
+        assertThrows(IOException.class, () -> reader.read("{\"name\":\"Andrew Zaika\","));
+        assertThrows(IOException.class, () -> reader.read("{\"nickname\":\"Andrew\"}"));
+        assertThrows(IOException.class, () -> reader.read("null"));
+    }
+
+    @Test
+    void letterCheckMatchesNamePattern() {
+        Pattern pattern = Pattern.compile("(?iu).*[aа].*");
+        for (String name : List.of("Andrew", "OLENA", "Петро", "Оксана", "ОЛЕНА", "Bob", "", "a", "x\na", "a\r\nx", "Ivo a")) {
+            assertEquals(pattern.matcher(name).matches(), FailFastUserPojoReader.containsLetterA(name), name);
+        }
+    }
+}
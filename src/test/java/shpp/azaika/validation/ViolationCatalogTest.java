@@ -0,0 +1,80 @@
+package shpp.azaika.validation;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import shpp.azaika.pojo.UserPojo;
+
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ViolationCatalogTest {
+    private static ValidatorFactory validatorFactory;
+    private static Validator validator;
+    private static ViolationCatalog catalog;
+
+    @BeforeAll
+    static void init() {
+        Locale.setDefault(Locale.ENGLISH);
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        catalog = ViolationCatalog.of(validatorFactory, UserPojo.class);
+    }
+
+    @AfterAll
+    static void close() {
+        validatorFactory.close();
+    }
+
+    @Test
+    void everyFieldConstraintGetsACode() {
+        assertEquals(7, catalog.size());
+    }
+
+    @Test
+    void validRecordHasEmptyMaskAndEmptyErrors() {
+        UserPojo userPojo = new UserPojo("Andrew Zaika", "19760506-26583", 10, LocalDate.now());
+
+        int mask = catalog.maskOf(validator.validate(userPojo));
+
+        assertEquals(0, mask);
+        assertEquals("[]", catalog.toJson(mask));
+    }
+
+    @Test
+    void errorsListEveryViolatedConstraintInCodeOrder() {
+        UserPojo userPojo = new UserPojo("Andrew Zaika", "19760506-26585", 5, LocalDate.now());
+
+        String errors = catalog.toJson(catalog.maskOf(validator.validate(userPojo)));
+
+        assertEquals("[{\"field\":\"count\",\"constraint\":\"Min\",\"message\":\"Count must be >= 10\"},"
+                + "{\"field\":\"eddr\",\"constraint\":\"CheckEddr\",\"message\":\"Invalid eddr number\"}]", errors);
+    }
+
+    @Test
+    void defaultMessagesAreInterpolatedOnce() {
+        UserPojo userPojo = new UserPojo("Андрій", "19760506-26583", 10, LocalDate.now());
+
+        String errors = catalog.toJson(catalog.maskOf(validator.validate(userPojo)));
+
+        assertEquals("[{\"field\":\"name\",\"constraint\":\"Length\",\"message\":\"length must be between 7 and 2147483647\"}]", errors);
+    }
+
+    @Test
+    void sameMaskReturnsSamePrecomputedString() {
+        UserPojo userPojo = new UserPojo(null, null, 0, null);
+        Set<ConstraintViolation<UserPojo>> violations = validator.validate(userPojo);
+
+        int mask = catalog.maskOf(violations);
+
+        assertEquals(Integer.bitCount(mask), violations.size());
+        assertSame(catalog.toJson(mask), catalog.toJson(mask));
+    }
+}